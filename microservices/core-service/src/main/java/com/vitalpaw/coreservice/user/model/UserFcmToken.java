@@ -0,0 +1,46 @@
+package com.vitalpaw.coreservice.user.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import java.time.LocalDateTime;
+
+/**
+ * Token FCM de uno de los móviles de un usuario. Lo registra y lo usa sensor-alert-service, que valida el esquema
+ * en lugar de crearlo; la tabla se declara aquí para que la genere este servicio.
+ */
+@Data
+@Entity
+@Table(name = "user_fcm_tokens")
+public class UserFcmToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Al borrar el usuario sus tokens ya no sirven
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @Column(name = "token", nullable = false, unique = true, length = 255)
+    private String token;
+
+    @Column(name = "platform", length = 20)
+    private String platform;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_registered_at", nullable = false)
+    private LocalDateTime lastRegisteredAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (lastRegisteredAt == null) {
+            lastRegisteredAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.vitalpaw.sensoralertservice.config;
+
+/**
+ * Fases de {@link org.springframework.context.SmartLifecycle} del servicio. Spring detiene primero la fase más alta,
+ * así que en el apagado se deja de recibir, después se drena el procesamiento y por último se guarda el snapshot.
+ * Al arrancar el orden es el inverso: el snapshot ya está cargado cuando llegan los primeros mensajes.
+ */
+public final class LifecyclePhases {
+
+    /** Canales de entrada (MQTT y demás receptores). */
+    public static final int INGEST = Integer.MAX_VALUE - 100;
+
+    /** Colas de trabajo y lotes pendientes del pipeline. */
+    public static final int PROCESSING = Integer.MAX_VALUE - 200;
+
+    /** Checkpoint del estado en memoria. */
+    public static final int SNAPSHOT = Integer.MAX_VALUE - 300;
+
+    private LifecyclePhases() {
+    }
+}
@@ -0,0 +1,26 @@
+package com.vitalpaw.sensoralertservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Planificador de las tareas {@code @Scheduled}. Hace falta declararlo: STOMP y SockJS registran sus propios
+ * TaskScheduler, así que Spring Boot no crea el suyo y sin un bean llamado {@code taskScheduler} todas las tareas
+ * acabarían en un único hilo. Ahí el volcado del TSDB, el snapshot o el refresco del registro frenarían los ticks
+ * que mueven el pipeline (reordenación, conflación, resúmenes de notificaciones).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${app.sensor.scheduling.pool-size:8}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduled-");
+        return scheduler;
+    }
+}
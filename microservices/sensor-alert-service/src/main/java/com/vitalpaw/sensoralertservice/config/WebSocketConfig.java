@@ -1,14 +1,28 @@
 package com.vitalpaw.sensoralertservice.config;
 
+import com.vitalpaw.sensoralertservice.controller.SensorWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 @Configuration
+@EnableWebSocket
 @EnableWebSocketMessageBroker
-public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer, WebSocketConfigurer {
+
+    @Autowired
+    private SensorWebSocketHandler sensorWebSocketHandler;
+
+    // Orígenes de navegador admitidos en /ws/sensors; las apps nativas no envían Origin
+    @Value("${app.sensor.websocket.allowed-origins:https://vitalpaw.tecsup.xyz}")
+    private String[] allowedOrigins;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -20,4 +34,10 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.enableSimpleBroker("/topic");
         registry.setApplicationDestinationPrefixes("/app");
     }
-}
\ No newline at end of file
+
+    // WebSocket nativo con suscripción por mascota (ver SensorWebSocketHandler). El handshake pasa por ApiKeyFilter
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(sensorWebSocketHandler, "/ws/sensors").setAllowedOriginPatterns(allowedOrigins);
+    }
+}
@@ -0,0 +1,22 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.AlertCaptureDTO;
+import com.vitalpaw.sensoralertservice.service.AlertCaptureService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/alerts")
+public class AlertCaptureController {
+    @Autowired
+    private AlertCaptureService alertCaptureService;
+
+    // Constantes vitales alrededor de la alerta; 404 si no hay captura o la ventana posterior aún no terminó
+    @GetMapping("/{alertId}/capture")
+    public ResponseEntity<AlertCaptureDTO> getCapture(@PathVariable Long alertId) {
+        return alertCaptureService.find(alertId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,21 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.BacktestRequestDTO;
+import com.vitalpaw.sensoralertservice.dto.BacktestResultDTO;
+import com.vitalpaw.sensoralertservice.service.BacktestService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/backtests")
+public class BacktestController {
+    @Autowired
+    private BacktestService backtestService;
+
+    // Compara las alertas de las reglas vigentes con las candidatas antes de cambiar umbrales de raza
+    @PostMapping
+    public ResponseEntity<BacktestResultDTO> runBacktest(@RequestBody BacktestRequestDTO request) {
+        return ResponseEntity.ok(backtestService.run(request));
+    }
+}
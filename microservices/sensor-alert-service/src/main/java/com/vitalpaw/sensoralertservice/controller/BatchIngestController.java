@@ -0,0 +1,34 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.BatchIngestResultDTO;
+import com.vitalpaw.sensoralertservice.service.BatchIngestService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/ingest")
+public class BatchIngestController {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String COMPACT_BINARY = "application/vnd.vitalpaw.samples";
+
+    @Autowired
+    private BatchIngestService batchIngestService;
+
+    // El cuerpo se lee directamente del flujo de la petición, sin @RequestBody, para no cargarlo entero en memoria.
+    // backfill=true: sesión grabada que solo se guarda en el histórico, sin alertas
+    @PostMapping(value = "/batch", consumes = NDJSON)
+    public ResponseEntity<BatchIngestResultDTO> ingestNdjson(HttpServletRequest request,
+            @RequestParam(defaultValue = "false") boolean backfill) throws IOException {
+        return ResponseEntity.ok(batchIngestService.ingestNdjson(request.getInputStream(), backfill));
+    }
+
+    @PostMapping(value = "/batch", consumes = COMPACT_BINARY)
+    public ResponseEntity<BatchIngestResultDTO> ingestBinary(HttpServletRequest request,
+            @RequestParam(defaultValue = "false") boolean backfill) throws IOException {
+        return ResponseEntity.ok(batchIngestService.ingestBinary(request.getInputStream(), backfill));
+    }
+}
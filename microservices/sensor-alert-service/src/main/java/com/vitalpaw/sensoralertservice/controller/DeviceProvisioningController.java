@@ -0,0 +1,87 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceProvisionDTO;
+import com.vitalpaw.sensoralertservice.dto.LiveDeviceStateDTO;
+import com.vitalpaw.sensoralertservice.entity.PetDevice;
+import com.vitalpaw.sensoralertservice.service.DeviceContextService;
+import com.vitalpaw.sensoralertservice.service.DeviceRateLimiter;
+import com.vitalpaw.sensoralertservice.service.DeviceRegistryService;
+import com.vitalpaw.sensoralertservice.service.LiveStateService;
+import com.vitalpaw.sensoralertservice.service.UdpIngestService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/devices")
+public class DeviceProvisioningController {
+    @Autowired
+    private DeviceRegistryService deviceRegistryService;
+
+    @Autowired
+    private DeviceContextService deviceContextService;
+
+    @Autowired
+    private DeviceRateLimiter deviceRateLimiter;
+
+    @Autowired
+    private LiveStateService liveStateService;
+
+    @Autowired
+    private UdpIngestService udpIngestService;
+
+    @PostMapping("/provision")
+    public ResponseEntity<DeviceProvisionDTO> provisionDevice(@RequestBody DeviceProvisionDTO dto) {
+        PetDevice device = deviceRegistryService.provision(dto);
+        // Un contexto cacheado de una fila borrada fuera de este servicio apuntaría a la mascota anterior
+        deviceContextService.evict(device.getDeviceId());
+        return ResponseEntity.ok(new DeviceProvisionDTO(device.getDeviceId(), device.getPet().getId(),
+                udpIngestService.deviceKeyHex(device.getDeviceId())));
+    }
+
+    // Sin el contexto cacheado, sus lecturas se descartan ya y no tras el siguiente refresco
+    @DeleteMapping("/{deviceId}")
+    public ResponseEntity<Void> deprovisionDevice(@PathVariable String deviceId) {
+        if (!deviceRegistryService.deprovision(deviceId)) {
+            return ResponseEntity.notFound().build();
+        }
+        deviceContextService.evict(deviceId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // IDs que han enviado datos sin estar registrados, candidatos a aprovisionar
+    @GetMapping("/unknown")
+    public ResponseEntity<Map<String, LocalDateTime>> getUnknownDevices() {
+        return ResponseEntity.ok(deviceRegistryService.getUnknownDevices());
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<Void> refreshDevices() {
+        deviceRegistryService.rebuild();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Dispositivos que más superan el rate limit: normalmente firmwares defectuosos
+    @GetMapping("/throttled")
+    public ResponseEntity<Map<String, Long>> getThrottledDevices(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(deviceRateLimiter.topViolators(limit));
+    }
+
+    // Último estado en memoria, sin pasar por la base de datos
+    @GetMapping("/{deviceId}/state")
+    public ResponseEntity<LiveDeviceStateDTO> getLiveState(@PathVariable String deviceId) {
+        LiveDeviceStateDTO state = liveStateService.get(deviceId);
+        return state != null ? ResponseEntity.ok(state) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/online")
+    public ResponseEntity<Map<String, Integer>> getOnlineCount(@RequestParam(defaultValue = "300000") long withinMs) {
+        if (withinMs <= 0) {
+            throw new IllegalArgumentException("withinMs debe ser positivo");
+        }
+        return ResponseEntity.ok(Map.of("online", liveStateService.countOnline(withinMs)));
+    }
+}
@@ -0,0 +1,29 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.FcmTokenDTO;
+import com.vitalpaw.sensoralertservice.service.FcmTokenRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+// La app registra aquí el token de cada móvil al iniciar sesión y lo da de baja al cerrarla (con X-API-Key)
+@RestController
+@RequestMapping("/api/owners/{ownerId}/fcm-tokens")
+public class FcmTokenController {
+    @Autowired
+    private FcmTokenRegistry fcmTokenRegistry;
+
+    @PostMapping
+    public ResponseEntity<Void> registerToken(@PathVariable Long ownerId, @RequestBody FcmTokenDTO dto) {
+        fcmTokenRegistry.register(ownerId, dto.getToken(), dto.getPlatform());
+        return ResponseEntity.noContent().build();
+    }
+
+    // El token va como parámetro: puede contener ':' y otros caracteres incómodos en la ruta
+    @DeleteMapping
+    public ResponseEntity<Void> unregisterToken(@PathVariable Long ownerId, @RequestParam String token) {
+        return fcmTokenRegistry.unregister(ownerId, token)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,58 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.repository.PetRepository;
+import com.vitalpaw.sensoralertservice.repository.UserRepository;
+import com.vitalpaw.sensoralertservice.service.LiveEventStreamService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Lecturas en vivo por Server-Sent Events: {@code GET /api/pets/{petId}/live} o {@code /api/owners/{ownerId}/live}
+ * con {@code Accept: text/event-stream}. Los eventos {@code sensor} llevan el mismo JSON que
+ * {@code /topic/sensores/{petId}}; EventSource reconecta solo y reanuda con {@code Last-Event-ID}.
+ *
+ * Requieren {@code X-API-Key} ({@link com.vitalpaw.sensoralertservice.security.ApiKeyFilter}) y solo se abren para
+ * mascotas y dueños que existen: cada stream reserva su anillo de reenvío hasta que caduca.
+ */
+@RestController
+@RequestMapping("/api")
+public class LiveEventController {
+    @Autowired
+    private LiveEventStreamService liveEventStreamService;
+
+    @Autowired
+    private PetRepository petRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @GetMapping(path = "/pets/{petId}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> petStream(@PathVariable Long petId,
+                                                @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (!petRepository.existsById(petId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return stream(liveEventStreamService.subscribe(LiveEventStreamService.Scope.PET, petId, lastEventId));
+    }
+
+    @GetMapping(path = "/owners/{ownerId}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> ownerStream(@PathVariable Long ownerId,
+                                                  @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (!userRepository.existsById(ownerId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return stream(liveEventStreamService.subscribe(LiveEventStreamService.Scope.OWNER, ownerId, lastEventId));
+    }
+
+    // Sin caché ni buffering en proxies: cada evento debe llegar al cliente en cuanto se escribe
+    private static ResponseEntity<SseEmitter> stream(SseEmitter emitter) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+}
@@ -1,69 +1,375 @@
 package com.vitalpaw.sensoralertservice.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO; // Usar el DTO correcto
+import com.vitalpaw.sensoralertservice.util.VitalsDeltaCodec;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * WebSocket nativo en {@code /ws/sensors} con suscripción por mascota: {@code ?petId=1&petId=2} al conectar, o
+ * mensajes {@code {"action":"subscribe"|"unsubscribe","petIds":[...]}}. Un índice petId → sesiones permite que
+ * cada lectura llegue solo a quien sigue a esa mascota, serializada una sola vez.
+ *
+ * El envío no bloquea a quien difunde: cada sesión tiene una cola acotada (mensajes y bytes) que vacía un pool
+ * de hilos compartido, como mucho un hilo por sesión a la vez. Un cliente lento que llena su cola o lleva
+ * demasiado tiempo en un envío se desconecta en lugar de frenar al resto.
+ *
+ * Los clientes que negocian el subprotocolo {@value VitalsDeltaCodec#PROTOCOL} reciben frames binarios con deltas
+ * en lugar de JSON: un keyframe al suscribirse y después solo los campos que cambian. Los frames de cada mascota
+ * se codifican una vez por lectura y se comparten; a cada sesión se le envía el delta si recibió el frame
+ * anterior y el keyframe si no.
+ */
 @Component
-public class SensorWebSocketHandler extends TextWebSocketHandler {
+public class SensorWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private static final Logger logger = LoggerFactory.getLogger(SensorWebSocketHandler.class);
-    private final CopyOnWriteArrayList<WebSocketSession> sessions = new CopyOnWriteArrayList<>();
+
+    @Value("${app.sensor.websocket.send-time-limit-ms:5000}")
+    private long sendTimeLimitMs;
+
+    @Value("${app.sensor.websocket.buffer-size-limit:524288}")
+    private long bufferSizeLimit;
+
+    @Value("${app.sensor.websocket.max-queued-messages:256}")
+    private int maxQueuedMessages;
+
+    @Value("${app.sensor.websocket.max-subscriptions-per-session:50}")
+    private int maxSubscriptionsPerSession;
+
+    @Value("${app.sensor.websocket.sender-threads:4}")
+    private int senderThreads;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Subscriber> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> byPet = new ConcurrentHashMap<>();
+    private final Map<Long, PetStream> streams = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private ExecutorService sender;
+    private Counter evictedSlow;
+    private Counter evictedOverflow;
+
+    /** Sesión suscrita con su cola de salida. */
+    private static final class Subscriber {
+        final WebSocketSession session;
+        final boolean delta;
+        final Set<Long> petIds = ConcurrentHashMap.newKeySet();
+        final Map<Long, Long> lastSeq = new ConcurrentHashMap<>(); // Último frame binario encolado por mascota
+        final Queue<WebSocketMessage<?>> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicLong queuedBytes = new AtomicLong();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile long sendStartedAt; // 0 = sin envío en curso
+        volatile boolean evicted;
+
+        Subscriber(WebSocketSession session) {
+            this.session = session;
+            this.delta = VitalsDeltaCodec.PROTOCOL.equals(session.getAcceptedProtocol());
+        }
+    }
+
+    /** Codificación binaria de una mascota; sus difusiones se serializan con su lock para conservar el orden. */
+    private static final class PetStream {
+        final VitalsDeltaCodec.Encoder encoder;
+        VitalsDeltaCodec.Frames latest;
+
+        PetStream(long petId) {
+            this.encoder = new VitalsDeltaCodec.Encoder(petId);
+        }
+    }
 
-    public SensorWebSocketHandler(io.micrometer.core.instrument.MeterRegistry meterRegistry) {
+    public SensorWebSocketHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
         // Métricas de conexiones WebSocket activas
-        Gauge.builder("vitalpaw.websocket.connections", sessions, List::size)
+        Gauge.builder("vitalpaw.websocket.connections", sessions, Map::size)
                 .description("Número de conexiones WebSocket activas")
                 .register(meterRegistry);
+        Gauge.builder("vitalpaw.websocket.watched.pets", byPet, Map::size)
+                .description("Mascotas con al menos una sesión suscrita")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        evictedSlow = Counter.builder("vitalpaw.websocket.evictions")
+                .description("Sesiones desconectadas por no consumir a tiempo")
+                .tag("reason", "send_timeout")
+                .register(meterRegistry);
+        evictedOverflow = Counter.builder("vitalpaw.websocket.evictions")
+                .description("Sesiones desconectadas por no consumir a tiempo")
+                .tag("reason", "buffer_overflow")
+                .register(meterRegistry);
+        AtomicInteger threadIndex = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "ws-sender-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(VitalsDeltaCodec.PROTOCOL);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        // La lógica de validación de API Key ha sido eliminada.
-        sessions.add(session);
-        logger.info("Nueva conexión WebSocket establecida: {}", session.getId());
+        Subscriber subscriber = new Subscriber(session);
+        sessions.put(session.getId(), subscriber);
+        if (session.getUri() != null) {
+            var petIds = UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().get("petId");
+            if (petIds != null) {
+                for (String petId : petIds) {
+                    try {
+                        subscribe(subscriber, Long.parseLong(petId));
+                    } catch (NumberFormatException e) {
+                        logger.debug("petId inválido en la conexión {}: {}", session.getId(), petId);
+                    }
+                }
+            }
+        }
+        logger.info("Nueva conexión WebSocket establecida: {} (mascotas {})", session.getId(), subscriber.petIds);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        // Este servicio no espera mensajes entrantes desde el frontend vía WebSocket,
-        // solo los envía. Puedes loguear si lo deseas.
-        logger.debug("Mensaje WebSocket recibido de {}: {}", session.getId(), message.getPayload());
+        Subscriber subscriber = sessions.get(session.getId());
+        if (subscriber == null) {
+            return;
+        }
+        JsonNode command;
+        try {
+            command = objectMapper.readTree(message.getPayload());
+        } catch (JsonProcessingException e) {
+            logger.debug("Mensaje WebSocket inválido de {}: {}", session.getId(), message.getPayload());
+            return;
+        }
+        String action = command.path("action").asText();
+        for (JsonNode petId : command.path("petIds")) {
+            if (!petId.canConvertToLong()) {
+                continue;
+            }
+            if ("subscribe".equals(action)) {
+                subscribe(subscriber, petId.asLong());
+            } else if ("unsubscribe".equals(action)) {
+                unsubscribe(subscriber, petId.asLong());
+            }
+        }
+    }
+
+    private void subscribe(Subscriber subscriber, long petId) {
+        if (subscriber.evicted) {
+            return;
+        }
+        if (subscriber.petIds.size() >= maxSubscriptionsPerSession && !subscriber.petIds.contains(petId)) {
+            logger.debug("La sesión {} alcanzó el máximo de {} suscripciones", subscriber.session.getId(), maxSubscriptionsPerSession);
+            return;
+        }
+        subscriber.petIds.add(petId);
+        // compute es atómico por clave: no se pierde la suscripción si otra sesión vacía el conjunto a la vez
+        byPet.compute(petId, (id, set) -> {
+            Set<Subscriber> subscribers = set != null ? set : ConcurrentHashMap.newKeySet();
+            subscribers.add(subscriber);
+            return subscribers;
+        });
+        // Keyframe inicial con el último estado conocido, si la mascota ya ha enviado algo
+        PetStream stream = subscriber.delta ? streams.get(petId) : null;
+        if (stream != null) {
+            synchronized (stream) {
+                if (stream.latest != null && !subscriber.lastSeq.containsKey(petId)) {
+                    subscriber.lastSeq.put(petId, stream.latest.seq());
+                    enqueue(subscriber, new BinaryMessage(stream.latest.keyframe()), System.currentTimeMillis());
+                }
+            }
+        }
     }
 
-    // Este método es llamado desde MqttSensorService para enviar datos al frontend
+    private void unsubscribe(Subscriber subscriber, long petId) {
+        subscriber.petIds.remove(petId);
+        subscriber.lastSeq.remove(petId);
+        byPet.computeIfPresent(petId, (id, set) -> {
+            set.remove(subscriber);
+            if (set.isEmpty()) {
+                streams.remove(id);
+                return null;
+            }
+            return set;
+        });
+    }
+
+    // Este método es llamado desde SensorProcessingService para enviar datos al frontend
     // Ahora usa el DTO de respuesta para mantener la consistencia
-    public void broadcastSensorData(SensorDataResponseDTO data) throws IOException {
-        String jsonData = objectMapper.writeValueAsString(data);
-        TextMessage message = new TextMessage(jsonData);
-        logger.debug("Enviando datos de sensor para mascota {}: Temp=%.1f, Pulso=%d, Estado=%s",
-                data.getPetId(), data.getTemperature(), data.getPulse(), data.getStatus());
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
+    public void broadcastSensorData(SensorDataResponseDTO data) {
+        Set<Subscriber> subscribers = byPet.get(data.getPetId());
+        if (subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+        logger.debug("Enviando datos de sensor para mascota {} a {} sesiones", data.getPetId(), subscribers.size());
+        long petId = data.getPetId();
+        long now = System.currentTimeMillis();
+        PetStream stream = streams.computeIfAbsent(petId, PetStream::new);
+        // Con el lock de la mascota el orden de las colas coincide con el de las secuencias de los frames
+        synchronized (stream) {
+            VitalsDeltaCodec.Frames frames = stream.encoder.encode(data);
+            stream.latest = frames;
+            // Una sola serialización JSON, solo si alguna sesión la usa, y el mismo frame para todas
+            TextMessage json = null;
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.delta) {
+                    Long lastSeq = subscriber.lastSeq.put(petId, frames.seq());
+                    // BinaryMessage envuelve el array sin copiarlo; se crea por sesión porque el envío consume su posición
+                    enqueue(subscriber, new BinaryMessage(frames.forClient(lastSeq != null ? lastSeq : -1)), now);
+                    continue;
+                }
+                if (json == null) {
+                    try {
+                        json = new TextMessage(objectMapper.writeValueAsString(data));
+                    } catch (JsonProcessingException e) {
+                        logger.error("Error al serializar datos de sensor para mascota {}: {}", petId, e.getMessage());
+                        return;
+                    }
+                }
+                enqueue(subscriber, json, now);
+            }
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, WebSocketMessage<?> message, long now) {
+        if (subscriber.evicted) {
+            return;
+        }
+        long started = subscriber.sendStartedAt;
+        if (started != 0 && now - started > sendTimeLimitMs) {
+            evict(subscriber, evictedSlow, "envío bloqueado más de " + sendTimeLimitMs + " ms");
+            return;
+        }
+        int queued = subscriber.queued.incrementAndGet();
+        long bytes = subscriber.queuedBytes.addAndGet(message.getPayloadLength());
+        if (queued > maxQueuedMessages || bytes > bufferSizeLimit) {
+            evict(subscriber, evictedOverflow, "cola de salida llena (" + queued + " mensajes, " + bytes + " bytes)");
+            return;
+        }
+        subscriber.queue.offer(message);
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.scheduled.set(false); // Apagado en curso
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            WebSocketMessage<?> message;
+            while (!subscriber.evicted && (message = subscriber.queue.poll()) != null) {
+                subscriber.queued.decrementAndGet();
+                subscriber.queuedBytes.addAndGet(-message.getPayloadLength());
+                if (!subscriber.session.isOpen()) {
+                    return;
+                }
+                subscriber.sendStartedAt = System.currentTimeMillis();
+                try {
+                    subscriber.session.sendMessage(message);
+                } catch (IOException | IllegalStateException e) {
+                    logger.error("Error al enviar mensaje a la sesión {}: {}", subscriber.session.getId(), e.getMessage());
+                    remove(subscriber);
+                    return;
+                } finally {
+                    subscriber.sendStartedAt = 0;
+                }
+            }
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        // Un mensaje encolado entre el último poll y la liberación del flag no tendría quien lo enviara
+        if (!subscriber.evicted && !subscriber.queue.isEmpty()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void evict(Subscriber subscriber, Counter reason, String detail) {
+        if (!remove(subscriber)) {
+            return;
+        }
+        reason.increment();
+        logger.warn("Sesión WebSocket {} desconectada por consumidor lento: {}", subscriber.session.getId(), detail);
+        // El cierre puede bloquear si el socket está lleno: no se hace en el hilo que difunde
+        try {
+            sender.execute(() -> {
                 try {
-                    session.sendMessage(message);
+                    subscriber.session.close(CloseStatus.SESSION_NOT_RELIABLE);
                 } catch (IOException e) {
-                    logger.error("Error al enviar mensaje a la sesión {}: {}", session.getId(), e.getMessage());
+                    logger.debug("Error al cerrar la sesión {}: {}", subscriber.session.getId(), e.getMessage());
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            // Apagado en curso: el contenedor cierra las sesiones
+        }
+    }
+
+    // Saca la sesión del índice; devuelve false si ya se había quitado
+    private boolean remove(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.evicted) {
+                return false;
             }
+            subscriber.evicted = true;
         }
+        sessions.remove(subscriber.session.getId(), subscriber);
+        for (Long petId : subscriber.petIds) {
+            unsubscribe(subscriber, petId);
+        }
+        subscriber.queue.clear();
+        return true;
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
+        Subscriber subscriber = sessions.get(session.getId());
+        if (subscriber != null) {
+            remove(subscriber);
+        }
         logger.info("Conexión WebSocket cerrada: {} con estado: {}", session.getId(), status);
     }
-}
\ No newline at end of file
+}
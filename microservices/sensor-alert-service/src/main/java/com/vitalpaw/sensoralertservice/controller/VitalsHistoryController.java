@@ -0,0 +1,43 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.VitalsHistoryDTO;
+import com.vitalpaw.sensoralertservice.dto.VitalsSnapshotDTO;
+import com.vitalpaw.sensoralertservice.service.RecentHistoryService;
+import com.vitalpaw.sensoralertservice.service.TimeSeriesStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/pets")
+public class VitalsHistoryController {
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    @Autowired
+    private RecentHistoryService recentHistoryService;
+
+    // Rango en epoch ms; por defecto, las últimas 24 horas
+    @GetMapping("/{petId}/history")
+    public ResponseEntity<VitalsHistoryDTO> getHistory(@PathVariable Long petId,
+                                                       @RequestParam(required = false) Long from,
+                                                       @RequestParam(required = false) Long to) {
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : end - 86_400_000L;
+        if (start > end) {
+            throw new IllegalArgumentException("'from' debe ser anterior a 'to'");
+        }
+        return ResponseEntity.ok(timeSeriesStore.query(petId, start, end));
+    }
+
+    // Última lectura y ventana reciente desde memoria, lo mismo que recibe un SUBSCRIBE con 'history'
+    @GetMapping("/{petId}/recent")
+    public ResponseEntity<VitalsSnapshotDTO> getRecent(@PathVariable Long petId,
+                                                       @RequestParam(defaultValue = "60") int samples) {
+        if (samples < 0) {
+            throw new IllegalArgumentException("'samples' no puede ser negativo");
+        }
+        VitalsSnapshotDTO snapshot = recentHistoryService.snapshot(petId, samples);
+        return snapshot != null ? ResponseEntity.ok(snapshot) : ResponseEntity.noContent().build();
+    }
+}
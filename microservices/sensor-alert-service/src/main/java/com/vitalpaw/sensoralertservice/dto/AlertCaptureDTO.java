@@ -0,0 +1,19 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+import java.util.List;
+
+/**
+ * Constantes vitales registradas alrededor de una alerta: la ventana previa al disparo y la posterior.
+ * {@code offsetMs} es relativo al instante de la alerta (negativo = antes).
+ */
+public record AlertCaptureDTO(
+        Long alertId,
+        String alertType,
+        String deviceId,
+        Long petId,
+        long triggeredAt,
+        List<Sample> samples) {
+
+    public record Sample(int offsetMs, float temperature, int pulse, float activity, float peakG) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Reglas candidatas a comparar con las vigentes sobre un rango de lecturas almacenadas.
+ * Lo que no se indica se mantiene igual que en las reglas actuales.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BacktestRequestDTO {
+    private Long from; // epoch ms
+    private Long to;   // epoch ms
+    private Map<Long, RuleThresholds> breedThresholds; // Por id de raza
+    private Float maxTemperature; // Umbral general para mascotas sin raza
+    private Integer maxHeartRate;
+}
@@ -0,0 +1,27 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+import java.util.List;
+
+/**
+ * Alertas que habrían producido las reglas vigentes y las candidatas sobre las mismas lecturas.
+ * Un episodio es una racha de lecturas consecutivas que alertan; el flujo real alerta en cada lectura.
+ */
+public record BacktestResultDTO(
+        long from,
+        long to,
+        int pets,
+        long readings,
+        long currentAlerts,
+        long candidateAlerts,
+        List<PetResult> byPet,
+        List<BreedResult> byBreed,
+        long elapsedMs) {
+
+    public record PetResult(Long petId, Long breedId, long readings, long currentAlerts, long candidateAlerts,
+                            long currentEpisodes, long candidateEpisodes) {
+    }
+
+    public record BreedResult(Long breedId, String breedName, int pets, long readings, long currentAlerts,
+                              long candidateAlerts) {
+    }
+}
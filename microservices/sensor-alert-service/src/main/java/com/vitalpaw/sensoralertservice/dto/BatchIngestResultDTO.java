@@ -0,0 +1,14 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Resumen de una carga por lotes. Si {@code complete} es false el servicio se estaba deteniendo y el cliente
+ * debe reenviar a partir de la lectura {@code received}.
+ */
+public record BatchIngestResultDTO(
+        long received,
+        long accepted,
+        long unknownDevice,
+        long malformed,
+        boolean complete,
+        long elapsedMs) {
+}
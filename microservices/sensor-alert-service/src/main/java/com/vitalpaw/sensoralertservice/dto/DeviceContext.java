@@ -0,0 +1,24 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Vista plana e inmutable de un dispositivo con exactamente los campos que usa el flujo de alertas.
+ * Se obtiene con una única consulta JOIN (proyección por constructor), por lo que no es una entidad gestionada
+ * y no pasa por el contexto de persistencia ni por el dirty-checking de Hibernate.
+ * Los umbrales de raza son null cuando la mascota no tiene raza asociada.
+ */
+public record DeviceContext(
+        Long deviceRowId,
+        String deviceId,
+        Long petId,
+        String petName,
+        Long ownerId,
+        String ownerFcmToken,
+        Float minTemperature,
+        Float maxTemperature,
+        Integer minHeartRate,
+        Integer maxHeartRate) {
+
+    public boolean hasBreedThresholds() {
+        return minTemperature != null && maxTemperature != null && minHeartRate != null && maxHeartRate != null;
+    }
+}
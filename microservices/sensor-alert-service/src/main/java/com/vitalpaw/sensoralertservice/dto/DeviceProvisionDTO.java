@@ -0,0 +1,14 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceProvisionDTO {
+    private String deviceId; // ID que el collar envía en su payload MQTT
+    private Long petId;      // Mascota a la que se asocia el collar
+    private String udpKey;   // Solo en la respuesta: clave HMAC del canal UDP (hex) que se graba en el collar
+}
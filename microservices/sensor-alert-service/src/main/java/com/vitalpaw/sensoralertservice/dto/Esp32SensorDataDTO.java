@@ -9,6 +9,9 @@ import lombok.AllArgsConstructor; // Opcional, pero útil para crear instancias
 @NoArgsConstructor // Necesario para que Jackson pueda deserializar
 @AllArgsConstructor // Útil para crear instancias fácilmente
 public class Esp32SensorDataDTO {
+    @JsonProperty("device_id")
+    private String deviceId; // Identificador único del collar (aprovisionado en pet_devices)
+
     @JsonProperty("ecg_raw")
     private int ecg_raw;
 
@@ -17,4 +20,15 @@ public class Esp32SensorDataDTO {
 
     @JsonProperty("movimiento")
     private String movimiento;
+
+    // Opcional: muestras crudas del acelerómetro en g, intercaladas [x0, y0, z0, x1, y1, z1, ...]
+    @JsonProperty("accel")
+    private float[] accel;
+
+    @JsonProperty("accel_hz")
+    private int accel_hz;
+
+    // Opcional: hora de la medición en el collar (epoch ms, sincronizada por NTP)
+    @JsonProperty("ts")
+    private Long ts;
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FcmTokenDTO {
+    private String token;    // Token de registro que devuelve el SDK de FCM en el móvil
+    private String platform; // Opcional: android, ios, web
+}
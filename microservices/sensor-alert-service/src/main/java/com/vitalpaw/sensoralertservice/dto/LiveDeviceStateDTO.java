@@ -0,0 +1,16 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Último estado conocido de un dispositivo, copiado de la tabla en memoria. {@code sequence} cuenta las lecturas
+ * procesadas desde el arranque: dos consultas con la misma secuencia ven la misma lectura.
+ */
+public record LiveDeviceStateDTO(
+        String deviceId,
+        Long petId,
+        float temperature,
+        int pulse,
+        String status,   // null si no es uno de los estados estándar
+        Float activity,  // null si el collar no envía acelerómetro
+        long lastSeen,   // epoch en ms (hora del evento)
+        long sequence) {
+}
@@ -0,0 +1,19 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Mascota con su raza y los umbrales vigentes, para reevaluar lecturas históricas.
+ * Los campos de raza son null cuando la mascota no tiene raza asociada.
+ */
+public record PetRuleContext(
+        Long petId,
+        Long breedId,
+        String breedName,
+        Float minTemperature,
+        Float maxTemperature,
+        Integer minHeartRate,
+        Integer maxHeartRate) {
+
+    public RuleThresholds thresholds() {
+        return new RuleThresholds(minTemperature, maxTemperature, minHeartRate, maxHeartRate);
+    }
+}
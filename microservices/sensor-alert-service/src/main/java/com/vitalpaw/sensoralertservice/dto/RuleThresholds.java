@@ -0,0 +1,16 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Umbrales de una raza tal como los aplica el flujo de alertas: fuera de [min, max] en temperatura
+ * o pulso, la lectura alerta.
+ */
+public record RuleThresholds(
+        Float minTemperature,
+        Float maxTemperature,
+        Integer minHeartRate,
+        Integer maxHeartRate) {
+
+    public boolean complete() {
+        return minTemperature != null && maxTemperature != null && minHeartRate != null && maxHeartRate != null;
+    }
+}
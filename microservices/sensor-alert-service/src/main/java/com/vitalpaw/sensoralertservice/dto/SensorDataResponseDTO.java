@@ -13,4 +13,5 @@ public class SensorDataResponseDTO {
     private float temperature;
     private int pulse;
     private String status;   // Estado de movimiento (ej. "Sin movimiento", "En movimiento", "Caído")
+    private Float activity;  // Nivel de actividad calculado del acelerómetro en m/s² (null si el collar no lo envía)
 }
\ No newline at end of file
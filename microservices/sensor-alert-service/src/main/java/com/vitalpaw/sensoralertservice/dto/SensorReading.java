@@ -0,0 +1,46 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Lectura normalizada que recorre el pipeline de ingesta, independiente del canal por el que llegó.
+ */
+public record SensorReading(
+        String deviceId,
+        float temperature,
+        int pulse,
+        String status,        // Estado de movimiento (ej. "Sin movimiento", "En movimiento", "Caído")
+        float[] acceleration, // Muestras crudas del acelerómetro en g, intercaladas x,y,z (null si no las hay)
+        int sampleRateHz,     // Frecuencia de muestreo de 'acceleration' (0 = la configurada por defecto)
+        long timestampMillis, // Hora del evento (epoch ms): la del dispositivo si la envía, si no la de llegada
+        boolean deviceTimestamp) { // true si timestampMillis viene del reloj del dispositivo
+
+    public SensorReading(String deviceId, float temperature, int pulse, String status, float[] acceleration,
+                         int sampleRateHz, long timestampMillis) {
+        this(deviceId, temperature, pulse, status, acceleration, sampleRateHz, timestampMillis, true);
+    }
+
+    public SensorReading(String deviceId, float temperature, int pulse, String status) {
+        this(deviceId, temperature, pulse, status, null, 0, System.currentTimeMillis(), false);
+    }
+
+    /** Normaliza el JSON del ESP32; los firmwares que no envían 'device_id' o 'ts' usan los valores por defecto. */
+    public static SensorReading fromEsp32(Esp32SensorDataDTO data, String defaultDeviceId) {
+        return new SensorReading(
+                data.getDeviceId() != null ? data.getDeviceId() : defaultDeviceId,
+                data.getTemperatura_celsius(),
+                data.getEcg_raw(), // El ESP32 solo envía 'ecg_raw'; se usa como pulso
+                data.getMovimiento(),
+                data.getAccel(),
+                data.getAccel_hz(),
+                data.getTs() != null ? data.getTs() : System.currentTimeMillis(),
+                data.getTs() != null);
+    }
+
+    public SensorReading withTimestamp(long timestampMillis) {
+        return new SensorReading(deviceId, temperature, pulse, status, acceleration, sampleRateHz, timestampMillis,
+                deviceTimestamp);
+    }
+
+    public boolean hasAcceleration() {
+        return acceleration != null && acceleration.length >= 3;
+    }
+}
@@ -0,0 +1,13 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Histórico de constantes vitales de una mascota en columnas paralelas (un índice por lectura),
+ * más compacto que una lista de objetos cuando el rango incluye cientos de miles de puntos.
+ */
+public record VitalsHistoryDTO(
+        Long petId,
+        long[] timestamps,   // epoch en ms
+        float[] temperatures,
+        int[] pulses,
+        boolean truncated) { // Cortado en max-query-points: el resto se pide desde el último timestamp + 1
+}
@@ -0,0 +1,18 @@
+package com.vitalpaw.sensoralertservice.dto;
+
+/**
+ * Estado reciente de una mascota que se entrega al suscribirse: la última lectura y, si se pide, las anteriores
+ * en columnas paralelas (un índice por lectura, de la más antigua a la más reciente) para dibujar la gráfica sin
+ * esperar a las siguientes.
+ */
+public record VitalsSnapshotDTO(
+        Long petId,
+        String deviceId,
+        long latestTimestamp, // epoch en ms
+        SensorDataResponseDTO latest,
+        long[] timestamps,    // epoch en ms
+        float[] temperatures,
+        int[] pulses,
+        Float[] activities,   // null si el collar no envió acelerómetro
+        String[] statuses) {
+}
@@ -19,14 +19,14 @@ public class Pet {
     @Column(name = "species", nullable = false, length = 100)
     private String species;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "breed_id")
     private Breed breed;
 
     @Column(name = "birth_date")
     private LocalDate birthDate;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
 
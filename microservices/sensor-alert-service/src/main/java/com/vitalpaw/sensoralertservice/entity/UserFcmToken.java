@@ -0,0 +1,42 @@
+package com.vitalpaw.sensoralertservice.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Token FCM de uno de los dispositivos de un usuario. Un token pertenece a un solo usuario: si el móvil inicia
+ * sesión con otra cuenta, la fila se reasigna. La tabla la crea core-service (este servicio solo valida el esquema).
+ */
+@Data
+@Entity
+@Table(name = "user_fcm_tokens")
+public class UserFcmToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Solo el id: el registro de tokens nunca carga el usuario
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "token", nullable = false, unique = true, length = 255)
+    private String token;
+
+    @Column(name = "platform", length = 20)
+    private String platform;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_registered_at", nullable = false)
+    private LocalDateTime lastRegisteredAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (lastRegisteredAt == null) {
+            lastRegisteredAt = createdAt;
+        }
+    }
+}
@@ -1,12 +1,38 @@
 package com.vitalpaw.sensoralertservice.repository;
 
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
 import com.vitalpaw.sensoralertservice.entity.PetDevice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PetDeviceRepository extends JpaRepository<PetDevice, Long> {
     Optional<PetDevice> findByDeviceId(String deviceId);
-}
\ No newline at end of file
+
+    boolean existsByDeviceId(String deviceId);
+
+    // Solo los IDs: es lo único que necesita el filtro de dispositivos conocidos
+    @Query("SELECT d.deviceId FROM PetDevice d WHERE d.isActive = true")
+    List<String> findActiveDeviceIds();
+
+    @Query("SELECT new com.vitalpaw.sensoralertservice.dto.DeviceContext(" +
+            "d.id, d.deviceId, p.id, p.name, o.id, o.fcmToken, " +
+            "b.minTemperature, b.maxTemperature, b.minHeartRate, b.maxHeartRate) " +
+            "FROM PetDevice d JOIN d.pet p JOIN p.owner o LEFT JOIN p.breed b " +
+            "WHERE d.deviceId = :deviceId AND d.isActive = true")
+    Optional<DeviceContext> findContextByDeviceId(@Param("deviceId") String deviceId);
+
+    // Variante por lotes: un único viaje a la base de datos para muchos dispositivos
+    @Query("SELECT new com.vitalpaw.sensoralertservice.dto.DeviceContext(" +
+            "d.id, d.deviceId, p.id, p.name, o.id, o.fcmToken, " +
+            "b.minTemperature, b.maxTemperature, b.minHeartRate, b.maxHeartRate) " +
+            "FROM PetDevice d JOIN d.pet p JOIN p.owner o LEFT JOIN p.breed b " +
+            "WHERE d.deviceId IN :deviceIds AND d.isActive = true")
+    List<DeviceContext> findContextsByDeviceIds(@Param("deviceIds") Collection<String> deviceIds);
+}
@@ -1,9 +1,18 @@
 package com.vitalpaw.sensoralertservice.repository;
 
+import com.vitalpaw.sensoralertservice.dto.PetRuleContext;
 import com.vitalpaw.sensoralertservice.entity.Pet;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface PetRepository extends JpaRepository<Pet, Long> {
-}
\ No newline at end of file
+
+    @Query("SELECT new com.vitalpaw.sensoralertservice.dto.PetRuleContext(" +
+            "p.id, b.id, b.name, b.minTemperature, b.maxTemperature, b.minHeartRate, b.maxHeartRate) " +
+            "FROM Pet p LEFT JOIN p.breed b")
+    List<PetRuleContext> findRuleContexts();
+}
@@ -0,0 +1,41 @@
+package com.vitalpaw.sensoralertservice.repository;
+
+import com.vitalpaw.sensoralertservice.entity.UserFcmToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserFcmTokenRepository extends JpaRepository<UserFcmToken, Long> {
+    Optional<UserFcmToken> findByToken(String token);
+
+    // El más reciente primero
+    @Query("SELECT t.token FROM UserFcmToken t WHERE t.userId = :userId ORDER BY t.lastRegisteredAt DESC")
+    List<String> findTokensByUserId(@Param("userId") Long userId);
+
+    // Columna única de users, la que siguen usando las versiones de la app anteriores al registro de tokens
+    @Query("SELECT u.fcmToken FROM User u WHERE u.id = :userId")
+    String findLegacyToken(@Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UserFcmToken t WHERE t.userId = :userId AND t.token = :token")
+    int deleteByUserIdAndToken(@Param("userId") Long userId, @Param("token") String token);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UserFcmToken t WHERE t.token IN :tokens")
+    int deleteByTokens(@Param("tokens") Collection<String> tokens);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.fcmToken = NULL WHERE u.fcmToken IN :tokens")
+    int clearLegacyTokens(@Param("tokens") Collection<String> tokens);
+}
@@ -0,0 +1,9 @@
+package com.vitalpaw.sensoralertservice.repository;
+
+import com.vitalpaw.sensoralertservice.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserRepository extends JpaRepository<User, Long> {
+}
@@ -0,0 +1,45 @@
+package com.vitalpaw.sensoralertservice.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * La misma comprobación de {@code X-API-Key} que core-service, solo para las rutas que Traefik publica hacia
+ * este servicio (ver stack.sensor.yml). El resto de endpoints solo son accesibles desde la red interna.
+ */
+@Component
+public class ApiKeyFilter extends OncePerRequestFilter {
+    private static final Pattern PUBLIC_PATHS =
+            Pattern.compile("^/api/(pets|owners)/[0-9]+/live$|^/api/owners/[0-9]+/fcm-tokens$|^/ws/sensors$");
+
+    @Value("${api.key:}")
+    private String apiKey;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !PUBLIC_PATHS.matcher(request.getRequestURI()).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String requestApiKey = request.getHeader("X-API-Key");
+
+        // Sin clave configurada no se abre nada
+        if (apiKey == null || apiKey.isBlank() || requestApiKey == null || !requestApiKey.equals(apiKey)) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.getWriter().write("Invalid or missing API Key");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
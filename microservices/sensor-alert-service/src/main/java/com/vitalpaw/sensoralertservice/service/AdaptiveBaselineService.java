@@ -0,0 +1,193 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.util.LongObjectMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Línea base adaptativa por mascota para temperatura y pulso, por franja horaria.
+ * Durante el calentamiento se usa Welford (media y varianza exactas); después, media y varianza con
+ * peso exponencial (EWMA) para seguir cambios lentos. Cada lectura se puntúa con su z-score contra la
+ * línea base previa, así una mascota que es "caliente" por naturaleza no alerta todo el día y una que
+ * empeora dentro del rango de su raza sí lo hace.
+ *
+ * Todo el estado de una mascota es un único {@code float[]} de tamaño fijo:
+ * franjas × 2 métricas × (n, media, varianza), unos 112 bytes con 4 franjas.
+ */
+@Service
+public class AdaptiveBaselineService implements Checkpointable {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBaselineService.class);
+
+    private static final int METRICS = 2;          // 0 = temperatura, 1 = pulso
+    private static final int FIELDS = 3;           // n, media, varianza (M2 durante el calentamiento)
+    private static final int TEMPERATURE = 0;
+    private static final int PULSE = 1;
+
+    @Value("${app.sensor.baseline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.baseline.time-buckets:4}")
+    private int timeBuckets;
+
+    @Value("${app.sensor.baseline.warmup-samples:50}")
+    private int warmupSamples;
+
+    @Value("${app.sensor.baseline.alpha:0.01}")
+    private float alpha;
+
+    @Value("${app.sensor.baseline.z-threshold:3.5}")
+    private float zThreshold;
+
+    // Desviaciones mínimas para no alertar por ruido cuando una mascota es muy estable
+    @Value("${app.sensor.baseline.min-std-temperature:0.15}")
+    private float minStdTemperature;
+
+    @Value("${app.sensor.baseline.min-std-pulse:3.0}")
+    private float minStdPulse;
+
+    @Value("${app.sensor.baseline.zone:America/Lima}")
+    private ZoneId zone;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LongObjectMap<float[]> baselines = new LongObjectMap<>(1024);
+
+    /** Resultado de evaluar una lectura; z es NaN mientras la franja está calentando. */
+    public record Evaluation(boolean established, float temperatureZ, float pulseZ, boolean temperatureAnomaly, boolean pulseAnomaly) {
+
+        public boolean anomaly() {
+            return temperatureAnomaly || pulseAnomaly;
+        }
+    }
+
+    private static final Evaluation NOT_ESTABLISHED = new Evaluation(false, Float.NaN, Float.NaN, false, false);
+
+    @PostConstruct
+    public void init() {
+        timeBuckets = Math.max(1, Math.min(24, timeBuckets));
+        Gauge.builder("vitalpaw.baseline.pets", baselines, LongObjectMap::size)
+                .description("Mascotas con línea base adaptativa en memoria")
+                .register(meterRegistry);
+    }
+
+    /** Puntúa la lectura contra la línea base de la mascota y después la incorpora. */
+    public Evaluation evaluate(long petId, float temperature, int pulse, Instant timestamp) {
+        if (!enabled) {
+            return NOT_ESTABLISHED;
+        }
+        float[] state = baselines.computeIfAbsent(petId, id -> new float[timeBuckets * METRICS * FIELDS]);
+        int bucket = timestamp.atZone(zone).getHour() * timeBuckets / 24;
+        synchronized (state) {
+            int t = offset(bucket, TEMPERATURE);
+            int p = offset(bucket, PULSE);
+            float tz = score(state, t, temperature, minStdTemperature);
+            float pz = score(state, p, pulse, minStdPulse);
+            boolean tAnomaly = Math.abs(tz) > zThreshold;
+            boolean pAnomaly = Math.abs(pz) > zThreshold;
+            update(state, t, temperature, tAnomaly);
+            update(state, p, pulse, pAnomaly);
+            if (Float.isNaN(tz) && Float.isNaN(pz)) {
+                return NOT_ESTABLISHED;
+            }
+            return new Evaluation(true, tz, pz, tAnomaly, pAnomaly);
+        }
+    }
+
+    private int offset(int bucket, int metric) {
+        return (bucket * METRICS + metric) * FIELDS;
+    }
+
+    private float score(float[] state, int i, float x, float minStd) {
+        if (state[i] < warmupSamples) {
+            return Float.NaN;
+        }
+        float std = (float) Math.sqrt(state[i + 2]);
+        return (x - state[i + 1]) / Math.max(std, minStd);
+    }
+
+    private void update(float[] state, int i, float x, boolean anomaly) {
+        float n = state[i];
+        if (n < warmupSamples) {
+            // Welford exacto mientras hay pocas muestras
+            n++;
+            float delta = x - state[i + 1];
+            state[i + 1] += delta / n;
+            state[i + 2] += delta * (x - state[i + 1]);
+            state[i] = n;
+            if (n == warmupSamples) {
+                state[i + 2] = state[i + 2] / (n - 1); // M2 -> varianza
+            }
+            return;
+        }
+        // Las lecturas anómalas se incorporan con menos peso para no "normalizar" un problema sostenido
+        float a = anomaly ? alpha * 0.1f : alpha;
+        float delta = x - state[i + 1];
+        state[i + 1] += a * delta;
+        state[i + 2] = (1 - a) * (state[i + 2] + a * delta * delta);
+    }
+
+    @Override
+    public String checkpointName() {
+        return "adaptive-baselines";
+    }
+
+    @Override
+    public void writeCheckpoint(DataOutputStream out) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        List<float[]> states = new ArrayList<>();
+        baselines.forEach((id, state) -> {
+            ids.add(id);
+            states.add(state);
+        });
+        out.writeByte(1);
+        out.writeInt(timeBuckets);
+        out.writeInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            out.writeLong(ids.get(i));
+            float[] state = states.get(i);
+            synchronized (state) {
+                for (float v : state) {
+                    out.writeFloat(v);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readCheckpoint(DataInputStream in) throws IOException {
+        if (in.readByte() != 1) {
+            return;
+        }
+        int buckets = in.readInt();
+        if (buckets != timeBuckets) {
+            logger.warn("El snapshot de líneas base usa {} franjas y la configuración {}. Se descarta.", buckets, timeBuckets);
+            return;
+        }
+        int count = in.readInt();
+        int length = timeBuckets * METRICS * FIELDS;
+        for (int i = 0; i < count; i++) {
+            long petId = in.readLong();
+            float[] state = new float[length];
+            for (int j = 0; j < length; j++) {
+                state[j] = in.readFloat();
+            }
+            baselines.computeIfAbsent(petId, id -> state);
+        }
+        logger.info("Restauradas las líneas base adaptativas de {} mascotas", count);
+    }
+}
@@ -0,0 +1,267 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import com.vitalpaw.sensoralertservice.dto.AlertCaptureDTO;
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.util.LongObjectMap;
+import com.vitalpaw.sensoralertservice.util.VitalsRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captura de constantes vitales alrededor de cada alerta. Cada dispositivo mantiene un {@link VitalsRing} con
+ * las últimas lecturas; al dispararse una alerta se congela la ventana previa, se siguen añadiendo lecturas
+ * hasta cubrir la ventana posterior y el segmento se guarda comprimido en un fichero con el id de la alerta.
+ * La escritura se hace en un hilo aparte para no frenar la ingesta.
+ */
+@Service
+public class AlertCaptureService implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(AlertCaptureService.class);
+
+    private static final int MAGIC = 0x56504143; // "VPAC"
+    private static final int FORMAT_VERSION = 1;
+
+    @Value("${app.sensor.capture.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.capture.pre-seconds:60}")
+    private long preSeconds;
+
+    @Value("${app.sensor.capture.post-seconds:30}")
+    private long postSeconds;
+
+    // Lecturas que caben en el buffer de cada dispositivo; debe cubrir la ventana previa
+    @Value("${app.sensor.capture.buffer-size:128}")
+    private int bufferSize;
+
+    @Value("${app.sensor.capture.max-pending-per-device:4}")
+    private int maxPendingPerDevice;
+
+    @Value("${app.sensor.capture.path:/app/data/alert-captures}")
+    private String capturePath;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LongObjectMap<DeviceBuffer> buffers = new LongObjectMap<>(1024);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "alert-capture-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Counter written;
+    private Counter skipped;
+    private volatile boolean running;
+
+    private final class DeviceBuffer {
+        final VitalsRing ring = new VitalsRing(bufferSize);
+        final List<PendingCapture> pending = new ArrayList<>(1);
+    }
+
+    private record PendingCapture(long alertId, String alertType, DeviceContext device, long triggeredAt,
+                                  long deadline, VitalsRing samples) {
+    }
+
+    @PostConstruct
+    public void init() {
+        written = Counter.builder("vitalpaw.capture.written")
+                .description("Capturas de constantes vitales guardadas")
+                .register(meterRegistry);
+        skipped = Counter.builder("vitalpaw.capture.skipped")
+                .description("Alertas sin captura por superar el máximo de capturas en curso del dispositivo")
+                .register(meterRegistry);
+    }
+
+    /** Registra la lectura en el buffer del dispositivo y la añade a sus capturas en curso. */
+    public void record(DeviceContext device, long timestampMillis, float temperature, int pulse, float activity, float peakG) {
+        if (!enabled) {
+            return;
+        }
+        DeviceBuffer buffer = buffers.computeIfAbsent(device.deviceRowId(), id -> new DeviceBuffer());
+        synchronized (buffer) {
+            buffer.ring.add(timestampMillis, temperature, pulse, activity, peakG);
+            if (buffer.pending.isEmpty()) {
+                return;
+            }
+            Iterator<PendingCapture> it = buffer.pending.iterator();
+            while (it.hasNext()) {
+                PendingCapture capture = it.next();
+                if (timestampMillis <= capture.deadline()) {
+                    capture.samples().add(timestampMillis, temperature, pulse, activity, peakG);
+                } else {
+                    it.remove();
+                    submit(capture);
+                }
+            }
+        }
+    }
+
+    /** Congela la ventana previa a la alerta; la captura se completa con las lecturas de la ventana posterior. */
+    public void trigger(DeviceContext device, long alertId, String alertType, long triggeredAt) {
+        if (!enabled) {
+            return;
+        }
+        DeviceBuffer buffer = buffers.computeIfAbsent(device.deviceRowId(), id -> new DeviceBuffer());
+        synchronized (buffer) {
+            if (buffer.pending.size() >= maxPendingPerDevice) {
+                skipped.increment();
+                logger.debug("Dispositivo {} con {} capturas en curso. Alerta {} sin captura.",
+                        device.deviceId(), buffer.pending.size(), alertId);
+                return;
+            }
+            // La captura cabe entera: ventana previa (buffer completo) más las lecturas de la posterior
+            VitalsRing samples = new VitalsRing(bufferSize * 2);
+            buffer.ring.copySince(triggeredAt - preSeconds * 1000, samples);
+            buffer.pending.add(new PendingCapture(alertId, alertType, device, triggeredAt,
+                    triggeredAt + postSeconds * 1000, samples));
+        }
+    }
+
+    // Completa las capturas de dispositivos que dejaron de enviar (p. ej. collar caído tras un impacto)
+    @Scheduled(fixedDelayString = "${app.sensor.capture.sweep-interval-ms:5000}")
+    public void sweep() {
+        completeExpired(System.currentTimeMillis());
+    }
+
+    private int completeExpired(long now) {
+        int[] completed = {0};
+        buffers.forEach((id, buffer) -> {
+            synchronized (buffer) {
+                Iterator<PendingCapture> it = buffer.pending.iterator();
+                while (it.hasNext()) {
+                    PendingCapture capture = it.next();
+                    if (now > capture.deadline()) {
+                        it.remove();
+                        submit(capture);
+                        completed[0]++;
+                    }
+                }
+            }
+        });
+        return completed[0];
+    }
+
+    private void submit(PendingCapture capture) {
+        writer.execute(() -> write(capture));
+    }
+
+    private void write(PendingCapture capture) {
+        Path path = pathFor(capture.alertId());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.getParent());
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(capture.alertId());
+                out.writeUTF(capture.alertType());
+                out.writeUTF(capture.device().deviceId());
+                out.writeLong(capture.device().petId());
+                out.writeLong(capture.triggeredAt());
+                VitalsRing samples = capture.samples();
+                out.writeInt(samples.size());
+                for (int i = 0; i < samples.size(); i++) {
+                    out.writeInt((int) (samples.timestamp(i) - capture.triggeredAt()));
+                    out.writeLong(samples.packed(i));
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written.increment();
+            logger.debug("Captura de la alerta {} guardada ({} lecturas)", capture.alertId(), capture.samples().size());
+        } catch (IOException e) {
+            logger.error("Error al guardar la captura de la alerta {}: {}", capture.alertId(), e.getMessage(), e);
+        }
+    }
+
+    /** Lee la captura guardada de una alerta; vacío si no existe (o aún no se ha completado). */
+    public Optional<AlertCaptureDTO> find(long alertId) {
+        Path path = pathFor(alertId);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Formato de captura desconocido");
+            }
+            long id = in.readLong();
+            String type = in.readUTF();
+            String deviceId = in.readUTF();
+            long petId = in.readLong();
+            long triggeredAt = in.readLong();
+            int count = in.readInt();
+            List<AlertCaptureDTO.Sample> samples = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int offset = in.readInt();
+                long value = in.readLong();
+                samples.add(new AlertCaptureDTO.Sample(offset, VitalsRing.temperatureOf(value), VitalsRing.pulseOf(value),
+                        VitalsRing.activityOf(value), VitalsRing.peakGOf(value)));
+            }
+            return Optional.of(new AlertCaptureDTO(id, type, deviceId, petId, triggeredAt, samples));
+        } catch (IOException e) {
+            logger.error("Error al leer la captura de la alerta {}: {}", alertId, e.getMessage(), e);
+            return Optional.empty();
+        }
+    }
+
+    private Path pathFor(long alertId) {
+        return Paths.get(capturePath, alertId + ".vpac.gz");
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /** Con la ingesta ya detenida, guarda las capturas en curso con lo que tengan de la ventana posterior. */
+    @Override
+    public void stop() {
+        running = false;
+        int flushed = completeExpired(Long.MAX_VALUE);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("No se terminaron de escribir todas las capturas de alertas");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Capturas de alertas en curso guardadas: {}", flushed);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.SNAPSHOT;
+    }
+}
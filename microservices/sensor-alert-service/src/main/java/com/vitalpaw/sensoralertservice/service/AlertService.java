@@ -0,0 +1,66 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.entity.Alert;
+import com.vitalpaw.sensoralertservice.repository.AlertRepository;
+import com.vitalpaw.sensoralertservice.repository.PetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Persistencia de alertas y notificación al dueño. Lo usan tanto la evaluación de cada lectura
+ * como los detectores que disparan alertas por su cuenta. Las notificaciones se agrupan por dueño en
+ * {@link NotificationDigestService}.
+ */
+@Service
+public class AlertService {
+    private static final Logger logger = LoggerFactory.getLogger(AlertService.class);
+
+    @Autowired
+    private AlertRepository alertRepository;
+
+    @Autowired
+    private PetRepository petRepository;
+
+    @Autowired
+    private AlertCaptureService alertCaptureService;
+
+    @Autowired
+    private NotificationDigestService notificationDigestService;
+
+    public Alert raise(DeviceContext device, String type, String message, Integer pulse, Float temperature) {
+        return raise(device, type, message, pulse, temperature, System.currentTimeMillis());
+    }
+
+    /** Variante con la hora del evento que originó la alerta (epoch ms), que puede ser anterior a la actual. */
+    public Alert raise(DeviceContext device, String type, String message, Integer pulse, Float temperature, long eventTimeMillis) {
+        return raise(device, type, message, pulse, temperature, eventTimeMillis, false);
+    }
+
+    /** Con {@code critical} la notificación sale al momento en lugar de esperar al resumen del dueño. */
+    public Alert raise(DeviceContext device, String type, String message, Integer pulse, Float temperature,
+                       long eventTimeMillis, boolean critical) {
+        Alert alert = new Alert();
+        // Referencia por id: no se carga la entidad Pet para insertar la alerta
+        alert.setPet(petRepository.getReferenceById(device.petId()));
+        alert.setMessage(message.trim());
+        alert.setType(type);
+        alert.setPulse(pulse);
+        alert.setTemperature(temperature);
+        alert.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(eventTimeMillis), ZoneId.systemDefault()));
+        alertRepository.save(alert);
+        logger.info("Alerta {} guardada para la mascota {}: {}", type, device.petId(), alert.getMessage());
+
+        // Constantes vitales antes y después del disparo, para que el veterinario vea el contexto
+        alertCaptureService.trigger(device, alert.getId(), type, eventTimeMillis);
+
+        notificationDigestService.submit(device, alert, critical);
+        return alert;
+    }
+}
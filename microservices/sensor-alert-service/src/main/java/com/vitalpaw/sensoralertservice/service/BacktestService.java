@@ -0,0 +1,224 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.BacktestRequestDTO;
+import com.vitalpaw.sensoralertservice.dto.BacktestResultDTO;
+import com.vitalpaw.sensoralertservice.dto.PetRuleContext;
+import com.vitalpaw.sensoralertservice.dto.RuleThresholds;
+import com.vitalpaw.sensoralertservice.repository.PetRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Backtesting de umbrales: reproduce las lecturas guardadas en {@link TimeSeriesStore} para un rango de tiempo
+ * con las reglas vigentes y con un conjunto candidato, y cuenta cuántas alertas habría producido cada uno por
+ * mascota y por raza. El trabajo se reparte por mascota en un {@link ForkJoinPool} propio; cada mascota se recorre
+ * una sola vez sobre los segmentos mapeados, evaluando las dos reglas en el mismo bucle sin materializar lecturas.
+ *
+ * Reproduce los umbrales de raza y generales de {@link SensorProcessingService}; la línea base adaptativa y las
+ * tendencias dependen del estado acumulado y no forman parte de la comparación.
+ */
+@Service
+public class BacktestService {
+    private static final Logger logger = LoggerFactory.getLogger(BacktestService.class);
+
+    @Value("${app.sensor.thresholds.maxTemperature}")
+    private float maxTemperature;
+
+    @Value("${app.sensor.thresholds.maxHeartRate}")
+    private int maxHeartRate;
+
+    @Value("${app.sensor.backtest.parallelism:0}")
+    private int parallelism;
+
+    @Value("${app.sensor.backtest.pets-per-task:8}")
+    private int petsPerTask;
+
+    @Value("${app.sensor.backtest.max-range-days:93}")
+    private long maxRangeDays;
+
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    @Autowired
+    private PetRepository petRepository;
+
+    private ForkJoinPool pool;
+
+    /** Regla compilada a primitivos: alerta si la lectura queda fuera de cualquiera de los dos rangos. */
+    record Rule(float minTemperature, float maxTemperature, int minPulse, int maxPulse) {
+
+        boolean alerts(float temperature, int pulse) {
+            return temperature < minTemperature || temperature > maxTemperature || pulse < minPulse || pulse > maxPulse;
+        }
+
+        static Rule breed(RuleThresholds t) {
+            return new Rule(t.minTemperature(), t.maxTemperature(), t.minHeartRate(), t.maxHeartRate());
+        }
+
+        // Sin raza solo se comprueban los máximos generales, igual que en el flujo de alertas
+        static Rule global(float maxTemperature, int maxHeartRate) {
+            return new Rule(Float.NEGATIVE_INFINITY, maxTemperature, Integer.MIN_VALUE, maxHeartRate);
+        }
+    }
+
+    private record PetJob(long petId, Long breedId, Rule current, Rule candidate) {
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public BacktestResultDTO run(BacktestRequestDTO request) {
+        if (request.getFrom() == null || request.getTo() == null || request.getFrom() >= request.getTo()) {
+            throw new IllegalArgumentException("Se requiere un rango válido: 'from' anterior a 'to' (epoch ms)");
+        }
+        if (request.getTo() - request.getFrom() > maxRangeDays * 86_400_000L) {
+            throw new IllegalArgumentException("El rango no puede superar " + maxRangeDays + " días");
+        }
+        Map<Long, RuleThresholds> candidates = request.getBreedThresholds() != null ? request.getBreedThresholds() : Map.of();
+        candidates.forEach((breedId, thresholds) -> {
+            if (thresholds == null || !thresholds.complete()) {
+                throw new IllegalArgumentException("Umbrales incompletos para la raza " + breedId);
+            }
+        });
+        Rule currentGlobal = Rule.global(maxTemperature, maxHeartRate);
+        Rule candidateGlobal = Rule.global(
+                request.getMaxTemperature() != null ? request.getMaxTemperature() : maxTemperature,
+                request.getMaxHeartRate() != null ? request.getMaxHeartRate() : maxHeartRate);
+
+        long start = System.nanoTime();
+        Map<Long, PetRuleContext> contexts = new HashMap<>();
+        Map<Long, String> breedNames = new HashMap<>();
+        for (PetRuleContext context : petRepository.findRuleContexts()) {
+            contexts.put(context.petId(), context);
+            if (context.breedId() != null) {
+                breedNames.put(context.breedId(), context.breedName());
+            }
+        }
+
+        long[] petIds = timeSeriesStore.petIds();
+        PetJob[] jobs = new PetJob[petIds.length];
+        for (int i = 0; i < petIds.length; i++) {
+            PetRuleContext context = contexts.get(petIds[i]);
+            if (context == null || !context.thresholds().complete()) {
+                // Sin raza (o mascota ya eliminada): umbrales generales
+                jobs[i] = new PetJob(petIds[i], null, currentGlobal, candidateGlobal);
+            } else {
+                RuleThresholds candidate = candidates.get(context.breedId());
+                Rule current = Rule.breed(context.thresholds());
+                jobs[i] = new PetJob(petIds[i], context.breedId(), current, candidate != null ? Rule.breed(candidate) : current);
+            }
+        }
+
+        List<BacktestResultDTO.PetResult> byPet = pool.invoke(new PetRangeTask(jobs, 0, jobs.length, request.getFrom(), request.getTo()));
+        byPet.sort(Comparator.comparingLong((BacktestResultDTO.PetResult r) -> r.candidateAlerts() - r.currentAlerts()).reversed());
+
+        long readings = 0;
+        long currentAlerts = 0;
+        long candidateAlerts = 0;
+        Map<Long, long[]> breeds = new LinkedHashMap<>(); // pets, lecturas, actuales, candidatas
+        for (BacktestResultDTO.PetResult result : byPet) {
+            readings += result.readings();
+            currentAlerts += result.currentAlerts();
+            candidateAlerts += result.candidateAlerts();
+            long[] totals = breeds.computeIfAbsent(result.breedId(), id -> new long[4]);
+            totals[0]++;
+            totals[1] += result.readings();
+            totals[2] += result.currentAlerts();
+            totals[3] += result.candidateAlerts();
+        }
+        List<BacktestResultDTO.BreedResult> byBreed = new ArrayList<>();
+        breeds.forEach((breedId, t) -> byBreed.add(new BacktestResultDTO.BreedResult(breedId,
+                breedId != null ? breedNames.get(breedId) : "Sin raza", (int) t[0], t[1], t[2], t[3])));
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Backtest de {} mascotas y {} lecturas en {} ms: {} alertas actuales, {} candidatas",
+                byPet.size(), readings, elapsedMs, currentAlerts, candidateAlerts);
+        return new BacktestResultDTO(request.getFrom(), request.getTo(), byPet.size(), readings,
+                currentAlerts, candidateAlerts, byPet, byBreed, elapsedMs);
+    }
+
+    private final class PetRangeTask extends RecursiveTask<List<BacktestResultDTO.PetResult>> {
+        private final PetJob[] jobs;
+        private final int start;
+        private final int end;
+        private final long from;
+        private final long to;
+
+        PetRangeTask(PetJob[] jobs, int start, int end, long from, long to) {
+            this.jobs = jobs;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<BacktestResultDTO.PetResult> compute() {
+            if (end - start <= Math.max(1, petsPerTask)) {
+                List<BacktestResultDTO.PetResult> results = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    BacktestResultDTO.PetResult result = evaluate(jobs[i], from, to);
+                    if (result.readings() > 0) {
+                        results.add(result);
+                    }
+                }
+                return results;
+            }
+            int middle = (start + end) >>> 1;
+            PetRangeTask left = new PetRangeTask(jobs, start, middle, from, to);
+            left.fork();
+            List<BacktestResultDTO.PetResult> results = new PetRangeTask(jobs, middle, end, from, to).compute();
+            results.addAll(left.join());
+            return results;
+        }
+    }
+
+    private BacktestResultDTO.PetResult evaluate(PetJob job, long from, long to) {
+        // current, candidate, episodios actuales, episodios candidatos; último estado en [4], [5]
+        long[] counts = new long[6];
+        Rule current = job.current();
+        Rule candidate = job.candidate();
+        long readings = timeSeriesStore.scan(job.petId(), from, to, (ts, temperature, pulse) -> {
+            boolean a = current.alerts(temperature, pulse);
+            boolean b = candidate.alerts(temperature, pulse);
+            if (a) {
+                counts[0]++;
+                if (counts[4] == 0) {
+                    counts[2]++;
+                }
+            }
+            if (b) {
+                counts[1]++;
+                if (counts[5] == 0) {
+                    counts[3]++;
+                }
+            }
+            counts[4] = a ? 1 : 0;
+            counts[5] = b ? 1 : 0;
+            return true;
+        });
+        return new BacktestResultDTO.PetResult(job.petId(), job.breedId(), readings, counts[0], counts[1], counts[2], counts[3]);
+    }
+}
@@ -0,0 +1,258 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.vitalpaw.sensoralertservice.dto.BatchIngestResultDTO;
+import com.vitalpaw.sensoralertservice.dto.Esp32SensorDataDTO;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import com.vitalpaw.sensoralertservice.util.CompactSampleReader;
+import com.vitalpaw.sensoralertservice.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ingesta por lotes sobre HTTP para pasarelas y equipos de clínica que no hablan MQTT. El cuerpo se lee de
+ * lectura en lectura directamente del flujo de la petición (NDJSON con el mismo JSON que publica el ESP32, o el
+ * formato binario de {@link CompactSampleReader}) y cada lectura entra por {@link SensorProcessingService#ingest}
+ * como las de MQTT.
+ *
+ * Contrapresión por petición: cada carga tiene su propio {@link TokenBucket}; si se agota, el hilo espera antes
+ * de leer la siguiente lectura, el buffer del socket se llena y el control de flujo de HTTP/2 (o TCP) frena al
+ * cliente. Por eso estas lecturas no pasan por el rate limit por dispositivo, pensado para firmwares en bucle.
+ * El número de cargas simultáneas también está acotado.
+ *
+ * Con {@code backfill} la carga es una sesión grabada sin conexión que se sube después: las lecturas van por
+ * {@link SensorProcessingService#backfill} y solo se guardan en el histórico, sin alertas ni notificaciones,
+ * aunque el collar siga enviando en vivo.
+ */
+@Service
+public class BatchIngestService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchIngestService.class);
+
+    @Value("${app.sensor.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.batch.readings-per-second:500}")
+    private double readingsPerSecond;
+
+    @Value("${app.sensor.batch.burst:100}")
+    private int burst;
+
+    @Value("${app.sensor.batch.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${app.sensor.batch.max-line-length:65536}")
+    private int maxLineLength;
+
+    @Value("${app.sensor.devices.default-device-id:ESP32_VITALPAW_001}")
+    private String defaultDeviceId;
+
+    @Autowired
+    private SensorProcessingService sensorProcessingService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectReader reader = new ObjectMapper().readerFor(Esp32SensorDataDTO.class);
+    private Semaphore slots;
+    private Counter accepted;
+    private Counter unknownDevice;
+    private Counter malformed;
+    private Counter throttledNanos;
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(Math.max(1, maxConcurrent));
+        accepted = Counter.builder("vitalpaw.batch.readings")
+                .description("Lecturas recibidas por carga HTTP")
+                .tag("outcome", "accepted")
+                .register(meterRegistry);
+        unknownDevice = Counter.builder("vitalpaw.batch.readings")
+                .description("Lecturas recibidas por carga HTTP")
+                .tag("outcome", "unknown_device")
+                .register(meterRegistry);
+        malformed = Counter.builder("vitalpaw.batch.readings")
+                .description("Lecturas recibidas por carga HTTP")
+                .tag("outcome", "malformed")
+                .register(meterRegistry);
+        throttledNanos = Counter.builder("vitalpaw.batch.throttled")
+                .description("Tiempo que las cargas han esperado por contrapresión (ns)")
+                .register(meterRegistry);
+    }
+
+    /** Contadores de una carga. */
+    private static final class Progress {
+        final long start = System.nanoTime();
+        final TokenBucket pace;
+        final boolean backfill;
+        long received;
+        long accepted;
+        long unknownDevice;
+        long malformed;
+
+        Progress(TokenBucket pace, boolean backfill) {
+            this.pace = pace;
+            this.backfill = backfill;
+        }
+    }
+
+    public BatchIngestResultDTO ingestNdjson(InputStream body) throws IOException {
+        return ingestNdjson(body, false);
+    }
+
+    /** Una línea por lectura; las líneas inválidas se cuentan y se saltan. */
+    public BatchIngestResultDTO ingestNdjson(InputStream body, boolean backfill) throws IOException {
+        Progress progress = begin(backfill);
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            StringBuilder buffer = new StringBuilder(256);
+            while (nextLine(lines, buffer)) {
+                String line = buffer.toString();
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (!sensorProcessingService.isRunning()) {
+                    return finish(progress, false);
+                }
+                progress.received++;
+                if (line.length() > maxLineLength) {
+                    progress.malformed++;
+                    continue;
+                }
+                SensorReading reading;
+                try {
+                    reading = SensorReading.fromEsp32(reader.readValue(line), defaultDeviceId);
+                } catch (IOException e) {
+                    progress.malformed++;
+                    continue;
+                }
+                submit(progress, reading);
+            }
+            return finish(progress, true);
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Lee la siguiente línea en {@code line} sin guardar más de {@code maxLineLength + 1} caracteres: del resto de
+     * una línea demasiado larga solo se busca el salto, así una carga sin saltos no llena el heap. Devuelve false
+     * al final del flujo si no queda nada.
+     */
+    private boolean nextLine(BufferedReader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c = in.read();
+        if (c < 0) {
+            return false;
+        }
+        while (c >= 0 && c != '\n') {
+            if (line.length() <= maxLineLength) {
+                line.append((char) c);
+            }
+            c = in.read();
+        }
+        int last = line.length() - 1;
+        if (last >= 0 && line.length() <= maxLineLength && line.charAt(last) == '\r') {
+            line.setLength(last);
+        }
+        return true;
+    }
+
+    public BatchIngestResultDTO ingestBinary(InputStream body) throws IOException {
+        return ingestBinary(body, false);
+    }
+
+    /** Formato binario compacto; un corte a mitad de muestra cuenta como una lectura inválida. */
+    public BatchIngestResultDTO ingestBinary(InputStream body, boolean backfill) throws IOException {
+        Progress progress = begin(backfill);
+        try {
+            CompactSampleReader samples = new CompactSampleReader(new BufferedInputStream(body, 16 * 1024));
+            while (true) {
+                if (!sensorProcessingService.isRunning()) {
+                    return finish(progress, false);
+                }
+                try {
+                    if (!samples.next()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    progress.received++;
+                    progress.malformed++;
+                    break;
+                }
+                progress.received++;
+                submit(progress, new SensorReading(samples.deviceId(), samples.temperature(), samples.pulse(),
+                        samples.status(), null, 0, samples.timestamp()));
+            }
+            return finish(progress, true);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private Progress begin(boolean backfill) {
+        if (!enabled) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "La ingesta por lotes está deshabilitada");
+        }
+        if (!sensorProcessingService.isRunning()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio se está deteniendo");
+        }
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Demasiadas cargas simultáneas; reintente más tarde");
+        }
+        return new Progress(new TokenBucket(readingsPerSecond, burst, System.nanoTime()), backfill);
+    }
+
+    private void submit(Progress progress, SensorReading reading) {
+        // Sin token no se lee más del flujo: la espera se propaga al cliente por el control de flujo
+        if (!progress.pace.tryAcquire(System.nanoTime())) {
+            long waitStart = System.nanoTime();
+            long interval = (long) (1_000_000_000L / readingsPerSecond);
+            do {
+                LockSupport.parkNanos(interval);
+            } while (!progress.pace.tryAcquire(System.nanoTime()));
+            throttledNanos.increment(System.nanoTime() - waitStart);
+        }
+        boolean known = progress.backfill
+                ? sensorProcessingService.backfill(reading)
+                : sensorProcessingService.ingest(reading, false);
+        if (known) {
+            progress.accepted++;
+        } else {
+            progress.unknownDevice++;
+        }
+    }
+
+    private BatchIngestResultDTO finish(Progress progress, boolean complete) {
+        if (progress.backfill) {
+            sensorProcessingService.finishBackfill();
+        }
+        accepted.increment(progress.accepted);
+        unknownDevice.increment(progress.unknownDevice);
+        malformed.increment(progress.malformed);
+        long elapsedMs = (System.nanoTime() - progress.start) / 1_000_000;
+        logger.info("Carga por lotes{} {}: {} lecturas, {} aceptadas, {} de dispositivos desconocidos, {} inválidas en {} ms",
+                progress.backfill ? " de relleno" : "", complete ? "completada" : "interrumpida", progress.received, progress.accepted,
+                progress.unknownDevice, progress.malformed, elapsedMs);
+        return new BatchIngestResultDTO(progress.received, progress.accepted, progress.unknownDevice,
+                progress.malformed, complete, elapsedMs);
+    }
+}
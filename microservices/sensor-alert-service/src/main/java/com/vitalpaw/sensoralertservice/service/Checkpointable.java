@@ -0,0 +1,19 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Componente con estado en memoria que se guarda en el snapshot al apagar y se restaura al arrancar.
+ * Cada componente escribe su propia sección binaria y es responsable de versionarla.
+ */
+public interface Checkpointable {
+
+    /** Nombre único de la sección dentro del snapshot. */
+    String checkpointName();
+
+    void writeCheckpoint(DataOutputStream out) throws IOException;
+
+    void readCheckpoint(DataInputStream in) throws IOException;
+}
@@ -0,0 +1,98 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.repository.PetDeviceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resuelve el {@link DeviceContext} de cada dispositivo para el flujo de ingesta.
+ * Los contextos se cachean en memoria y se refrescan periódicamente con la consulta por lotes,
+ * de modo que en régimen estable un mensaje no toca ni la base de datos ni la sesión de Hibernate.
+ */
+@Service
+public class DeviceContextService {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceContextService.class);
+
+    @Value("${app.sensor.devices.context-batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private PetDeviceRepository petDeviceRepository;
+
+    private final Map<String, DeviceContext> contexts = new ConcurrentHashMap<>();
+
+    public Optional<DeviceContext> resolve(String deviceId) {
+        DeviceContext cached = contexts.get(deviceId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<DeviceContext> loaded = petDeviceRepository.findContextByDeviceId(deviceId);
+        loaded.ifPresent(ctx -> contexts.put(deviceId, ctx));
+        return loaded;
+    }
+
+    /** Carga por adelantado los contextos de muchos dispositivos con consultas por lotes. */
+    public Map<String, DeviceContext> resolveAll(Collection<String> deviceIds) {
+        Map<String, DeviceContext> result = new ConcurrentHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            DeviceContext cached = contexts.get(deviceId);
+            if (cached != null) {
+                result.put(deviceId, cached);
+            } else {
+                missing.add(deviceId);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<String> chunk = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            for (DeviceContext ctx : petDeviceRepository.findContextsByDeviceIds(chunk)) {
+                contexts.put(ctx.deviceId(), ctx);
+                result.put(ctx.deviceId(), ctx);
+            }
+        }
+        return result;
+    }
+
+    public void evict(String deviceId) {
+        contexts.remove(deviceId);
+    }
+
+    /** Refresca los contextos cacheados (cambios de dueño, token FCM, raza o bajas) en lotes. */
+    @Scheduled(fixedDelayString = "${app.sensor.devices.refresh-interval-ms:60000}",
+            initialDelayString = "${app.sensor.devices.refresh-interval-ms:60000}")
+    public void refresh() {
+        Set<String> cachedIds = new HashSet<>(contexts.keySet());
+        if (cachedIds.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> ids = new ArrayList<>(cachedIds);
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                List<String> chunk = ids.subList(from, Math.min(from + batchSize, ids.size()));
+                for (DeviceContext ctx : petDeviceRepository.findContextsByDeviceIds(chunk)) {
+                    contexts.put(ctx.deviceId(), ctx);
+                    cachedIds.remove(ctx.deviceId());
+                }
+            }
+            // Lo que no volvió en la consulta fue dado de baja o desactivado
+            cachedIds.forEach(contexts::remove);
+            logger.debug("Contextos de dispositivo refrescados: {} activos, {} eliminados", contexts.size(), cachedIds.size());
+        } catch (Exception e) {
+            logger.error("Error al refrescar los contextos de dispositivo: {}", e.getMessage(), e);
+        }
+    }
+}
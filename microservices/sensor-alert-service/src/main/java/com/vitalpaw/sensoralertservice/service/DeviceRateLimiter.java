@@ -0,0 +1,265 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import com.vitalpaw.sensoralertservice.util.LongObjectMap;
+import com.vitalpaw.sensoralertservice.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Limitador de tasa por dispositivo para la ingesta. Cada dispositivo tiene un {@link TokenBucket} lock-free
+ * guardado en un mapa de claves primitivas (id de fila de {@code pet_devices}), de modo que un ESP32 con el
+ * firmware en bucle no pueda consumir todo el presupuesto de procesamiento.
+ */
+@Service
+public class DeviceRateLimiter implements Checkpointable {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceRateLimiter.class);
+
+    public enum Policy {
+        DROP,       // Se descarta el exceso
+        CONFLATE,   // Solo se conserva la última lectura en exceso y se procesa al liberarse un token; las sustituidas
+                    // pasan por las alertas sin estado
+        ALERT_ONLY  // El exceso solo pasa por las alertas sin estado (umbrales y caída), sin difundir
+    }
+
+    public enum Decision {
+        ACCEPT, ALERT_ONLY, DEFERRED, DROPPED
+    }
+
+    /** Destino de las lecturas condensadas cuando se liberan o se sustituyen. */
+    @FunctionalInterface
+    public interface ConflatedHandler {
+        void handle(DeviceContext device, SensorReading reading, ReadingCompletion done);
+    }
+
+    @Value("${app.sensor.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.rate-limit.sustained-per-second:2.0}")
+    private double sustainedPerSecond;
+
+    @Value("${app.sensor.rate-limit.burst:10}")
+    private int burst;
+
+    @Value("${app.sensor.rate-limit.policy:CONFLATE}")
+    private Policy policy;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LongObjectMap<DeviceLimit> limits = new LongObjectMap<>(1024);
+    private final Queue<DeviceLimit> conflated = new ConcurrentLinkedQueue<>();
+    private volatile ConflatedHandler superseded = (device, reading, done) -> done.completed(null);
+
+    private static final class DeviceLimit {
+        final String deviceId;
+        final TokenBucket bucket;
+        final AtomicLong violations = new AtomicLong();
+        final AtomicReference<Pending> pending = new AtomicReference<>();
+        volatile Counter violationCounter;
+
+        DeviceLimit(String deviceId, TokenBucket bucket) {
+            this.deviceId = deviceId;
+            this.bucket = bucket;
+        }
+    }
+
+    private record Pending(DeviceContext device, SensorReading reading, ReadingCompletion done) {
+    }
+
+    @PostConstruct
+    public void init() {
+        logger.info("Rate limit por dispositivo: habilitado={}, sostenido={}/s, ráfaga={}, política={}",
+                enabled, sustainedPerSecond, burst, policy);
+    }
+
+    /**
+     * Recibe las lecturas condensadas que otra más reciente deja obsoletas antes de procesarse, para que una caída
+     * o un umbral dentro de una ráfaga no se pierdan. Se llama en el hilo de {@link #admit} y debe completar
+     * {@code done}.
+     */
+    public void setSupersededHandler(ConflatedHandler superseded) {
+        this.superseded = superseded;
+    }
+
+    public Decision admit(DeviceContext device, SensorReading reading) {
+        return admit(device, reading, ReadingCompletion.NONE);
+    }
+
+    /**
+     * Con {@link Decision#DEFERRED} la lectura queda condensada y {@code done} se pasa con ella al liberarla; si
+     * otra la sustituye antes, va al manejador de sustituidas con su {@code done}. En el resto de casos
+     * {@code done} no se usa.
+     */
+    public Decision admit(DeviceContext device, SensorReading reading, ReadingCompletion done) {
+        if (!enabled) {
+            return Decision.ACCEPT;
+        }
+        long now = System.nanoTime();
+        DeviceLimit limit = limits.computeIfAbsent(device.deviceRowId(),
+                id -> new DeviceLimit(device.deviceId(), new TokenBucket(sustainedPerSecond, burst, now)));
+        if (limit.bucket.tryAcquire(now)) {
+            // Una lectura aceptada deja obsoleta cualquier lectura condensada anterior
+            if (limit.pending.get() != null) {
+                supersede(limit.pending.getAndSet(null));
+            }
+            return Decision.ACCEPT;
+        }
+        recordViolation(limit);
+        switch (policy) {
+            case CONFLATE:
+                // La última lectura gana; solo se encola el dispositivo la primera vez
+                Pending replaced = limit.pending.getAndSet(new Pending(device, reading, done));
+                if (replaced == null) {
+                    conflated.offer(limit);
+                } else {
+                    supersede(replaced);
+                }
+                return Decision.DEFERRED;
+            case ALERT_ONLY:
+                return Decision.ALERT_ONLY;
+            default:
+                return Decision.DROPPED;
+        }
+    }
+
+    /** Entrega las lecturas condensadas de los dispositivos que ya recuperaron un token. */
+    public void drainConflated(ConflatedHandler consumer) {
+        int pendingDevices = conflated.size();
+        long now = System.nanoTime();
+        for (int i = 0; i < pendingDevices; i++) {
+            DeviceLimit limit = conflated.poll();
+            if (limit == null) {
+                return;
+            }
+            if (limit.pending.get() == null) {
+                continue;
+            }
+            if (!limit.bucket.tryAcquire(now)) {
+                conflated.offer(limit);
+                continue;
+            }
+            Pending pending = limit.pending.getAndSet(null);
+            if (pending != null) {
+                consumer.handle(pending.device(), pending.reading(), pending.done());
+            }
+        }
+    }
+
+    /**
+     * Vacía las lecturas condensadas sin esperar tokens. Se usa en el apagado para no perder la última
+     * lectura de cada dispositivo; se detiene al alcanzar el plazo.
+     */
+    public int flushConflated(ConflatedHandler consumer, long deadlineNanos) {
+        int flushed = 0;
+        DeviceLimit limit;
+        while (System.nanoTime() < deadlineNanos && (limit = conflated.poll()) != null) {
+            Pending pending = limit.pending.getAndSet(null);
+            if (pending != null) {
+                consumer.handle(pending.device(), pending.reading(), pending.done());
+                flushed++;
+            }
+        }
+        return flushed;
+    }
+
+    /** Dispositivos con más violaciones, para localizar firmwares defectuosos. */
+    public Map<String, Long> topViolators(int max) {
+        List<DeviceLimit> offenders = new ArrayList<>();
+        limits.forEach((id, limit) -> {
+            if (limit.violations.get() > 0) {
+                offenders.add(limit);
+            }
+        });
+        offenders.sort(Comparator.comparingLong((DeviceLimit l) -> l.violations.get()).reversed());
+        Map<String, Long> result = new LinkedHashMap<>();
+        offenders.stream().limit(max).forEach(l -> result.put(l.deviceId, l.violations.get()));
+        return result;
+    }
+
+    @Override
+    public String checkpointName() {
+        return "rate-limit-violations";
+    }
+
+    // Se conservan los contadores de violaciones para seguir localizando firmwares defectuosos tras un reinicio
+    @Override
+    public void writeCheckpoint(DataOutputStream out) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        List<DeviceLimit> offenders = new ArrayList<>();
+        limits.forEach((id, limit) -> {
+            if (limit.violations.get() > 0) {
+                ids.add(id);
+                offenders.add(limit);
+            }
+        });
+        out.writeByte(1);
+        out.writeInt(offenders.size());
+        for (int i = 0; i < offenders.size(); i++) {
+            out.writeLong(ids.get(i));
+            out.writeUTF(offenders.get(i).deviceId);
+            out.writeLong(offenders.get(i).violations.get());
+        }
+    }
+
+    @Override
+    public void readCheckpoint(DataInputStream in) throws IOException {
+        if (in.readByte() != 1) {
+            return;
+        }
+        int count = in.readInt();
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            String deviceId = in.readUTF();
+            long violations = in.readLong();
+            limits.computeIfAbsent(id, key -> new DeviceLimit(deviceId, new TokenBucket(sustainedPerSecond, burst, now)))
+                    .violations.set(violations);
+        }
+        logger.info("Restaurados los contadores de rate limit de {} dispositivos", count);
+    }
+
+    private void supersede(Pending pending) {
+        if (pending != null) {
+            superseded.handle(pending.device(), pending.reading(), pending.done());
+        }
+    }
+
+    private void recordViolation(DeviceLimit limit) {
+        if (limit.violations.getAndIncrement() == 0) {
+            logger.warn("El dispositivo '{}' supera la tasa permitida ({}/s, ráfaga {}). Política: {}",
+                    limit.deviceId, sustainedPerSecond, burst, policy);
+        }
+        // El contador con tag por dispositivo se registra solo para los que infringen el límite
+        Counter counter = limit.violationCounter;
+        if (counter == null) {
+            counter = Counter.builder("vitalpaw.ingest.ratelimit.violations")
+                    .description("Mensajes por encima de la tasa permitida por dispositivo")
+                    .tag("deviceId", limit.deviceId)
+                    .tag("policy", policy.name())
+                    .register(meterRegistry);
+            limit.violationCounter = counter;
+        }
+        counter.increment();
+    }
+}
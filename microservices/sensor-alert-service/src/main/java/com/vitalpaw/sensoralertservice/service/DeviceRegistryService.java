@@ -0,0 +1,173 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceProvisionDTO;
+import com.vitalpaw.sensoralertservice.entity.Pet;
+import com.vitalpaw.sensoralertservice.entity.PetDevice;
+import com.vitalpaw.sensoralertservice.repository.PetDeviceRepository;
+import com.vitalpaw.sensoralertservice.repository.PetRepository;
+import com.vitalpaw.sensoralertservice.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registro de dispositivos conocidos. Mantiene un filtro de Bloom reconstruido desde {@code pet_devices}
+ * para rechazar IDs desconocidos sin consultar la base de datos, y el flujo explícito de aprovisionamiento
+ * que sustituye a la antigua asociación automática con una mascota cualquiera.
+ */
+@Service
+public class DeviceRegistryService {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceRegistryService.class);
+
+    @Value("${app.sensor.devices.expected-count:100000}")
+    private long expectedDevices;
+
+    @Value("${app.sensor.devices.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    @Value("${app.sensor.devices.max-tracked-unknown:1000}")
+    private int maxTrackedUnknown;
+
+    @Autowired
+    private PetDeviceRepository petDeviceRepository;
+
+    @Autowired
+    private PetRepository petRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile BloomFilter knownDevices = new BloomFilter(1, 0.5);
+    private final AtomicLong knownCount = new AtomicLong();
+    // IDs rechazados recientemente, para que un administrador pueda aprovisionarlos
+    private final Map<String, LocalDateTime> unknownDevices = new ConcurrentHashMap<>();
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        rejectedCounter = Counter.builder("vitalpaw.devices.rejected")
+                .description("Mensajes descartados por provenir de dispositivos no registrados")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.devices.known", knownCount, AtomicLong::get)
+                .description("Dispositivos activos cargados en el filtro")
+                .register(meterRegistry);
+        rebuild();
+    }
+
+    /** Reconstruye el filtro completo; así se recogen altas y bajas hechas desde core-service. */
+    @Scheduled(fixedDelayString = "${app.sensor.devices.refresh-interval-ms:60000}",
+            initialDelayString = "${app.sensor.devices.refresh-interval-ms:60000}")
+    public void rebuild() {
+        try {
+            List<String> deviceIds = petDeviceRepository.findActiveDeviceIds();
+            BloomFilter filter = new BloomFilter(Math.max(expectedDevices, deviceIds.size() * 2L), falsePositiveRate);
+            deviceIds.forEach(filter::put);
+            knownDevices = filter;
+            knownCount.set(deviceIds.size());
+            deviceIds.forEach(unknownDevices::remove);
+            logger.info("Filtro de dispositivos reconstruido: {} dispositivos activos", deviceIds.size());
+        } catch (Exception e) {
+            // Se conserva el filtro anterior si la base de datos no responde
+            logger.error("Error al reconstruir el filtro de dispositivos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Comprobación en memoria previa a cualquier acceso a la base de datos.
+     * Un false es definitivo; un true puede ser un falso positivo y se confirma con la consulta normal.
+     */
+    public boolean isKnown(String deviceId) {
+        if (mightBeKnown(deviceId)) {
+            return true;
+        }
+        reject(deviceId);
+        return false;
+    }
+
+    /** Como {@link #isKnown} pero sin contar el rechazo: para consultas previas que no descartan el mensaje. */
+    public boolean mightBeKnown(String deviceId) {
+        return knownDevices.mightContain(deviceId);
+    }
+
+    /** Marca como rechazado un dispositivo que pasó el filtro pero no existe (falso positivo o dado de baja). */
+    public void reject(String deviceId) {
+        rejectedCounter.increment();
+        if (deviceId != null && (unknownDevices.size() < maxTrackedUnknown || unknownDevices.containsKey(deviceId))) {
+            unknownDevices.put(deviceId, LocalDateTime.now());
+        }
+    }
+
+    /** Dispositivos activos en la última reconstrucción más los aprovisionados desde entonces. */
+    public long knownCount() {
+        return knownCount.get();
+    }
+
+    public Map<String, LocalDateTime> getUnknownDevices() {
+        return Map.copyOf(unknownDevices);
+    }
+
+    @Transactional
+    public PetDevice provision(DeviceProvisionDTO dto) {
+        if (dto.getDeviceId() == null || dto.getDeviceId().isBlank() || dto.getDeviceId().length() > 50) {
+            throw new IllegalArgumentException("deviceId is required (max 50 characters)");
+        }
+        if (dto.getPetId() == null) {
+            throw new IllegalArgumentException("petId is required");
+        }
+        if (petDeviceRepository.existsByDeviceId(dto.getDeviceId())) {
+            throw new IllegalArgumentException("Device already registered");
+        }
+        Pet pet = petRepository.findById(dto.getPetId())
+                .orElseThrow(() -> new IllegalArgumentException("Pet not found"));
+
+        PetDevice device = new PetDevice();
+        device.setDeviceId(dto.getDeviceId());
+        device.setPet(pet);
+        device.setIsActive(true);
+        petDeviceRepository.save(device);
+
+        register(dto.getDeviceId());
+        logger.info("Dispositivo '{}' aprovisionado para la mascota {}", dto.getDeviceId(), pet.getId());
+        return device;
+    }
+
+    /**
+     * Da de baja el dispositivo (queda inactivo en la base de datos). El filtro no admite borrados: hasta la
+     * siguiente reconstrucción sus mensajes pasan el filtro y se descartan al no resolverse el contexto.
+     * Devuelve false si no existe o ya estaba inactivo.
+     */
+    @Transactional
+    public boolean deprovision(String deviceId) {
+        Optional<PetDevice> device = petDeviceRepository.findByDeviceId(deviceId);
+        if (device.isEmpty() || !Boolean.TRUE.equals(device.get().getIsActive())) {
+            return false;
+        }
+        device.get().setIsActive(false);
+        petDeviceRepository.save(device.get());
+        knownCount.decrementAndGet();
+        logger.info("Dispositivo '{}' dado de baja", deviceId);
+        return true;
+    }
+
+    /** Añade un dispositivo al filtro sin esperar a la siguiente reconstrucción. */
+    public void register(String deviceId) {
+        knownDevices.put(deviceId);
+        knownCount.incrementAndGet();
+        unknownDevices.remove(deviceId);
+    }
+}
@@ -0,0 +1,255 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import com.vitalpaw.sensoralertservice.util.ReorderBuffer;
+import com.vitalpaw.sensoralertservice.util.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Procesamiento en tiempo de evento. Cada dispositivo tiene un buffer de reordenación acotado y una marca de agua
+ * (el mayor timestamp visto menos el desorden máximo tolerado); las lecturas se entregan al pipeline en orden de
+ * evento cuando la marca de agua las supera. Así las ventanas (tendencias, línea base, patrones, capturas, series
+ * temporales) reciben cada dispositivo en orden aunque lleguen por conexiones paralelas o en ráfagas tras una
+ * reconexión.
+ *
+ * La entrega de un dispositivo se hace con su lock tomado, de modo que nunca hay dos lecturas del mismo dispositivo
+ * procesándose a la vez. Las lecturas anteriores a la última entregada llegan tarde y se aplican según
+ * {@link LatePolicy}.
+ *
+ * La marca de agua solo avanza con lecturas nuevas, y un collar en muestreo lento envía cada 5 o 30 s. Por eso
+ * cada lectura se programa también en una {@link TimingWheel} a su llegada más el desorden máximo: si para entonces
+ * sigue en el buffer se entrega igual, así que ninguna espera más que el desorden tolerado (más un tick).
+ *
+ * No esperan en el buffer las lecturas selladas a la llegada (firmwares sin {@code ts} o reloj desviado), que no
+ * pueden llegar desordenadas, ni las caídas, que no deben retrasar su alerta: se entregan en el acto, después de lo
+ * anterior que hubiera en el buffer de su dispositivo.
+ */
+@Service
+public class EventTimeService {
+    private static final Logger logger = LoggerFactory.getLogger(EventTimeService.class);
+    private static final String FALL = "Caído";
+
+    public enum LatePolicy {
+        DROP,        // Se descarta (solo se cuenta)
+        ALERT_ONLY   // Solo se evalúan las alertas sin estado (umbrales y caída), sin tocar ventanas ni difundir
+    }
+
+    /** Destino de las lecturas ya ordenadas. */
+    @FunctionalInterface
+    public interface ReadingHandler {
+        void handle(DeviceContext device, SensorReading reading, boolean broadcast);
+    }
+
+    @Value("${app.sensor.event-time.enabled:true}")
+    private boolean enabled;
+
+    // Desorden máximo tolerado: también es la latencia añadida a las lecturas con hora del dispositivo
+    @Value("${app.sensor.event-time.max-out-of-orderness-ms:2000}")
+    private long maxOutOfOrdernessMs;
+
+    @Value("${app.sensor.event-time.buffer-size:64}")
+    private int bufferSize;
+
+    @Value("${app.sensor.event-time.tick-ms:100}")
+    private long tickMs;
+
+    // Timestamps del dispositivo más desviados que esto respecto a la llegada se consideran reloj erróneo
+    @Value("${app.sensor.event-time.max-clock-skew-ms:86400000}")
+    private long maxClockSkewMs;
+
+    @Value("${app.sensor.event-time.late-policy:ALERT_ONLY}")
+    private LatePolicy latePolicy;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, DeviceClock> clocks = new ConcurrentHashMap<>();
+    private ReadingHandler onTime = (device, reading, broadcast) -> { };
+    private ReadingHandler onLate = (device, reading, broadcast) -> { };
+    private Counter lateReadings;
+    private Counter reordered;
+    private Counter skewCorrected;
+    private Counter forced;
+
+    private TimingWheel<Due> wheel;
+
+    private record Pending(DeviceContext device, SensorReading reading, boolean broadcast, ReadingCompletion done) {
+    }
+
+    // Lectura de un dispositivo que, cumplida su espera, se entrega junto con todo lo anterior del buffer
+    private record Due(DeviceClock clock, long eventTime) {
+    }
+
+    private final class DeviceClock {
+        final ReorderBuffer<Pending> buffer = new ReorderBuffer<>(bufferSize);
+        long maxEventTime = Long.MIN_VALUE;
+        long lastEmitted = Long.MIN_VALUE;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Una vuelta cubre el desorden máximo; si no, los vencimientos esperan a su tick igualmente
+        wheel = new TimingWheel<>(tickMs, (int) Math.min(4096, maxOutOfOrdernessMs / tickMs + 2),
+                System.currentTimeMillis());
+        lateReadings = Counter.builder("vitalpaw.eventtime.late")
+                .description("Lecturas que llegan después de haber entregado otras posteriores")
+                .tag("policy", latePolicy.name())
+                .register(meterRegistry);
+        reordered = Counter.builder("vitalpaw.eventtime.reordered")
+                .description("Lecturas llegadas fuera de orden que se entregaron en su sitio")
+                .register(meterRegistry);
+        skewCorrected = Counter.builder("vitalpaw.eventtime.skew.corrected")
+                .description("Lecturas con el reloj del dispositivo desviado, reetiquetadas con la hora de llegada")
+                .register(meterRegistry);
+        forced = Counter.builder("vitalpaw.eventtime.forced")
+                .description("Lecturas entregadas antes de su marca de agua por buffer lleno")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.eventtime.buffered", clocks,
+                        c -> c.values().stream().mapToInt(clock -> clock.buffer.size()).sum())
+                .description("Lecturas en los buffers de reordenación")
+                .register(meterRegistry);
+    }
+
+    public void setHandlers(ReadingHandler onTime, ReadingHandler onLate) {
+        this.onTime = onTime;
+        this.onLate = onLate;
+    }
+
+    public void submit(DeviceContext device, SensorReading reading, boolean broadcast) {
+        submit(device, reading, broadcast, ReadingCompletion.NONE);
+    }
+
+    /**
+     * Como {@link #submit(DeviceContext, SensorReading, boolean)}, avisando a {@code done} cuando la lectura sale
+     * del buffer y termina de procesarse (o se descarta por tardía). Si el procesamiento falla al salir del buffer,
+     * {@code done} recibe el error; si falla dentro de esta llamada, la excepción se lanza y {@code done} no se usa.
+     */
+    public void submit(DeviceContext device, SensorReading reading, boolean broadcast, ReadingCompletion done) {
+        long arrival = System.currentTimeMillis();
+        boolean immediate = !reading.deviceTimestamp() || FALL.equalsIgnoreCase(reading.status());
+        if (Math.abs(reading.timestampMillis() - arrival) > maxClockSkewMs) {
+            skewCorrected.increment();
+            reading = reading.withTimestamp(arrival);
+            immediate = true;
+        }
+        if (!enabled) {
+            onTime.handle(device, reading, broadcast);
+            done.completed(null);
+            return;
+        }
+        DeviceClock clock = clocks.computeIfAbsent(device.deviceId(), id -> new DeviceClock());
+        long eventTime = reading.timestampMillis();
+        synchronized (clock) {
+            if (eventTime < clock.lastEmitted) {
+                late(clock, device, reading);
+                done.completed(null);
+                return;
+            }
+            if (eventTime < clock.maxEventTime) {
+                reordered.increment();
+            }
+            clock.maxEventTime = Math.max(clock.maxEventTime, eventTime);
+            if (immediate) {
+                clock.buffer.releaseUntil(eventTime, pending -> deliver(clock, pending));
+                deliver(clock, new Pending(device, reading, broadcast, done));
+                return;
+            }
+            if (clock.buffer.size() == bufferSize) {
+                // Buffer lleno: se entrega el más antiguo aunque la marca de agua no lo haya alcanzado
+                forced.increment();
+                emit(clock, 1);
+                if (eventTime < clock.lastEmitted) {
+                    late(clock, device, reading);
+                    done.completed(null);
+                    return;
+                }
+            }
+            clock.buffer.offer(eventTime, new Pending(device, reading, broadcast, done));
+            long watermark = clock.maxEventTime - maxOutOfOrdernessMs;
+            clock.buffer.releaseUntil(watermark, pending -> deliver(clock, pending));
+            if (eventTime > watermark) {
+                synchronized (wheel) {
+                    wheel.schedule(new Due(clock, eventTime), arrival + maxOutOfOrdernessMs);
+                }
+            }
+        }
+    }
+
+    private void late(DeviceClock clock, DeviceContext device, SensorReading reading) {
+        lateReadings.increment();
+        logger.debug("Lectura tardía de {}: {} ms anterior a la última entregada",
+                device.deviceId(), clock.lastEmitted - reading.timestampMillis());
+        if (latePolicy == LatePolicy.ALERT_ONLY) {
+            onLate.handle(device, reading, false);
+        }
+    }
+
+    private void emit(DeviceClock clock, int count) {
+        clock.buffer.release(count, pending -> deliver(clock, pending));
+    }
+
+    private void deliver(DeviceClock clock, Pending pending) {
+        clock.lastEmitted = Math.max(clock.lastEmitted, pending.reading().timestampMillis());
+        try {
+            onTime.handle(pending.device(), pending.reading(), pending.broadcast());
+        } catch (RuntimeException e) {
+            // No se propaga: el resto del buffer sigue saliendo. Quien confirme al origen se entera por done
+            logger.error("Error al procesar la lectura de {}: {}", pending.device().deviceId(), e.getMessage(), e);
+            pending.done().completed(e);
+            return;
+        }
+        pending.done().completed(null);
+    }
+
+    @Scheduled(fixedDelayString = "${app.sensor.event-time.tick-ms:100}")
+    public void tick() {
+        releaseDue(System.currentTimeMillis());
+    }
+
+    /** Entrega las lecturas que ya esperaron el desorden máximo en tiempo de proceso; devuelve cuántas. */
+    int releaseDue(long now) {
+        List<Due> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(now, due::add);
+        }
+        int released = 0;
+        for (Due entry : due) {
+            DeviceClock clock = entry.clock();
+            synchronized (clock) {
+                // Lo anterior en tiempo de evento sale antes; si ya se entregó, no hay nada que hacer
+                released += clock.buffer.releaseUntil(entry.eventTime(), pending -> deliver(clock, pending));
+            }
+        }
+        return released;
+    }
+
+    /** Entrega todo lo pendiente; se usa en el apagado, con la ingesta ya detenida. */
+    public int flushAll() {
+        int[] flushed = {0};
+        clocks.forEach((deviceId, clock) -> {
+            synchronized (clock) {
+                flushed[0] += clock.buffer.size();
+                emit(clock, clock.buffer.size());
+            }
+        });
+        synchronized (wheel) {
+            wheel.drain(entry -> { });
+        }
+        return flushed[0];
+    }
+}
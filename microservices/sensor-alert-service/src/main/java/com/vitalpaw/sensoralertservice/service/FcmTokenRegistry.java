@@ -0,0 +1,140 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.entity.UserFcmToken;
+import com.vitalpaw.sensoralertservice.repository.UserFcmTokenRepository;
+import com.vitalpaw.sensoralertservice.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tokens FCM de cada dueño, uno por móvil o navegador con sesión iniciada, más el de {@code users.fcm_token} de
+ * las versiones anteriores de la app. Los tokens activos se guardan en memoria por dueño para no consultar la
+ * base de datos en cada notificación. La caché caduca a los {@code token-cache-ttl-ms} para ver las altas hechas
+ * en otras réplicas.
+ *
+ * Los tokens que FCM da por muertos se borran de la tabla, de la columna antigua y de la caché, así que no se
+ * vuelve a intentar enviarles nada.
+ */
+@Service
+public class FcmTokenRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(FcmTokenRegistry.class);
+
+    @Value("${app.sensor.notifications.token-cache-ttl-ms:600000}")
+    private long cacheTtlMs;
+
+    @Autowired
+    private UserFcmTokenRepository tokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<Long, CachedTokens> cache = new ConcurrentHashMap<>();
+    private Counter pruned;
+    private Counter reassigned;
+
+    private record CachedTokens(List<String> tokens, long loadedAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        pruned = Counter.builder("vitalpaw.notifications.tokens.pruned")
+                .description("Tokens FCM eliminados por estar dados de baja en FCM")
+                .register(meterRegistry);
+        reassigned = Counter.builder("vitalpaw.notifications.tokens.reassigned")
+                .description("Tokens FCM que pasan de un dueño a otro")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.notifications.tokens.cached.owners", cache, Map::size)
+                .description("Dueños con sus tokens FCM en memoria")
+                .register(meterRegistry);
+    }
+
+    /** Tokens activos del dueño, el más reciente primero; vacío si no tiene ninguno. */
+    public List<String> tokensFor(long ownerId) {
+        long now = System.currentTimeMillis();
+        CachedTokens cached = cache.get(ownerId);
+        if (cached == null || now - cached.loadedAt() > cacheTtlMs) {
+            cached = new CachedTokens(load(ownerId), now);
+            cache.put(ownerId, cached);
+        }
+        return cached.tokens();
+    }
+
+    @Transactional
+    public void register(long ownerId, String token, String platform) {
+        if (token == null || token.isBlank() || token.length() > 255) {
+            throw new IllegalArgumentException("El token es obligatorio (máximo 255 caracteres)");
+        }
+        if (platform != null && platform.length() > 20) {
+            throw new IllegalArgumentException("La plataforma admite como máximo 20 caracteres");
+        }
+        if (!userRepository.existsById(ownerId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Dueño no encontrado");
+        }
+        UserFcmToken entity = tokenRepository.findByToken(token).orElseGet(UserFcmToken::new);
+        Long previousOwner = entity.getUserId();
+        entity.setUserId(ownerId);
+        entity.setToken(token);
+        entity.setPlatform(platform);
+        entity.setLastRegisteredAt(LocalDateTime.now());
+        tokenRepository.save(entity);
+        cache.remove(ownerId);
+        if (previousOwner != null && previousOwner != ownerId) {
+            // El móvil cambió de cuenta: el dueño anterior deja de recibir sus alertas. Visible en logs y métricas
+            // porque también es lo que haría quien intentara desviar las alertas de otro dueño
+            cache.remove(previousOwner);
+            reassigned.increment();
+            logger.warn("Token FCM ({}) reasignado del dueño {} al {}", platform, previousOwner, ownerId);
+        }
+    }
+
+    public boolean unregister(long ownerId, String token) {
+        int deleted = tokenRepository.deleteByUserIdAndToken(ownerId, token);
+        cache.remove(ownerId);
+        return deleted > 0;
+    }
+
+    /** Elimina los tokens que FCM ha rechazado como no registrados. */
+    public void prune(long ownerId, Collection<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        Set<String> dead = Set.copyOf(tokens);
+        // Primero la caché: los envíos siguientes ya no los ven aunque falle la base de datos
+        cache.computeIfPresent(ownerId, (id, cached) -> new CachedTokens(
+                cached.tokens().stream().filter(token -> !dead.contains(token)).toList(), cached.loadedAt()));
+        tokenRepository.deleteByTokens(dead);
+        tokenRepository.clearLegacyTokens(dead);
+        pruned.increment(dead.size());
+        logger.info("Eliminados {} tokens FCM dados de baja del dueño {}", dead.size(), ownerId);
+    }
+
+    private List<String> load(long ownerId) {
+        List<String> tokens = new ArrayList<>(tokenRepository.findTokensByUserId(ownerId));
+        String legacy = tokenRepository.findLegacyToken(ownerId);
+        if (legacy != null && !legacy.isBlank() && !tokens.contains(legacy)) {
+            tokens.add(legacy);
+        }
+        return List.copyOf(tokens);
+    }
+}
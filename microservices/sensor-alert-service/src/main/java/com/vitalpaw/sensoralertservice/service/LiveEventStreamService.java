@@ -0,0 +1,335 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.util.EventRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lecturas en vivo por Server-Sent Events, por mascota o por dueño (todas sus mascotas): los mismos datos que
+ * {@code /topic/sensores/{petId}} sobre una respuesta HTTP normal, sin STOMP ni WebSocket, así que pasan por
+ * Traefik sin reglas de upgrade y se multiplexan sobre HTTP/2. La conexión es asíncrona en el servlet: no
+ * ocupa hilo mientras espera.
+ *
+ * Cada stream numera sus eventos y guarda los últimos en un {@link EventRing}; un cliente que reconecta con
+ * {@code Last-Event-ID} recibe lo que se perdió. Si el hueco ya no está en memoria recibe antes un evento
+ * {@code resync} para que recargue el historial. El stream se conserva {@code retention-ms} tras irse su último
+ * cliente para que las reconexiones puedan reanudar.
+ *
+ * Como en el WebSocket nativo, cada cliente tiene una cola acotada que vacía un pool compartido; un cliente que
+ * la llena se desconecta y, al reconectar, reanuda desde el anillo.
+ */
+@Service
+public class LiveEventStreamService {
+    private static final Logger logger = LoggerFactory.getLogger(LiveEventStreamService.class);
+
+    public enum Scope { PET, OWNER }
+
+    @Value("${app.sensor.sse.ring-size:64}")
+    private int ringSize;
+
+    @Value("${app.sensor.sse.max-queued-events:128}")
+    private int maxQueuedEvents;
+
+    @Value("${app.sensor.sse.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${app.sensor.sse.retry-ms:3000}")
+    private long retryMs;
+
+    @Value("${app.sensor.sse.retention-ms:300000}")
+    private long retentionMs;
+
+    @Value("${app.sensor.sse.sender-threads:2}")
+    private int senderThreads;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Long, Stream> pets = new ConcurrentHashMap<>();
+    private final Map<Long, Stream> owners = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Set<ResponseBodyEmitter.DataWithMediaType> heartbeat = SseEmitter.event().comment("").build();
+    private ExecutorService sender;
+    private Counter evicted;
+    private Counter replayed;
+    private Counter resyncs;
+
+    /** Eventos recientes de una mascota o un dueño y sus clientes; se accede con su lock. */
+    private final class Stream {
+        final EventRing<Set<ResponseBodyEmitter.DataWithMediaType>> ring = new EventRing<>(ringSize);
+        final Set<Client> clients = ConcurrentHashMap.newKeySet();
+        long lastId;
+        long idleSince;
+
+        Stream(long baseId) {
+            // Ids crecientes también entre reinicios: un Last-Event-ID de una instancia anterior cae en el hueco
+            this.lastId = baseId;
+        }
+    }
+
+    /** Conexión SSE con su cola de salida. */
+    private static final class Client {
+        final SseEmitter emitter;
+        final Stream stream;
+        final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean closed;
+
+        Client(SseEmitter emitter, Stream stream) {
+            this.emitter = emitter;
+            this.stream = stream;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        evicted = Counter.builder("vitalpaw.sse.evictions")
+                .description("Clientes SSE desconectados por cola de salida llena")
+                .register(meterRegistry);
+        replayed = Counter.builder("vitalpaw.sse.replayed")
+                .description("Eventos reenviados desde el anillo al reanudar con Last-Event-ID")
+                .register(meterRegistry);
+        resyncs = Counter.builder("vitalpaw.sse.resyncs")
+                .description("Reanudaciones cuyo hueco ya no estaba en memoria")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.sse.connections", connections, AtomicInteger::get)
+                .description("Conexiones SSE abiertas")
+                .register(meterRegistry);
+        AtomicInteger threadIndex = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "sse-sender-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        for (Map<Long, Stream> streams : List.of(pets, owners)) {
+            streams.values().forEach(stream -> stream.clients.forEach(client -> client.emitter.complete()));
+        }
+    }
+
+    /**
+     * Abre un stream para la mascota o el dueño. Con {@code lastEventId} se reenvían primero los eventos
+     * posteriores que sigan en el anillo.
+     */
+    public SseEmitter subscribe(Scope scope, long key, String lastEventId) {
+        long resumeFrom = parseEventId(lastEventId);
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Client[] created = new Client[1];
+        connections.incrementAndGet();
+        // Registro y reenvío dentro del compute: la limpieza no puede retirar el stream entre ambos pasos
+        streams(scope).compute(key, (id, current) -> {
+            Stream stream = current != null ? current : new Stream(System.currentTimeMillis() * 1000);
+            synchronized (stream) {
+                Client client = new Client(emitter, stream);
+                created[0] = client;
+                enqueue(client, SseEmitter.event().reconnectTime(retryMs).comment("vitalpaw").build());
+                if (resumeFrom >= 0) {
+                    replay(client, stream, resumeFrom);
+                }
+                if (!client.closed) {
+                    stream.clients.add(client);
+                }
+            }
+            return stream;
+        });
+        Client client = created[0];
+        emitter.onCompletion(() -> remove(client));
+        emitter.onTimeout(() -> remove(client));
+        emitter.onError(e -> remove(client));
+        logger.debug("Cliente SSE suscrito a {} {} (desde {})", scope, key, resumeFrom);
+        return emitter;
+    }
+
+    private void replay(Client client, Stream stream, long resumeFrom) {
+        long missed = stream.lastId - resumeFrom;
+        if (missed == 0) {
+            return;
+        }
+        if (missed < 0 || missed > stream.ring.size()) {
+            // El hueco no está (entero) en memoria, o el id es de otra instancia del stream
+            resyncs.increment();
+            enqueue(client, SseEmitter.event().name("resync").data("resync").build());
+        }
+        int count = stream.ring.since(resumeFrom, (event, id) -> enqueue(client, event));
+        replayed.increment(count);
+    }
+
+    private static long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(lastEventId.trim()));
+        } catch (NumberFormatException e) {
+            // Un id que no emitimos no permite saber qué se perdió: el cliente recibe resync
+            return 0;
+        }
+    }
+
+    /** Publica la lectura en el stream de la mascota y en el del dueño; no serializa si nadie los sigue. */
+    public void publish(Long ownerId, SensorDataResponseDTO data) {
+        Stream petStream = pets.get(data.getPetId());
+        Stream ownerStream = ownerId != null ? owners.get(ownerId) : null;
+        if (petStream == null && ownerStream == null) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            logger.error("Error al serializar datos de sensor para mascota {}: {}", data.getPetId(), e.getMessage());
+            return;
+        }
+        if (petStream != null) {
+            append(petStream, json);
+        }
+        if (ownerStream != null) {
+            append(ownerStream, json);
+        }
+    }
+
+    private void append(Stream stream, String json) {
+        synchronized (stream) {
+            long id = ++stream.lastId;
+            // El evento se construye una vez por stream y lo comparten todos sus clientes
+            Set<ResponseBodyEmitter.DataWithMediaType> event = SseEmitter.event()
+                    .id(Long.toString(id))
+                    .name("sensor")
+                    .data(json, MediaType.APPLICATION_JSON)
+                    .build();
+            stream.ring.add(id, event);
+            for (Client client : stream.clients) {
+                enqueue(client, event);
+            }
+        }
+    }
+
+    private void enqueue(Client client, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        if (client.closed) {
+            return;
+        }
+        if (client.queued.incrementAndGet() > maxQueuedEvents) {
+            evicted.increment();
+            logger.warn("Cliente SSE desconectado por cola de salida llena ({} eventos)", maxQueuedEvents);
+            remove(client);
+            // complete() espera a que termine el envío en curso: no se hace en el hilo que publica. Al
+            // reconectar con Last-Event-ID el cliente reanuda desde el anillo
+            try {
+                sender.execute(client.emitter::complete);
+            } catch (RejectedExecutionException e) {
+                // Apagado en curso
+            }
+            return;
+        }
+        client.queue.offer(event);
+        if (client.scheduled.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(client));
+            } catch (RejectedExecutionException e) {
+                client.scheduled.set(false); // Apagado en curso
+            }
+        }
+    }
+
+    private void drain(Client client) {
+        try {
+            Set<ResponseBodyEmitter.DataWithMediaType> event;
+            while (!client.closed && (event = client.queue.poll()) != null) {
+                client.queued.decrementAndGet();
+                try {
+                    client.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    logger.debug("Error al enviar evento SSE: {}", e.getMessage());
+                    remove(client);
+                    return;
+                }
+            }
+        } finally {
+            client.scheduled.set(false);
+        }
+        if (!client.closed && !client.queue.isEmpty() && client.scheduled.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(client));
+            } catch (RejectedExecutionException e) {
+                client.scheduled.set(false);
+            }
+        }
+    }
+
+    private void remove(Client client) {
+        synchronized (client) {
+            if (client.closed) {
+                return;
+            }
+            client.closed = true;
+        }
+        connections.decrementAndGet();
+        client.queue.clear();
+        synchronized (client.stream) {
+            client.stream.clients.remove(client);
+            if (client.stream.clients.isEmpty()) {
+                client.stream.idleSince = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Comentario periódico para que proxies y balanceadores no corten la conexión por inactividad, y limpieza de
+     * los streams sin clientes desde hace más de {@code retention-ms}.
+     */
+    @Scheduled(fixedDelayString = "${app.sensor.sse.heartbeat-ms:15000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (Map<Long, Stream> streams : List.of(pets, owners)) {
+            for (Long key : streams.keySet()) {
+                streams.computeIfPresent(key, (id, stream) -> {
+                    synchronized (stream) {
+                        if (stream.clients.isEmpty()) {
+                            return now - stream.idleSince > retentionMs ? null : stream;
+                        }
+                        stream.clients.forEach(client -> enqueue(client, heartbeat));
+                        return stream;
+                    }
+                });
+            }
+        }
+    }
+
+    private Map<Long, Stream> streams(Scope scope) {
+        return scope == Scope.PET ? pets : owners;
+    }
+}
@@ -0,0 +1,77 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.dto.LiveDeviceStateDTO;
+import com.vitalpaw.sensoralertservice.util.LiveStateTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Último estado de cada dispositivo en una {@link LiveStateTable} preasignada para toda la flota esperada.
+ * Las consultas (REST, paneles) leen sin bloquear a los hilos de ingesta y sin crear objetos más allá de la copia
+ * devuelta.
+ */
+@Service
+public class LiveStateService {
+    private static final Logger logger = LoggerFactory.getLogger(LiveStateService.class);
+
+    @Value("${app.sensor.live-state.expected-devices:${app.sensor.devices.expected-count:100000}}")
+    private int expectedDevices;
+
+    @Value("${app.sensor.live-state.headroom:1.25}")
+    private double headroom;
+
+    // Un dispositivo cuenta como conectado si ha enviado datos dentro de esta ventana
+    @Value("${app.sensor.live-state.online-window-ms:300000}")
+    private long onlineWindowMs;
+
+    @Autowired
+    private DeviceRegistryService deviceRegistryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private LiveStateTable table;
+    private Counter untracked;
+
+    @PostConstruct
+    public void init() {
+        int devices = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(expectedDevices, Math.ceil(deviceRegistryService.knownCount() * headroom)));
+        table = new LiveStateTable(devices);
+        untracked = Counter.builder("vitalpaw.devices.live.untracked")
+                .description("Lecturas sin estado en vivo por tabla llena")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.devices.live.tracked", table, LiveStateTable::size)
+                .description("Dispositivos con estado en vivo en memoria")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.devices.online", this, s -> s.countOnline(onlineWindowMs))
+                .description("Dispositivos con datos dentro de la ventana de conexión")
+                .register(meterRegistry);
+        logger.info("Estado en vivo: {} ranuras para {} dispositivos ({} MB preasignados)",
+                table.capacity(), devices, table.footprintBytes() / (1024 * 1024));
+    }
+
+    public void update(DeviceContext device, long timestampMillis, float temperature, int pulse, String status, Float activity) {
+        if (!table.update(device.deviceId(), device.petId(), timestampMillis, temperature, pulse, status, activity)) {
+            untracked.increment();
+        }
+    }
+
+    /** Último estado del dispositivo; null si no ha enviado datos desde el arranque. */
+    public LiveDeviceStateDTO get(String deviceId) {
+        return table.get(deviceId);
+    }
+
+    /** Dispositivos con alguna lectura en los últimos {@code withinMs} ms. */
+    public int countOnline(long withinMs) {
+        return table.countSeenSince(System.currentTimeMillis() - withinMs);
+    }
+}
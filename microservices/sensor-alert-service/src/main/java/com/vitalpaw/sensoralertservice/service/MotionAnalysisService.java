@@ -0,0 +1,95 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Clasifica caídas, inmovilidad y actividad a partir de las muestras crudas del acelerómetro, en lugar de
+ * confiar en el estado que calcula el firmware. Un único recorrido sobre el {@code float[]} intercalado x,y,z,
+ * sin reservar memoria, obtiene la magnitud de pico, el jerk máximo (variación de la magnitud por segundo) y el
+ * nivel de actividad (RMS de la aceleración dinámica, es decir, descontando 1 g de gravedad).
+ */
+@Service
+public class MotionAnalysisService {
+
+    public static final String FALL = "Caído";
+    public static final String IMMOBILE = "Sin movimiento";
+    public static final String LOW_ACTIVITY = "Actividad baja";
+    public static final String MOVING = "En movimiento";
+
+    private static final float STANDARD_GRAVITY = 9.80665f;
+
+    // Actividad (m/s²) por debajo de la cual la mascota se considera inmóvil
+    @Value("${app.sensor.thresholds.immobile}")
+    private float immobileThreshold;
+
+    @Value("${app.sensor.thresholds.lowActivity}")
+    private float lowActivityThreshold;
+
+    // Magnitud de pico (g) que se considera un impacto
+    @Value("${app.sensor.thresholds.fall}")
+    private float fallThreshold;
+
+    // El impacto debe ser brusco: descarta aceleraciones altas pero sostenidas (p. ej. en el coche)
+    @Value("${app.sensor.motion.min-fall-jerk:20.0}")
+    private float minFallJerk;
+
+    @Value("${app.sensor.motion.default-sample-rate-hz:50}")
+    private int defaultSampleRateHz;
+
+    /** Resultado del análisis: estado compatible con el del firmware y las métricas que lo justifican. */
+    public record Motion(String status, float activity, float peakG, float maxJerk) {
+
+        public boolean fall() {
+            return FALL.equals(status);
+        }
+    }
+
+    /**
+     * Analiza un lote de muestras en g intercaladas [x0, y0, z0, x1, ...]. Las muestras incompletas del final
+     * se ignoran.
+     */
+    public Motion analyze(float[] samples, int sampleRateHz) {
+        int n = samples.length / 3;
+        if (n == 0) {
+            return new Motion(IMMOBILE, 0, 0, 0);
+        }
+        float hz = sampleRateHz > 0 ? sampleRateHz : defaultSampleRateHz;
+        float peak = 0;
+        float maxJerk = 0;
+        double dynamicSquares = 0;
+        float previous = Float.NaN;
+        for (int i = 0, j = 0; i < n; i++, j += 3) {
+            float x = samples[j];
+            float y = samples[j + 1];
+            float z = samples[j + 2];
+            float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+            if (magnitude > peak) {
+                peak = magnitude;
+            }
+            float dynamic = magnitude - 1f;
+            dynamicSquares += dynamic * dynamic;
+            if (i > 0) {
+                float jerk = Math.abs(magnitude - previous) * hz;
+                if (jerk > maxJerk) {
+                    maxJerk = jerk;
+                }
+            }
+            previous = magnitude;
+        }
+        float activity = (float) Math.sqrt(dynamicSquares / n) * STANDARD_GRAVITY;
+
+        String status;
+        // Con una sola muestra no hay jerk: basta el pico
+        if (peak >= fallThreshold && (n == 1 || maxJerk >= minFallJerk)) {
+            status = FALL;
+        } else if (activity < immobileThreshold) {
+            status = IMMOBILE;
+        } else if (activity < lowActivityThreshold) {
+            status = LOW_ACTIVITY;
+        } else {
+            status = MOVING;
+        }
+        return new Motion(status, activity, peak, maxJerk);
+    }
+}
@@ -0,0 +1,161 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Canal de bajada hacia los collares: publica comandos en {@code <prefijo>/<deviceId>/config} y recibe sus
+ * confirmaciones en {@code <prefijo>/<deviceId>/ack}. Usa una conexión propia, separada del pool de ingesta,
+ * para que los comandos no compitan con el volumen de lecturas.
+ */
+@Service
+public class MqttDownlinkService implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(MqttDownlinkService.class);
+
+    @Value("${mqtt.broker.url}")
+    private String broker;
+
+    @Value("${mqtt.broker.urls:}")
+    private String brokerUrls;
+
+    @Value("${mqtt.username}")
+    private String username;
+
+    @Value("${mqtt.password}")
+    private String password;
+
+    @Value("${mqtt.client.id}")
+    private String clientId;
+
+    @Value("${mqtt.downlink.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mqtt.downlink.topic-prefix:vitalpaw/devices}")
+    private String topicPrefix;
+
+    @Value("${mqtt.qos:1}")
+    private int qos;
+
+    private MqttClient client;
+    private volatile BiConsumer<String, byte[]> ackListener = (deviceId, payload) -> { };
+    private volatile boolean running;
+
+    /** Recibe las confirmaciones de los dispositivos: (deviceId, payload). */
+    public void setAckListener(BiConsumer<String, byte[]> ackListener) {
+        this.ackListener = ackListener;
+    }
+
+    public boolean isConnected() {
+        return client != null && client.isConnected();
+    }
+
+    /**
+     * Publica un comando retenido para el dispositivo: si está desconectado lo recibe al volver.
+     * Devuelve false si no se pudo entregar al broker.
+     */
+    public boolean publishConfig(String deviceId, byte[] payload) {
+        if (!isConnected()) {
+            return false;
+        }
+        try {
+            MqttMessage message = new MqttMessage(payload);
+            message.setQos(qos);
+            message.setRetained(true);
+            client.publish(topicPrefix + "/" + deviceId + "/config", message);
+            return true;
+        } catch (MqttException e) {
+            logger.warn("Error al publicar el comando para {}: {}", deviceId, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            return;
+        }
+        String[] serverUris = brokerUrls.isBlank()
+                ? new String[]{broker}
+                : Arrays.stream(brokerUrls.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        MqttConnectOptions connOpts = new MqttConnectOptions();
+        connOpts.setUserName(username);
+        connOpts.setPassword(password.toCharArray());
+        connOpts.setAutomaticReconnect(true);
+        connOpts.setCleanSession(true);
+        connOpts.setServerURIs(serverUris);
+        String ackTopic = topicPrefix + "/+/ack";
+        try {
+            client = new MqttClient(serverUris[0], clientId + "-downlink", new MemoryPersistence());
+            client.setCallback(new MqttCallbackExtended() {
+                @Override
+                public void connectComplete(boolean reconnect, String serverURI) {
+                    try {
+                        client.subscribe(ackTopic, qos);
+                        logger.info("Canal de bajada MQTT conectado a {} y suscrito a {}", serverURI, ackTopic);
+                    } catch (MqttException e) {
+                        logger.error("Error al suscribir el canal de bajada a {}: {}", ackTopic, e.getMessage(), e);
+                    }
+                }
+
+                @Override
+                public void connectionLost(Throwable cause) {
+                    logger.warn("Canal de bajada MQTT perdido: {}", cause != null ? cause.getMessage() : "desconocido");
+                }
+
+                @Override
+                public void messageArrived(String topic, MqttMessage message) {
+                    // <prefijo>/<deviceId>/ack
+                    String deviceId = topic.substring(topicPrefix.length() + 1, topic.length() - "/ack".length());
+                    try {
+                        ackListener.accept(deviceId, message.getPayload());
+                    } catch (RuntimeException e) {
+                        logger.warn("Confirmación inválida de {}: {}", deviceId, e.getMessage());
+                    }
+                }
+
+                @Override
+                public void deliveryComplete(IMqttDeliveryToken token) {
+                }
+            });
+            client.connect(connOpts);
+        } catch (MqttException e) {
+            logger.error("Error al conectar el canal de bajada MQTT: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (client == null) {
+            return;
+        }
+        try {
+            if (client.isConnected()) {
+                client.disconnect();
+            }
+            client.close();
+        } catch (MqttException e) {
+            logger.warn("Error al cerrar el canal de bajada MQTT: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.INGEST;
+    }
+}
@@ -1,36 +1,50 @@
 package com.vitalpaw.sensoralertservice.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.firebase.messaging.FirebaseMessaging;
-import com.google.firebase.messaging.FirebaseMessagingException;
-import com.google.firebase.messaging.Message;
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
 import com.vitalpaw.sensoralertservice.dto.Esp32SensorDataDTO; // Nuevo DTO para los datos del ESP32
-import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
-import com.vitalpaw.sensoralertservice.entity.Alert;
-import com.vitalpaw.sensoralertservice.entity.Breed;
-import com.vitalpaw.sensoralertservice.entity.Pet;
-import com.vitalpaw.sensoralertservice.entity.PetDevice;
-import com.vitalpaw.sensoralertservice.repository.AlertRepository;
-import com.vitalpaw.sensoralertservice.repository.PetDeviceRepository;
-import jakarta.annotation.PostConstruct;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.eclipse.paho.client.mqttv3.*;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.Optional; // Importación para Optional
-
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Recepción MQTT mediante un pool de conexiones paralelas. Cada conexión tiene su propio client ID,
+ * socket TCP e hilo de callback de Paho, y se suscribe a una porción del espacio de topics:
+ * una lista explícita de topics repartida entre conexiones o, si no se configura, una suscripción
+ * compartida ({@code $share}) para que el broker reparta la carga.
+ *
+ * Con {@code app.sensor.stream.mode} a {@code receiver} o {@code both} los mensajes no se procesan aquí: se
+ * escriben crudos en el stream de Redis ({@link ReadingStreamPublisher}) y se confirman al broker cuando ya están
+ * en él. Con la cola hacia el stream llena el callback se bloquea: Paho deja de leer el socket y la presión llega
+ * al broker por TCP y por su ventana de mensajes QoS 1 sin confirmar. Con cleanSession=true el broker no guarda
+ * la sesión, así que no hay reentregas tras una desconexión: lo que no llegó al stream se pierde y se registra.
+ * En modo {@code processor} la instancia no se conecta a MQTT y solo consume el stream.
+ */
 @Service
-public class MqttSensorService {
+public class MqttSensorService implements SmartLifecycle {
     private static final Logger logger = LoggerFactory.getLogger(MqttSensorService.class);
 
     @Value("${mqtt.broker.url}")
     private String broker;
 
+    // Lista de brokers separada por comas; Paho conmuta al siguiente si uno cae
+    @Value("${mqtt.broker.urls:}")
+    private String brokerUrls;
+
     @Value("${mqtt.username}")
     private String username;
 
@@ -43,180 +57,237 @@ public class MqttSensorService {
     @Value("${mqtt.topic}")
     private String mqttTopic;
 
-    @Value("${app.sensor.thresholds.immobile}")
-    private float immobileThreshold;
+    @Value("${mqtt.pool.size:1}")
+    private int poolSize;
+
+    // Topics explícitos repartidos entre conexiones (p. ej. un prefijo por zona o por rango de dispositivos)
+    @Value("${mqtt.pool.topics:}")
+    private String poolTopics;
+
+    @Value("${mqtt.pool.shared-group:vitalpaw-sensor}")
+    private String sharedGroup;
 
-    @Value("${app.sensor.thresholds.fall}")
-    private float fallThreshold;
+    @Value("${mqtt.qos:1}")
+    private int qos;
 
-    @Value("${app.sensor.thresholds.maxTemperature}")
-    private float maxTemperature;
+    // Tiempo máximo para que terminen los callbacks en curso (alertas, envíos FCM) al desconectar
+    @Value("${app.sensor.shutdown.quiesce-timeout-ms:5000}")
+    private long quiesceTimeoutMs;
 
-    @Value("${app.sensor.thresholds.maxHeartRate}")
-    private int maxHeartRate;
+    @Value("${app.sensor.devices.default-device-id:ESP32_VITALPAW_001}")
+    private String defaultDeviceId;
+
+    @Value("${app.sensor.stream.mode:direct}")
+    private String streamMode;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private SensorProcessingService sensorProcessingService;
 
     @Autowired
-    private PetDeviceRepository petDeviceRepository;
+    private ReadingStreamPublisher readingStreamPublisher;
 
     @Autowired
-    private AlertRepository alertRepository;
+    private MeterRegistry meterRegistry;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private MqttClient mqttClient;
-
-    @PostConstruct
-    public void init() {
-        try {
-            mqttClient = new MqttClient(broker, clientId);
-            MqttConnectOptions connOpts = new MqttConnectOptions();
-            connOpts.setUserName(username);
-            connOpts.setPassword(password.toCharArray());
-            connOpts.setAutomaticReconnect(true);
-            connOpts.setCleanSession(true); // Limpia la sesión en cada reconexión
-            mqttClient.connect(connOpts);
-
-            mqttClient.subscribe(mqttTopic, (t, msg) -> processMessage(t, msg));
-            logger.info("Suscrito al topic MQTT: {}", mqttTopic);
-
-            logger.info("Conexión al broker MQTT establecida: {}", broker);
-        } catch (MqttException e) {
-            logger.error("Error al conectar al broker MQTT: {}", e.getMessage(), e);
-            // Considera no lanzar RuntimeException aquí para que el servicio Spring Boot se inicie
-            // y pueda intentar reconectar, pero loggear el error.
+    private final List<PooledConnection> connections = new ArrayList<>();
+    private volatile boolean running;
+
+    /** Una conexión del pool con sus topics y métricas. */
+    private final class PooledConnection implements MqttCallbackExtended {
+        final int index;
+        final String[] topics;
+        final MqttClient client;
+        final Counter messages;
+        final Counter reconnects;
+
+        PooledConnection(int index, String[] topics, String[] serverUris) throws MqttException {
+            this.index = index;
+            this.topics = topics;
+            this.client = new MqttClient(serverUris[0], clientId + "-" + index, new MemoryPersistence());
+            this.client.setCallback(this);
+            // Hacia el stream, el mensaje se confirma al broker después de escribirlo en Redis
+            this.client.setManualAcks(readingStreamPublisher.isEnabled());
+            String tag = String.valueOf(index);
+            this.messages = Counter.builder("vitalpaw.mqtt.messages")
+                    .description("Mensajes MQTT recibidos por conexión del pool")
+                    .tag("connection", tag)
+                    .register(meterRegistry);
+            this.reconnects = Counter.builder("vitalpaw.mqtt.reconnects")
+                    .description("Reconexiones al broker por conexión del pool")
+                    .tag("connection", tag)
+                    .register(meterRegistry);
+            Gauge.builder("vitalpaw.mqtt.connected", client, c -> c.isConnected() ? 1 : 0)
+                    .description("Estado de la conexión MQTT (1 = conectada)")
+                    .tag("connection", tag)
+                    .register(meterRegistry);
         }
-    }
-
-    private void processMessage(String topic, MqttMessage msg) {
-        String payload = new String(msg.getPayload());
-        logger.info("Mensaje recibido en el topic MQTT {}: {}", topic, payload);
 
-        try {
-            Esp32SensorDataDTO esp32Data = objectMapper.readValue(payload, Esp32SensorDataDTO.class);
+        void connect(MqttConnectOptions options) throws MqttException {
+            client.connect(options);
+        }
 
-            // --- Importante: Asignación de dispositivo/mascota ---
-            // Tu ESP32 NO envía un 'deviceId'. Para la demo, lo estamos hardcodeando aquí.
-            // Para una solución robusta, el ESP32 DEBERÍA incluir un identificador único en su JSON.
-            String fixedDeviceId = "ESP32_VITALPAW_001"; // ID Fijo para la demo
-
-            Optional<PetDevice> optionalPetDevice = petDeviceRepository.findByDeviceId(fixedDeviceId);
-            PetDevice petDevice = optionalPetDevice.orElseGet(() -> {
-                logger.warn("PetDevice con ID '{}' no encontrado. Intentando crear uno de ejemplo...", fixedDeviceId);
-                // Si no existe, intenta asociarlo a la primera mascota existente para la demo
-                // O deberías tener una forma de registrar dispositivos en tu backend/frontend
-                List<Pet> allPets = petDeviceRepository.findAll().stream().map(PetDevice::getPet).toList();
-                if (allPets.isEmpty()) {
-                    logger.error("No hay mascotas registradas en la base de datos para asociar el dispositivo.");
-                    return null; // No podemos continuar sin una mascota
-                }
-                Pet defaultPet = allPets.get(0); // Tomamos la primera mascota encontrada
-                PetDevice newDevice = new PetDevice();
-                newDevice.setDeviceId(fixedDeviceId);
-                newDevice.setPet(defaultPet);
-                newDevice.setIsActive(true);
-                return petDeviceRepository.save(newDevice);
-            });
-
-            if (petDevice == null) {
-                logger.error("No se pudo obtener/crear un PetDevice para procesar los datos. Abortando.");
+        @Override
+        public void connectComplete(boolean reconnect, String serverURI) {
+            if (reconnect) {
+                reconnects.increment();
+                logger.warn("Conexión MQTT {} restablecida con {}", index, serverURI);
+            }
+            if (topics.length == 0) {
                 return;
             }
+            // Con cleanSession=true el broker olvida las suscripciones: se renuevan en cada conexión
+            try {
+                int[] qosLevels = new int[topics.length];
+                Arrays.fill(qosLevels, qos);
+                client.subscribe(topics, qosLevels);
+                logger.info("Conexión MQTT {} ({}) suscrita a {}", index, serverURI, Arrays.toString(topics));
+            } catch (MqttException e) {
+                logger.error("Error al suscribir la conexión MQTT {}: {}", index, e.getMessage(), e);
+            }
+        }
 
-            Pet pet = petDevice.getPet();
-            if (pet == null) {
-                logger.error("El PetDevice '{}' no está asociado a ninguna mascota.", fixedDeviceId);
+        @Override
+        public void connectionLost(Throwable cause) {
+            logger.warn("Conexión MQTT {} perdida: {}", index, cause != null ? cause.getMessage() : "desconocido");
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            messages.increment();
+            if (!readingStreamPublisher.isEnabled()) {
+                processMessage(topic, message);
                 return;
             }
+            String payload = new String(message.getPayload(), StandardCharsets.UTF_8);
+            long receivedAt = System.currentTimeMillis();
+            // Sin descartar ni confirmar: el callback espera a que haya sitio en la cola
+            while (!readingStreamPublisher.publish(payload, receivedAt, () -> acknowledge(message))) {
+                if (!running || Thread.currentThread().isInterrupted()) {
+                    logger.warn("Conexión MQTT {} detenida con la cola hacia el stream llena: mensaje del topic {} perdido",
+                            index, topic);
+                    return;
+                }
+                logger.warn("Cola hacia el stream llena: la conexión MQTT {} deja de leer del broker", index);
+            }
+        }
 
-            Breed breed = pet.getBreed(); // Necesitas una raza para los umbrales
+        private void acknowledge(MqttMessage message) {
+            try {
+                client.messageArrivedComplete(message.getId(), message.getQos());
+            } catch (MqttException e) {
+                logger.debug("No se pudo confirmar el mensaje {} en la conexión MQTT {}: {}", message.getId(), index, e.getMessage());
+            }
+        }
 
-            float temperature = esp32Data.getTemperatura_celsius();
-            // El ESP32 solo envía 'ecg_raw', no un pulso calculado. Lo usamos como pulso para la demo.
-            int pulse = esp32Data.getEcg_raw();
-            String movimientoEstado = esp32Data.getMovimiento(); // "Sin movimiento", "En movimiento", "MPU6050 error lectura"
+        @Override
+        public void deliveryComplete(IMqttDeliveryToken token) {
+            // Este servicio no publica por estas conexiones
+        }
+    }
 
-            // --- Lógica de Alertas ---
-            String alertMessage = "";
-            boolean isAlert = false;
+    /** Se conecta en el arranque del contexto, cuando el snapshot de estado ya está restaurado. */
+    @Override
+    public void start() {
+        if ("processor".equalsIgnoreCase(streamMode)) {
+            running = true;
+            logger.info("Modo procesador: sin conexiones MQTT, las lecturas llegan por el stream de Redis");
+            return;
+        }
+        String[] serverUris = brokerUrls.isBlank()
+                ? new String[]{broker}
+                : Arrays.stream(brokerUrls.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        int size = Math.max(1, poolSize);
+
+        MqttConnectOptions connOpts = new MqttConnectOptions();
+        connOpts.setUserName(username);
+        connOpts.setPassword(password.toCharArray());
+        connOpts.setAutomaticReconnect(true);
+        connOpts.setCleanSession(true); // Limpia la sesión en cada reconexión
+        connOpts.setServerURIs(serverUris);
+
+        for (int i = 0; i < size; i++) {
+            try {
+                PooledConnection connection = new PooledConnection(i, topicsFor(i, size), serverUris);
+                connections.add(connection);
+                connection.connect(connOpts);
+            } catch (MqttException e) {
+                logger.error("Error al conectar la conexión MQTT {} al broker: {}", i, e.getMessage(), e);
+                // Considera no lanzar RuntimeException aquí para que el servicio Spring Boot se inicie
+                // y pueda intentar reconectar, pero loggear el error.
+            }
+        }
+        running = true;
+        logger.info("Pool MQTT iniciado: {} conexiones contra {}", connections.size(), Arrays.toString(serverUris));
+    }
 
-            if (breed != null) {
-                if (temperature < breed.getMinTemperature() || temperature > breed.getMaxTemperature()) {
-                    isAlert = true;
-                    alertMessage += String.format("Temp. fuera de rango (%.1fC). ", temperature);
-                }
-                // Si el pulso (ecg_raw) es un valor que se puede comparar con un rango de pulso de la raza
-                if (pulse < breed.getMinHeartRate() || pulse > breed.getMaxHeartRate()) {
-                    isAlert = true;
-                    alertMessage += String.format("Pulso fuera de rango (%d BPM). ", pulse);
-                }
-            } else {
-                logger.warn("La mascota {} no tiene una raza asociada. No se aplicarán umbrales específicos de raza.", pet.getId());
-                // Puedes aplicar umbrales generales si no hay raza
-                if (temperature > maxTemperature) { // Usa el umbral general del application.yml
-                    isAlert = true;
-                    alertMessage += String.format("Temp. alta (%.1fC). ", temperature);
-                }
-                if (pulse > maxHeartRate) { // Usa el umbral general del application.yml
-                    isAlert = true;
-                    alertMessage += String.format("Pulso alto (%d BPM). ", pulse);
+    /**
+     * Primer paso del apagado: deja de aceptar entregas y espera a que terminen los callbacks en curso.
+     * Con cleanSession=true el broker no reentrega lo que quedó sin confirmar: se pierde lo que esté en vuelo.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        for (PooledConnection connection : connections) {
+            try {
+                if (connection.client.isConnected()) {
+                    if (connection.topics.length > 0) {
+                        connection.client.unsubscribe(connection.topics);
+                    }
+                    connection.client.disconnect(quiesceTimeoutMs);
                 }
+                connection.client.close();
+            } catch (MqttException e) {
+                logger.warn("Error al cerrar la conexión MQTT {}: {}", connection.index, e.getMessage());
             }
+        }
+        connections.clear();
+        logger.info("Pool MQTT detenido: no se aceptan más mensajes");
+    }
 
-            // Lógica para detectar "Caída" basada en el string del ESP32
-            if ("Caído".equalsIgnoreCase(movimientoEstado)) {
-                isAlert = true;
-                alertMessage += "¡Posible caída detectada! ";
-            }
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
 
-            if (isAlert) {
-                Alert alert = new Alert();
-                alert.setPet(pet);
-                alert.setMessage(alertMessage.trim());
-                alert.setType("sensor_alert");
-                alert.setPulse(pulse);
-                alert.setTemperature(temperature);
-                alert.setTimestamp(LocalDateTime.now());
-                alertRepository.save(alert);
-                logger.info("Alerta guardada para la mascota {}: {}", pet.getId(), alert.getMessage());
-
-                // Enviar notificación FCM
-                String fcmToken = pet.getOwner() != null ? pet.getOwner().getFcmToken() : null;
-                if (fcmToken != null && !fcmToken.isEmpty()) {
-                    try {
-                        Message fcmMessage = Message.builder()
-                                .setToken(fcmToken)
-                                .putData("title", "Alerta de VitalPaw - " + pet.getName())
-                                .putData("body", alert.getMessage())
-                                .build();
-                        FirebaseMessaging.getInstance().send(fcmMessage);
-                        logger.info("Notificación FCM enviada a: {}", fcmToken);
-                    } catch (FirebaseMessagingException e) {
-                        logger.error("Error al enviar notificación FCM a {}: {}", fcmToken, e.getMessage(), e);
-                    }
-                } else {
-                    logger.warn("No se encontró fcmToken para el dueño de la mascota {}.", pet.getName());
-                }
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.INGEST;
+    }
+
+    /**
+     * Porción del espacio de topics de la conexión {@code index}. Con topics explícitos se reparten en
+     * round-robin; con una sola conexión se usa el topic tal cual; si no, una suscripción compartida.
+     */
+    String[] topicsFor(int index, int size) {
+        if (!poolTopics.isBlank()) {
+            List<String> all = Arrays.stream(poolTopics.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+            List<String> slice = new ArrayList<>();
+            for (int i = index; i < all.size(); i += size) {
+                slice.add(all.get(i));
+            }
+            if (slice.isEmpty()) {
+                logger.warn("La conexión MQTT {} no tiene topics asignados; hay más conexiones que topics.", index);
             }
+            return slice.toArray(String[]::new);
+        }
+        if (size == 1) {
+            return new String[]{mqttTopic};
+        }
+        return new String[]{"$share/" + sharedGroup + "/" + mqttTopic};
+    }
+
+    private void processMessage(String topic, MqttMessage msg) {
+        String payload = new String(msg.getPayload());
+        logger.debug("Mensaje recibido en el topic MQTT {}: {}", topic, payload);
+
+        try {
+            Esp32SensorDataDTO esp32Data = objectMapper.readValue(payload, Esp32SensorDataDTO.class);
 
-            // Enviar datos al frontend vía WebSocket
-            SensorDataResponseDTO responseDTO = new SensorDataResponseDTO();
-            responseDTO.setDeviceId(petDevice.getDeviceId()); // Incluye el deviceId
-            responseDTO.setPetId(pet.getId()); // Incluye el petId
-            responseDTO.setTemperature(temperature);
-            responseDTO.setPulse(pulse);
-            responseDTO.setStatus(movimientoEstado); // 'Sin movimiento', 'En movimiento', 'Caído', etc.
-            
-            // Envío al tópico WebSocket específico de la mascota
-            messagingTemplate.convertAndSend("/topic/sensores/" + pet.getId(), responseDTO);
-            logger.debug("Datos enviados a WebSocket para la mascota {}: Temp=%.1f, Pulso=%d, Estado=%s",
-                    pet.getId(), temperature, pulse, movimientoEstado);
-
-        } catch (MqttException e) {
-            logger.error("Error MQTT al procesar mensaje: {}", e.getMessage(), e);
+            // El ESP32 debe enviar su 'device_id'; los firmwares antiguos que no lo envían usan el ID por defecto.
+            sensorProcessingService.ingest(SensorReading.fromEsp32(esp32Data, defaultDeviceId));
         } catch (Exception e) {
             logger.error("Error al procesar mensaje MQTT: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
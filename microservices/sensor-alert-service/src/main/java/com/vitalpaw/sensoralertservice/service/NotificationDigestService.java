@@ -0,0 +1,223 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.entity.Alert;
+import com.vitalpaw.sensoralertservice.util.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Agrupa las notificaciones de alertas por dueño: la primera alerta abre una ventana de {@code digest-window-ms}
+ * y las que llegan durante ella, de cualquiera de sus mascotas, salen al cerrarla en una sola push. Si en la
+ * ventana solo hubo una alerta la push es idéntica a la de siempre.
+ *
+ * Las alertas críticas (caídas y los tipos de {@code immediate-types}) se envían al momento sin esperar a la
+ * ventana. Los cierres se programan en una {@link TimingWheel}, así que cada tick solo toca los dueños que
+ * vencen en él. Los envíos van a un hilo aparte para no frenar la ingesta ni el planificador, y llegan a todos
+ * los dispositivos del dueño (ver {@link PushNotificationService}).
+ */
+@Service
+public class NotificationDigestService implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDigestService.class);
+
+    static final String DIGEST_TYPE = "alert_digest";
+
+    // 0 = una push por alerta, como antes
+    @Value("${app.sensor.notifications.digest-window-ms:30000}")
+    private long windowMs;
+
+    @Value("${app.sensor.notifications.tick-ms:250}")
+    private long tickMs;
+
+    @Value("${app.sensor.notifications.wheel-slots:512}")
+    private int wheelSlots;
+
+    @Value("${app.sensor.notifications.immediate-types:composite_alert}")
+    private String immediateTypes;
+
+    // Líneas de alerta en el cuerpo del resumen; el resto se cuenta al final
+    @Value("${app.sensor.notifications.max-lines:5}")
+    private int maxLines;
+
+    @Autowired
+    private PushNotificationService pushNotificationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<Long, Digest> pending = new ConcurrentHashMap<>();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "notification-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private TimingWheel<Digest> wheel;
+    private Set<String> immediate;
+    private Counter immediateSent;
+    private Counter coalesced;
+    private Counter digests;
+    private volatile boolean running;
+
+    // Solo se modifica dentro de pending.compute(); se lee tras sacarlo del mapa
+    private static final class Digest {
+        final long ownerId;
+        final Set<String> petNames = new LinkedHashSet<>();
+        final List<String> lines = new ArrayList<>();
+        Map<String, String> first;
+        int count;
+
+        Digest(long ownerId) {
+            this.ownerId = ownerId;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        wheel = new TimingWheel<>(tickMs, wheelSlots, System.currentTimeMillis());
+        immediate = Arrays.stream(immediateTypes.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+        immediateSent = Counter.builder("vitalpaw.notifications.immediate")
+                .description("Alertas críticas notificadas sin esperar a la ventana")
+                .register(meterRegistry);
+        coalesced = Counter.builder("vitalpaw.notifications.coalesced")
+                .description("Alertas añadidas a una ventana ya abierta (push ahorrada)")
+                .register(meterRegistry);
+        digests = Counter.builder("vitalpaw.notifications.digests")
+                .description("Ventanas cerradas con su push")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.notifications.pending.owners", pending, Map::size)
+                .description("Dueños con una ventana de notificación abierta")
+                .register(meterRegistry);
+    }
+
+    /** Notifica la alerta al dueño, al momento si es crítica o dentro del resumen de su ventana si no. */
+    public void submit(DeviceContext device, Alert alert, boolean critical) {
+        Long owner = device.ownerId();
+        if (owner == null) {
+            logger.warn("La mascota {} no tiene dueño. Alerta sin notificar.", device.petName());
+            return;
+        }
+        Map<String, String> data = Map.of(
+                "title", "Alerta de VitalPaw - " + device.petName(),
+                "body", alert.getMessage(),
+                "type", alert.getType());
+        if (critical || windowMs <= 0 || immediate.contains(alert.getType())) {
+            immediateSent.increment();
+            sender.execute(() -> pushNotificationService.sendToOwner(owner, data));
+            return;
+        }
+        boolean[] opened = {false};
+        Digest digest = pending.compute(owner, (ownerId, current) -> {
+            if (current == null) {
+                current = new Digest(ownerId);
+                current.first = data;
+                opened[0] = true;
+            }
+            current.count++;
+            current.petNames.add(device.petName());
+            if (current.lines.size() < maxLines) {
+                current.lines.add(device.petName() + ": " + alert.getMessage());
+            }
+            return current;
+        });
+        if (opened[0]) {
+            synchronized (wheel) {
+                wheel.schedule(digest, System.currentTimeMillis() + windowMs);
+            }
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.sensor.notifications.tick-ms:250}")
+    public void tick() {
+        flushDue(System.currentTimeMillis());
+    }
+
+    int flushDue(long now) {
+        List<Digest> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(now, due::add);
+        }
+        due.forEach(this::flush);
+        return due.size();
+    }
+
+    private void flush(Digest digest) {
+        // Quien añada después de esto abre una ventana nueva
+        if (!pending.remove(digest.ownerId, digest)) {
+            return;
+        }
+        digests.increment();
+        Map<String, String> data = digest.count == 1 ? digest.first : Map.of(
+                "title", "Alertas de VitalPaw - " + String.join(", ", digest.petNames),
+                "body", digestBody(digest),
+                "type", DIGEST_TYPE,
+                "count", String.valueOf(digest.count));
+        sender.execute(() -> pushNotificationService.sendToOwner(digest.ownerId, data));
+        logger.debug("Resumen de {} alertas enviado al dueño {}", digest.count, digest.ownerId);
+    }
+
+    private static String digestBody(Digest digest) {
+        String body = String.join("\n", digest.lines);
+        int more = digest.count - digest.lines.size();
+        return more > 0 ? body + "\n(y " + more + " alertas más)" : body;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /** Con el procesamiento ya drenado, envía las ventanas abiertas sin esperar a que cierren. */
+    @Override
+    public void stop() {
+        running = false;
+        List<Digest> open = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.drain(open::add);
+        }
+        open.forEach(this::flush);
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("No se terminaron de enviar todas las notificaciones pendientes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("Notificaciones: {} resúmenes enviados al detener", open.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.SNAPSHOT;
+    }
+}
@@ -0,0 +1,19 @@
+package com.vitalpaw.sensoralertservice.service;
+
+/**
+ * Condiciones atómicas que se evalúan una sola vez por lectura y se combinan en una máscara de bits.
+ * Los patrones temporales se escriben en términos de estos nombres.
+ */
+public enum PatternCondition {
+    FALL,                // Caída detectada
+    IMMOBILE,            // Sin movimiento
+    MOVING,              // En movimiento
+    FEVER,               // Temperatura por encima del máximo de la raza (o del general)
+    TACHYCARDIA,         // Pulso por encima del máximo de la raza (o del general)
+    TEMPERATURE_RISING,  // Tendencia sostenida al alza de la temperatura
+    PULSE_RISING;        // Tendencia sostenida al alza del pulso
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,122 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
+import com.google.firebase.messaging.SendResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Envío de notificaciones push por FCM a todos los dispositivos del dueño en un solo multicast. Los mensajes son
+ * solo de datos (title, body, type y lo que añada quien llama); la app decide cómo mostrarlos. Los tokens que FCM
+ * rechaza como no registrados se eliminan del {@link FcmTokenRegistry} en el mismo envío.
+ */
+@Service
+public class PushNotificationService {
+    private static final Logger logger = LoggerFactory.getLogger(PushNotificationService.class);
+
+    // Máximo de tokens por multicast que admite FCM
+    private static final int MULTICAST_LIMIT = 500;
+
+    @Autowired
+    private FcmTokenRegistry fcmTokenRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter sent;
+    private Counter failed;
+
+    @PostConstruct
+    public void init() {
+        sent = Counter.builder("vitalpaw.notifications.sent")
+                .description("Notificaciones FCM entregadas a un dispositivo")
+                .register(meterRegistry);
+        failed = Counter.builder("vitalpaw.notifications.failed")
+                .description("Notificaciones FCM rechazadas o con error")
+                .register(meterRegistry);
+    }
+
+    /** Envía a todos los tokens activos del dueño; devuelve a cuántos dispositivos llegó. */
+    public int sendToOwner(long ownerId, Map<String, String> data) {
+        List<String> tokens;
+        try {
+            tokens = fcmTokenRegistry.tokensFor(ownerId);
+        } catch (DataAccessException e) {
+            logger.error("Error al leer los tokens FCM del dueño {}: {}", ownerId, e.getMessage());
+            return 0;
+        }
+        if (tokens.isEmpty()) {
+            logger.warn("No se encontró fcmToken para el dueño {}.", ownerId);
+            return 0;
+        }
+        int delivered = 0;
+        List<String> dead = new ArrayList<>();
+        for (int from = 0; from < tokens.size(); from += MULTICAST_LIMIT) {
+            List<String> batch = tokens.subList(from, Math.min(tokens.size(), from + MULTICAST_LIMIT));
+            delivered += sendBatch(ownerId, batch, data, dead);
+        }
+        if (!dead.isEmpty()) {
+            try {
+                fcmTokenRegistry.prune(ownerId, dead);
+            } catch (DataAccessException e) {
+                logger.error("Error al eliminar tokens FCM del dueño {}: {}", ownerId, e.getMessage());
+            }
+        }
+        return delivered;
+    }
+
+    private int sendBatch(long ownerId, List<String> tokens, Map<String, String> data, List<String> dead) {
+        BatchResponse response;
+        try {
+            response = messaging().sendEachForMulticast(MulticastMessage.builder()
+                    .addAllTokens(tokens)
+                    .putAllData(data)
+                    .build());
+        } catch (FirebaseMessagingException e) {
+            failed.increment(tokens.size());
+            logger.error("Error al enviar notificación FCM al dueño {}: {}", ownerId, e.getMessage(), e);
+            return 0;
+        }
+        List<SendResponse> responses = response.getResponses();
+        for (int i = 0; i < responses.size(); i++) {
+            SendResponse result = responses.get(i);
+            if (result.isSuccessful()) {
+                continue;
+            }
+            failed.increment();
+            FirebaseMessagingException error = result.getException();
+            if (isDeadToken(error.getMessagingErrorCode())) {
+                dead.add(tokens.get(i));
+            } else {
+                logger.error("Error al enviar notificación FCM a {}: {}", tokens.get(i), error.getMessage());
+            }
+        }
+        sent.increment(response.getSuccessCount());
+        logger.info("Notificación FCM enviada al dueño {}: {} de {} dispositivos", ownerId,
+                response.getSuccessCount(), tokens.size());
+        return response.getSuccessCount();
+    }
+
+    // Token desinstalado, caducado o de otro proyecto de Firebase: no volverá a funcionar
+    static boolean isDeadToken(MessagingErrorCode code) {
+        return code == MessagingErrorCode.UNREGISTERED || code == MessagingErrorCode.SENDER_ID_MISMATCH;
+    }
+
+    FirebaseMessaging messaging() {
+        return FirebaseMessaging.getInstance();
+    }
+}
@@ -0,0 +1,278 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.util.VitalsDeltaCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.WebsocketServerSpec;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canal en vivo reactivo para paneles: un servidor WebSocket de Reactor Netty en su propio puerto, paralelo al
+ * Tomcat del servicio. Las conexiones no ocupan hilos (un event loop por núcleo) y cuestan unos pocos KB, así
+ * que escala a decenas de miles de paneles donde STOMP/SockJS sobre servlets se queda corto.
+ *
+ * Cada mascota con espectadores tiene un {@link Sinks.Many} multicast; la lectura se serializa una vez y cada
+ * conexión la envuelve sin copiarla. La demanda de cada conexión la marca la escritura en su socket: un panel
+ * lento acumula como mucho {@code buffer-per-connection} lecturas y pierde las más antiguas, sin frenar al resto
+ * ni al pipeline. El sink de una mascota se elimina al irse su último espectador.
+ *
+ * Las conexiones que negocian el subprotocolo {@value VitalsDeltaCodec#PROTOCOL} reciben frames binarios con
+ * deltas en lugar de JSON. Solo se genera la codificación que usa algún espectador de la mascota; al conectarse
+ * se recibe la última lectura (keyframe) y, si el buffer descarta frames, el siguiente vuelve a ser un keyframe.
+ *
+ * Conexión: {@code ws://host:<port><path>?petId=1&petId=2}.
+ */
+@Service
+public class ReactiveLiveFeedService implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveLiveFeedService.class);
+
+    private static final WebsocketServerSpec JSON_SPEC = WebsocketServerSpec.builder().handlePing(true).build();
+    private static final WebsocketServerSpec DELTA_SPEC = WebsocketServerSpec.builder()
+            .protocols(VitalsDeltaCodec.PROTOCOL)
+            .handlePing(true)
+            .build();
+
+    @Value("${app.sensor.reactive-ws.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.sensor.reactive-ws.host:0.0.0.0}")
+    private String host;
+
+    @Value("${app.sensor.reactive-ws.port:8085}")
+    private int port;
+
+    @Value("${app.sensor.reactive-ws.path:/live}")
+    private String path;
+
+    @Value("${app.sensor.reactive-ws.buffer-per-connection:32}")
+    private int bufferPerConnection;
+
+    @Value("${app.sensor.reactive-ws.max-pets-per-connection:50}")
+    private int maxPetsPerConnection;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Long, PetFeed> feeds = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private DisposableServer server;
+    private Counter dropped;
+    private volatile boolean running;
+
+    /** Lectura de una mascota en las codificaciones que usan sus espectadores (json null si nadie la usa). */
+    private record LiveFrame(long petId, byte[] json, VitalsDeltaCodec.Frames frames) {
+    }
+
+    /** Sink de una mascota, su codificador de deltas y cuántas conexiones lo siguen en cada formato. */
+    private static final class PetFeed {
+        final Sinks.Many<LiveFrame> sink = Sinks.many().multicast().directBestEffort();
+        final VitalsDeltaCodec.Encoder encoder;
+        LiveFrame latest;
+        // Protegidos por el compute del mapa y, para que publish los vea coherentes, por el lock del feed
+        int jsonViewers;
+        int deltaViewers;
+
+        PetFeed(long petId) {
+            this.encoder = new VitalsDeltaCodec.Encoder(petId);
+        }
+
+        int viewers() {
+            return jsonViewers + deltaViewers;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            return;
+        }
+        dropped = Counter.builder("vitalpaw.livefeed.dropped")
+                .description("Lecturas descartadas a paneles lentos del canal reactivo")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.livefeed.connections", connections, AtomicInteger::get)
+                .description("Conexiones abiertas al canal en vivo reactivo")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.livefeed.watched.pets", feeds, Map::size)
+                .description("Mascotas con espectadores en el canal reactivo")
+                .register(meterRegistry);
+        server = HttpServer.create()
+                .host(host)
+                .port(port)
+                .route(routes -> routes.get(path, this::upgrade))
+                .bindNow();
+        logger.info("Canal en vivo reactivo escuchando en ws://{}:{}{}", host, server.port(), path);
+    }
+
+    /** Puerto efectivo (útil con {@code port: 0}); -1 si no está en marcha. */
+    public int localPort() {
+        return server != null ? server.port() : -1;
+    }
+
+    private Mono<Void> upgrade(HttpServerRequest request, HttpServerResponse response) {
+        List<Long> petIds = new ArrayList<>();
+        for (String value : new QueryStringDecoder(request.uri()).parameters().getOrDefault("petId", List.of())) {
+            try {
+                long petId = Long.parseLong(value);
+                if (!petIds.contains(petId) && petIds.size() < maxPetsPerConnection) {
+                    petIds.add(petId);
+                }
+            } catch (NumberFormatException e) {
+                // Se ignora: el resto de mascotas sigue siendo válido
+            }
+        }
+        if (petIds.isEmpty()) {
+            return response.status(400).sendString(Mono.just("Se requiere al menos un petId")).then();
+        }
+        // El subprotocolo solo se ofrece a quien lo pide: Reactor Netty no completa el handshake si el servidor
+        // declara subprotocolos y el cliente no envía ninguno
+        String requested = request.requestHeaders().get(HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL);
+        WebsocketServerSpec spec = requested != null && requested.contains(VitalsDeltaCodec.PROTOCOL) ? DELTA_SPEC : JSON_SPEC;
+        return response.sendWebsocket((in, out) -> {
+            boolean delta = VitalsDeltaCodec.PROTOCOL.equals(in.selectedSubprotocol());
+            List<Flux<LiveFrame>> streams = new ArrayList<>(petIds.size());
+            for (long petId : petIds) {
+                PetFeed feed = join(petId, delta);
+                // La última lectura se lee al suscribirse, justo antes de engancharse al sink
+                streams.add(Flux.concat(Mono.fromSupplier(() -> latest(feed)), feed.sink.asFlux()));
+            }
+            connections.incrementAndGet();
+            // Último frame enviado por mascota; solo lo toca el operador map, que recibe las señales en serie
+            Map<Long, Long> lastSeq = new HashMap<>();
+            Flux<WebSocketFrame> frames = Flux.merge(streams)
+                    // Demanda guiada por el socket: lo que no cabe en el buffer se descarta empezando por lo más antiguo
+                    .onBackpressureBuffer(bufferPerConnection, readings -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST)
+                    .<WebSocketFrame>handle((frame, sink) -> {
+                        if (delta) {
+                            // Tras un descarte la secuencia no es consecutiva y forClient devuelve el keyframe
+                            Long last = lastSeq.put(frame.petId(), frame.frames().seq());
+                            sink.next(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(frame.frames().forClient(last != null ? last : -1))));
+                        } else if (frame.json() != null) {
+                            sink.next(new TextWebSocketFrame(Unpooled.wrappedBuffer(frame.json())));
+                        }
+                    })
+                    .takeUntilOther(in.receiveCloseStatus())
+                    .doFinally(signal -> {
+                        connections.decrementAndGet();
+                        petIds.forEach(petId -> leave(petId, delta));
+                    });
+            return out.sendObject(frames).then();
+        }, spec);
+    }
+
+    private PetFeed join(long petId, boolean delta) {
+        return feeds.compute(petId, (id, feed) -> {
+            PetFeed current = feed != null ? feed : new PetFeed(id);
+            synchronized (current) {
+                if (delta) {
+                    current.deltaViewers++;
+                } else {
+                    current.jsonViewers++;
+                }
+            }
+            return current;
+        });
+    }
+
+    private void leave(long petId, boolean delta) {
+        feeds.computeIfPresent(petId, (id, feed) -> {
+            synchronized (feed) {
+                if (delta) {
+                    feed.deltaViewers--;
+                } else {
+                    feed.jsonViewers--;
+                }
+                if (feed.viewers() > 0) {
+                    return feed;
+                }
+                feed.sink.tryEmitComplete();
+                return null;
+            }
+        });
+    }
+
+    private static LiveFrame latest(PetFeed feed) {
+        synchronized (feed) {
+            return feed.latest;
+        }
+    }
+
+    /** Publica la lectura a los espectadores de la mascota; no hace nada (ni serializa) si no hay ninguno. */
+    public void publish(SensorDataResponseDTO data) {
+        PetFeed feed = feeds.get(data.getPetId());
+        if (feed == null) {
+            return;
+        }
+        // Los sinks no admiten emisiones concurrentes; varias lecturas de la misma mascota se serializan aquí,
+        // y el codificador de deltas necesita además que las lecturas le lleguen en orden
+        synchronized (feed) {
+            byte[] json = null;
+            if (feed.jsonViewers > 0) {
+                try {
+                    json = objectMapper.writeValueAsBytes(data);
+                } catch (JsonProcessingException e) {
+                    logger.error("Error al serializar datos de sensor para mascota {}: {}", data.getPetId(), e.getMessage());
+                    return;
+                }
+            }
+            // Los frames binarios se generan siempre: son baratos y dejan listo el keyframe para quien se conecte
+            feed.latest = new LiveFrame(data.getPetId(), json, feed.encoder.encode(data));
+            feed.sink.tryEmitNext(feed.latest);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (server == null) {
+            return;
+        }
+        feeds.values().forEach(feed -> feed.sink.tryEmitComplete());
+        server.disposeNow(Duration.ofSeconds(5));
+        server = null;
+        logger.info("Canal en vivo reactivo detenido");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.INGEST;
+    }
+}
@@ -0,0 +1,20 @@
+package com.vitalpaw.sensoralertservice.service;
+
+/**
+ * Aviso de que una lectura ha terminado de verdad, no solo de entrar en el pipeline: puede quedarse un rato en el
+ * buffer de reordenación de {@link EventTimeService} o en la cola de condensadas de {@link DeviceRateLimiter}.
+ * Lo usan los canales que confirman al origen, como {@link ReadingStreamConsumer}.
+ *
+ * Se llama una sola vez, a menudo con el lock del dispositivo tomado: debe ser rápido y no lanzar excepciones.
+ */
+@FunctionalInterface
+public interface ReadingCompletion {
+
+    ReadingCompletion NONE = failure -> { };
+
+    /**
+     * @param failure null si la lectura se procesó o se descartó a propósito (dispositivo desconocido, rate limit,
+     *                tardía, sustituida por otra condensada); la excepción si falló al procesarla
+     */
+    void completed(RuntimeException failure);
+}
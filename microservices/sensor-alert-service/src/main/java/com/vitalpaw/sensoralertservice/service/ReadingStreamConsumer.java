@@ -0,0 +1,373 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import com.vitalpaw.sensoralertservice.dto.Esp32SensorDataDTO;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Lado procesador del buffer de lecturas en Redis Streams: cada instancia lee del stream como consumidor de un
+ * grupo, así que varias instancias se reparten las lecturas y escalan aparte de los receptores. Cada lectura se
+ * confirma (XACK) cuando {@link SensorProcessingService} avisa de que terminó de procesarla ({@link ReadingCompletion}),
+ * no al volver de {@code ingest}: puede seguir un rato en el buffer de reordenación. Las confirmaciones que llegan
+ * desde ese hilo se agrupan en el siguiente XACK del bucle, que como mucho espera {@code block-ms}. Si la instancia
+ * cae antes, la entrada queda pendiente en el grupo; por eso {@code reclaim-idle-ms} debe ser bastante mayor que el
+ * retraso máximo del buffer.
+ *
+ * Las lecturas del stream no pasan por el rate limit por dispositivo: al recuperar el atraso tras una caída, la
+ * condensación dejaría cada collar en unas pocas lecturas por segundo y confirmaría el resto sin procesarlo. El
+ * ritmo lo marcan {@code read-count} y la cola acotada de los receptores.
+ *
+ * Cada {@code reclaim-interval-ms} se revisan las pendientes con más de {@code reclaim-idle-ms} sin confirmar,
+ * de esta instancia o de otra caída, y se reclaman (XCLAIM) para procesarlas aquí. Las que ya se han entregado
+ * {@code max-deliveries} veces se mueven al stream {@code <key>:dead} para no bloquear el grupo con una lectura
+ * que siempre falla.
+ */
+@Service
+public class ReadingStreamConsumer implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ReadingStreamConsumer.class);
+
+    @Value("${app.sensor.stream.mode:direct}")
+    private String mode;
+
+    @Value("${app.sensor.stream.key:vitalpaw:readings}")
+    private String streamKey;
+
+    @Value("${app.sensor.stream.group:vitalpaw-processors}")
+    private String group;
+
+    @Value("${app.sensor.stream.consumer:${HOSTNAME:sensor-alert}}")
+    private String consumerName;
+
+    @Value("${app.sensor.stream.read-count:256}")
+    private int readCount;
+
+    @Value("${app.sensor.stream.block-ms:2000}")
+    private long blockMs;
+
+    @Value("${app.sensor.stream.reclaim-idle-ms:30000}")
+    private long reclaimIdleMs;
+
+    @Value("${app.sensor.stream.reclaim-interval-ms:10000}")
+    private long reclaimIntervalMs;
+
+    @Value("${app.sensor.stream.max-deliveries:5}")
+    private long maxDeliveries;
+
+    @Value("${app.sensor.stream.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${app.sensor.shutdown.quiesce-timeout-ms:5000}")
+    private long quiesceTimeoutMs;
+
+    @Value("${app.sensor.devices.default-device-id:ESP32_VITALPAW_001}")
+    private String defaultDeviceId;
+
+    @Autowired
+    private SensorProcessingService sensorProcessingService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Entradas terminadas pendientes de XACK; se llenan también desde los hilos del pipeline
+    private final ConcurrentLinkedQueue<RecordId> completed = new ConcurrentLinkedQueue<>();
+    private StreamOperations<String, Object, Object> stream;
+    private Consumer consumer;
+    private Thread loop;
+    private Counter processed;
+    private Counter malformed;
+    private Counter failed;
+    private Counter reclaimed;
+    private Counter deadLettered;
+    private volatile boolean running;
+
+    public boolean isEnabled() {
+        return "processor".equalsIgnoreCase(mode) || "both".equalsIgnoreCase(mode);
+    }
+
+    @PostConstruct
+    public void init() {
+        stream = redisTemplate.opsForStream();
+        consumer = Consumer.from(group, consumerName);
+        processed = Counter.builder("vitalpaw.stream.processed")
+                .description("Lecturas del stream procesadas y confirmadas")
+                .register(meterRegistry);
+        malformed = Counter.builder("vitalpaw.stream.malformed")
+                .description("Entradas del stream con payload inválido (se confirman sin procesar)")
+                .register(meterRegistry);
+        failed = Counter.builder("vitalpaw.stream.failed")
+                .description("Lecturas del stream que fallaron al procesar y quedan pendientes")
+                .register(meterRegistry);
+        reclaimed = Counter.builder("vitalpaw.stream.reclaimed")
+                .description("Entradas pendientes reclamadas a consumidores inactivos")
+                .register(meterRegistry);
+        deadLettered = Counter.builder("vitalpaw.stream.dead")
+                .description("Entradas movidas al stream de descartes tras agotar las entregas")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!isEnabled()) {
+            return;
+        }
+        loop = new Thread(this::run, "stream-consumer");
+        loop.setDaemon(true);
+        loop.start();
+        logger.info("Consumiendo el stream '{}' en el grupo '{}' como '{}'", streamKey, group, consumerName);
+    }
+
+    private void run() {
+        boolean groupReady = false;
+        long nextReclaim = 0;
+        while (running) {
+            try {
+                if (!groupReady) {
+                    ensureGroup();
+                    groupReady = true;
+                }
+                if (System.currentTimeMillis() >= nextReclaim) {
+                    reclaim();
+                    nextReclaim = System.currentTimeMillis() + reclaimIntervalMs;
+                }
+                pollOnce();
+            } catch (DataAccessException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Error al leer el stream '{}': {}", streamKey, e.getMessage());
+                try {
+                    Thread.sleep(retryBackoffMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    void ensureGroup() {
+        try {
+            // Desde el principio: un grupo nuevo también procesa lo que los receptores ya escribieron
+            stream.createGroup(streamKey, ReadOffset.from("0"), group);
+        } catch (DataAccessException e) {
+            if (!String.valueOf(e.getMostSpecificCause().getMessage()).contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /** Lee y procesa un lote de entradas nuevas; devuelve cuántas se confirmaron. */
+    int pollOnce() {
+        List<MapRecord<String, Object, Object>> records = stream.read(consumer,
+                StreamReadOptions.empty().count(readCount).block(Duration.ofMillis(blockMs)),
+                StreamOffset.create(streamKey, ReadOffset.lastConsumed()));
+        return handle(records);
+    }
+
+    /** Reclama y procesa las entradas pendientes abandonadas; devuelve cuántas se confirmaron. */
+    int reclaim() {
+        PendingMessages pending = stream.pending(streamKey, group, Range.unbounded(), readCount);
+        List<RecordId> stale = new ArrayList<>();
+        List<RecordId> exhausted = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() < reclaimIdleMs) {
+                continue;
+            }
+            (message.getTotalDeliveryCount() >= maxDeliveries ? exhausted : stale).add(message.getId());
+        }
+        if (!exhausted.isEmpty()) {
+            deadLetter(exhausted);
+        }
+        if (stale.isEmpty()) {
+            return 0;
+        }
+        // XCLAIM vuelve a comprobar el tiempo inactivo: si otra instancia la reclamó antes, no se devuelve aquí
+        List<MapRecord<String, Object, Object>> records = stream.claim(streamKey, group, consumerName,
+                XClaimOptions.minIdle(Duration.ofMillis(reclaimIdleMs)).ids(stale.toArray(RecordId[]::new)));
+        reclaimed.increment(records.size());
+        if (!records.isEmpty()) {
+            logger.info("Reclamadas {} lecturas pendientes del stream '{}'", records.size(), streamKey);
+        }
+        return handle(records);
+    }
+
+    private void deadLetter(List<RecordId> ids) {
+        List<MapRecord<String, Object, Object>> records = stream.claim(streamKey, group, consumerName,
+                XClaimOptions.minIdle(Duration.ofMillis(reclaimIdleMs)).ids(ids.toArray(RecordId[]::new)));
+        for (MapRecord<String, Object, Object> record : records) {
+            stream.add(streamKey + ":dead", record.getValue());
+            stream.acknowledge(streamKey, group, record.getId());
+            deadLettered.increment();
+            logger.error("Lectura {} del stream '{}' descartada tras {} entregas", record.getId(), streamKey, maxDeliveries);
+        }
+    }
+
+    private int handle(List<MapRecord<String, Object, Object>> records) {
+        if (records != null && !records.isEmpty()) {
+            List<RecordId> ids = new ArrayList<>(records.size());
+            List<SensorReading> readings = new ArrayList<>(records.size());
+            Set<String> deviceIds = new HashSet<>();
+            for (MapRecord<String, Object, Object> record : records) {
+                SensorReading reading = parse(record.getId(), record.getValue());
+                if (reading != null) {
+                    ids.add(record.getId());
+                    readings.add(reading);
+                    deviceIds.add(reading.deviceId());
+                }
+            }
+            // Tras un arranque o una reclamación el lote trae muchos collares sin contexto cacheado
+            try {
+                sensorProcessingService.prefetchContexts(deviceIds);
+            } catch (RuntimeException e) {
+                logger.warn("No se pudieron precargar los contextos del lote: {}", e.getMessage());
+            }
+            for (int i = 0; i < readings.size(); i++) {
+                process(ids.get(i), readings.get(i));
+            }
+        }
+        // También con lotes vacíos: recoge las lecturas que salieron del buffer desde la última vuelta
+        return acknowledgeCompleted();
+    }
+
+    /** Confirma con un solo XACK las entradas ya terminadas; devuelve cuántas. */
+    int acknowledgeCompleted() {
+        List<RecordId> done = new ArrayList<>();
+        for (RecordId id; (id = completed.poll()) != null; ) {
+            done.add(id);
+        }
+        if (done.isEmpty()) {
+            return 0;
+        }
+        try {
+            stream.acknowledge(streamKey, group, done.toArray(RecordId[]::new));
+        } catch (DataAccessException e) {
+            // Se reintentan en la siguiente vuelta
+            completed.addAll(done);
+            throw e;
+        }
+        processed.increment(done.size());
+        return done.size();
+    }
+
+    // Una entrada irrecuperable se confirma aquí y devuelve null
+    private SensorReading parse(RecordId id, Map<Object, Object> fields) {
+        Object payload = fields.get(ReadingStreamPublisher.PAYLOAD_FIELD);
+        if (payload == null) {
+            malformed.increment();
+            completed.add(id);
+            return null;
+        }
+        SensorReading reading;
+        try {
+            Esp32SensorDataDTO esp32Data = objectMapper.readValue(payload.toString(), Esp32SensorDataDTO.class);
+            reading = SensorReading.fromEsp32(esp32Data, defaultDeviceId);
+            Object receivedAt = fields.get(ReadingStreamPublisher.RECEIVED_FIELD);
+            if (esp32Data.getTs() == null && receivedAt != null) {
+                // Sin marca del collar: cuenta la hora de recepción, no la de proceso
+                reading = reading.withTimestamp(Long.parseLong(receivedAt.toString()));
+            }
+        } catch (JsonProcessingException | NumberFormatException e) {
+            malformed.increment();
+            logger.error("Entrada inválida en el stream '{}': {}", streamKey, e.getMessage());
+            completed.add(id);
+            return null;
+        }
+        return reading;
+    }
+
+    // Se confirma la entrada cuando termine de procesarse; si falla, queda pendiente
+    private void process(RecordId id, SensorReading reading) {
+        try {
+            sensorProcessingService.ingest(reading, false, failure -> {
+                if (failure == null) {
+                    completed.add(id);
+                } else {
+                    // El error ya lo registró el pipeline
+                    failed.increment();
+                }
+            });
+        } catch (RuntimeException e) {
+            failed.increment();
+            logger.error("Error al procesar la lectura de '{}' del stream: {}", reading.deviceId(), e.getMessage(), e);
+        }
+    }
+
+    /** Primer paso del apagado: deja de leer; lo leído y sin confirmar lo reclama otra instancia. */
+    @Override
+    public void stop() {
+        running = false;
+        if (loop == null) {
+            return;
+        }
+        try {
+            // La lectura bloqueante termina como mucho en block-ms
+            loop.join(blockMs + quiesceTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tras vaciar el pipeline en el apagado, confirma lo que terminó después de parar el bucle. Si Redis ya no
+     * responde, esas entradas se reclaman y se vuelven a procesar en otra instancia.
+     */
+    @PreDestroy
+    public void flushAcknowledgements() {
+        try {
+            int acked = acknowledgeCompleted();
+            if (acked > 0) {
+                logger.info("Confirmadas {} lecturas del stream '{}' al apagar", acked, streamKey);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("No se pudieron confirmar {} lecturas del stream '{}' al apagar: {}",
+                    completed.size(), streamKey, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.INGEST;
+    }
+}
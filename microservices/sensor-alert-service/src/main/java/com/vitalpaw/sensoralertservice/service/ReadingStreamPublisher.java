@@ -0,0 +1,239 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lado receptor del buffer de lecturas en Redis Streams (DragonFly en producción): los canales de entrada dejan
+ * aquí el payload crudo y un hilo lo añade al stream en lotes de hasta {@code batch-size} entradas con un solo
+ * pipeline (un viaje de red por lote). Tras escribir el lote se llama al {@code onStored} de cada entrada; MQTT
+ * lo usa para confirmar el mensaje al broker solo cuando ya está en el stream.
+ *
+ * Si Redis no responde el lote se reintenta sin confirmar nada y la cola se llena; entonces {@link #publish}
+ * espera hasta {@code offer-timeout-ms} y MQTT vuelve a intentarlo, lo que frena la recepción en lugar de perder
+ * lecturas. Solo se pierden las que siguen sin escribir al detener la instancia: el broker no las reentrega.
+ * Las entradas llevan el payload ({@code p}) y la hora de recepción ({@code r}) para las lecturas sin marca de
+ * tiempo. Las consume {@link ReadingStreamConsumer}.
+ */
+@Service
+public class ReadingStreamPublisher implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ReadingStreamPublisher.class);
+
+    static final String PAYLOAD_FIELD = "p";
+    static final String RECEIVED_FIELD = "r";
+
+    @Value("${app.sensor.stream.mode:direct}")
+    private String mode;
+
+    @Value("${app.sensor.stream.key:vitalpaw:readings}")
+    private String streamKey;
+
+    // Recorte aproximado (MAXLEN ~): acota la memoria de Redis si los procesadores se quedan muy atrás
+    @Value("${app.sensor.stream.max-length:1000000}")
+    private long maxLength;
+
+    @Value("${app.sensor.stream.batch-size:256}")
+    private int batchSize;
+
+    // Espera máxima para completar un lote antes de enviarlo
+    @Value("${app.sensor.stream.linger-ms:5}")
+    private long lingerMs;
+
+    @Value("${app.sensor.stream.queue-capacity:20000}")
+    private int queueCapacity;
+
+    @Value("${app.sensor.stream.offer-timeout-ms:1000}")
+    private long offerTimeoutMs;
+
+    @Value("${app.sensor.stream.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${app.sensor.shutdown.drain-timeout-ms:10000}")
+    private long drainTimeoutMs;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private record Entry(String payload, long receivedAt, Runnable onStored) {
+    }
+
+    private BlockingQueue<Entry> queue;
+    private Thread flusher;
+    private Counter appended;
+    private Counter dropped;
+    private Counter failures;
+    private Timer batchTimer;
+    private volatile boolean running;
+
+    /** true si los canales de entrada deben escribir en el stream en lugar de procesar directamente. */
+    public boolean isEnabled() {
+        return "receiver".equalsIgnoreCase(mode) || "both".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Encola el payload para el siguiente lote. Devuelve false, sin llamar a {@code onStored}, si la cola sigue
+     * llena tras {@code offer-timeout-ms}.
+     */
+    public boolean publish(String payload, long receivedAt, Runnable onStored) {
+        try {
+            if (queue.offer(new Entry(payload, receivedAt, onStored), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.increment();
+        return false;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!isEnabled()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        appended = Counter.builder("vitalpaw.stream.appended")
+                .description("Lecturas añadidas al stream de Redis")
+                .register(meterRegistry);
+        dropped = Counter.builder("vitalpaw.stream.dropped")
+                .description("Esperas agotadas con la cola hacia el stream llena")
+                .register(meterRegistry);
+        failures = Counter.builder("vitalpaw.stream.append.failures")
+                .description("Lotes que fallaron al escribir en Redis y se reintentan")
+                .register(meterRegistry);
+        batchTimer = Timer.builder("vitalpaw.stream.append.batch")
+                .description("Tiempo de escritura de un lote en el stream")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.stream.publish.queue", queue, BlockingQueue::size)
+                .description("Lecturas pendientes de escribir en el stream")
+                .register(meterRegistry);
+        flusher = new Thread(this::run, "stream-publisher");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("Lecturas al stream '{}' en lotes de hasta {}", streamKey, batchSize);
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long lingerDeadline = System.nanoTime() + lingerMs * 1_000_000;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                        long remaining = lingerDeadline - System.nanoTime();
+                        Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                writeWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeWithRetry(List<Entry> batch) throws InterruptedException {
+        while (true) {
+            try {
+                append(batch);
+                break;
+            } catch (DataAccessException e) {
+                failures.increment();
+                if (!running) {
+                    // Sin confirmar, pero con cleanSession=true el broker no las reentrega: se pierden
+                    logger.error("Lote de {} lecturas perdido: sin escribir en el stream al detener: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                logger.warn("Error al escribir {} lecturas en el stream, reintentando: {}", batch.size(), e.getMessage());
+                Thread.sleep(retryBackoffMs);
+            }
+        }
+        for (Entry entry : batch) {
+            if (entry.onStored() != null) {
+                entry.onStored().run();
+            }
+        }
+    }
+
+    void append(List<Entry> batch) {
+        byte[] key = streamKey.getBytes(StandardCharsets.UTF_8);
+        byte[] payloadField = PAYLOAD_FIELD.getBytes(StandardCharsets.UTF_8);
+        byte[] receivedField = RECEIVED_FIELD.getBytes(StandardCharsets.UTF_8);
+        XAddOptions options = XAddOptions.maxlen(maxLength).approximateTrimming(true);
+        batchTimer.record(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Entry entry : batch) {
+                MapRecord<byte[], byte[], byte[]> record = StreamRecords.newRecord().in(key).ofMap(Map.of(
+                        payloadField, entry.payload().getBytes(StandardCharsets.UTF_8),
+                        receivedField, Long.toString(entry.receivedAt()).getBytes(StandardCharsets.UTF_8)));
+                connection.streamCommands().xAdd(record, options);
+            }
+            return null;
+        }));
+        appended.increment(batch.size());
+    }
+
+    /** Con los receptores ya detenidos, escribe lo que quede en la cola dentro del plazo de drenaje. */
+    @Override
+    public void stop() {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        try {
+            flusher.join(drainTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+            logger.warn("{} lecturas perdidas: sin escribir en el stream al detener", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.PROCESSING;
+    }
+}
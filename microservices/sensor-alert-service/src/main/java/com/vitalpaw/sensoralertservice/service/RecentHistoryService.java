@@ -0,0 +1,171 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.dto.VitalsSnapshotDTO;
+import com.vitalpaw.sensoralertservice.util.RecentVitalsTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+/**
+ * Histórico reciente por mascota para que quien se suscribe a {@code /topic/sensores/{petId}} vea datos al
+ * momento en lugar de esperar a la siguiente lectura. Las lecturas se guardan en una {@link RecentVitalsTable}
+ * preasignada, con tantas ranuras como dispositivos activos más un margen (o {@code max-devices} fijo). Las ranuras
+ * de mascotas sin lecturas durante {@code reclaim-after-ms} pasan a las que llegan cuando la tabla está llena.
+ *
+ * Al suscribirse, la sesión recibe solo en esa suscripción la última lectura con el mismo formato que las
+ * siguientes. Si el SUBSCRIBE lleva la cabecera {@code history: true} (o un número de muestras) recibe en su
+ * lugar un {@link VitalsSnapshotDTO} con la ventana reciente en columnas. Ambos llevan la cabecera
+ * {@code vitalpaw-snapshot: true}.
+ */
+@Service
+public class RecentHistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(RecentHistoryService.class);
+
+    private static final String TOPIC_PREFIX = "/topic/sensores/";
+
+    @Value("${app.sensor.recent-history.depth:60}")
+    private int depth;
+
+    // 0 = dimensionar con los dispositivos activos al arrancar
+    @Value("${app.sensor.recent-history.max-devices:0}")
+    private int maxDevices;
+
+    @Value("${app.sensor.recent-history.min-devices:1024}")
+    private int minDevices;
+
+    @Value("${app.sensor.recent-history.headroom:1.25}")
+    private double headroom;
+
+    @Value("${app.sensor.recent-history.reclaim-after-ms:600000}")
+    private long reclaimAfterMs;
+
+    @Autowired
+    private DeviceRegistryService deviceRegistryService;
+
+    @Autowired
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private RecentVitalsTable table;
+    private Counter untracked;
+    private Counter snapshots;
+
+    @PostConstruct
+    public void init() {
+        int slots = maxDevices > 0 ? maxDevices
+                : (int) Math.min(Integer.MAX_VALUE / Math.max(1, depth),
+                        Math.max(minDevices, Math.ceil(deviceRegistryService.knownCount() * headroom)));
+        table = new RecentVitalsTable(slots, depth, reclaimAfterMs);
+        untracked = Counter.builder("vitalpaw.history.recent.untracked")
+                .description("Lecturas sin histórico reciente por falta de ranuras libres")
+                .register(meterRegistry);
+        snapshots = Counter.builder("vitalpaw.history.recent.snapshots")
+                .description("Estados recientes enviados al suscribirse")
+                .register(meterRegistry);
+        Gauge.builder("vitalpaw.history.recent.slots.used", table, RecentVitalsTable::usedSlots)
+                .description("Mascotas con histórico reciente en memoria")
+                .register(meterRegistry);
+        FunctionCounter.builder("vitalpaw.history.recent.slots.reclaimed", table, RecentVitalsTable::reclaimedSlots)
+                .description("Ranuras recuperadas de mascotas sin lecturas recientes")
+                .register(meterRegistry);
+        logger.info("Histórico reciente: {} ranuras de {} lecturas ({} KB preasignados)",
+                slots, depth, RecentVitalsTable.footprintBytes(slots, depth) / 1024);
+    }
+
+    public void record(DeviceContext device, long timestampMillis, float temperature, int pulse, String status, Float activity) {
+        if (!table.record(device.petId(), device.deviceId(), timestampMillis, temperature, pulse, status, activity)) {
+            untracked.increment();
+        }
+    }
+
+    /**
+     * Lectura de una sesión grabada: solo entra si es posterior a la última que hay en memoria, para que el relleno
+     * no reinicie el histórico reciente de un collar que sigue enviando en vivo.
+     */
+    public void backfill(DeviceContext device, long timestampMillis, float temperature, int pulse, String status,
+            Float activity) {
+        VitalsSnapshotDTO latest = table.snapshot(device.petId(), 0);
+        if (latest == null || timestampMillis > latest.latestTimestamp()) {
+            record(device, timestampMillis, temperature, pulse, status, activity);
+        }
+    }
+
+    /** Última lectura y hasta {@code samples} anteriores; null si la mascota no tiene lecturas recientes. */
+    public VitalsSnapshotDTO snapshot(long petId, int samples) {
+        return table.snapshot(petId, Math.min(samples, depth));
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = subscribe.getDestination();
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return;
+        }
+        long petId;
+        try {
+            petId = Long.parseLong(destination.substring(TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        int samples = historySamples(subscribe.getFirstNativeHeader("history"));
+        VitalsSnapshotDTO snapshot = table.snapshot(petId, samples);
+        if (snapshot == null) {
+            return;
+        }
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(samples > 0 ? snapshot : snapshot.latest());
+        } catch (JsonProcessingException e) {
+            logger.error("Error al serializar el estado reciente de la mascota {}: {}", petId, e.getMessage());
+            return;
+        }
+        // Directo al canal de salida de la sesión: solo lo recibe esta suscripción, no el resto del tópico
+        SimpMessageHeaderAccessor message = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        message.setSessionId(subscribe.getSessionId());
+        message.setSubscriptionId(subscribe.getSubscriptionId());
+        message.setDestination(destination);
+        message.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        message.setNativeHeader("vitalpaw-snapshot", "true");
+        message.setLeaveMutable(true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(payload, message.getMessageHeaders()));
+        snapshots.increment();
+    }
+
+    // "true" = toda la ventana; un número = como mucho esas muestras; ausente o inválido = solo la última lectura
+    private int historySamples(String header) {
+        if (header == null) {
+            return 0;
+        }
+        if ("true".equalsIgnoreCase(header)) {
+            return depth;
+        }
+        try {
+            return Math.max(0, Math.min(depth, Integer.parseInt(header.trim())));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Control adaptativo de la frecuencia de muestreo de cada collar. Cada lectura procesada actualiza el nivel
+ * deseado del dispositivo (bajo si la mascota descansa con constantes holgadas, alto si está cerca de un umbral
+ * o ha alertado hace poco) y un bucle periódico publica los cambios por el canal de bajada y reintenta los que
+ * el collar no confirma. Subir de nivel es inmediato; bajar exige que el nivel deseado se mantenga un tiempo,
+ * para no oscilar.
+ *
+ * Protocolo: comando {@code {"seq": n, "interval_ms": x}} retenido en {@code .../config}; el collar responde con
+ * el mismo {@code seq} en {@code .../ack}. Los firmwares que no lo soportan nunca confirman y siguen a su ritmo.
+ */
+@Service
+public class SamplingRateService {
+    private static final Logger logger = LoggerFactory.getLogger(SamplingRateService.class);
+
+    public enum Tier { LOW, NORMAL, HIGH }
+
+    @Value("${app.sensor.sampling.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.sampling.low-interval-ms:30000}")
+    private long lowIntervalMs;
+
+    @Value("${app.sensor.sampling.normal-interval-ms:5000}")
+    private long normalIntervalMs;
+
+    @Value("${app.sensor.sampling.high-interval-ms:1000}")
+    private long highIntervalMs;
+
+    // Margen respecto a los umbrales a partir del cual se sube al nivel alto
+    @Value("${app.sensor.sampling.temperature-margin:0.3}")
+    private float temperatureMargin;
+
+    @Value("${app.sensor.sampling.pulse-margin:10}")
+    private int pulseMargin;
+
+    // Tiempo en nivel alto tras la última alerta del dispositivo
+    @Value("${app.sensor.sampling.alert-hold-ms:600000}")
+    private long alertHoldMs;
+
+    // Tiempo que debe mantenerse un nivel inferior antes de bajar
+    @Value("${app.sensor.sampling.downgrade-dwell-ms:300000}")
+    private long downgradeDwellMs;
+
+    @Value("${app.sensor.sampling.ack-timeout-ms:15000}")
+    private long ackTimeoutMs;
+
+    @Value("${app.sensor.sampling.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.sensor.thresholds.maxTemperature}")
+    private float maxTemperature;
+
+    @Value("${app.sensor.thresholds.maxHeartRate}")
+    private int maxHeartRate;
+
+    @Autowired
+    private MqttDownlinkService downlink;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, DeviceRate> devices = new ConcurrentHashMap<>();
+    private final Map<Tier, Counter> commands = new EnumMap<>(Tier.class);
+    private Counter acks;
+    private Counter unacknowledged;
+
+    private static final class DeviceRate {
+        Tier desired = Tier.NORMAL;
+        long desiredSince;
+        long lastAlertAt = Long.MIN_VALUE;
+        Tier commanded = Tier.NORMAL;   // Se asume el ritmo por defecto del firmware hasta el primer comando
+        Tier acknowledged;              // null = el dispositivo aún no ha confirmado ningún comando
+        int seq;
+        boolean pending;
+        long sentAt;
+        int attempts;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (Tier tier : Tier.values()) {
+            commands.put(tier, Counter.builder("vitalpaw.sampling.commands")
+                    .description("Comandos de frecuencia de muestreo publicados")
+                    .tag("tier", tier.name())
+                    .register(meterRegistry));
+            Gauge.builder("vitalpaw.sampling.devices", devices, d -> d.values().stream().filter(s -> s.acknowledged == tier).count())
+                    .description("Dispositivos que han confirmado cada nivel de muestreo")
+                    .tag("tier", tier.name())
+                    .register(meterRegistry);
+        }
+        acks = Counter.builder("vitalpaw.sampling.acks")
+                .description("Confirmaciones de comandos de muestreo recibidas")
+                .register(meterRegistry);
+        unacknowledged = Counter.builder("vitalpaw.sampling.unacknowledged")
+                .description("Comandos de muestreo sin confirmar tras agotar los reintentos")
+                .register(meterRegistry);
+        downlink.setAckListener(this::onAck);
+    }
+
+    /** Actualiza el nivel deseado del dispositivo a partir de la lectura recién procesada. */
+    public void observe(DeviceContext device, long now, float temperature, int pulse, String status, boolean alerting) {
+        if (!enabled) {
+            return;
+        }
+        Tier target = classify(device, temperature, pulse, status);
+        DeviceRate state = devices.computeIfAbsent(device.deviceId(), id -> new DeviceRate());
+        synchronized (state) {
+            if (alerting) {
+                state.lastAlertAt = now;
+            }
+            if (state.lastAlertAt != Long.MIN_VALUE && now - state.lastAlertAt < alertHoldMs) {
+                target = Tier.HIGH;
+            }
+            if (target != state.desired) {
+                state.desired = target;
+                state.desiredSince = now;
+            }
+        }
+    }
+
+    Tier classify(DeviceContext device, float temperature, int pulse, String status) {
+        boolean nearThreshold;
+        if (device.hasBreedThresholds()) {
+            nearThreshold = temperature >= device.maxTemperature() - temperatureMargin
+                    || temperature <= device.minTemperature() + temperatureMargin
+                    || pulse >= device.maxHeartRate() - pulseMargin
+                    || pulse <= device.minHeartRate() + pulseMargin;
+        } else {
+            nearThreshold = temperature >= maxTemperature - temperatureMargin || pulse >= maxHeartRate - pulseMargin;
+        }
+        if (nearThreshold || MotionAnalysisService.FALL.equalsIgnoreCase(status)) {
+            return Tier.HIGH;
+        }
+        if (MotionAnalysisService.IMMOBILE.equalsIgnoreCase(status) || MotionAnalysisService.LOW_ACTIVITY.equalsIgnoreCase(status)) {
+            return Tier.LOW;
+        }
+        return Tier.NORMAL;
+    }
+
+    // Bucle de control: publica los cambios de nivel y reintenta los comandos sin confirmar
+    @Scheduled(fixedDelayString = "${app.sensor.sampling.control-interval-ms:1000}")
+    public void control() {
+        if (!enabled || !downlink.isConnected()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        devices.forEach((deviceId, state) -> {
+            byte[] payload = null;
+            synchronized (state) {
+                boolean upgrade = state.desired.ordinal() > state.commanded.ordinal();
+                boolean downgrade = state.desired.ordinal() < state.commanded.ordinal()
+                        && now - state.desiredSince >= downgradeDwellMs;
+                if (upgrade || downgrade) {
+                    state.commanded = state.desired;
+                    state.seq++;
+                    state.pending = true;
+                    state.attempts = 0;
+                    payload = command(state);
+                } else if (state.pending && now - state.sentAt >= ackTimeoutMs) {
+                    if (state.attempts >= maxAttempts) {
+                        state.pending = false;
+                        unacknowledged.increment();
+                        logger.debug("El dispositivo {} no confirmó el nivel {} tras {} intentos", deviceId, state.commanded, state.attempts);
+                        return;
+                    }
+                    payload = command(state);
+                }
+                if (payload != null) {
+                    state.sentAt = now;
+                    state.attempts++;
+                }
+            }
+            if (payload != null && downlink.publishConfig(deviceId, payload)) {
+                commands.get(state.commanded).increment();
+            }
+        });
+    }
+
+    private byte[] command(DeviceRate state) {
+        return String.format("{\"seq\":%d,\"interval_ms\":%d}", state.seq, intervalFor(state.commanded))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    public long intervalFor(Tier tier) {
+        return switch (tier) {
+            case LOW -> lowIntervalMs;
+            case NORMAL -> normalIntervalMs;
+            case HIGH -> highIntervalMs;
+        };
+    }
+
+    void onAck(String deviceId, byte[] payload) {
+        DeviceRate state = devices.get(deviceId);
+        if (state == null) {
+            return;
+        }
+        JsonNode ack;
+        try {
+            ack = objectMapper.readTree(payload);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("JSON inválido", e);
+        }
+        synchronized (state) {
+            // Solo cuenta la confirmación del último comando; las de comandos anteriores llegan tarde
+            if (state.pending && ack.path("seq").asInt(-1) == state.seq) {
+                state.pending = false;
+                state.acknowledged = state.commanded;
+                acks.increment();
+            }
+        }
+    }
+
+    /** Nivel confirmado por el dispositivo (null si no ha confirmado ninguno). */
+    public Tier acknowledgedTier(String deviceId) {
+        DeviceRate state = devices.get(deviceId);
+        return state != null ? state.acknowledged : null;
+    }
+}
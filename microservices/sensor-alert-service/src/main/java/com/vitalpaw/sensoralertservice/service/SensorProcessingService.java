@@ -0,0 +1,425 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import com.vitalpaw.sensoralertservice.controller.SensorWebSocketHandler;
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Pipeline común de procesamiento de lecturas: admisión (filtro de dispositivos, contexto y rate limit),
+ * evaluación de alertas (umbrales de raza y línea base de la mascota) y difusión por WebSocket.
+ * Cualquier canal de ingesta (MQTT u otros) entrega aquí sus lecturas ya normalizadas.
+ */
+@Service
+public class SensorProcessingService implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(SensorProcessingService.class);
+
+    @Value("${app.sensor.thresholds.maxTemperature}")
+    private float maxTemperature;
+
+    @Value("${app.sensor.thresholds.maxHeartRate}")
+    private int maxHeartRate;
+
+    // BOTH: umbrales de raza y línea base alertan por separado. BASELINE_PRIORITY: ver process()
+    @Value("${app.sensor.baseline.mode:BOTH}")
+    private String baselineMode;
+
+    @Value("${app.sensor.shutdown.drain-timeout-ms:10000}")
+    private long drainTimeoutMs;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private SensorWebSocketHandler sensorWebSocketHandler;
+
+    @Autowired
+    private ReactiveLiveFeedService reactiveLiveFeedService;
+
+    @Autowired
+    private LiveEventStreamService liveEventStreamService;
+
+    @Autowired
+    private RecentHistoryService recentHistoryService;
+
+    @Autowired
+    private LiveStateService liveStateService;
+
+    @Autowired
+    private AlertService alertService;
+
+    @Autowired
+    private AdaptiveBaselineService adaptiveBaselineService;
+
+    @Autowired
+    private TrendDetectionService trendDetectionService;
+
+    @Autowired
+    private TemporalPatternService temporalPatternService;
+
+    @Autowired
+    private MotionAnalysisService motionAnalysisService;
+
+    @Autowired
+    private AlertCaptureService alertCaptureService;
+
+    @Autowired
+    private TimeSeriesStore timeSeriesStore;
+
+    @Autowired
+    private SamplingRateService samplingRateService;
+
+    @Autowired
+    private DeviceRegistryService deviceRegistryService;
+
+    @Autowired
+    private DeviceContextService deviceContextService;
+
+    @Autowired
+    private DeviceRateLimiter deviceRateLimiter;
+
+    @Autowired
+    private EventTimeService eventTimeService;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        // Las lecturas admitidas pasan por el reordenamiento en tiempo de evento antes de evaluarse
+        eventTimeService.setHandlers(this::process, (device, reading, broadcast) -> processLate(device, reading));
+        // Una lectura condensada que otra sustituye no llega al pipeline, pero su caída o umbral sí alertan
+        deviceRateLimiter.setSupersededHandler((device, reading, done) -> {
+            try {
+                statelessAlerts(device, reading, "");
+            } catch (RuntimeException e) {
+                logger.error("Error al evaluar la lectura condensada de {}: {}", device.deviceId(), e.getMessage(), e);
+                done.completed(e);
+                return;
+            }
+            done.completed(null);
+        });
+    }
+
+    public void ingest(SensorReading reading) {
+        ingest(reading, true);
+    }
+
+    /**
+     * Entrada común de todos los canales. Con {@code rateLimited} a false no se aplica el rate limit por
+     * dispositivo: lo usan las cargas por lotes, que ya se regulan por petición. Devuelve false si la lectura
+     * se descartó por dispositivo desconocido.
+     */
+    public boolean ingest(SensorReading reading, boolean rateLimited) {
+        return ingest(reading, rateLimited, ReadingCompletion.NONE);
+    }
+
+    /**
+     * Como {@link #ingest(SensorReading, boolean)}, avisando a {@code done} cuando la lectura termina de verdad:
+     * procesada al salir del buffer de reordenación o de la cola de condensadas, descartada a propósito o fallida.
+     * Si la llamada lanza una excepción, {@code done} no se usa.
+     */
+    public boolean ingest(SensorReading reading, boolean rateLimited, ReadingCompletion done) {
+        String deviceId = reading.deviceId();
+        DeviceContext device = resolveDevice(deviceId);
+        if (device == null) {
+            done.completed(null);
+            return false;
+        }
+
+        if (!rateLimited) {
+            eventTimeService.submit(device, reading, true, done);
+            return true;
+        }
+        switch (deviceRateLimiter.admit(device, reading, done)) {
+            case ACCEPT -> eventTimeService.submit(device, reading, true, done);
+            // El exceso no toca el estado acumulado: solo umbrales y caída, como las lecturas tardías
+            case ALERT_ONLY -> {
+                statelessAlerts(device, reading, "");
+                done.completed(null);
+            }
+            // Condensada: el limitador guarda done con la lectura
+            case DEFERRED -> logger.debug("Lectura de '{}' condensada por el rate limit.", deviceId);
+            default -> {
+                logger.debug("Lectura de '{}' descartada por el rate limit.", deviceId);
+                done.completed(null);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lectura de una sesión grabada que se sube después (relleno): solo se guarda en el histórico (serie temporal
+     * e histórico reciente). No pasa por el reordenamiento ni por el estado en vivo, no alerta ni se difunde, y no
+     * alimenta líneas base ni tendencias, así que el collar puede seguir enviando en vivo mientras tanto.
+     * Devuelve false si la lectura se descartó por dispositivo desconocido.
+     */
+    public boolean backfill(SensorReading reading) {
+        DeviceContext device = resolveDevice(reading.deviceId());
+        if (device == null) {
+            return false;
+        }
+        MotionAnalysisService.Motion motion = analyzeMotion(reading);
+        String status = motion != null ? motion.status() : reading.status();
+        long timestamp = reading.timestampMillis();
+        timeSeriesStore.backfill(device.petId(), timestamp, reading.temperature(), reading.pulse());
+        recentHistoryService.backfill(device, timestamp, reading.temperature(), reading.pulse(), status,
+                motion != null ? motion.activity() : null);
+        return true;
+    }
+
+    /** Cierra una carga de relleno: sella sus bloques de la serie temporal para que se escriban en el próximo flush. */
+    public void finishBackfill() {
+        timeSeriesStore.sealBackfill();
+    }
+
+    /**
+     * Carga de una vez los contextos que falten de un lote de lecturas (solo de dispositivos que pasan el filtro),
+     * para que el lote no haga una consulta por dispositivo nuevo en la caché.
+     */
+    public void prefetchContexts(Collection<String> deviceIds) {
+        List<String> known = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds) {
+            if (deviceRegistryService.mightBeKnown(deviceId)) {
+                known.add(deviceId);
+            }
+        }
+        if (!known.isEmpty()) {
+            deviceContextService.resolveAll(known);
+        }
+    }
+
+    // Registro en memoria y contexto cacheado; null si el dispositivo no se acepta
+    private DeviceContext resolveDevice(String deviceId) {
+        // Filtro en memoria: los IDs desconocidos se descartan sin consultar la base de datos
+        if (!deviceRegistryService.isKnown(deviceId)) {
+            logger.debug("Dispositivo '{}' no registrado. Mensaje descartado.", deviceId);
+            return null;
+        }
+
+        // Una sola consulta JOIN (cacheada) con solo los campos que necesita el flujo de alertas
+        Optional<DeviceContext> optionalContext = deviceContextService.resolve(deviceId);
+        if (optionalContext.isEmpty()) {
+            // Falso positivo del filtro o dispositivo dado de baja: debe aprovisionarse explícitamente
+            deviceRegistryService.reject(deviceId);
+            logger.warn("PetDevice con ID '{}' no encontrado o inactivo. Debe aprovisionarse vía /api/devices/provision.", deviceId);
+            return null;
+        }
+        return optionalContext.get();
+    }
+
+    // Las lecturas condensadas por el rate limit se procesan en cuanto el dispositivo recupera un token
+    @Scheduled(fixedDelayString = "${app.sensor.rate-limit.conflate-drain-interval-ms:250}")
+    public void drainConflated() {
+        deviceRateLimiter.drainConflated((device, reading, done) -> eventTimeService.submit(device, reading, true, done));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Segundo paso del apagado, con la ingesta ya detenida: procesa el trabajo pendiente
+     * (lecturas condensadas por el rate limit y buffers de reordenación) dentro del plazo configurado.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        long deadline = System.nanoTime() + drainTimeoutMs * 1_000_000;
+        int flushed = deviceRateLimiter.flushConflated(
+                (device, reading, done) -> eventTimeService.submit(device, reading, true, done), deadline);
+        flushed += eventTimeService.flushAll();
+        logger.info("Pipeline drenado: {} lecturas pendientes procesadas", flushed);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.PROCESSING;
+    }
+
+    private void process(DeviceContext device, SensorReading reading, boolean broadcast) {
+        float temperature = reading.temperature();
+        // El ESP32 solo envía 'ecg_raw', no un pulso calculado. Lo usamos como pulso para la demo.
+        int pulse = reading.pulse();
+        // Hora del evento: las ventanas y la línea base usan la del dispositivo, no la de proceso
+        long now = reading.timestampMillis();
+
+        // Si el collar envía las muestras crudas del acelerómetro, el estado se calcula aquí y no en el firmware
+        MotionAnalysisService.Motion motion = analyzeMotion(reading);
+        String movimientoEstado = motion != null ? motion.status() : reading.status(); // "Sin movimiento", "En movimiento", "MPU6050 error lectura"
+
+        // Al buffer de capturas antes de evaluar: la lectura que dispara una alerta forma parte de la ventana previa
+        alertCaptureService.record(device, now, temperature, pulse,
+                motion != null ? motion.activity() : 0, motion != null ? motion.peakG() : 0);
+        timeSeriesStore.append(device.petId(), now, temperature, pulse);
+        Float activity = motion != null ? motion.activity() : null;
+        recentHistoryService.record(device, now, temperature, pulse, movimientoEstado, activity);
+        liveStateService.update(device, now, temperature, pulse, movimientoEstado, activity);
+
+        // --- Lógica de Alertas ---
+        // Se puntúa contra la línea base propia de la mascota antes de aplicar los umbrales de raza
+        AdaptiveBaselineService.Evaluation baseline =
+                adaptiveBaselineService.evaluate(device.petId(), temperature, pulse, Instant.ofEpochMilli(now));
+        // En modo BASELINE_PRIORITY, salirse del rango de la raza no alerta si es normal para esta mascota
+        // y no supera los límites absolutos del application.yml
+        boolean normalForPet = "BASELINE_PRIORITY".equalsIgnoreCase(baselineMode) && baseline.established() && !baseline.anomaly()
+                && temperature <= maxTemperature && pulse <= maxHeartRate;
+
+        String alertMessage = thresholdAlerts(device, temperature, pulse, movimientoEstado, motion, normalForPet);
+        boolean isAlert = !alertMessage.isEmpty();
+
+        // Desviaciones respecto a lo habitual en esta mascota a esta hora del día
+        boolean baselineAlert = false;
+        if (baseline.temperatureAnomaly()) {
+            baselineAlert = true;
+            alertMessage += String.format("Temp. inusual para la mascota (%.1fC, z=%.1f). ", temperature, baseline.temperatureZ());
+        }
+        if (baseline.pulseAnomaly()) {
+            baselineAlert = true;
+            alertMessage += String.format("Pulso inusual para la mascota (%d BPM, z=%.1f). ", pulse, baseline.pulseZ());
+        }
+
+        if (isAlert || baselineAlert) {
+            // Una caída no espera al resumen del dueño
+            alertService.raise(device, isAlert ? "sensor_alert" : "baseline_alert", alertMessage, pulse, temperature, now,
+                    "Caído".equalsIgnoreCase(movimientoEstado));
+        }
+
+        // Aviso temprano: la tendencia reciente cruzará el límite superior dentro del horizonte
+        float temperatureLimit = device.hasBreedThresholds() ? device.maxTemperature() : maxTemperature;
+        int pulseLimit = device.hasBreedThresholds() ? device.maxHeartRate() : maxHeartRate;
+        TrendDetectionService.TrendResult trend =
+                trendDetectionService.evaluate(device.petId(), now, temperature, pulse, temperatureLimit, pulseLimit);
+        if (trend.warning() != null) {
+            alertService.raise(device, "predictive_alert", trend.warning(), pulse, temperature, now);
+        }
+
+        // Patrones temporales sobre las condiciones de esta lectura, calculadas una sola vez
+        int conditions = 0;
+        if ("Caído".equalsIgnoreCase(movimientoEstado)) {
+            conditions |= PatternCondition.FALL.bit();
+        } else if ("Sin movimiento".equalsIgnoreCase(movimientoEstado)) {
+            conditions |= PatternCondition.IMMOBILE.bit();
+        } else if ("En movimiento".equalsIgnoreCase(movimientoEstado)) {
+            conditions |= PatternCondition.MOVING.bit();
+        }
+        if (temperature > temperatureLimit) {
+            conditions |= PatternCondition.FEVER.bit();
+        }
+        if (pulse > pulseLimit) {
+            conditions |= PatternCondition.TACHYCARDIA.bit();
+        }
+        if (trend.temperatureRising()) {
+            conditions |= PatternCondition.TEMPERATURE_RISING.bit();
+        }
+        if (trend.pulseRising()) {
+            conditions |= PatternCondition.PULSE_RISING.bit();
+        }
+        String compositeMessage = temporalPatternService.evaluate(device.petId(), now, conditions);
+        if (compositeMessage != null) {
+            alertService.raise(device, "composite_alert", compositeMessage, pulse, temperature, now);
+        }
+
+        // Ajusta la frecuencia de muestreo del collar según lo cerca que esté de alertar
+        samplingRateService.observe(device, now, temperature, pulse, movimientoEstado,
+                isAlert || baselineAlert || trend.warning() != null || compositeMessage != null);
+
+        if (!broadcast) {
+            return;
+        }
+
+        // Enviar datos al frontend vía WebSocket
+        SensorDataResponseDTO responseDTO = new SensorDataResponseDTO();
+        responseDTO.setDeviceId(device.deviceId()); // Incluye el deviceId
+        responseDTO.setPetId(device.petId()); // Incluye el petId
+        responseDTO.setTemperature(temperature);
+        responseDTO.setPulse(pulse);
+        responseDTO.setStatus(movimientoEstado); // 'Sin movimiento', 'En movimiento', 'Caído', etc.
+        responseDTO.setActivity(motion != null ? motion.activity() : null);
+
+        // Envío al tópico WebSocket específico de la mascota
+        messagingTemplate.convertAndSend("/topic/sensores/" + device.petId(), responseDTO);
+        // Y a las sesiones del WebSocket nativo, del canal reactivo y de SSE (mascota y dueño)
+        sensorWebSocketHandler.broadcastSensorData(responseDTO);
+        reactiveLiveFeedService.publish(responseDTO);
+        liveEventStreamService.publish(device.ownerId(), responseDTO);
+        logger.debug("Datos enviados a WebSocket para la mascota {}: Temp={}, Pulso={}, Estado={}",
+                device.petId(), temperature, pulse, movimientoEstado);
+    }
+
+    /**
+     * Lectura que llega después de otras posteriores ya procesadas: solo se evalúan las alertas que no dependen
+     * de estado acumulado (umbrales y caída), para no descolocar ventanas ni líneas base.
+     */
+    private void processLate(DeviceContext device, SensorReading reading) {
+        statelessAlerts(device, reading, "(Lectura recibida con retraso) ");
+    }
+
+    // Alertas que no dependen de estado acumulado; también para el exceso del rate limit (ALERT_ONLY y condensadas sustituidas)
+    private void statelessAlerts(DeviceContext device, SensorReading reading, String prefix) {
+        MotionAnalysisService.Motion motion = analyzeMotion(reading);
+        String status = motion != null ? motion.status() : reading.status();
+        String alertMessage = thresholdAlerts(device, reading.temperature(), reading.pulse(), status, motion, false);
+        if (!alertMessage.isEmpty()) {
+            alertService.raise(device, "sensor_alert", prefix + alertMessage,
+                    reading.pulse(), reading.temperature(), reading.timestampMillis(), "Caído".equalsIgnoreCase(status));
+        }
+    }
+
+    private MotionAnalysisService.Motion analyzeMotion(SensorReading reading) {
+        return reading.hasAcceleration() ? motionAnalysisService.analyze(reading.acceleration(), reading.sampleRateHz()) : null;
+    }
+
+    // Umbrales de raza (o generales) y caída; devuelve "" si la lectura no alerta
+    private String thresholdAlerts(DeviceContext device, float temperature, int pulse, String movimientoEstado,
+                                   MotionAnalysisService.Motion motion, boolean normalForPet) {
+        String alertMessage = "";
+        if (device.hasBreedThresholds()) {
+            if ((temperature < device.minTemperature() || temperature > device.maxTemperature()) && !normalForPet) {
+                alertMessage += String.format("Temp. fuera de rango (%.1fC). ", temperature);
+            }
+            // Si el pulso (ecg_raw) es un valor que se puede comparar con un rango de pulso de la raza
+            if ((pulse < device.minHeartRate() || pulse > device.maxHeartRate()) && !normalForPet) {
+                alertMessage += String.format("Pulso fuera de rango (%d BPM). ", pulse);
+            }
+        } else {
+            logger.warn("La mascota {} no tiene una raza asociada. No se aplicarán umbrales específicos de raza.", device.petId());
+            // Puedes aplicar umbrales generales si no hay raza
+            if (temperature > maxTemperature) { // Usa el umbral general del application.yml
+                alertMessage += String.format("Temp. alta (%.1fC). ", temperature);
+            }
+            if (pulse > maxHeartRate) { // Usa el umbral general del application.yml
+                alertMessage += String.format("Pulso alto (%d BPM). ", pulse);
+            }
+        }
+
+        // Lógica para detectar "Caída" basada en el string del ESP32
+        if ("Caído".equalsIgnoreCase(movimientoEstado)) {
+            alertMessage += motion != null
+                    ? String.format("¡Posible caída detectada! (impacto de %.1fg). ", motion.peakG())
+                    : "¡Posible caída detectada! ";
+        }
+        return alertMessage;
+    }
+}
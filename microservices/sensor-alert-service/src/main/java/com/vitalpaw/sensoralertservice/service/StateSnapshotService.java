@@ -0,0 +1,160 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Guarda y restaura el estado en memoria de los componentes {@link Checkpointable}.
+ * El snapshot se carga al crear el bean (antes de que arranquen los canales de ingesta), se escribe
+ * periódicamente y, sobre todo, al final del apagado, cuando la ingesta ya está detenida y drenada.
+ * La escritura es atómica: fichero temporal y renombrado.
+ */
+@Service
+public class StateSnapshotService implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(StateSnapshotService.class);
+
+    private static final int MAGIC = 0x56505353; // "VPSS"
+    private static final int FORMAT_VERSION = 1;
+
+    @Value("${app.sensor.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.snapshot.path:/app/data/sensor-state.snapshot}")
+    private String snapshotPath;
+
+    @Autowired
+    private List<Checkpointable> checkpointables;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) {
+            logger.info("No hay snapshot previo en {}. Se arranca con estado vacío.", path);
+            return;
+        }
+        Map<String, Checkpointable> byName = checkpointables.stream()
+                .collect(Collectors.toMap(Checkpointable::checkpointName, Function.identity()));
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.warn("Snapshot {} con formato desconocido. Se ignora.", path);
+                return;
+            }
+            long writtenAt = in.readLong();
+            int sections = in.readInt();
+            for (int i = 0; i < sections; i++) {
+                String name = in.readUTF();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                Checkpointable target = byName.get(name);
+                if (target == null) {
+                    logger.warn("Sección '{}' del snapshot sin componente asociado. Se ignora.", name);
+                    continue;
+                }
+                // Un fallo en una sección no impide restaurar las demás
+                try (DataInputStream section = new DataInputStream(new ByteArrayInputStream(data))) {
+                    target.readCheckpoint(section);
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Error al restaurar la sección '{}' del snapshot: {}", name, e.getMessage(), e);
+                }
+            }
+            logger.info("Snapshot restaurado desde {} ({} secciones, escrito hace {} s)",
+                    path, sections, (System.currentTimeMillis() - writtenAt) / 1000);
+        } catch (IOException e) {
+            logger.error("Error al leer el snapshot {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    // Snapshot periódico para no perderlo todo si el proceso muere sin apagado ordenado
+    @Scheduled(fixedDelayString = "${app.sensor.snapshot.interval-ms:300000}",
+            initialDelayString = "${app.sensor.snapshot.interval-ms:300000}")
+    public void periodicCheckpoint() {
+        if (running) {
+            write();
+        }
+    }
+
+    public synchronized void write() {
+        if (!enabled) {
+            return;
+        }
+        Path path = Paths.get(snapshotPath);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(checkpointables.size());
+                for (Checkpointable checkpointable : checkpointables) {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    try (DataOutputStream section = new DataOutputStream(buffer)) {
+                        checkpointable.writeCheckpoint(section);
+                    }
+                    out.writeUTF(checkpointable.checkpointName());
+                    out.writeInt(buffer.size());
+                    buffer.writeTo(out);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Snapshot escrito en {} en {} ms", path, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            logger.error("Error al escribir el snapshot {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        // Fase más baja: la ingesta ya se detuvo y las colas se drenaron
+        running = false;
+        write();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.SNAPSHOT;
+    }
+}
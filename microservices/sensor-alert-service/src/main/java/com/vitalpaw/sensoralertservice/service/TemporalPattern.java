@@ -0,0 +1,109 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Patrón temporal compilado a partir de una expresión declarativa, por ejemplo:
+ * <pre>
+ *   caida-inmovil: FALL -> IMMOBILE for 60s within 10s
+ *   fiebre-inmovil: TEMPERATURE_RISING &amp; PULSE_RISING &amp; IMMOBILE for 2m
+ * </pre>
+ * Cada paso es una conjunción de {@link PatternCondition} compilada a una máscara de bits. {@code for} exige que
+ * la conjunción se mantenga durante ese tiempo; {@code within} limita cuánto se espera a que el paso empiece
+ * tras completar el anterior. El patrón se ejecuta como una máquina de estados por mascota.
+ */
+public final class TemporalPattern {
+
+    /** Paso compilado: máscara requerida y tiempos en milisegundos (0 = sin restricción). */
+    public record Step(int mask, long holdMillis, long withinMillis) {
+    }
+
+    private final String name;
+    private final String expression;
+    private final Step[] steps;
+
+    private TemporalPattern(String name, String expression, Step[] steps) {
+        this.name = name;
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    public Step step(int index) {
+        return steps[index];
+    }
+
+    public int length() {
+        return steps.length;
+    }
+
+    public static TemporalPattern parse(String definition) {
+        int colon = definition.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Pattern must be 'name: STEP -> STEP ...': " + definition);
+        }
+        String name = definition.substring(0, colon).trim();
+        String expression = definition.substring(colon + 1).trim();
+        List<Step> steps = new ArrayList<>();
+        for (String rawStep : expression.split("->")) {
+            steps.add(parseStep(rawStep.trim(), definition));
+        }
+        return new TemporalPattern(name, expression, steps.toArray(Step[]::new));
+    }
+
+    private static Step parseStep(String raw, String definition) {
+        String[] tokens = raw.split("\\s+");
+        int mask = 0;
+        long hold = 0;
+        long within = 0;
+        int i = 0;
+        while (i < tokens.length) {
+            String token = tokens[i];
+            if (token.equals("&")) {
+                i++;
+            } else if (token.equalsIgnoreCase("for") && i + 1 < tokens.length) {
+                hold = parseDuration(tokens[i + 1]);
+                i += 2;
+            } else if (token.equalsIgnoreCase("within") && i + 1 < tokens.length) {
+                within = parseDuration(tokens[i + 1]);
+                i += 2;
+            } else {
+                for (String condition : token.split("&")) {
+                    if (!condition.isEmpty()) {
+                        mask |= PatternCondition.valueOf(condition.toUpperCase(Locale.ROOT)).bit();
+                    }
+                }
+                i++;
+            }
+        }
+        if (mask == 0) {
+            throw new IllegalArgumentException("Empty step in pattern: " + definition);
+        }
+        return new Step(mask, hold, within);
+    }
+
+    // Admite 500ms, 30s, 2m, 1h
+    private static long parseDuration(String value) {
+        String v = value.toLowerCase(Locale.ROOT);
+        if (v.endsWith("ms")) {
+            return Long.parseLong(v.substring(0, v.length() - 2));
+        }
+        long amount = Long.parseLong(v.substring(0, v.length() - 1));
+        return switch (v.charAt(v.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount).toMillis();
+            case 'm' -> Duration.ofMinutes(amount).toMillis();
+            case 'h' -> Duration.ofHours(amount).toMillis();
+            default -> throw new IllegalArgumentException("Invalid duration: " + value);
+        };
+    }
+}
@@ -0,0 +1,201 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.util.LongObjectMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Alertas compuestas: evalúa patrones temporales ({@link TemporalPattern}) sobre el flujo de lecturas de cada
+ * mascota, por ejemplo "caída seguida de inmovilidad durante 60 s" o "temperatura y pulso subiendo mientras está
+ * inmóvil". Las condiciones de cada lectura llegan ya calculadas como máscara de bits, así que cada lectura cuesta
+ * O(patrones) sin guardar historial: el estado de una mascota es un {@code long[]} con, por patrón, el paso actual,
+ * cuándo se activó, desde cuándo se cumple y la última coincidencia.
+ */
+@Service
+public class TemporalPatternService implements Checkpointable {
+    private static final Logger logger = LoggerFactory.getLogger(TemporalPatternService.class);
+
+    private static final int FIELDS = 4;
+    private static final int STEP = 0;
+    private static final int ACTIVATED_AT = 1;
+    private static final int HOLD_SINCE = 2;   // 0 = la condición del paso no se está cumpliendo
+    private static final int LAST_MATCH = 3;
+
+    @Value("${app.sensor.cep.enabled:true}")
+    private boolean enabled;
+
+    // Patrones separados por ';' con el formato "nombre: PASO -> PASO ..."
+    @Value("${app.sensor.cep.patterns:}")
+    private String patternDefinitions;
+
+    @Value("${app.sensor.cep.cooldown-minutes:15}")
+    private long cooldownMinutes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TemporalPattern[] patterns = new TemporalPattern[0];
+    private Counter[] matchCounters = new Counter[0];
+    private final LongObjectMap<long[]> states = new LongObjectMap<>(1024);
+
+    @PostConstruct
+    public void init() {
+        List<TemporalPattern> compiled = new ArrayList<>();
+        for (String definition : patternDefinitions.split(";")) {
+            if (!definition.isBlank()) {
+                compiled.add(TemporalPattern.parse(definition.trim()));
+            }
+        }
+        patterns = compiled.toArray(TemporalPattern[]::new);
+        matchCounters = new Counter[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            matchCounters[i] = Counter.builder("vitalpaw.cep.matches")
+                    .description("Patrones temporales detectados")
+                    .tag("pattern", patterns[i].name())
+                    .register(meterRegistry);
+            logger.info("Patrón temporal '{}' compilado: {}", patterns[i].name(), patterns[i].expression());
+        }
+    }
+
+    /**
+     * Avanza los patrones de la mascota con las condiciones de la lectura y devuelve el mensaje de los que
+     * se han completado (null si ninguno).
+     */
+    public String evaluate(long petId, long timestampMillis, int conditions) {
+        if (!enabled || patterns.length == 0) {
+            return null;
+        }
+        long[] state = states.computeIfAbsent(petId, id -> new long[patterns.length * FIELDS]);
+        String message = null;
+        synchronized (state) {
+            for (int i = 0; i < patterns.length; i++) {
+                if (advance(patterns[i], state, i * FIELDS, conditions, timestampMillis)) {
+                    matchCounters[i].increment();
+                    String match = String.format("Patrón '%s' detectado (%s). ", patterns[i].name(), patterns[i].expression());
+                    message = message == null ? match : message + match;
+                }
+            }
+        }
+        return message;
+    }
+
+    private boolean advance(TemporalPattern pattern, long[] state, int base, int conditions, long now) {
+        TemporalPattern.Step step = pattern.step((int) state[base + STEP]);
+
+        // El paso no empezó dentro del plazo tras el anterior: la secuencia se abandona
+        if (state[base + STEP] > 0 && step.withinMillis() > 0 && state[base + HOLD_SINCE] == 0
+                && now - state[base + ACTIVATED_AT] > step.withinMillis()) {
+            reset(state, base);
+            step = pattern.step(0);
+        }
+
+        if ((conditions & step.mask()) != step.mask()) {
+            if (state[base + HOLD_SINCE] != 0) {
+                // Se rompió una condición que debía mantenerse
+                if (state[base + STEP] > 0) {
+                    reset(state, base);
+                    return advance(pattern, state, base, conditions, now);
+                }
+                state[base + HOLD_SINCE] = 0;
+            }
+            return false;
+        }
+
+        if (state[base + HOLD_SINCE] == 0) {
+            state[base + HOLD_SINCE] = now;
+        }
+        if (now - state[base + HOLD_SINCE] < step.holdMillis()) {
+            return false;
+        }
+
+        // Paso completado
+        int next = (int) state[base + STEP] + 1;
+        if (next < pattern.length()) {
+            state[base + STEP] = next;
+            state[base + ACTIVATED_AT] = now;
+            state[base + HOLD_SINCE] = 0;
+            return false;
+        }
+        reset(state, base);
+        if (state[base + LAST_MATCH] != 0 && now - state[base + LAST_MATCH] < cooldownMinutes * 60_000) {
+            return false;
+        }
+        state[base + LAST_MATCH] = now;
+        return true;
+    }
+
+    private void reset(long[] state, int base) {
+        state[base + STEP] = 0;
+        state[base + ACTIVATED_AT] = 0;
+        state[base + HOLD_SINCE] = 0;
+    }
+
+    @Override
+    public String checkpointName() {
+        return "temporal-patterns";
+    }
+
+    @Override
+    public void writeCheckpoint(DataOutputStream out) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        List<long[]> list = new ArrayList<>();
+        states.forEach((id, state) -> {
+            ids.add(id);
+            list.add(state);
+        });
+        out.writeByte(1);
+        out.writeInt(patterns.length);
+        for (TemporalPattern pattern : patterns) {
+            out.writeUTF(pattern.name() + ":" + pattern.expression());
+        }
+        out.writeInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            long[] state = list.get(i);
+            synchronized (state) {
+                out.writeLong(ids.get(i));
+                for (long v : state) {
+                    out.writeLong(v);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readCheckpoint(DataInputStream in) throws IOException {
+        if (in.readByte() != 1) {
+            return;
+        }
+        int count = in.readInt();
+        boolean samePatterns = count == patterns.length;
+        for (int i = 0; i < count; i++) {
+            String definition = in.readUTF();
+            samePatterns &= i < patterns.length && definition.equals(patterns[i].name() + ":" + patterns[i].expression());
+        }
+        if (!samePatterns) {
+            logger.warn("Los patrones temporales del snapshot no coinciden con la configuración. Se descarta.");
+            return;
+        }
+        int pets = in.readInt();
+        for (int i = 0; i < pets; i++) {
+            long petId = in.readLong();
+            long[] state = new long[patterns.length * FIELDS];
+            for (int j = 0; j < state.length; j++) {
+                state[j] = in.readLong();
+            }
+            states.computeIfAbsent(petId, id -> state);
+        }
+        logger.info("Restaurado el estado de patrones temporales de {} mascotas", pets);
+    }
+}
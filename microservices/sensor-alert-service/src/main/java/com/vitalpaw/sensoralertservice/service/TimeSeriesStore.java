@@ -0,0 +1,690 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import com.vitalpaw.sensoralertservice.dto.VitalsHistoryDTO;
+import com.vitalpaw.sensoralertservice.util.GorillaDecoder;
+import com.vitalpaw.sensoralertservice.util.GorillaEncoder;
+import com.vitalpaw.sensoralertservice.util.LongObjectMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Almacén embebido de series temporales de constantes vitales (temperatura y pulso) por mascota.
+ *
+ * Cada mascota tiene un bloque activo en memoria comprimido con {@link GorillaEncoder}. Al llenarse (por puntos o
+ * por duración) el bloque se sella y, periódicamente, los bloques sellados se escriben juntos en un fichero de
+ * segmento inmutable con un índice final (mascota, rango de tiempo, posición) ordenado por mascota. Los segmentos
+ * se mapean en memoria y el índice se busca directamente sobre el mapeo, así que en el heap solo quedan los bloques
+ * aún sin escribir; las consultas por rango decodifican sin copiar los bloques cuyo rango se solapa con el pedido.
+ *
+ * Las sesiones grabadas que se suben después ({@link #backfill}) van a un segundo bloque activo por mascota, para
+ * no mezclarse con el que recibe las lecturas en vivo, que solo admite timestamps crecientes.
+ *
+ * Los bloques que aún no están en un segmento (activos, de relleno y sellados pendientes de flush) se guardan en el
+ * snapshot de estado ({@link Checkpointable}); tras una caída se pierde como mucho lo recibido desde el último
+ * snapshot y no todo lo pendiente de escribir. Al restaurar se saltan los bloques que ya llegaron a un segmento.
+ *
+ * Formato del segmento (versión 2): cabecera (magic, versión, minTs, maxTs), bloques concatenados, índice de
+ * entradas de 40 bytes (petId, minTs, maxTs, puntos, offset, longitud) ordenado por (petId, minTs) y pie (entradas,
+ * offset del índice, magic). Los segmentos de la versión 1 (cabecera de 8 bytes, índice en orden de sellado) se
+ * siguen leyendo.
+ */
+@Service
+public class TimeSeriesStore implements SmartLifecycle, Checkpointable {
+    private static final Logger logger = LoggerFactory.getLogger(TimeSeriesStore.class);
+
+    private static final int MAGIC = 0x56505453; // "VPTS"
+    private static final int FORMAT_VERSION = 2;
+    private static final int SERIES = 2;         // 0 = temperatura, 1 = pulso
+    private static final int HEADER_BYTES = 24;
+    private static final int FOOTER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 40;
+    private static final String SUFFIX = ".vpts";
+
+    @Value("${app.sensor.tsdb.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.tsdb.path:/app/data/tsdb}")
+    private String storePath;
+
+    @Value("${app.sensor.tsdb.chunk-max-points:1024}")
+    private int chunkMaxPoints;
+
+    @Value("${app.sensor.tsdb.chunk-max-minutes:60}")
+    private long chunkMaxMinutes;
+
+    @Value("${app.sensor.tsdb.retention-days:180}")
+    private long retentionDays;
+
+    @Value("${app.sensor.tsdb.max-query-points:500000}")
+    private int maxQueryPoints;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LongObjectMap<PetSeries> pets = new LongObjectMap<>(1024);
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Object flushLock = new Object();
+    private List<Chunk> unflushed = new ArrayList<>();
+    private volatile boolean running;
+
+    /**
+     * Segmento mapeado en memoria. Del índice solo se guarda dónde empieza: las búsquedas leen el mapeo. El mapeo
+     * se libera cuando deja de estar referenciado.
+     */
+    private static final class Segment {
+        final Path path;
+        final MappedByteBuffer buffer;
+        final long minTimestamp;
+        final long maxTimestamp;
+        final int entries;
+        final int indexOffset;
+        final int[] order; // Solo versión 1: posiciones del índice ordenadas por (petId, minTs)
+
+        Segment(Path path, MappedByteBuffer buffer, long minTimestamp, long maxTimestamp, int entries,
+                int indexOffset, int[] order) {
+            this.path = path;
+            this.buffer = buffer;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.entries = entries;
+            this.indexOffset = indexOffset;
+            this.order = order;
+        }
+
+        int entry(int i) {
+            return indexOffset + (order != null ? order[i] : i) * INDEX_ENTRY_BYTES;
+        }
+
+        long petId(int i) {
+            return buffer.getLong(entry(i));
+        }
+
+        // Búsqueda binaria de la primera entrada de la mascota
+        int firstEntry(long petId) {
+            int low = 0;
+            int high = entries;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (petId(mid) < petId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Porciones del mapeo de los bloques de la mascota que se solapan con [from, to]
+        void collect(long petId, long from, long to, List<Chunk> out) {
+            for (int i = firstEntry(petId); i < entries && petId(i) == petId; i++) {
+                int p = entry(i);
+                long minTs = buffer.getLong(p + 8);
+                if (minTs > to) {
+                    return;
+                }
+                long maxTs = buffer.getLong(p + 16);
+                if (maxTs >= from) {
+                    out.add(new Chunk(petId, minTs, maxTs, buffer.getInt(p + 24),
+                            buffer.slice(buffer.getInt(p + 28), buffer.getInt(p + 32))));
+                }
+            }
+        }
+    }
+
+    /** Bloque sellado en memoria hasta que se escribe, o porción de un segmento durante una consulta. */
+    private static final class Chunk {
+        final long petId;
+        final long minTimestamp;
+        final long maxTimestamp;
+        final int count;
+        final ByteBuffer data;
+        volatile Segment segment; // Segmento en el que ya está escrito
+
+        Chunk(long petId, long minTimestamp, long maxTimestamp, int count, ByteBuffer data) {
+            this.petId = petId;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.count = count;
+            this.data = data;
+        }
+    }
+
+    private static final class PetSeries {
+        GorillaEncoder active;
+        GorillaEncoder backfill;
+        final List<Chunk> sealed = new ArrayList<>();   // sellados y aún sin escribir, en orden
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("vitalpaw.tsdb.segments", segments, List::size)
+                .description("Segmentos de series temporales mapeados")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        Path dir = Paths.get(storePath);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> paths = files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+            for (Path path : paths) {
+                try {
+                    segments.add(open(path));
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Segmento {} ilegible. Se ignora: {}", path, e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error al listar los segmentos de {}: {}", dir, e.getMessage(), e);
+        }
+        logger.info("Series temporales: {} segmentos abiertos desde {}", segments.size(), dir);
+    }
+
+    // Solo lee la cabecera y el pie: el índice se consulta sobre el mapeo
+    private Segment open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int size = buffer.capacity();
+        if (size < 8 + FOOTER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(size - 4) != MAGIC) {
+            throw new IOException("Formato de segmento desconocido");
+        }
+        int version = buffer.getInt(4);
+        int entries = buffer.getInt(size - FOOTER_BYTES);
+        int indexOffset = (int) buffer.getLong(size - FOOTER_BYTES + 4);
+        if (version == FORMAT_VERSION) {
+            return new Segment(path, buffer, buffer.getLong(8), buffer.getLong(16), entries, indexOffset, null);
+        }
+        if (version != 1) {
+            throw new IOException("Versión de segmento desconocida: " + version);
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0, p = indexOffset; i < entries; i++, p += INDEX_ENTRY_BYTES) {
+            min = Math.min(min, buffer.getLong(p + 8));
+            max = Math.max(max, buffer.getLong(p + 16));
+        }
+        Integer[] order = new Integer[entries];
+        for (int i = 0; i < entries; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> buffer.getLong(indexOffset + i * INDEX_ENTRY_BYTES))
+                .thenComparingLong(i -> buffer.getLong(indexOffset + i * INDEX_ENTRY_BYTES + 8)));
+        return new Segment(path, buffer, min, max, entries, indexOffset,
+                Arrays.stream(order).mapToInt(Integer::intValue).toArray());
+    }
+
+    /** Añade una lectura; las que llegan con un timestamp anterior al último de la mascota se descartan. */
+    public void append(long petId, long timestampMillis, float temperature, int pulse) {
+        if (!enabled) {
+            return;
+        }
+        PetSeries series = pets.computeIfAbsent(petId, id -> new PetSeries());
+        Chunk sealed = null;
+        synchronized (series) {
+            GorillaEncoder active = series.active;
+            if (active != null && active.count() > 0 && timestampMillis < active.lastTimestamp()) {
+                return;
+            }
+            if (active != null && (active.count() >= chunkMaxPoints
+                    || timestampMillis - active.firstTimestamp() >= chunkMaxMinutes * 60_000)) {
+                sealed = seal(petId, series);
+            }
+            if (series.active == null) {
+                series.active = new GorillaEncoder(SERIES);
+            }
+            series.active.add(timestampMillis, temperature, pulse);
+        }
+        if (sealed != null) {
+            synchronized (flushLock) {
+                unflushed.add(sealed);
+            }
+        }
+    }
+
+    /**
+     * Lectura histórica de una sesión grabada: va al bloque de relleno de la mascota, que se sella al llenarse, al
+     * retroceder el tiempo o con {@link #sealBackfill}. Las consultas ordenan los bloques por su inicio.
+     */
+    public void backfill(long petId, long timestampMillis, float temperature, int pulse) {
+        if (!enabled) {
+            return;
+        }
+        PetSeries series = pets.computeIfAbsent(petId, id -> new PetSeries());
+        Chunk sealed = null;
+        synchronized (series) {
+            GorillaEncoder backfill = series.backfill;
+            if (backfill != null && (backfill.count() >= chunkMaxPoints || timestampMillis < backfill.lastTimestamp()
+                    || timestampMillis - backfill.firstTimestamp() >= chunkMaxMinutes * 60_000)) {
+                sealed = sealBackfill(petId, series);
+            }
+            if (series.backfill == null) {
+                series.backfill = new GorillaEncoder(SERIES);
+            }
+            series.backfill.add(timestampMillis, temperature, pulse);
+        }
+        if (sealed != null) {
+            synchronized (flushLock) {
+                unflushed.add(sealed);
+            }
+        }
+    }
+
+    /** Sella los bloques de relleno abiertos; se llama al terminar una carga para que se escriban en el flush. */
+    public void sealBackfill() {
+        List<Chunk> sealed = new ArrayList<>();
+        pets.forEach((id, series) -> {
+            synchronized (series) {
+                if (series.backfill != null && series.backfill.count() > 0) {
+                    sealed.add(sealBackfill(id, series));
+                }
+            }
+        });
+        synchronized (flushLock) {
+            unflushed.addAll(sealed);
+        }
+    }
+
+    // Con el lock de la mascota
+    private Chunk seal(long petId, PetSeries series) {
+        GorillaEncoder active = series.active;
+        series.active = null;
+        return seal(petId, series, active);
+    }
+
+    // Con el lock de la mascota
+    private Chunk sealBackfill(long petId, PetSeries series) {
+        GorillaEncoder backfill = series.backfill;
+        series.backfill = null;
+        return seal(petId, series, backfill);
+    }
+
+    private Chunk seal(long petId, PetSeries series, GorillaEncoder encoder) {
+        Chunk chunk = new Chunk(petId, encoder.firstTimestamp(), encoder.lastTimestamp(), encoder.count(),
+                ByteBuffer.wrap(encoder.toByteArray()));
+        series.sealed.add(chunk);
+        return chunk;
+    }
+
+    /** Recibe los puntos de un recorrido; devolver false lo detiene. */
+    @FunctionalInterface
+    public interface PointVisitor {
+        boolean visit(long timestampMillis, float temperature, int pulse);
+    }
+
+    /**
+     * Lecturas de la mascota en [from, to], en orden temporal. Como mucho {@code max-query-points}: si hay más, la
+     * respuesta viene marcada como truncada y el resto se pide desde su último timestamp.
+     */
+    public VitalsHistoryDTO query(long petId, long from, long to) {
+        List<Chunk> candidates = candidates(petId, from, to);
+        int capacity = (int) Math.min(maxQueryPoints, candidates.stream().mapToLong(c -> c.count).sum());
+        long[] timestamps = new long[capacity];
+        float[] temperatures = new float[capacity];
+        int[] pulses = new int[capacity];
+        int[] n = {0};
+        boolean[] truncated = {false};
+        scan(candidates, from, to, (ts, temperature, pulse) -> {
+            if (n[0] == capacity) {
+                truncated[0] = true;
+                return false;
+            }
+            timestamps[n[0]] = ts;
+            temperatures[n[0]] = temperature;
+            pulses[n[0]] = pulse;
+            n[0]++;
+            return true;
+        });
+        return new VitalsHistoryDTO(petId, Arrays.copyOf(timestamps, n[0]), Arrays.copyOf(temperatures, n[0]),
+                Arrays.copyOf(pulses, n[0]), truncated[0]);
+    }
+
+    /**
+     * Recorre las lecturas de la mascota en [from, to] sin materializarlas, decodificando sobre los segmentos
+     * mapeados. Pensado para procesos por lotes sobre rangos largos. Devuelve los puntos visitados.
+     */
+    public long scan(long petId, long from, long to, PointVisitor visitor) {
+        return scan(candidates(petId, from, to), from, to, visitor);
+    }
+
+    private long scan(List<Chunk> candidates, long from, long to, PointVisitor visitor) {
+        long visited = 0;
+        for (Chunk chunk : candidates) {
+            GorillaDecoder decoder = new GorillaDecoder(chunk.data, chunk.count, SERIES);
+            while (decoder.next()) {
+                long ts = decoder.timestamp();
+                if (ts > to) {
+                    break;
+                }
+                if (ts >= from) {
+                    visited++;
+                    if (!visitor.visit(ts, decoder.value(0), (int) decoder.value(1))) {
+                        return visited;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    /*
+     * Bloques cuyo rango se solapa con [from, to], ordenados por su inicio (los de relleno pueden estar en un
+     * segmento posterior a otros más recientes; los activos se copian para decodificarlos fuera del lock). Los de
+     * memoria se toman antes
+     * que la lista de segmentos; flush() marca el bloque con su segmento antes de publicarlo y lo quita de memoria
+     * después, así que un bloque que se está escribiendo se lee una sola vez, de un sitio o del otro.
+     */
+    private List<Chunk> candidates(long petId, long from, long to) {
+        List<Chunk> inMemory = new ArrayList<>();
+        PetSeries series = pets.get(petId);
+        if (series != null) {
+            synchronized (series) {
+                for (Chunk chunk : series.sealed) {
+                    if (chunk.maxTimestamp >= from && chunk.minTimestamp <= to) {
+                        inMemory.add(chunk);
+                    }
+                }
+                for (GorillaEncoder active : new GorillaEncoder[] {series.backfill, series.active}) {
+                    if (active != null && active.count() > 0 && active.lastTimestamp() >= from
+                            && active.firstTimestamp() <= to) {
+                        inMemory.add(new Chunk(petId, active.firstTimestamp(), active.lastTimestamp(), active.count(),
+                                ByteBuffer.wrap(active.toByteArray())));
+                    }
+                }
+            }
+        }
+        List<Segment> mapped = List.copyOf(segments);
+        List<Chunk> candidates = new ArrayList<>();
+        for (Segment segment : mapped) {
+            if (segment.maxTimestamp >= from && segment.minTimestamp <= to) {
+                segment.collect(petId, from, to, candidates);
+            }
+        }
+        for (Chunk chunk : inMemory) {
+            Segment written = chunk.segment;
+            if (written == null || !mapped.contains(written)) {
+                candidates.add(chunk);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(c -> c.minTimestamp));
+        return candidates;
+    }
+
+    /** Mascotas con datos en el almacén; recorre los índices de los segmentos, pensado para procesos por lotes. */
+    public long[] petIds() {
+        Set<Long> ids = new TreeSet<>();
+        pets.forEach((id, series) -> ids.add(id));
+        for (Segment segment : segments) {
+            long previous = Long.MIN_VALUE;
+            for (int i = 0; i < segment.entries; i++) {
+                long petId = segment.petId(i);
+                if (i == 0 || petId != previous) {
+                    ids.add(petId);
+                    previous = petId;
+                }
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Scheduled(fixedDelayString = "${app.sensor.tsdb.flush-interval-ms:3600000}",
+            initialDelayString = "${app.sensor.tsdb.flush-interval-ms:3600000}")
+    public void periodicFlush() {
+        if (running) {
+            flush();
+        }
+    }
+
+    /** Escribe los bloques sellados pendientes en un segmento nuevo y pasa a leerlos desde el mapeo. */
+    public void flush() {
+        synchronized (flushLock) {
+            if (unflushed.isEmpty()) {
+                return;
+            }
+            List<Chunk> chunks = new ArrayList<>(unflushed);
+            // Índice ordenado por mascota: las consultas lo recorren con búsqueda binaria sobre el mapeo
+            chunks.sort(Comparator.comparingLong((Chunk c) -> c.petId).thenComparingLong(c -> c.minTimestamp));
+            Path dir = Paths.get(storePath);
+            Path path = dir.resolve(String.format("seg-%013d%s", System.currentTimeMillis(), SUFFIX));
+            Path tmp = dir.resolve(path.getFileName() + ".tmp");
+            int[] offsets = offsets(chunks);
+            try {
+                Files.createDirectories(dir);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeLong(chunks.stream().mapToLong(c -> c.minTimestamp).min().orElse(0));
+                    out.writeLong(chunks.stream().mapToLong(c -> c.maxTimestamp).max().orElse(0));
+                    for (Chunk chunk : chunks) {
+                        ByteBuffer data = chunk.data;
+                        out.write(data.array(), data.arrayOffset(), data.remaining());
+                    }
+                    for (int i = 0; i < chunks.size(); i++) {
+                        Chunk chunk = chunks.get(i);
+                        out.writeLong(chunk.petId);
+                        out.writeLong(chunk.minTimestamp);
+                        out.writeLong(chunk.maxTimestamp);
+                        out.writeInt(chunk.count);
+                        out.writeInt(offsets[i]);
+                        out.writeInt(chunk.data.remaining());
+                        out.writeInt(0); // Reservado: alinea la entrada a 40 bytes
+                    }
+                    out.writeInt(chunks.size());
+                    out.writeLong(offsets[chunks.size() - 1] + chunks.get(chunks.size() - 1).data.remaining());
+                    out.writeInt(MAGIC);
+                }
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Los bloques siguen en memoria y se reintentan en el siguiente flush
+                logger.error("Error al escribir el segmento {}: {}", path, e.getMessage(), e);
+                return;
+            }
+            unflushed = new ArrayList<>();
+            publish(path, chunks);
+        }
+    }
+
+    // Posición de cada bloque dentro del segmento, tras la cabecera
+    private int[] offsets(List<Chunk> chunks) {
+        int[] offsets = new int[chunks.size()];
+        int offset = HEADER_BYTES;
+        for (int i = 0; i < chunks.size(); i++) {
+            offsets[i] = offset;
+            offset += chunks.get(i).data.remaining();
+        }
+        return offsets;
+    }
+
+    // Mapea el segmento recién escrito y saca sus bloques de memoria (ver candidates() para el orden de los pasos)
+    private void publish(Path path, List<Chunk> chunks) {
+        Segment segment;
+        try {
+            segment = open(path);
+        } catch (IOException e) {
+            // Los bloques siguen siendo legibles desde memoria; el segmento se abrirá en el próximo arranque
+            logger.error("Error al mapear el segmento {}: {}", path, e.getMessage(), e);
+            return;
+        }
+        for (Chunk chunk : chunks) {
+            chunk.segment = segment;
+        }
+        segments.add(segment);
+        for (Chunk chunk : chunks) {
+            PetSeries series = pets.get(chunk.petId);
+            synchronized (series) {
+                series.sealed.remove(chunk);
+            }
+        }
+        logger.info("Segmento {} escrito: {} bloques, {} bytes", path.getFileName(), chunks.size(),
+                segment.buffer.capacity());
+    }
+
+    // Borra los segmentos completamente fuera del periodo de retención
+    @Scheduled(cron = "${app.sensor.tsdb.retention-cron:0 30 3 * * *}")
+    public void enforceRetention() {
+        long cutoff = System.currentTimeMillis() - retentionDays * 86_400_000L;
+        for (Segment segment : segments) {
+            if (segment.maxTimestamp >= cutoff) {
+                continue;
+            }
+            segments.remove(segment);
+            try {
+                Files.deleteIfExists(segment.path);
+                logger.info("Segmento {} eliminado por retención", segment.path.getFileName());
+            } catch (IOException e) {
+                logger.error("Error al eliminar el segmento {}: {}", segment.path, e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public String checkpointName() {
+        return "tsdb-pending-chunks";
+    }
+
+    // Bloques que aún no están en ningún segmento; los activos se copian como están
+    @Override
+    public void writeCheckpoint(DataOutputStream out) throws IOException {
+        List<Chunk> pending = new ArrayList<>();
+        pets.forEach((id, series) -> {
+            synchronized (series) {
+                for (Chunk chunk : series.sealed) {
+                    if (chunk.segment == null) {
+                        pending.add(chunk);
+                    }
+                }
+                for (GorillaEncoder active : new GorillaEncoder[] {series.active, series.backfill}) {
+                    if (active != null && active.count() > 0) {
+                        pending.add(new Chunk(id, active.firstTimestamp(), active.lastTimestamp(), active.count(),
+                                ByteBuffer.wrap(active.toByteArray())));
+                    }
+                }
+            }
+        });
+        out.writeByte(1);
+        out.writeInt(pending.size());
+        for (Chunk chunk : pending) {
+            ByteBuffer data = chunk.data;
+            out.writeLong(chunk.petId);
+            out.writeLong(chunk.minTimestamp);
+            out.writeLong(chunk.maxTimestamp);
+            out.writeInt(chunk.count);
+            out.writeInt(data.remaining());
+            out.write(data.array(), data.arrayOffset(), data.remaining());
+        }
+    }
+
+    /**
+     * Los bloques vuelven como sellados y se escriben en el siguiente flush. Se salta el que ya está en un segmento
+     * (mismo inicio y hasta el mismo final o más): el snapshot pudo escribirse antes del último flush.
+     */
+    @Override
+    public void readCheckpoint(DataInputStream in) throws IOException {
+        if (in.readByte() != 1) {
+            return;
+        }
+        int count = in.readInt();
+        List<Chunk> restored = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long petId = in.readLong();
+            long minTimestamp = in.readLong();
+            long maxTimestamp = in.readLong();
+            int points = in.readInt();
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            if (!enabled || persisted(petId, minTimestamp, maxTimestamp)) {
+                continue;
+            }
+            Chunk chunk = new Chunk(petId, minTimestamp, maxTimestamp, points, ByteBuffer.wrap(data));
+            PetSeries series = pets.computeIfAbsent(petId, id -> new PetSeries());
+            synchronized (series) {
+                series.sealed.add(chunk);
+            }
+            restored.add(chunk);
+        }
+        synchronized (flushLock) {
+            unflushed.addAll(restored);
+        }
+        logger.info("Restaurados {} bloques de series temporales sin escribir ({} ya estaban en segmentos)",
+                restored.size(), count - restored.size());
+    }
+
+    private boolean persisted(long petId, long minTimestamp, long maxTimestamp) {
+        List<Chunk> found = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.maxTimestamp >= minTimestamp && segment.minTimestamp <= minTimestamp) {
+                segment.collect(petId, minTimestamp, minTimestamp, found);
+            }
+        }
+        return found.stream().anyMatch(c -> c.minTimestamp == minTimestamp && c.maxTimestamp >= maxTimestamp);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /** Con la ingesta detenida, sella los bloques activos y los escribe en un último segmento. */
+    @Override
+    public void stop() {
+        running = false;
+        List<Chunk> sealed = new ArrayList<>();
+        pets.forEach((id, series) -> {
+            synchronized (series) {
+                if (series.active != null && series.active.count() > 0) {
+                    sealed.add(seal(id, series));
+                }
+                if (series.backfill != null && series.backfill.count() > 0) {
+                    sealed.add(sealBackfill(id, series));
+                }
+            }
+        });
+        synchronized (flushLock) {
+            unflushed.addAll(sealed);
+        }
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.SNAPSHOT;
+    }
+}
@@ -0,0 +1,160 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.util.LongObjectMap;
+import com.vitalpaw.sensoralertservice.util.SlidingWindowRegression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Alertas predictivas: ajusta por mascota una recta sobre la ventana reciente de temperatura y pulso
+ * ({@link SlidingWindowRegression}, O(1) por lectura) y avisa cuando la tendencia es sostenida y la
+ * proyección cruza el límite superior dentro del horizonte configurado, antes de que el valor real lo haga.
+ */
+@Service
+public class TrendDetectionService implements Checkpointable {
+    private static final Logger logger = LoggerFactory.getLogger(TrendDetectionService.class);
+
+    private static final int TEMPERATURE = 0;
+    private static final int PULSE = 1;
+
+    @Value("${app.sensor.trend.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sensor.trend.window:30}")
+    private int window;
+
+    @Value("${app.sensor.trend.min-samples:10}")
+    private int minSamples;
+
+    @Value("${app.sensor.trend.horizon-minutes:30}")
+    private double horizonMinutes;
+
+    @Value("${app.sensor.trend.min-slope-temperature-per-min:0.03}")
+    private double minSlopeTemperature;
+
+    @Value("${app.sensor.trend.min-slope-pulse-per-min:1.0}")
+    private double minSlopePulse;
+
+    // Filtra el ruido: solo cuentan las subidas que se ajustan bien a una recta
+    @Value("${app.sensor.trend.min-r-squared:0.6}")
+    private double minRSquared;
+
+    @Value("${app.sensor.trend.cooldown-minutes:30}")
+    private long cooldownMinutes;
+
+    private final LongObjectMap<TrendState> states = new LongObjectMap<>(1024);
+
+    /** Advertencia temprana (null si no hay) y si cada métrica sube de forma sostenida ahora mismo. */
+    public record TrendResult(String warning, boolean temperatureRising, boolean pulseRising) {
+    }
+
+    private static final TrendResult NO_TREND = new TrendResult(null, false, false);
+
+    private final class TrendState {
+        final SlidingWindowRegression regression = new SlidingWindowRegression(window, 2);
+        final long[] lastWarningMillis = new long[2];
+    }
+
+    /**
+     * Incorpora la lectura y devuelve la advertencia temprana, si la hay, junto con las tendencias actuales.
+     * Los límites son los máximos de la raza o, si no tiene, los generales.
+     */
+    public TrendResult evaluate(long petId, long timestampMillis, float temperature, int pulse,
+                                   float temperatureLimit, int pulseLimit) {
+        if (!enabled) {
+            return NO_TREND;
+        }
+        TrendState state = states.computeIfAbsent(petId, id -> new TrendState());
+        synchronized (state) {
+            state.regression.add(timestampMillis, temperature, pulse);
+            if (state.regression.count() < minSamples) {
+                return NO_TREND;
+            }
+            String warning = "";
+            warning += check(state, TEMPERATURE, timestampMillis, temperatureLimit, minSlopeTemperature, "La temperatura", "%.2fC/min", "%.1fC");
+            warning += check(state, PULSE, timestampMillis, pulseLimit, minSlopePulse, "El pulso", "%.1f BPM/min", "%.0f BPM");
+            return new TrendResult(warning.isEmpty() ? null : warning,
+                    rising(state.regression, TEMPERATURE, minSlopeTemperature),
+                    rising(state.regression, PULSE, minSlopePulse));
+        }
+    }
+
+    private boolean rising(SlidingWindowRegression regression, int metric, double minSlopePerMinute) {
+        return regression.slope(metric) * 60 >= minSlopePerMinute && regression.rSquared(metric) >= minRSquared;
+    }
+
+    private String check(TrendState state, int metric, long now, double limit, double minSlopePerMinute,
+                         String label, String slopeFormat, String limitFormat) {
+        SlidingWindowRegression regression = state.regression;
+        if (!rising(regression, metric, minSlopePerMinute)) {
+            return "";
+        }
+        double slopePerMinute = regression.slope(metric) * 60;
+        double fittedNow = regression.predict(metric, now);
+        if (fittedNow >= limit) {
+            return ""; // Ya está fuera de rango: de eso se ocupa la alerta normal
+        }
+        double projected = regression.predict(metric, now + (long) (horizonMinutes * 60_000));
+        if (projected < limit || now - state.lastWarningMillis[metric] < cooldownMinutes * 60_000) {
+            return "";
+        }
+        state.lastWarningMillis[metric] = now;
+        double minutesToLimit = (limit - fittedNow) / slopePerMinute;
+        return String.format("%s sube " + slopeFormat + " y podría superar " + limitFormat + " en ~%.0f min. ",
+                label, slopePerMinute, limit, minutesToLimit);
+    }
+
+    @Override
+    public String checkpointName() {
+        return "trend-regressions";
+    }
+
+    @Override
+    public void writeCheckpoint(DataOutputStream out) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        List<TrendState> list = new ArrayList<>();
+        states.forEach((id, state) -> {
+            ids.add(id);
+            list.add(state);
+        });
+        out.writeByte(1);
+        out.writeInt(window);
+        out.writeInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            TrendState state = list.get(i);
+            synchronized (state) {
+                out.writeLong(ids.get(i));
+                out.writeLong(state.lastWarningMillis[TEMPERATURE]);
+                out.writeLong(state.lastWarningMillis[PULSE]);
+                state.regression.write(out);
+            }
+        }
+    }
+
+    @Override
+    public void readCheckpoint(DataInputStream in) throws IOException {
+        if (in.readByte() != 1) {
+            return;
+        }
+        if (in.readInt() != window) {
+            logger.warn("El snapshot de tendencias usa otra ventana. Se descarta.");
+            return;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            TrendState state = states.computeIfAbsent(in.readLong(), id -> new TrendState());
+            state.lastWarningMillis[TEMPERATURE] = in.readLong();
+            state.lastWarningMillis[PULSE] = in.readLong();
+            state.regression.read(in);
+        }
+        logger.info("Restauradas las tendencias de {} mascotas", count);
+    }
+}
@@ -0,0 +1,443 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.config.LifecyclePhases;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import com.vitalpaw.sensoralertservice.util.CompactSampleReader;
+import com.vitalpaw.sensoralertservice.util.SequenceWindow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canal de ingesta UDP para collares a batería: sin sesión TCP ni keep-alives, cada envío es un datagrama.
+ * Un único hilo con un {@link Selector} no bloqueante recibe, decodifica y descarta duplicados; las lecturas se
+ * entregan a un pool acotado de workers que llaman a {@link SensorProcessingService#ingest}, para que una alerta
+ * lenta no frene la recepción. El orden entre workers lo recupera el buffer de {@link EventTimeService}. Las
+ * muestras de un datagrama con varias son un lote ya aceptado, como en {@link BatchIngestService}: no pasan por el
+ * rate limit, que condensaría casi todas las de un collar que despierta y envía lo acumulado.
+ *
+ * Datagrama (big-endian):
+ * {@code "VPD2" | u32 arranque | u32 seq | u8 longitud + deviceId | u8 n | n × muestra | etiqueta de 16 bytes}
+ * con la muestra de 15 bytes de {@link CompactSampleReader}. El arranque es un contador que el collar incrementa
+ * en cada arranque y reinicia su {@link SequenceWindow}. La etiqueta son los primeros 16 bytes del HMAC-SHA256 de
+ * todo lo anterior con la clave del collar, {@code HMAC-SHA256(auth-key, deviceId)}, que se graba al aprovisionarlo
+ * ({@link #deviceKeyHex}); se comprueba antes de tocar la ventana, así un datagrama falsificado no la mueve.
+ *
+ * Los firmwares antiguos envían {@code "VPD1"}, sin arranque ni etiqueta; solo se aceptan con
+ * {@code allow-unsigned} y el reinicio se deduce de un salto atrás en la secuencia.
+ *
+ * Las ventanas de secuencias se guardan en el snapshot de estado ({@link Checkpointable}): si no, tras un reinicio
+ * la primera secuencia de cada collar se aceptaría sin más y un datagrama capturado podría reinyectarse.
+ *
+ * Si el ack está activo se responde {@code "VPA1" | u32 seq}, también a los duplicados, para que el collar deje de
+ * reintentar y vuelva a dormir. Lo demasiado antiguo para saber si se recibió no se confirma: el collar no debe
+ * darlo por entregado.
+ */
+@Service
+public class UdpIngestService implements SmartLifecycle, Checkpointable {
+    private static final Logger logger = LoggerFactory.getLogger(UdpIngestService.class);
+
+    private static final int MAGIC_V1 = ('V' << 24) | ('P' << 16) | ('D' << 8) | '1';
+    private static final int MAGIC_V2 = ('V' << 24) | ('P' << 16) | ('D' << 8) | '2';
+    private static final int ACK_MAGIC = ('V' << 24) | ('P' << 16) | ('A' << 8) | '1';
+    private static final int MAX_DATAGRAM = 1472; // Carga útil UDP sin fragmentar en Ethernet
+    private static final int TAG_BYTES = 16;
+    private static final String HMAC = "HmacSHA256";
+
+    @Value("${app.sensor.udp.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.sensor.udp.port:5683}")
+    private int port;
+
+    @Value("${app.sensor.udp.receive-buffer-bytes:4194304}")
+    private int receiveBufferBytes;
+
+    @Value("${app.sensor.udp.workers:2}")
+    private int workers;
+
+    @Value("${app.sensor.udp.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.sensor.udp.ack:true}")
+    private boolean ack;
+
+    // Secreto del que se deriva la clave de cada collar
+    @Value("${app.sensor.udp.auth-key:}")
+    private String authKey;
+
+    // Acepta datagramas VPD1 sin autenticar, mientras quedan collares con firmware antiguo
+    @Value("${app.sensor.udp.allow-unsigned:false}")
+    private boolean allowUnsigned;
+
+    // Solo firmwares VPD1: un salto atrás mayor que esto en la secuencia se toma como reinicio del collar
+    @Value("${app.sensor.udp.sequence-reset-gap:1024}")
+    private int sequenceResetGap;
+
+    @Value("${app.sensor.shutdown.quiesce-timeout-ms:5000}")
+    private long quiesceTimeoutMs;
+
+    @Autowired
+    private SensorProcessingService sensorProcessingService;
+
+    @Autowired
+    private DeviceRegistryService deviceRegistryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Las modifica el hilo del selector; el snapshot las lee bloqueando cada ventana
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+    private final byte[] idBuffer = new byte[255];
+    private final byte[] tagBuffer = new byte[TAG_BYTES];
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread loop;
+    private ThreadPoolExecutor pool;
+    private Counter datagrams;
+    private Counter duplicates;
+    private Counter stale;
+    private Counter malformed;
+    private Counter unauthenticated;
+    private Counter unknown;
+    private Counter dropped;
+    private volatile boolean running;
+
+    /** Estado de un collar conocido: su ventana de secuencias y su HMAC ya inicializado (null si viene del snapshot). */
+    private record Peer(SequenceWindow window, Mac mac) {
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            return;
+        }
+        datagrams = Counter.builder("vitalpaw.udp.datagrams")
+                .description("Datagramas UDP recibidos")
+                .register(meterRegistry);
+        duplicates = Counter.builder("vitalpaw.udp.duplicates")
+                .description("Datagramas descartados por número de secuencia repetido")
+                .register(meterRegistry);
+        stale = Counter.builder("vitalpaw.udp.stale")
+                .description("Datagramas demasiado antiguos o de un arranque anterior; no se confirman")
+                .register(meterRegistry);
+        malformed = Counter.builder("vitalpaw.udp.malformed")
+                .description("Datagramas con formato inválido")
+                .register(meterRegistry);
+        unauthenticated = Counter.builder("vitalpaw.udp.unauthenticated")
+                .description("Datagramas sin etiqueta o con etiqueta HMAC incorrecta")
+                .register(meterRegistry);
+        unknown = Counter.builder("vitalpaw.udp.unknown")
+                .description("Datagramas de dispositivos no registrados")
+                .register(meterRegistry);
+        dropped = Counter.builder("vitalpaw.udp.dropped")
+                .description("Datagramas descartados por cola de procesamiento llena")
+                .register(meterRegistry);
+        if (authKey == null || authKey.isBlank()) {
+            // Sin clave no hay forma de distinguir un collar de cualquiera que conozca su ID
+            logger.error("Canal UDP no iniciado: falta app.sensor.udp.auth-key");
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        int size = Math.max(1, workers);
+        pool = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "udp-ingest-worker-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("vitalpaw.udp.queue", pool, p -> p.getQueue().size())
+                .description("Datagramas pendientes de procesar")
+                .register(meterRegistry);
+        try {
+            selector = Selector.open();
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferBytes);
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            // Igual que MQTT: el servicio arranca aunque el canal falle, para no perder el resto de la ingesta
+            logger.error("No se pudo abrir el canal UDP en el puerto {}: {}", port, e.getMessage(), e);
+            return;
+        }
+        loop = new Thread(this::receiveLoop, "udp-ingest-selector");
+        loop.setDaemon(true);
+        loop.start();
+        logger.info("Canal UDP escuchando en el puerto {} ({} workers)", localPort(), size);
+    }
+
+    /** Puerto local efectivo (útil con {@code port: 0}); -1 si el canal no está abierto. */
+    public int localPort() {
+        try {
+            return channel != null ? ((InetSocketAddress) channel.getLocalAddress()).getPort() : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer in = ByteBuffer.allocateDirect(MAX_DATAGRAM + 1);
+        ByteBuffer out = ByteBuffer.allocateDirect(8);
+        while (running) {
+            try {
+                if (selector.select(500) == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+                // Se vacía el socket entero en cada despertar: un select por datagrama limita el rendimiento
+                SocketAddress sender;
+                while ((sender = channel.receive(in)) != null) {
+                    in.flip();
+                    datagrams.increment();
+                    int seq = handle(in);
+                    if (seq != Integer.MIN_VALUE && ack) {
+                        out.clear();
+                        out.putInt(ACK_MAGIC).putInt(seq).flip();
+                        channel.send(out, sender);
+                    }
+                    in.clear();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Error en el canal UDP: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodifica un datagrama y entrega sus lecturas; devuelve el número de secuencia a confirmar o
+     * {@link Integer#MIN_VALUE} si no debe confirmarse.
+     */
+    int handle(ByteBuffer datagram) {
+        int start = datagram.position();
+        if (datagram.remaining() > MAX_DATAGRAM || datagram.remaining() < 10) {
+            malformed.increment();
+            return Integer.MIN_VALUE;
+        }
+        int magic = datagram.getInt();
+        boolean withBoot = magic == MAGIC_V2;
+        if ((magic != MAGIC_V1 && !withBoot) || (withBoot && datagram.remaining() < 10)) {
+            malformed.increment();
+            return Integer.MIN_VALUE;
+        }
+        int boot = withBoot ? datagram.getInt() : 0;
+        int seq = datagram.getInt();
+        int idLength = datagram.get() & 0xFF;
+        if (datagram.remaining() < idLength + 1) {
+            malformed.increment();
+            return Integer.MIN_VALUE;
+        }
+        datagram.get(idBuffer, 0, idLength);
+        String deviceId = new String(idBuffer, 0, idLength, StandardCharsets.UTF_8);
+        int count = datagram.get() & 0xFF;
+        int samplesBytes = count * CompactSampleReader.SAMPLE_BYTES;
+        if (datagram.remaining() != samplesBytes + (withBoot ? TAG_BYTES : 0)) {
+            malformed.increment();
+            return Integer.MIN_VALUE;
+        }
+        if (!withBoot && !allowUnsigned) {
+            unauthenticated.increment();
+            return Integer.MIN_VALUE;
+        }
+        // El estado solo se crea para IDs que pasan el filtro: un emisor con IDs inventados no hace crecer el mapa
+        Peer peer = peers.get(deviceId);
+        if (peer == null || peer.mac() == null) {
+            if (!deviceRegistryService.isKnown(deviceId)) {
+                unknown.increment();
+                return Integer.MIN_VALUE;
+            }
+            peer = new Peer(peer != null ? peer.window() : new SequenceWindow(sequenceResetGap), mac(deviceId));
+            peers.put(deviceId, peer);
+        }
+        if (withBoot && !verify(peer.mac(), datagram, start, datagram.position() + samplesBytes)) {
+            unauthenticated.increment();
+            return Integer.MIN_VALUE;
+        }
+        SequenceWindow window = peer.window();
+        SequenceWindow.Verdict verdict;
+        synchronized (window) {
+            verdict = withBoot ? window.check(boot, seq) : window.check(seq);
+        }
+        switch (verdict) {
+            case DUPLICATE -> {
+                duplicates.increment();
+                return seq;
+            }
+            case STALE -> {
+                stale.increment();
+                return Integer.MIN_VALUE;
+            }
+            case NEW -> {
+            }
+        }
+        SensorReading[] readings = new SensorReading[count];
+        for (int i = 0; i < count; i++) {
+            long ts = datagram.getLong();
+            float temperature = datagram.getFloat();
+            int pulse = datagram.getShort() & 0xFFFF;
+            String status = CompactSampleReader.statusOf(datagram.get() & 0xFF);
+            readings[i] = new SensorReading(deviceId, temperature, pulse, status, null, 0, ts);
+        }
+        boolean rateLimited = count == 1;
+        try {
+            pool.execute(() -> {
+                for (SensorReading reading : readings) {
+                    try {
+                        sensorProcessingService.ingest(reading, rateLimited);
+                    } catch (RuntimeException e) {
+                        logger.error("Error al procesar lectura UDP de {}: {}", deviceId, e.getMessage(), e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Sin confirmar: el collar lo reintentará cuando haya hueco
+            dropped.increment();
+            return Integer.MIN_VALUE;
+        }
+        return seq;
+    }
+
+    /** Compara la etiqueta en {@code tagAt} con el HMAC de {@code [start, tagAt)}; no mueve la posición. */
+    private boolean verify(Mac mac, ByteBuffer datagram, int start, int tagAt) {
+        ByteBuffer signed = datagram.duplicate();
+        signed.position(start).limit(tagAt);
+        mac.update(signed);
+        byte[] expected = mac.doFinal();
+        datagram.get(tagAt, tagBuffer);
+        return MessageDigest.isEqual(Arrays.copyOf(expected, TAG_BYTES), tagBuffer);
+    }
+
+    private Mac mac(String deviceId) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(deviceKey(deviceId), HMAC));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 no disponible", e);
+        }
+    }
+
+    private byte[] deviceKey(String deviceId) throws GeneralSecurityException {
+        Mac master = Mac.getInstance(HMAC);
+        master.init(new SecretKeySpec(authKey.getBytes(StandardCharsets.UTF_8), HMAC));
+        return master.doFinal(deviceId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Clave del collar en hexadecimal, para grabarla al aprovisionarlo; null si no hay clave configurada. */
+    public String deviceKeyHex(String deviceId) {
+        if (authKey == null || authKey.isBlank()) {
+            return null;
+        }
+        try {
+            return HexFormat.of().formatHex(deviceKey(deviceId));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 no disponible", e);
+        }
+    }
+
+    @Override
+    public String checkpointName() {
+        return "udp-sequence-windows";
+    }
+
+    @Override
+    public void writeCheckpoint(DataOutputStream out) throws IOException {
+        List<Map.Entry<String, Peer>> entries = new ArrayList<>(peers.entrySet());
+        out.writeByte(1);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Peer> entry : entries) {
+            out.writeUTF(entry.getKey());
+            SequenceWindow window = entry.getValue().window();
+            synchronized (window) {
+                window.write(out);
+            }
+        }
+    }
+
+    // Se restaura antes de abrir el canal; el HMAC de cada collar se crea con su primer datagrama
+    @Override
+    public void readCheckpoint(DataInputStream in) throws IOException {
+        if (in.readByte() != 1) {
+            return;
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String deviceId = in.readUTF();
+            SequenceWindow window = new SequenceWindow(sequenceResetGap);
+            window.read(in);
+            peers.put(deviceId, new Peer(window, null));
+        }
+        logger.info("Restauradas las ventanas de secuencias UDP de {} collares", count);
+    }
+
+    /** Deja de recibir y espera a que los workers entreguen lo ya aceptado. */
+    @Override
+    public void stop() {
+        running = false;
+        if (loop == null) {
+            return;
+        }
+        selector.wakeup();
+        try {
+            loop.join(quiesceTimeoutMs);
+            channel.close();
+            selector.close();
+            pool.shutdown();
+            if (!pool.awaitTermination(quiesceTimeoutMs, TimeUnit.MILLISECONDS)) {
+                logger.warn("Quedaron {} datagramas UDP sin procesar al detener el canal", pool.getQueue().size());
+            }
+        } catch (IOException e) {
+            logger.warn("Error al cerrar el canal UDP: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        loop = null;
+        logger.info("Canal UDP detenido");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return LifecyclePhases.INGEST;
+    }
+}
@@ -0,0 +1,110 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lector incremental del formato binario compacto de muestras, pensado para pasarelas que suben sesiones
+ * grabadas. Todo big-endian:
+ * <pre>
+ *   "VPS1"                                          cabecera (4 bytes)
+ *   repetido hasta fin de flujo:
+ *     u8 longitud + deviceId UTF-8, u16 n           bloque de dispositivo
+ *     n × (i64 ts epoch ms, f32 temperatura,        muestra de 15 bytes
+ *          u16 pulso, u8 estado de movimiento)
+ * </pre>
+ * Lee de muestra en muestra sin cargar el cuerpo completo; el flujo debe venir ya con buffer.
+ */
+public class CompactSampleReader {
+
+    /** Bytes de cada muestra: ts, temperatura, pulso y estado. */
+    public static final int SAMPLE_BYTES = 15;
+
+    private static final byte[] MAGIC = {'V', 'P', 'S', '1'};
+    private static final String[] STATUSES = {null, "En movimiento", "Sin movimiento", "Caído", "Actividad baja"};
+
+    private final DataInputStream in;
+    private final byte[] idBuffer = new byte[255];
+    private boolean started;
+    private int remainingInBlock;
+    private String deviceId;
+    private long timestamp;
+    private float temperature;
+    private int pulse;
+    private String status;
+
+    public CompactSampleReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Avanza a la siguiente muestra; devuelve false al terminar el flujo limpiamente.
+     * Lanza {@link IllegalArgumentException} si la cabecera no es válida y {@link EOFException} si el flujo
+     * se corta a mitad de un bloque.
+     */
+    public boolean next() throws IOException {
+        if (!started) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IllegalArgumentException("Cabecera de formato binario no reconocida");
+                }
+            }
+            started = true;
+        }
+        while (remainingInBlock == 0) {
+            int idLength = in.read();
+            if (idLength < 0) {
+                return false;
+            }
+            in.readFully(idBuffer, 0, idLength);
+            deviceId = new String(idBuffer, 0, idLength, StandardCharsets.UTF_8);
+            remainingInBlock = in.readUnsignedShort();
+        }
+        timestamp = in.readLong();
+        temperature = in.readFloat();
+        pulse = in.readUnsignedShort();
+        status = statusOf(in.readUnsignedByte());
+        remainingInBlock--;
+        return true;
+    }
+
+    public String deviceId() {
+        return deviceId;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public float temperature() {
+        return temperature;
+    }
+
+    public int pulse() {
+        return pulse;
+    }
+
+    public String status() {
+        return status;
+    }
+
+    /** Estado de movimiento de un código del formato (null si no se conoce). */
+    public static String statusOf(int code) {
+        return code < STATUSES.length ? STATUSES[code] : null;
+    }
+
+    /** Código de estado del formato binario (0 = sin estado). */
+    public static int statusCode(String status) {
+        for (int i = 1; i < STATUSES.length; i++) {
+            if (STATUSES[i].equalsIgnoreCase(status)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
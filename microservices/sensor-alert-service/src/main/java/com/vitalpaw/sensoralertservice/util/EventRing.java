@@ -0,0 +1,62 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Anillo de capacidad fija con los últimos eventos de un stream, cada uno con un id creciente. Permite reanudar
+ * un stream desde un id ({@code Last-Event-ID} de SSE) reenviando los eventos posteriores que sigan en memoria.
+ * No es thread-safe.
+ */
+public class EventRing<T> {
+
+    private final long[] ids;
+    private final Object[] events;
+    private int head; // Posición del más antiguo
+    private int size;
+
+    public EventRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva");
+        }
+        this.ids = new long[capacity];
+        this.events = new Object[capacity];
+    }
+
+    /** Añade un evento con un id mayor que los anteriores; si está lleno se pierde el más antiguo. */
+    public void add(long id, T event) {
+        int tail = (head + size) % ids.length;
+        ids[tail] = id;
+        events[tail] = event;
+        if (size < ids.length) {
+            size++;
+        } else {
+            head = (head + 1) % ids.length;
+        }
+    }
+
+    /**
+     * Entrega en orden los eventos con id mayor que {@code lastId} y devuelve cuántos. Si {@code lastId} es más
+     * antiguo que todo lo retenido, entrega el anillo completo.
+     */
+    @SuppressWarnings("unchecked")
+    public int since(long lastId, ObjLongConsumer<T> consumer) {
+        int delivered = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % ids.length;
+            if (ids[index] > lastId) {
+                consumer.accept((T) events[index], ids[index]);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /** Id del evento más antiguo retenido, o -1 si está vacío. */
+    public long oldestId() {
+        return size > 0 ? ids[head] : -1;
+    }
+
+    public int size() {
+        return size;
+    }
+}
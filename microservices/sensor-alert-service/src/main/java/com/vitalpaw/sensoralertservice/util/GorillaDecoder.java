@@ -0,0 +1,102 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodificador de los bloques de {@link GorillaEncoder}. Lee con accesos absolutos directamente del
+ * {@link ByteBuffer} (p. ej. una porción de un segmento mapeado en memoria), sin copiarlo ni modificar su posición.
+ */
+public class GorillaDecoder {
+
+    private final ByteBuffer data;
+    private final int count;
+    private final int series;
+    private final int[] bits;
+    private final int[] leading;
+    private final int[] trailing;
+    private long position;
+    private int read;
+    private long timestamp;
+    private long delta;
+
+    public GorillaDecoder(ByteBuffer data, int count, int series) {
+        this.data = data;
+        this.count = count;
+        this.series = series;
+        this.bits = new int[series];
+        this.leading = new int[series];
+        this.trailing = new int[series];
+    }
+
+    /** Avanza al siguiente punto; false cuando no quedan. */
+    public boolean next() {
+        if (read == count) {
+            return false;
+        }
+        if (read == 0) {
+            timestamp = readBits(64);
+            for (int s = 0; s < series; s++) {
+                bits[s] = (int) readBits(32);
+            }
+        } else {
+            delta += readDeltaOfDelta();
+            timestamp += delta;
+            for (int s = 0; s < series; s++) {
+                readValue(s);
+            }
+        }
+        read++;
+        return true;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public float value(int s) {
+        return Float.intBitsToFloat(bits[s]);
+    }
+
+    private long readDeltaOfDelta() {
+        if (readBits(1) == 0) {
+            return 0;
+        }
+        if (readBits(1) == 0) {
+            return readBits(7) - 63;
+        }
+        if (readBits(1) == 0) {
+            return readBits(9) - 255;
+        }
+        if (readBits(1) == 0) {
+            return readBits(12) - 2047;
+        }
+        return readBits(64);
+    }
+
+    private void readValue(int s) {
+        if (readBits(1) == 0) {
+            return; // Mismo valor que el anterior
+        }
+        if (readBits(1) == 1) {
+            leading[s] = (int) readBits(5);
+            int meaningful = (int) readBits(5) + 1;
+            trailing[s] = 32 - leading[s] - meaningful;
+        }
+        int meaningful = 32 - leading[s] - trailing[s];
+        bits[s] ^= (int) readBits(meaningful) << trailing[s];
+    }
+
+    private long readBits(int n) {
+        long result = 0;
+        while (n > 0) {
+            int offset = (int) (position & 7);
+            int available = 8 - offset;
+            int take = Math.min(available, n);
+            int b = data.get((int) (position >>> 3)) & 0xFF;
+            result = (result << take) | ((b >>> (available - take)) & ((1 << take) - 1));
+            position += take;
+            n -= take;
+        }
+        return result;
+    }
+}
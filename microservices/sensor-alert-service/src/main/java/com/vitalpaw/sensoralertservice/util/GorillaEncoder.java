@@ -0,0 +1,144 @@
+package com.vitalpaw.sensoralertservice.util;
+
+/**
+ * Codificador de series temporales al estilo Gorilla (Facebook): timestamps con delta-of-delta y valores
+ * {@code float} con XOR contra el anterior, todo en un único flujo de bits. Con lecturas a intervalo casi
+ * constante y valores que cambian poco, cada punto ocupa del orden de 5-6 bytes para dos series.
+ *
+ * Admite varias series que comparten timestamp (p. ej. temperatura y pulso). Los timestamps deben ser no
+ * decrecientes; el llamador descarta los que llegan desordenados. No es thread-safe.
+ */
+public class GorillaEncoder {
+
+    private final int series;
+    private final int[] previousBits;
+    private final int[] previousLeading;
+    private final int[] previousTrailing;
+    private long[] words = new long[8];
+    private long bitCount;
+    private int count;
+    private long firstTimestamp;
+    private long previousTimestamp;
+    private long previousDelta;
+
+    public GorillaEncoder(int series) {
+        this.series = series;
+        this.previousBits = new int[series];
+        this.previousLeading = new int[series];
+        this.previousTrailing = new int[series];
+    }
+
+    public void add(long timestampMillis, float... values) {
+        if (count == 0) {
+            firstTimestamp = timestampMillis;
+            writeBits(timestampMillis, 64);
+            for (int s = 0; s < series; s++) {
+                int bits = Float.floatToRawIntBits(values[s]);
+                writeBits(bits, 32);
+                previousBits[s] = bits;
+                previousLeading[s] = -1;
+            }
+        } else {
+            long delta = timestampMillis - previousTimestamp;
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+            for (int s = 0; s < series; s++) {
+                writeValue(s, Float.floatToRawIntBits(values[s]));
+            }
+        }
+        previousTimestamp = timestampMillis;
+        count++;
+    }
+
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            writeBits(0b0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            writeBits(0b10, 2);
+            writeBits(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            writeBits(0b110, 3);
+            writeBits(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(dod + 2047, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(dod, 64);
+        }
+    }
+
+    private void writeValue(int s, int bits) {
+        int xor = bits ^ previousBits[s];
+        previousBits[s] = bits;
+        if (xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+        int leading = Math.min(31, Integer.numberOfLeadingZeros(xor));
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        if (previousLeading[s] >= 0 && leading >= previousLeading[s] && trailing >= previousTrailing[s]) {
+            // Los bits significativos caben en la ventana del valor anterior
+            writeBits(0b10, 2);
+            int meaningful = 32 - previousLeading[s] - previousTrailing[s];
+            writeBits(xor >>> previousTrailing[s], meaningful);
+        } else {
+            int meaningful = 32 - leading - trailing;
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(meaningful - 1, 5);
+            writeBits(xor >>> trailing, meaningful);
+            previousLeading[s] = leading;
+            previousTrailing[s] = trailing;
+        }
+    }
+
+    private void writeBits(long value, int n) {
+        int index = (int) (bitCount >>> 6);
+        if (index + 1 >= words.length) {
+            long[] grown = new long[words.length * 2];
+            System.arraycopy(words, 0, grown, 0, words.length);
+            words = grown;
+        }
+        if (n < 64) {
+            value &= (1L << n) - 1;
+        }
+        int free = 64 - (int) (bitCount & 63);
+        if (n <= free) {
+            words[index] |= value << (free - n);
+        } else {
+            words[index] |= value >>> (n - free);
+            words[index + 1] |= value << (64 - (n - free));
+        }
+        bitCount += n;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int series() {
+        return series;
+    }
+
+    public long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long lastTimestamp() {
+        return previousTimestamp;
+    }
+
+    public int sizeInBytes() {
+        return (int) ((bitCount + 7) >>> 3);
+    }
+
+    /** Copia el flujo de bits actual; el codificador puede seguir añadiendo puntos después. */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[sizeInBytes()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words[i >>> 3] >>> (56 - 8 * (i & 7)));
+        }
+        return bytes;
+    }
+}
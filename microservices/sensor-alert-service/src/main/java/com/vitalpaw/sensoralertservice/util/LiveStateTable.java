@@ -0,0 +1,202 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import com.vitalpaw.sensoralertservice.dto.LiveDeviceStateDTO;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Estado en vivo por dispositivo (última temperatura, pulso, estado, actividad, hora y secuencia) en arrays
+ * primitivos paralelos indexados por una tabla de direccionamiento abierto sobre el hash de 64 bits del
+ * deviceId. La tabla se reserva entera al construirla y no crea objetos por lectura: {@value #BYTES_PER_SLOT}
+ * bytes por ranura. La capacidad no se redondea a potencia de dos, sino justo a la carga máxima de 3/4 sobre los
+ * dispositivos esperados: unos 63 bytes por dispositivo.
+ * El deviceId no se copia: se guarda la referencia a la instancia que ya mantiene el contexto del dispositivo.
+ *
+ * Las lecturas no bloquean: cada ranura lleva una versión (seqlock) que el escritor deja impar mientras escribe,
+ * y el lector reintenta si la ve impar o cambia durante la copia. Los escritores de una ranura se serializan con
+ * un lock por franja; las altas, poco frecuentes, con un lock global. No admite borrados.
+ */
+public class LiveStateTable {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int STRIPES = 256;
+    private static final short NO_ACTIVITY = Short.MIN_VALUE;
+    private static final long EMPTY = 0L;
+
+    /** Bytes por ranura con referencias comprimidas: hash, deviceId, petId, versión, hora, secuencia y vitales. */
+    public static final int BYTES_PER_SLOT = 8 + 4 + 8 + 4 + 8 + 8 + 2 + 2 + 2 + 1;
+
+    private final int capacity;
+    private final int maxEntries;
+    private final Object[] locks = new Object[STRIPES];
+    private final Object insertLock = new Object();
+    private volatile int size;
+
+    private final long[] hashes; // EMPTY = ranura libre; se publica la última al dar de alta
+    private final String[] deviceIds;
+    private final long[] petIds;
+    private final int[] versions; // Impar = escritura en curso
+    private final long[] lastSeen;
+    private final long[] sequences;
+    private final short[] temperatures; // centésimas de grado
+    private final short[] pulses;
+    private final short[] activities; // centésimas de m/s²
+    private final byte[] statuses; // código de CompactSampleReader
+
+    public LiveStateTable(int expectedDevices) {
+        // Carga máxima de 3/4 para que las cadenas de sondeo sigan cortas
+        this.capacity = (int) Math.max(16, Math.min(1 << 30, (expectedDevices * 4L + 2) / 3));
+        this.maxEntries = (int) (capacity * 3L / 4);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        hashes = new long[capacity];
+        deviceIds = new String[capacity];
+        petIds = new long[capacity];
+        versions = new int[capacity];
+        lastSeen = new long[capacity];
+        sequences = new long[capacity];
+        temperatures = new short[capacity];
+        pulses = new short[capacity];
+        activities = new short[capacity];
+        statuses = new byte[capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Bytes reservados por los arrays de la tabla. */
+    public long footprintBytes() {
+        return (long) capacity * BYTES_PER_SLOT;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Guarda la última lectura del dispositivo, dándolo de alta si es nuevo. Devuelve false si la tabla está
+     * llena y el dispositivo no estaba.
+     */
+    public boolean update(String deviceId, long petId, long timestampMillis, float temperature, int pulse,
+                          String status, Float activity) {
+        long hash = hashOf(deviceId);
+        int slot = find(hash, deviceId);
+        if (slot < 0) {
+            slot = insert(hash, deviceId, petId);
+            if (slot < 0) {
+                return false;
+            }
+        }
+        synchronized (locks[slot & (STRIPES - 1)]) {
+            int version = versions[slot];
+            INTS.setOpaque(versions, slot, version + 1);
+            // Ningún campo puede hacerse visible antes que la versión impar
+            VarHandle.storeStoreFence();
+            petIds[slot] = petId;
+            lastSeen[slot] = timestampMillis;
+            sequences[slot]++;
+            temperatures[slot] = clamp(Math.round(temperature * 100));
+            pulses[slot] = clamp(pulse);
+            activities[slot] = activity != null ? clamp(Math.round(activity * 100)) : NO_ACTIVITY;
+            statuses[slot] = (byte) CompactSampleReader.statusCode(status);
+            INTS.setRelease(versions, slot, version + 2);
+        }
+        return true;
+    }
+
+    /** Copia coherente del estado del dispositivo sin bloquear; null si nunca ha enviado datos. */
+    public LiveDeviceStateDTO get(String deviceId) {
+        int slot = find(hashOf(deviceId), deviceId);
+        if (slot < 0) {
+            return null;
+        }
+        while (true) {
+            int before = (int) INTS.getAcquire(versions, slot);
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long petId = petIds[slot];
+            long seen = lastSeen[slot];
+            long sequence = sequences[slot];
+            short temperature = temperatures[slot];
+            short pulse = pulses[slot];
+            short activity = activities[slot];
+            byte status = statuses[slot];
+            // Las copias deben completarse antes de releer la versión
+            VarHandle.loadLoadFence();
+            if ((int) INTS.getOpaque(versions, slot) == before) {
+                return new LiveDeviceStateDTO(deviceIds[slot], petId, temperature / 100f, pulse,
+                        CompactSampleReader.statusOf(status & 0xFF), activity == NO_ACTIVITY ? null : activity / 100f,
+                        seen, sequence);
+            }
+        }
+    }
+
+    /** Dispositivos con alguna lectura posterior a {@code sinceMillis}; recorre la tabla sin bloquear. */
+    public int countSeenSince(long sinceMillis) {
+        int count = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if ((long) LONGS.getOpaque(hashes, slot) != EMPTY && (long) LONGS.getOpaque(lastSeen, slot) > sinceMillis) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int find(long hash, String deviceId) {
+        for (int slot = home(hash); ; slot = next(slot)) {
+            long current = (long) LONGS.getAcquire(hashes, slot);
+            if (current == EMPTY) {
+                return -1;
+            }
+            if (current == hash && deviceId.equals(deviceIds[slot])) {
+                return slot;
+            }
+        }
+    }
+
+    private int insert(long hash, String deviceId, long petId) {
+        synchronized (insertLock) {
+            int slot = find(hash, deviceId);
+            if (slot >= 0) {
+                return slot;
+            }
+            if (size >= maxEntries) {
+                return -1;
+            }
+            slot = home(hash);
+            while (hashes[slot] != EMPTY) {
+                slot = next(slot);
+            }
+            deviceIds[slot] = deviceId;
+            petIds[slot] = petId;
+            // El hash se publica el último: quien lo ve ya ve el deviceId
+            LONGS.setRelease(hashes, slot, hash);
+            size++;
+            return slot;
+        }
+    }
+
+    // Reducción por multiplicación de los 32 bits altos del hash: reparte en [0, capacity) sin dividir
+    private int home(long hash) {
+        return (int) (((hash >>> 32) * capacity) >>> 32);
+    }
+
+    private int next(int slot) {
+        return slot + 1 == capacity ? 0 : slot + 1;
+    }
+
+    private static long hashOf(String deviceId) {
+        long hash = BloomFilter.hash64(deviceId);
+        return hash != EMPTY ? hash : 1L;
+    }
+
+    private static short clamp(int value) {
+        return (short) Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,134 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+
+/**
+ * Mapa concurrente de claves {@code long} primitivas (sin boxing) con direccionamiento abierto.
+ * Pensado para estado por dispositivo: las lecturas son lock-free y las inserciones, poco frecuentes,
+ * se serializan. No admite borrados individuales; {@link #clear()} reinicia la tabla completa.
+ */
+public class LongObjectMap<V> {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final class Table<V> {
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<V> values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                keys.set(i, EMPTY);
+            }
+        }
+    }
+
+    private volatile Table<V> table;
+    private volatile int size;
+
+    public LongObjectMap(int expectedSize) {
+        table = new Table<>(tableSizeFor(expectedSize));
+    }
+
+    public V get(long key) {
+        checkKey(key);
+        Table<V> t = table;
+        int i = mix(key) & t.mask;
+        while (true) {
+            long k = t.keys.get(i);
+            if (k == key) {
+                // El valor se publica antes que la clave, así que aquí ya es visible
+                return t.values.get(i);
+            }
+            if (k == EMPTY) {
+                return null;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> factory) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (this) {
+            existing = get(key);
+            if (existing != null) {
+                return existing;
+            }
+            V value = factory.apply(key);
+            if ((size + 1) * 4L > (table.mask + 1) * 3L) {
+                resize();
+            }
+            insert(table, key, value);
+            size++;
+            return value;
+        }
+    }
+
+    public void forEach(BiConsumer<Long, V> action) {
+        Table<V> t = table;
+        for (int i = 0; i <= t.mask; i++) {
+            long k = t.keys.get(i);
+            if (k != EMPTY) {
+                action.accept(k, t.values.get(i));
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        table = new Table<>(table.mask + 1);
+        size = 0;
+    }
+
+    private void resize() {
+        Table<V> old = table;
+        Table<V> bigger = new Table<>((old.mask + 1) * 2);
+        for (int i = 0; i <= old.mask; i++) {
+            long k = old.keys.get(i);
+            if (k != EMPTY) {
+                insert(bigger, k, old.values.get(i));
+            }
+        }
+        table = bigger;
+    }
+
+    private static <V> void insert(Table<V> t, long key, V value) {
+        int i = mix(key) & t.mask;
+        while (t.keys.get(i) != EMPTY) {
+            i = (i + 1) & t.mask;
+        }
+        t.values.set(i, value);
+        t.keys.set(i, key);
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Long.MIN_VALUE is reserved");
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int expected) {
+        int capacity = 16;
+        while (capacity * 3L < expected * 4L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,253 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.dto.VitalsSnapshotDTO;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Últimas {@code depth} lecturas de cada mascota en una tabla preasignada de arrays paralelos (struct-of-arrays):
+ * la ranura {@code s} ocupa las posiciones {@code [s * depth, (s + 1) * depth)} de cada columna. Toda la memoria
+ * se reserva al construirla, 11 bytes por muestra más unos 56 por ranura, y no se crea ningún objeto por
+ * lectura. Cuando se agotan las ranuras, una mascota nueva recupera la que lleva más tiempo sin escribirse si
+ * supera {@code reclaimAfterMs} (collares dados de baja o apagados); si no, se queda sin histórico en lugar de
+ * hacer crecer la tabla.
+ *
+ * Las escrituras y las lecturas de una ranura se serializan con un lock por franja de ranuras; la asignación y la
+ * recuperación de ranuras, con un lock propio.
+ */
+public class RecentVitalsTable {
+
+    private static final short NO_ACTIVITY = Short.MIN_VALUE;
+    private static final int STRIPES = 64;
+
+    private final int slots;
+    private final int depth;
+    private final long reclaimAfterMs;
+    // Ranura actual de cada mascota, -1 si no tiene; se pone a -1 cuando otra se la lleva
+    private final LongObjectMap<AtomicInteger> slotOf;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final Object[] locks = new Object[STRIPES];
+    private final Object assignLock = new Object();
+    private long noReclaimUntil; // Con assignLock: antes de esto ninguna ranura lleva reclaimAfterMs sin escribirse
+
+    // Por ranura
+    private final AtomicInteger[] holders; // Entrada de slotOf de la mascota que la ocupa
+    private final long[] lastWrites;
+    private final long[] origins;
+    private final int[] heads;
+    private final int[] sizes;
+    private final String[] deviceIds;
+    private final String[] lastStatuses; // Texto exacto de la última lectura, aunque no tenga código compacto
+
+    // Por muestra
+    private final int[] offsets; // ms desde el origen de la ranura
+    private final short[] temperatures; // centésimas de grado
+    private final short[] pulses;
+    private final short[] activities; // centésimas de m/s²
+    private final byte[] statuses; // código de CompactSampleReader
+
+    /** Sin recuperación: las ranuras se quedan con la primera mascota que las ocupa. */
+    public RecentVitalsTable(int slots, int depth) {
+        this(slots, depth, Long.MAX_VALUE);
+    }
+
+    public RecentVitalsTable(int slots, int depth, long reclaimAfterMs) {
+        if (slots <= 0 || depth <= 0 || reclaimAfterMs < 0) {
+            throw new IllegalArgumentException("Ranuras y profundidad deben ser positivas");
+        }
+        this.slots = slots;
+        this.depth = depth;
+        this.reclaimAfterMs = reclaimAfterMs;
+        this.slotOf = new LongObjectMap<>(slots);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        holders = new AtomicInteger[slots];
+        lastWrites = new long[slots];
+        origins = new long[slots];
+        heads = new int[slots];
+        sizes = new int[slots];
+        deviceIds = new String[slots];
+        lastStatuses = new String[slots];
+        int samples = Math.multiplyExact(slots, depth);
+        offsets = new int[samples];
+        temperatures = new short[samples];
+        pulses = new short[samples];
+        activities = new short[samples];
+        statuses = new byte[samples];
+    }
+
+    /** Bytes reservados por los arrays de la tabla (sin el índice de mascotas). */
+    public static long footprintBytes(int slots, int depth) {
+        return (long) slots * depth * 11 + (long) slots * (8 + 8 + 4 + 4 + 3 * 8);
+    }
+
+    /** Registra una lectura; devuelve false si la mascota no tiene ranura y no hay ninguna libre ni recuperable. */
+    public boolean record(long petId, String deviceId, long timestampMillis, float temperature, int pulse,
+                          String status, Float activity) {
+        AtomicInteger holder = slotOf.get(petId);
+        if (holder == null) {
+            if (nextSlot.get() >= slots && reclaimAfterMs == Long.MAX_VALUE) {
+                return false;
+            }
+            holder = slotOf.computeIfAbsent(petId, id -> new AtomicInteger(-1));
+        }
+        long now = System.currentTimeMillis();
+        while (true) {
+            int slot = holder.get();
+            if (slot < 0) {
+                slot = assign(holder, now);
+                if (slot < 0) {
+                    return false;
+                }
+            }
+            synchronized (locks[slot % STRIPES]) {
+                if (holders[slot] != holder) {
+                    continue; // Se la ha llevado otra mascota entre get() y el lock
+                }
+                lastWrites[slot] = now;
+                write(slot, deviceId, timestampMillis, temperature, pulse, status, activity);
+            }
+            return true;
+        }
+    }
+
+    private void write(int slot, String deviceId, long timestampMillis, float temperature, int pulse, String status,
+                       Float activity) {
+        long origin = origins[slot];
+        if (sizes[slot] == 0 || timestampMillis < origin || timestampMillis - origin > Integer.MAX_VALUE
+                || !Objects.equals(deviceId, deviceIds[slot])) {
+            // Primera lectura, ~24 días desde el origen, reloj hacia atrás o collar nuevo: se empieza de cero
+            origins[slot] = timestampMillis;
+            heads[slot] = 0;
+            sizes[slot] = 0;
+            deviceIds[slot] = deviceId;
+        }
+        int index = slot * depth + heads[slot];
+        offsets[index] = (int) (timestampMillis - origins[slot]);
+        temperatures[index] = clamp(Math.round(temperature * 100));
+        pulses[index] = clamp(pulse);
+        activities[index] = activity != null ? clamp(Math.round(activity * 100)) : NO_ACTIVITY;
+        statuses[index] = (byte) CompactSampleReader.statusCode(status);
+        lastStatuses[slot] = status;
+        heads[slot] = (heads[slot] + 1) % depth;
+        if (sizes[slot] < depth) {
+            sizes[slot]++;
+        }
+    }
+
+    /** Da a la mascota una ranura libre o la que lleva más tiempo sin escribirse; -1 si no hay ninguna. */
+    private int assign(AtomicInteger holder, long now) {
+        synchronized (assignLock) {
+            int slot = holder.get();
+            if (slot >= 0) {
+                return slot; // Otro hilo de la misma mascota llegó antes
+            }
+            slot = nextSlot.get() < slots ? nextSlot.getAndIncrement() : reclaim(now);
+            if (slot < 0) {
+                return -1;
+            }
+            synchronized (locks[slot % STRIPES]) {
+                holders[slot] = holder;
+                sizes[slot] = 0;
+                lastWrites[slot] = now;
+            }
+            holder.set(slot);
+            return slot;
+        }
+    }
+
+    // Con assignLock. Recorre todas las ranuras, pero solo cuando la tabla está llena y alguna puede haber caducado
+    private int reclaim(long now) {
+        if (reclaimAfterMs == Long.MAX_VALUE || now < noReclaimUntil) {
+            return -1;
+        }
+        int oldest = -1;
+        long oldestWrite = Long.MAX_VALUE;
+        for (int slot = 0; slot < slots; slot++) {
+            // Sin lock: el candidato se vuelve a comprobar con el lock de su franja
+            if (lastWrites[slot] < oldestWrite) {
+                oldestWrite = lastWrites[slot];
+                oldest = slot;
+            }
+        }
+        if (now - oldestWrite < reclaimAfterMs) {
+            noReclaimUntil = oldestWrite + reclaimAfterMs;
+            return -1;
+        }
+        synchronized (locks[oldest % STRIPES]) {
+            if (now - lastWrites[oldest] < reclaimAfterMs) {
+                return -1;
+            }
+            holders[oldest].set(-1);
+            holders[oldest] = null;
+        }
+        reclaimed.incrementAndGet();
+        return oldest;
+    }
+
+    /**
+     * Última lectura de la mascota y, si {@code maxSamples > 0}, hasta esa cantidad de las anteriores en columnas
+     * de la más antigua a la más reciente. Devuelve null si no hay lecturas.
+     */
+    public VitalsSnapshotDTO snapshot(long petId, int maxSamples) {
+        AtomicInteger holder = slotOf.get(petId);
+        int slot = holder != null ? holder.get() : -1;
+        if (slot < 0) {
+            return null;
+        }
+        synchronized (locks[slot % STRIPES]) {
+            int size = sizes[slot];
+            if (holders[slot] != holder || size == 0) {
+                return null;
+            }
+            int base = slot * depth;
+            int latest = base + (heads[slot] - 1 + depth) % depth;
+            SensorDataResponseDTO last = new SensorDataResponseDTO(deviceIds[slot], petId, temperatures[latest] / 100f,
+                    pulses[latest], lastStatuses[slot], activityOf(activities[latest]));
+
+            int count = Math.min(size, Math.max(0, maxSamples));
+            long[] timestamps = new long[count];
+            float[] temps = new float[count];
+            int[] pulseValues = new int[count];
+            Float[] activityValues = new Float[count];
+            String[] statusValues = new String[count];
+            for (int i = 0; i < count; i++) {
+                int index = base + (heads[slot] - count + i + depth) % depth;
+                timestamps[i] = origins[slot] + offsets[index];
+                temps[i] = temperatures[index] / 100f;
+                pulseValues[i] = pulses[index];
+                activityValues[i] = activityOf(activities[index]);
+                statusValues[i] = CompactSampleReader.statusOf(statuses[index] & 0xFF);
+            }
+            return new VitalsSnapshotDTO(petId, deviceIds[slot], origins[slot] + offsets[latest], last,
+                    timestamps, temps, pulseValues, activityValues, statusValues);
+        }
+    }
+
+    /** Ranuras asignadas hasta ahora. */
+    public int usedSlots() {
+        return Math.min(nextSlot.get(), slots);
+    }
+
+    /** Ranuras que han pasado de una mascota inactiva a otra. */
+    public long reclaimedSlots() {
+        return reclaimed.get();
+    }
+
+    public int capacity() {
+        return slots;
+    }
+
+    private static Float activityOf(short centi) {
+        return centi == NO_ACTIVITY ? null : centi / 100f;
+    }
+
+    private static short clamp(int value) {
+        return (short) Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,79 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Buffer acotado que ordena elementos por timestamp de evento. Las llegadas casi siempre vienen en orden, así que
+ * la inserción recorre desde el final y suele ser O(1); a igual timestamp se respeta el orden de llegada.
+ * No es thread-safe: el llamador sincroniza por dispositivo.
+ */
+public class ReorderBuffer<T> {
+
+    private final long[] timestamps;
+    private final Object[] items;
+    private int size;
+
+    public ReorderBuffer(int capacity) {
+        this.timestamps = new long[capacity];
+        this.items = new Object[capacity];
+    }
+
+    /** Inserta en orden; devuelve false si el buffer está lleno. */
+    public boolean offer(long timestamp, T item) {
+        if (size == items.length) {
+            return false;
+        }
+        int i = size;
+        while (i > 0 && timestamps[i - 1] > timestamp) {
+            timestamps[i] = timestamps[i - 1];
+            items[i] = items[i - 1];
+            i--;
+        }
+        timestamps[i] = timestamp;
+        items[i] = item;
+        size++;
+        return true;
+    }
+
+    /** Entrega en orden los elementos con timestamp menor o igual que {@code watermark}; devuelve cuántos. */
+    public int releaseUntil(long watermark, Consumer<T> consumer) {
+        int released = 0;
+        while (released < size && timestamps[released] <= watermark) {
+            released++;
+        }
+        release(released, consumer);
+        return released;
+    }
+
+    /** Entrega los {@code count} más antiguos (o todos si hay menos). */
+    @SuppressWarnings("unchecked")
+    public int release(int count, Consumer<T> consumer) {
+        int n = Math.min(count, size);
+        // Se compacta antes de entregar por si el consumidor vuelve a insertar
+        Object[] released = new Object[n];
+        System.arraycopy(items, 0, released, 0, n);
+        System.arraycopy(timestamps, n, timestamps, 0, size - n);
+        System.arraycopy(items, n, items, 0, size - n);
+        for (int i = size - n; i < size; i++) {
+            items[i] = null;
+        }
+        size -= n;
+        for (Object item : released) {
+            consumer.accept((T) item);
+        }
+        return n;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Timestamp más antiguo en el buffer; solo válido si no está vacío. */
+    public long oldestTimestamp() {
+        return timestamps[0];
+    }
+}
@@ -0,0 +1,109 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Ventana anti-duplicados sobre números de secuencia de 32 bits (como la anti-replay de IPsec): recuerda el
+ * mayor número visto y un mapa de bits con los 64 anteriores. La comparación es en aritmética de serie, así que
+ * soporta el desbordamiento del contador.
+ *
+ * Con época de arranque (un contador que el collar incrementa en cada arranque) el reinicio es explícito: una época
+ * posterior reinicia la ventana y una anterior se rechaza. Sin ella, un salto hacia atrás mayor que
+ * {@code resetGap} se interpreta como un reinicio del dispositivo. No es thread-safe.
+ */
+public class SequenceWindow {
+
+    private static final int WIDTH = 64;
+
+    public enum Verdict {
+        /** Primera vez que se recibe. */
+        NEW,
+        /** Ya se recibió: se puede volver a confirmar. */
+        DUPLICATE,
+        /** Demasiado antiguo para saber si se recibió, o de un arranque anterior: no se confirma. */
+        STALE
+    }
+
+    private final int resetGap;
+    private boolean initialized;
+    private int boot;
+    private int highest;
+    private long seen; // bit i = se recibió highest - i
+
+    public SequenceWindow(int resetGap) {
+        this.resetGap = Math.max(WIDTH, resetGap);
+    }
+
+    /** Registra {@code seq}; devuelve false si ya se había recibido o es demasiado antiguo. */
+    public boolean accept(int seq) {
+        return check(seq) == Verdict.NEW;
+    }
+
+    /** Registra {@code seq} sin época de arranque; el reinicio se deduce del salto hacia atrás. */
+    public Verdict check(int seq) {
+        if (initialized && highest - seq >= resetGap) {
+            reset(boot, seq);
+            return Verdict.NEW;
+        }
+        return slide(seq);
+    }
+
+    /** Registra {@code seq} del arranque {@code bootEpoch}. */
+    public Verdict check(int bootEpoch, int seq) {
+        if (!initialized || bootEpoch - boot > 0) {
+            reset(bootEpoch, seq);
+            return Verdict.NEW;
+        }
+        if (bootEpoch != boot) {
+            return Verdict.STALE;
+        }
+        return slide(seq);
+    }
+
+    private Verdict slide(int seq) {
+        if (!initialized) {
+            reset(boot, seq);
+            return Verdict.NEW;
+        }
+        int diff = seq - highest;
+        if (diff > 0) {
+            seen = diff >= WIDTH ? 1L : (seen << diff) | 1L;
+            highest = seq;
+            return Verdict.NEW;
+        }
+        int age = -diff;
+        if (age >= WIDTH) {
+            return Verdict.STALE;
+        }
+        long bit = 1L << age;
+        if ((seen & bit) != 0) {
+            return Verdict.DUPLICATE;
+        }
+        seen |= bit;
+        return Verdict.NEW;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeBoolean(initialized);
+        out.writeInt(boot);
+        out.writeInt(highest);
+        out.writeLong(seen);
+    }
+
+    /** Restaura la ventana: tras un reinicio del servicio no se vuelven a aceptar datagramas ya vistos. */
+    public void read(DataInputStream in) throws IOException {
+        initialized = in.readBoolean();
+        boot = in.readInt();
+        highest = in.readInt();
+        seen = in.readLong();
+    }
+
+    private void reset(int bootEpoch, int seq) {
+        initialized = true;
+        boot = bootEpoch;
+        highest = seq;
+        seen = 1L;
+    }
+}
@@ -0,0 +1,166 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Regresión lineal por mínimos cuadrados sobre las últimas {@code window} muestras de varias series que comparten
+ * el eje de tiempo (p. ej. temperatura y pulso de una misma lectura). Mantiene sumas acumuladas y resta la muestra
+ * que sale de la ventana, así que cada actualización es O(1) sin recorrer el buffer.
+ *
+ * Los tiempos se guardan en segundos relativos a un origen que se desplaza cuando crecen demasiado, para no perder
+ * precisión en las sumas de cuadrados. No es thread-safe: el llamador sincroniza por mascota.
+ */
+public class SlidingWindowRegression {
+
+    private static final double REBASE_AFTER_SECONDS = 86_400;
+
+    private final int window;
+    private final int series;
+    private final double[] times;
+    private final float[] values;     // series × window
+    private final double[] sumX;      // por serie
+    private final double[] sumTX;
+    private final double[] sumXX;
+    private double sumT;
+    private double sumTT;
+    private long originMillis = Long.MIN_VALUE;
+    private int head;
+    private int count;
+
+    public SlidingWindowRegression(int window, int series) {
+        this.window = window;
+        this.series = series;
+        this.times = new double[window];
+        this.values = new float[window * series];
+        this.sumX = new double[series];
+        this.sumTX = new double[series];
+        this.sumXX = new double[series];
+    }
+
+    /** Añade una muestra con un valor por serie; si la ventana está llena sale la más antigua. */
+    public void add(long timestampMillis, float... sample) {
+        if (originMillis == Long.MIN_VALUE) {
+            originMillis = timestampMillis;
+        }
+        double t = (timestampMillis - originMillis) / 1000.0;
+        if (t > REBASE_AFTER_SECONDS) {
+            rebase(Math.floor(t));
+            t = (timestampMillis - originMillis) / 1000.0;
+        }
+        if (count == window) {
+            double oldT = times[head];
+            sumT -= oldT;
+            sumTT -= oldT * oldT;
+            for (int s = 0; s < series; s++) {
+                double oldX = values[s * window + head];
+                sumX[s] -= oldX;
+                sumTX[s] -= oldT * oldX;
+                sumXX[s] -= oldX * oldX;
+            }
+        } else {
+            count++;
+        }
+        times[head] = t;
+        sumT += t;
+        sumTT += t * t;
+        for (int s = 0; s < series; s++) {
+            double x = sample[s];
+            values[s * window + head] = sample[s];
+            sumX[s] += x;
+            sumTX[s] += t * x;
+            sumXX[s] += x * x;
+        }
+        head = (head + 1) % window;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /** Pendiente de la serie en unidades por segundo; NaN si no hay varianza temporal. */
+    public double slope(int s) {
+        double denominator = count * sumTT - sumT * sumT;
+        if (count < 2 || denominator <= 0) {
+            return Double.NaN;
+        }
+        return (count * sumTX[s] - sumT * sumX[s]) / denominator;
+    }
+
+    /** Valor estimado por la recta en el instante dado. */
+    public double predict(int s, long timestampMillis) {
+        double slope = slope(s);
+        if (Double.isNaN(slope)) {
+            return Double.NaN;
+        }
+        double intercept = (sumX[s] - slope * sumT) / count;
+        return intercept + slope * ((timestampMillis - originMillis) / 1000.0);
+    }
+
+    /** Coeficiente de determinación R²: cercano a 1 cuando la tendencia es sostenida y no ruido. */
+    public double rSquared(int s) {
+        double covariance = count * sumTX[s] - sumT * sumX[s];
+        double varT = count * sumTT - sumT * sumT;
+        double varX = count * sumXX[s] - sumX[s] * sumX[s];
+        if (count < 2 || varT <= 0 || varX <= 0) {
+            return 0;
+        }
+        return (covariance * covariance) / (varT * varX);
+    }
+
+    /** Desplaza el origen de tiempos {@code shiftSeconds}; ocurre como mucho una vez al día por serie. */
+    private void rebase(double shiftSeconds) {
+        for (int s = 0; s < series; s++) {
+            sumTX[s] -= shiftSeconds * sumX[s];
+        }
+        sumTT += -2 * shiftSeconds * sumT + count * shiftSeconds * shiftSeconds;
+        sumT -= count * shiftSeconds;
+        for (int i = 0; i < window; i++) {
+            times[i] -= shiftSeconds;
+        }
+        originMillis += (long) (shiftSeconds * 1000);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeLong(originMillis);
+        out.writeInt(head);
+        out.writeInt(count);
+        for (double t : times) {
+            out.writeDouble(t);
+        }
+        for (float v : values) {
+            out.writeFloat(v);
+        }
+    }
+
+    /** Restaura el estado y recalcula las sumas a partir de la ventana guardada. */
+    public void read(DataInputStream in) throws IOException {
+        originMillis = in.readLong();
+        head = in.readInt();
+        count = in.readInt();
+        for (int i = 0; i < window; i++) {
+            times[i] = in.readDouble();
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readFloat();
+        }
+        sumT = sumTT = 0;
+        Arrays.fill(sumX, 0);
+        Arrays.fill(sumTX, 0);
+        Arrays.fill(sumXX, 0);
+        for (int k = 0; k < count; k++) {
+            int i = (head - 1 - k + window) % window;
+            double t = times[i];
+            sumT += t;
+            sumTT += t * t;
+            for (int s = 0; s < series; s++) {
+                double x = values[s * window + i];
+                sumX[s] += x;
+                sumTX[s] += t * x;
+                sumXX[s] += x * x;
+            }
+        }
+    }
+}
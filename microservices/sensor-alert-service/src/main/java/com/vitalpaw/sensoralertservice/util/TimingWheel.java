@@ -0,0 +1,92 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Rueda de temporizadores (hashed timing wheel): cada elemento cae en la casilla de su tick de vencimiento módulo el
+ * número de casillas. Programar es O(1) y avanzar la rueda solo recorre las casillas de los ticks transcurridos,
+ * no todos los elementos pendientes. Los vencimientos a más de una vuelta comparten casilla y esperan a su tick.
+ *
+ * No es thread-safe; quien la use debe serializar las llamadas.
+ */
+public class TimingWheel<T> {
+
+    private record Entry<T>(T item, long tick) {
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<Entry<T>>[] buckets;
+    private long processedTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int slots, long startMillis) {
+        if (tickMillis <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("Tick y casillas deben ser positivos");
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, slots) - 1) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = capacity - 1;
+        this.buckets = new List[capacity];
+        for (int i = 0; i < capacity; i++) {
+            buckets[i] = new ArrayList<>(4);
+        }
+        this.processedTick = startMillis / tickMillis;
+    }
+
+    /** Programa el elemento; vence en el primer {@link #advance} con hora igual o posterior a {@code deadlineMillis}. */
+    public void schedule(T item, long deadlineMillis) {
+        // Redondeo hacia arriba: nunca vence antes de su hora; lo ya vencido sale en el siguiente avance
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), processedTick + 1);
+        buckets[(int) (tick & mask)].add(new Entry<>(item, tick));
+        size++;
+    }
+
+    /** Avanza hasta {@code nowMillis} entregando los elementos vencidos; devuelve cuántos. */
+    public int advance(long nowMillis, Consumer<T> expired) {
+        long nowTick = Math.floorDiv(nowMillis, tickMillis);
+        if (nowTick <= processedTick) {
+            return 0;
+        }
+        // Tras una pausa de más de una vuelta basta con visitar cada casilla una vez
+        long from = Math.max(processedTick + 1, nowTick - mask);
+        processedTick = nowTick;
+        int count = 0;
+        for (long tick = from; tick <= nowTick; tick++) {
+            List<Entry<T>> bucket = buckets[(int) (tick & mask)];
+            for (int i = bucket.size() - 1; i >= 0; i--) {
+                Entry<T> entry = bucket.get(i);
+                if (entry.tick() <= nowTick) {
+                    // Quita sin desplazar: el último ocupa su sitio
+                    bucket.set(i, bucket.get(bucket.size() - 1));
+                    bucket.remove(bucket.size() - 1);
+                    size--;
+                    count++;
+                    expired.accept(entry.item());
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Entrega todos los elementos pendientes sin esperar a su hora. */
+    public int drain(Consumer<T> expired) {
+        int count = 0;
+        for (List<Entry<T>> bucket : buckets) {
+            for (Entry<T> entry : bucket) {
+                expired.accept(entry.item());
+                count++;
+            }
+            bucket.clear();
+        }
+        size = 0;
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,263 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Codificación binaria con deltas de las lecturas en vivo (subprotocolo {@value #PROTOCOL}). Por mascota se emite
+ * una secuencia numerada de frames: un keyframe con el estado completo y, mientras el cliente no pierda ninguno,
+ * deltas con solo los campos que cambian. Una lectura típica ocupa 5-7 bytes frente a ~110 del JSON.
+ * <pre>
+ *   keyframe: 0x01 | varint petId | varint seq | u8 len + deviceId | zz temp | varint pulso | estado | zz actividad
+ *   delta:    0x02 | varint petId | varint seq | u8 máscara (1 temp, 2 pulso, 4 estado, 8 actividad)
+ *                  | [zz Δtemp] [zz Δpulso] [estado] [zz Δactividad]
+ *   estado:   u8 código de {@link CompactSampleReader}; 0xFF = texto a continuación (u8 len + UTF-8)
+ * </pre>
+ * zz = varint zigzag. Temperatura en centésimas de grado y actividad en centésimas de m/s² (-1 = sin dato).
+ */
+public final class VitalsDeltaCodec {
+
+    public static final String PROTOCOL = "vitalpaw.delta.v1";
+
+    private static final byte KEYFRAME = 0x01;
+    private static final byte DELTA = 0x02;
+    private static final int TEMPERATURE = 1;
+    private static final int PULSE = 2;
+    private static final int STATUS = 4;
+    private static final int ACTIVITY = 8;
+    private static final int LITERAL_STATUS = 0xFF;
+
+    private VitalsDeltaCodec() {
+    }
+
+    /**
+     * Frames de una lectura: el keyframe siempre (para quien se suscribe o ha perdido algún frame) y el delta
+     * respecto a la anterior, null si no lo hay (primera lectura o cambio de dispositivo).
+     */
+    public record Frames(long seq, byte[] keyframe, byte[] delta) {
+
+        /** Frame para un cliente cuyo último frame recibido de esta mascota es {@code lastSeq}. */
+        public byte[] forClient(long lastSeq) {
+            return delta != null && lastSeq == seq - 1 ? delta : keyframe;
+        }
+    }
+
+    /** Estado de codificación de una mascota; el llamador lo usa con exclusión mutua. */
+    public static final class Encoder {
+        private final long petId;
+        private final Writer out = new Writer();
+        private long seq;
+        private String deviceId;
+        private int temperature;
+        private int pulse;
+        private String status;
+        private int activity;
+
+        public Encoder(long petId) {
+            this.petId = petId;
+        }
+
+        public Frames encode(SensorDataResponseDTO data) {
+            int temperature = Math.round(data.getTemperature() * 100);
+            int activity = data.getActivity() != null ? Math.round(data.getActivity() * 100) : -1;
+            long previous = seq++;
+
+            byte[] delta = null;
+            if (previous > 0 && data.getDeviceId() != null && data.getDeviceId().equals(deviceId)) {
+                int mask = (temperature != this.temperature ? TEMPERATURE : 0)
+                        | (data.getPulse() != pulse ? PULSE : 0)
+                        | (!Objects.equals(data.getStatus(), status) ? STATUS : 0)
+                        | (activity != this.activity ? ACTIVITY : 0);
+                out.reset();
+                out.writeByte(DELTA);
+                out.writeVarLong(petId);
+                out.writeVarLong(seq);
+                out.writeByte(mask);
+                if ((mask & TEMPERATURE) != 0) {
+                    out.writeZigZag(temperature - this.temperature);
+                }
+                if ((mask & PULSE) != 0) {
+                    out.writeZigZag(data.getPulse() - pulse);
+                }
+                if ((mask & STATUS) != 0) {
+                    out.writeStatus(data.getStatus());
+                }
+                if ((mask & ACTIVITY) != 0) {
+                    out.writeZigZag(activity - this.activity);
+                }
+                delta = out.toByteArray();
+            }
+
+            out.reset();
+            out.writeByte(KEYFRAME);
+            out.writeVarLong(petId);
+            out.writeVarLong(seq);
+            out.writeString(data.getDeviceId());
+            out.writeZigZag(temperature);
+            out.writeVarLong(data.getPulse());
+            out.writeStatus(data.getStatus());
+            out.writeZigZag(activity);
+            byte[] keyframe = out.toByteArray();
+
+            this.deviceId = data.getDeviceId();
+            this.temperature = temperature;
+            this.pulse = data.getPulse();
+            this.status = data.getStatus();
+            this.activity = activity;
+            return new Frames(seq, keyframe, delta);
+        }
+    }
+
+    /**
+     * Decodificador del lado cliente (pruebas y clientes Java): mantiene el último estado de cada mascota.
+     * Lanza {@link IllegalStateException} si llega un delta sin su frame anterior.
+     */
+    public static final class Decoder {
+        private final Map<Long, SensorDataResponseDTO> state = new HashMap<>();
+        private final Map<Long, Long> lastSeq = new HashMap<>();
+
+        public SensorDataResponseDTO decode(byte[] frame) {
+            Reader in = new Reader(frame);
+            int type = in.readByte();
+            long petId = in.readVarLong();
+            long seq = in.readVarLong();
+            SensorDataResponseDTO current;
+            if (type == KEYFRAME) {
+                current = new SensorDataResponseDTO();
+                current.setPetId(petId);
+                current.setDeviceId(in.readString());
+                current.setTemperature(in.readZigZag() / 100f);
+                current.setPulse((int) in.readVarLong());
+                current.setStatus(in.readStatus());
+                current.setActivity(activity(in.readZigZag()));
+            } else if (type == DELTA) {
+                SensorDataResponseDTO previous = state.get(petId);
+                if (previous == null || lastSeq.get(petId) != seq - 1) {
+                    throw new IllegalStateException("Delta " + seq + " de la mascota " + petId + " sin su frame anterior");
+                }
+                current = new SensorDataResponseDTO(previous.getDeviceId(), petId, previous.getTemperature(),
+                        previous.getPulse(), previous.getStatus(), previous.getActivity());
+                int mask = in.readByte();
+                if ((mask & TEMPERATURE) != 0) {
+                    current.setTemperature((Math.round(previous.getTemperature() * 100) + in.readZigZag()) / 100f);
+                }
+                if ((mask & PULSE) != 0) {
+                    current.setPulse(previous.getPulse() + in.readZigZag());
+                }
+                if ((mask & STATUS) != 0) {
+                    current.setStatus(in.readStatus());
+                }
+                if ((mask & ACTIVITY) != 0) {
+                    int base = previous.getActivity() != null ? Math.round(previous.getActivity() * 100) : -1;
+                    current.setActivity(activity(base + in.readZigZag()));
+                }
+            } else {
+                throw new IllegalArgumentException("Tipo de frame desconocido: " + type);
+            }
+            state.put(petId, current);
+            lastSeq.put(petId, seq);
+            return current;
+        }
+
+        private static Float activity(int centi) {
+            return centi < 0 ? null : centi / 100f;
+        }
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[64];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeByte(int value) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeZigZag(int value) {
+            writeVarLong(Integer.toUnsignedLong((value << 1) ^ (value >> 31)));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            int length = Math.min(bytes.length, 255);
+            writeByte(length);
+            for (int i = 0; i < length; i++) {
+                writeByte(bytes[i]);
+            }
+        }
+
+        void writeStatus(String status) {
+            int code = CompactSampleReader.statusCode(status);
+            if (code == 0 && status != null) {
+                writeByte(LITERAL_STATUS);
+                writeString(status);
+            } else {
+                writeByte(code);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        int readZigZag() {
+            int raw = (int) readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readString() {
+            int length = readByte();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String readStatus() {
+            int code = readByte();
+            return code == LITERAL_STATUS ? readString() : CompactSampleReader.statusOf(code);
+        }
+    }
+}
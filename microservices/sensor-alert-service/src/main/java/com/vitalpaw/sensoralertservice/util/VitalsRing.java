@@ -0,0 +1,116 @@
+package com.vitalpaw.sensoralertservice.util;
+
+/**
+ * Buffer circular de constantes vitales sobre dos arrays primitivos: el instante como desplazamiento en ms
+ * ({@code int[]}) y temperatura, pulso, actividad y pico de aceleración empaquetados en 16 bits cada uno
+ * ({@code long[]}). Son 12 bytes por muestra y ningún objeto por lectura, así que mantener uno por dispositivo
+ * apenas genera trabajo al GC. No es thread-safe: el llamador sincroniza por dispositivo.
+ */
+public class VitalsRing {
+
+    private final int[] offsets;
+    private final long[] packed;
+    private long originMillis = Long.MIN_VALUE;
+    private int head;
+    private int size;
+
+    public VitalsRing(int capacity) {
+        this.offsets = new int[capacity];
+        this.packed = new long[capacity];
+    }
+
+    /** Añade una muestra; si el buffer está lleno sobrescribe la más antigua. */
+    public void add(long timestampMillis, float temperature, int pulse, float activity, float peakG) {
+        addPacked(timestampMillis, pack(temperature, pulse, activity, peakG));
+    }
+
+    private void addPacked(long timestampMillis, long value) {
+        if (originMillis == Long.MIN_VALUE || timestampMillis - originMillis > Integer.MAX_VALUE
+                || timestampMillis < originMillis) {
+            // ~24 días sin reiniciar (o un reloj que retrocede): se empieza de cero con un nuevo origen
+            originMillis = timestampMillis;
+            head = 0;
+            size = 0;
+        }
+        offsets[head] = (int) (timestampMillis - originMillis);
+        packed[head] = value;
+        head = (head + 1) % offsets.length;
+        if (size < offsets.length) {
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return offsets.length;
+    }
+
+    // Índice físico de la i-ésima muestra, de la más antigua (0) a la más reciente
+    private int index(int i) {
+        return (head - size + i + offsets.length) % offsets.length;
+    }
+
+    public long timestamp(int i) {
+        return originMillis + offsets[index(i)];
+    }
+
+    public float temperature(int i) {
+        return temperatureOf(packed[index(i)]);
+    }
+
+    public int pulse(int i) {
+        return pulseOf(packed[index(i)]);
+    }
+
+    public float activity(int i) {
+        return activityOf(packed[index(i)]);
+    }
+
+    public float peakG(int i) {
+        return peakGOf(packed[index(i)]);
+    }
+
+    public long packed(int i) {
+        return packed[index(i)];
+    }
+
+    /** Copia en {@code target} las muestras con instante igual o posterior a {@code fromMillis}. */
+    public void copySince(long fromMillis, VitalsRing target) {
+        for (int i = 0; i < size; i++) {
+            long ts = timestamp(i);
+            if (ts >= fromMillis) {
+                target.addPacked(ts, packed[index(i)]);
+            }
+        }
+    }
+
+    public static long pack(float temperature, int pulse, float activity, float peakG) {
+        return (clamp(Math.round(temperature * 100)) & 0xFFFFL) << 48
+                | (clamp(pulse) & 0xFFFFL) << 32
+                | (clamp(Math.round(activity * 100)) & 0xFFFFL) << 16
+                | (clamp(Math.round(peakG * 100)) & 0xFFFFL);
+    }
+
+    public static float temperatureOf(long packed) {
+        return (short) (packed >>> 48) / 100f;
+    }
+
+    public static int pulseOf(long packed) {
+        return (short) (packed >>> 32);
+    }
+
+    public static float activityOf(long packed) {
+        return (short) (packed >>> 16) / 100f;
+    }
+
+    public static float peakGOf(long packed) {
+        return (short) packed / 100f;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,56 @@
+package com.vitalpaw.sensoralertservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchedulingConfigTest {
+
+    static final CountDownLatch fastRan = new CountDownLatch(3);
+    static final CountDownLatch release = new CountDownLatch(1);
+
+    // Una tarea lenta (como el volcado del TSDB) y una de tick (como la de resúmenes)
+    static class Jobs {
+        @Scheduled(fixedDelay = 60_000)
+        public void slow() throws InterruptedException {
+            release.await(5, TimeUnit.SECONDS);
+        }
+
+        @Scheduled(fixedDelay = 10, initialDelay = 50)
+        public void fast() {
+            fastRan.countDown();
+        }
+    }
+
+    // Como los que registra STOMP/SockJS: con ellos Spring Boot no crea su planificador
+    @Configuration
+    static class OtherSchedulers {
+        @Bean
+        ThreadPoolTaskScheduler messageBrokerTaskScheduler() {
+            return new ThreadPoolTaskScheduler();
+        }
+
+        @Bean
+        Jobs jobs() {
+            return new Jobs();
+        }
+    }
+
+    @Test
+    void testSlowJobDoesNotBlockTicks() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.register(SchedulingConfig.class, OtherSchedulers.class);
+            context.refresh();
+            assertTrue(fastRan.await(3, TimeUnit.SECONDS), "el tick quedó bloqueado detrás de la tarea lenta");
+            release.countDown();
+        }
+    }
+}
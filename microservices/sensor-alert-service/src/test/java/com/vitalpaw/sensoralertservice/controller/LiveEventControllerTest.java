@@ -0,0 +1,169 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.repository.PetRepository;
+import com.vitalpaw.sensoralertservice.repository.UserRepository;
+import com.vitalpaw.sensoralertservice.service.LiveEventStreamService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class LiveEventControllerTest {
+
+    private static final Pattern EVENT_ID = Pattern.compile("^id:(\\d+)$", Pattern.MULTILINE);
+
+    private LiveEventStreamService service;
+    private SimpleMeterRegistry registry;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        service = new LiveEventStreamService();
+        ReflectionTestUtils.setField(service, "ringSize", 3);
+        ReflectionTestUtils.setField(service, "maxQueuedEvents", 16);
+        ReflectionTestUtils.setField(service, "timeoutMs", 60_000L);
+        ReflectionTestUtils.setField(service, "retryMs", 3_000L);
+        ReflectionTestUtils.setField(service, "retentionMs", 60_000L);
+        ReflectionTestUtils.setField(service, "senderThreads", 1);
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        service.init();
+        PetRepository pets = mock(PetRepository.class);
+        when(pets.existsById(anyLong())).thenAnswer(inv -> inv.<Long>getArgument(0) < 100);
+        UserRepository users = mock(UserRepository.class);
+        when(users.existsById(anyLong())).thenAnswer(inv -> inv.<Long>getArgument(0) < 100);
+        LiveEventController controller = new LiveEventController();
+        ReflectionTestUtils.setField(controller, "liveEventStreamService", service);
+        ReflectionTestUtils.setField(controller, "petRepository", pets);
+        ReflectionTestUtils.setField(controller, "userRepository", users);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private MockHttpServletResponse open(String path, String lastEventId) throws Exception {
+        var request = get(path).accept(MediaType.TEXT_EVENT_STREAM);
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        MockHttpServletResponse response = mockMvc.perform(request).andReturn().getResponse();
+        assertEquals(200, response.getStatus());
+        return response;
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!response.getContentAsString().contains(expected)) {
+            assertTrue(System.currentTimeMillis() < deadline, "No llegó " + expected + " en: " + response.getContentAsString());
+            Thread.sleep(10);
+        }
+        return response.getContentAsString();
+    }
+
+    private static String lastId(String content) {
+        Matcher matcher = EVENT_ID.matcher(content);
+        String id = null;
+        while (matcher.find()) {
+            id = matcher.group(1);
+        }
+        return id;
+    }
+
+    private static SensorDataResponseDTO reading(long petId, int pulse) {
+        return new SensorDataResponseDTO("ESP32_" + petId, petId, 38.5f, pulse, "En movimiento", null);
+    }
+
+    @Test
+    void testPetStreamReceivesItsReadings() throws Exception {
+        MockHttpServletResponse response = open("/api/pets/1/live", null);
+        service.publish(10L, reading(1, 101));
+        service.publish(10L, reading(2, 102));
+        service.publish(10L, reading(1, 103));
+
+        String content = awaitContent(response, "\"pulse\":103");
+        assertTrue(content.contains("retry:3000"));
+        assertTrue(content.contains("event:sensor"));
+        assertTrue(content.contains("\"pulse\":101"));
+        assertFalse(content.contains("\"pulse\":102"));
+        assertEquals("no-cache", response.getHeader("Cache-Control"));
+        assertEquals(1.0, registry.get("vitalpaw.sse.connections").gauge().value());
+    }
+
+    @Test
+    void testOwnerStreamReceivesAllTheirPets() throws Exception {
+        MockHttpServletResponse response = open("/api/owners/10/live", null);
+        service.publish(10L, reading(1, 101));
+        service.publish(20L, reading(3, 102));
+        service.publish(10L, reading(2, 103));
+
+        String content = awaitContent(response, "\"pulse\":103");
+        assertTrue(content.contains("\"pulse\":101"));
+        assertFalse(content.contains("\"pulse\":102"));
+    }
+
+    @Test
+    void testResumesFromLastEventId() throws Exception {
+        MockHttpServletResponse first = open("/api/pets/1/live", null);
+        service.publish(10L, reading(1, 101));
+        String seen = awaitContent(first, "\"pulse\":101");
+        String lastSeen = lastId(seen);
+        // Mientras el cliente estaba desconectado
+        service.publish(10L, reading(1, 102));
+        service.publish(10L, reading(1, 103));
+
+        MockHttpServletResponse resumed = open("/api/pets/1/live", lastSeen);
+        String content = awaitContent(resumed, "\"pulse\":103");
+        assertTrue(content.contains("\"pulse\":102"));
+        assertFalse(content.contains("\"pulse\":101"));
+        assertFalse(content.contains("event:resync"));
+        assertEquals(2.0, registry.get("vitalpaw.sse.replayed").counter().count());
+    }
+
+    @Test
+    void testGapOutsideTheRingSendsResync() throws Exception {
+        MockHttpServletResponse first = open("/api/pets/1/live", null);
+        service.publish(10L, reading(1, 101));
+        String lastSeen = lastId(awaitContent(first, "\"pulse\":101"));
+        for (int pulse = 102; pulse <= 105; pulse++) {
+            service.publish(10L, reading(1, pulse));
+        }
+
+        // El anillo guarda 3 eventos: 102 ya no está
+        MockHttpServletResponse resumed = open("/api/pets/1/live", lastSeen);
+        String content = awaitContent(resumed, "\"pulse\":105");
+        assertTrue(content.contains("event:resync"));
+        assertFalse(content.contains("\"pulse\":102"));
+        assertTrue(content.contains("\"pulse\":103"));
+
+        // Un id que no emitimos también obliga a resincronizar
+        assertTrue(awaitContent(open("/api/pets/1/live", "basura"), "event:resync").contains("\"pulse\":104"));
+        assertEquals(2.0, registry.get("vitalpaw.sse.resyncs").counter().count());
+    }
+
+    @Test
+    void testUnknownPetOrOwnerGetsNoStream() throws Exception {
+        assertEquals(404, mockMvc.perform(get("/api/pets/500/live").accept(MediaType.TEXT_EVENT_STREAM))
+                .andReturn().getResponse().getStatus());
+        assertEquals(404, mockMvc.perform(get("/api/owners/500/live").accept(MediaType.TEXT_EVENT_STREAM))
+                .andReturn().getResponse().getStatus());
+        assertEquals(0.0, registry.get("vitalpaw.sse.connections").gauge().value());
+    }
+}
@@ -0,0 +1,176 @@
+package com.vitalpaw.sensoralertservice.controller;
+
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.util.VitalsDeltaCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SensorWebSocketHandlerTest {
+
+    private SensorWebSocketHandler handler;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        handler = new SensorWebSocketHandler(registry);
+        ReflectionTestUtils.setField(handler, "sendTimeLimitMs", 60_000L);
+        ReflectionTestUtils.setField(handler, "bufferSizeLimit", 1_000_000L);
+        ReflectionTestUtils.setField(handler, "maxQueuedMessages", 3);
+        ReflectionTestUtils.setField(handler, "maxSubscriptionsPerSession", 10);
+        ReflectionTestUtils.setField(handler, "senderThreads", 2);
+        handler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.shutdown();
+    }
+
+    private static WebSocketSession session(String id, String query) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getUri()).thenReturn(URI.create("ws://localhost/ws/sensors" + query));
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private static SensorDataResponseDTO reading(long petId) {
+        return new SensorDataResponseDTO("ESP32_" + petId, petId, 38.5f, 110, "En movimiento", null);
+    }
+
+    @Test
+    void testSendsOnlyToSubscribersOfThePet() throws Exception {
+        WebSocketSession a = session("a", "?petId=1");
+        WebSocketSession b = session("b", "?petId=1&petId=2");
+        WebSocketSession c = session("c", "?petId=3");
+        handler.afterConnectionEstablished(a);
+        handler.afterConnectionEstablished(b);
+        handler.afterConnectionEstablished(c);
+
+        handler.broadcastSensorData(reading(1));
+
+        ArgumentCaptor<WebSocketMessage<?>> toA = ArgumentCaptor.forClass(WebSocketMessage.class);
+        ArgumentCaptor<WebSocketMessage<?>> toB = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(a, timeout(2_000)).sendMessage(toA.capture());
+        verify(b, timeout(2_000)).sendMessage(toB.capture());
+        // Serializado una sola vez: el mismo frame para todos
+        assertSame(toA.getValue(), toB.getValue());
+        assertTrue(((TextMessage) toA.getValue()).getPayload().contains("\"petId\":1"));
+        verify(c, after(200).never()).sendMessage(any());
+    }
+
+    @Test
+    void testSubscribeAndUnsubscribeMessages() throws Exception {
+        WebSocketSession a = session("a", "");
+        handler.afterConnectionEstablished(a);
+        handler.handleTextMessage(a, new TextMessage("{\"action\":\"subscribe\",\"petIds\":[5,6]}"));
+        handler.broadcastSensorData(reading(5));
+        verify(a, timeout(2_000)).sendMessage(any());
+
+        handler.handleTextMessage(a, new TextMessage("{\"action\":\"unsubscribe\",\"petIds\":[5]}"));
+        handler.broadcastSensorData(reading(5));
+        handler.broadcastSensorData(reading(6));
+        verify(a, timeout(2_000).times(2)).sendMessage(any());
+        verify(a, after(200).times(2)).sendMessage(any());
+    }
+
+    @Test
+    void testSlowConsumerIsEvictedWithoutBlockingOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        WebSocketSession slow = session("slow", "?petId=1");
+        doAnswer(inv -> {
+            release.await();
+            return null;
+        }).when(slow).sendMessage(any());
+        WebSocketSession fast = session("fast", "?petId=1");
+        handler.afterConnectionEstablished(slow);
+        handler.afterConnectionEstablished(fast);
+
+        // El primero queda bloqueado en el envío; los siguientes llenan la cola de 3
+        for (int i = 1; i <= 6; i++) {
+            handler.broadcastSensorData(reading(1));
+            verify(fast, timeout(2_000).times(i)).sendMessage(any());
+        }
+        verify(slow, timeout(2_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1.0, registry.get("vitalpaw.websocket.evictions").tag("reason", "buffer_overflow").counter().count());
+        release.countDown();
+
+        // Ya no está suscrita
+        handler.broadcastSensorData(reading(1));
+        verify(fast, timeout(2_000).times(7)).sendMessage(any());
+        verify(slow, times(1)).sendMessage(any());
+        assertEquals(1.0, registry.get("vitalpaw.websocket.connections").gauge().value());
+    }
+
+    @Test
+    void testClosedSessionLeavesIndex() throws Exception {
+        WebSocketSession a = session("a", "?petId=1");
+        handler.afterConnectionEstablished(a);
+        assertEquals(1.0, registry.get("vitalpaw.websocket.watched.pets").gauge().value());
+        handler.afterConnectionClosed(a, CloseStatus.NORMAL);
+        assertEquals(0.0, registry.get("vitalpaw.websocket.watched.pets").gauge().value());
+        handler.broadcastSensorData(reading(1));
+        verify(a, after(200).never()).sendMessage(any());
+    }
+
+    private static byte[] bytes(WebSocketMessage<?> message) {
+        ByteBuffer payload = ((BinaryMessage) message).getPayload().duplicate();
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void testDeltaSessionsGetKeyframeThenDeltas() throws Exception {
+        WebSocketSession json = session("json", "?petId=1");
+        WebSocketSession early = session("early", "?petId=1");
+        when(early.getAcceptedProtocol()).thenReturn(VitalsDeltaCodec.PROTOCOL);
+        handler.afterConnectionEstablished(json);
+        handler.afterConnectionEstablished(early);
+        assertEquals(List.of(VitalsDeltaCodec.PROTOCOL), handler.getSubProtocols());
+
+        handler.broadcastSensorData(reading(1));
+        verify(early, timeout(2_000)).sendMessage(any(BinaryMessage.class));
+        SensorDataResponseDTO changed = reading(1);
+        changed.setPulse(115);
+        handler.broadcastSensorData(changed);
+
+        // Quien se conecta tarde recibe primero el último estado completo
+        WebSocketSession late = session("late", "?petId=1");
+        when(late.getAcceptedProtocol()).thenReturn(VitalsDeltaCodec.PROTOCOL);
+        handler.afterConnectionEstablished(late);
+
+        ArgumentCaptor<WebSocketMessage<?>> toEarly = ArgumentCaptor.forClass(WebSocketMessage.class);
+        ArgumentCaptor<WebSocketMessage<?>> toLate = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(early, timeout(2_000).times(2)).sendMessage(toEarly.capture());
+        verify(late, timeout(2_000)).sendMessage(toLate.capture());
+        verify(json, timeout(2_000).times(2)).sendMessage(any(TextMessage.class));
+
+        VitalsDeltaCodec.Decoder decoder = new VitalsDeltaCodec.Decoder();
+        byte[] keyframe = bytes(toEarly.getAllValues().get(0));
+        byte[] delta = bytes(toEarly.getAllValues().get(1));
+        assertEquals(110, decoder.decode(keyframe).getPulse());
+        assertTrue(delta.length < keyframe.length);
+        assertEquals(115, decoder.decode(delta).getPulse());
+        assertEquals(115, new VitalsDeltaCodec.Decoder().decode(bytes(toLate.getValue())).getPulse());
+    }
+}
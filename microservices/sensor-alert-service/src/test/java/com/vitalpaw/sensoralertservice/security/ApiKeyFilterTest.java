@@ -0,0 +1,60 @@
+package com.vitalpaw.sensoralertservice.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiKeyFilterTest {
+
+    private ApiKeyFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new ApiKeyFilter();
+        ReflectionTestUtils.setField(filter, "apiKey", "secreto");
+    }
+
+    private MockHttpServletResponse call(String path, String key) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (key != null) {
+            request.addHeader("X-API-Key", key);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        if (response.getStatus() == 200) {
+            assertNotNull(chain.getRequest(), "la petición debía seguir la cadena");
+        }
+        return response;
+    }
+
+    @Test
+    void testPublicRoutesRequireApiKey() throws Exception {
+        assertEquals(401, call("/api/pets/7/live", null).getStatus());
+        assertEquals(401, call("/api/owners/3/live", "otra").getStatus());
+        assertEquals("Invalid or missing API Key", call("/api/pets/7/live", null).getContentAsString());
+        assertEquals(200, call("/api/pets/7/live", "secreto").getStatus());
+        assertEquals(200, call("/api/owners/3/live", "secreto").getStatus());
+        assertEquals(401, call("/api/owners/3/fcm-tokens", null).getStatus());
+        assertEquals(200, call("/api/owners/3/fcm-tokens", "secreto").getStatus());
+        assertEquals(401, call("/ws/sensors", null).getStatus());
+        assertEquals(200, call("/ws/sensors", "secreto").getStatus());
+    }
+
+    @Test
+    void testInternalRoutesAreNotFiltered() throws Exception {
+        assertEquals(200, call("/api/devices/unknown", null).getStatus());
+        assertEquals(200, call("/actuator/health", null).getStatus());
+    }
+
+    @Test
+    void testBlankConfiguredKeyRejectsEverything() throws Exception {
+        ReflectionTestUtils.setField(filter, "apiKey", "");
+        assertEquals(401, call("/api/pets/7/live", "").getStatus());
+    }
+}
@@ -0,0 +1,84 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBaselineServiceTest {
+
+    private static final Instant NOON = Instant.parse("2026-01-15T17:00:00Z"); // 12:00 en Lima
+
+    private AdaptiveBaselineService service;
+
+    @BeforeEach
+    void setUp() {
+        service = newService();
+    }
+
+    private static AdaptiveBaselineService newService() {
+        AdaptiveBaselineService s = new AdaptiveBaselineService();
+        ReflectionTestUtils.setField(s, "enabled", true);
+        ReflectionTestUtils.setField(s, "timeBuckets", 4);
+        ReflectionTestUtils.setField(s, "warmupSamples", 20);
+        ReflectionTestUtils.setField(s, "alpha", 0.01f);
+        ReflectionTestUtils.setField(s, "zThreshold", 3.5f);
+        ReflectionTestUtils.setField(s, "minStdTemperature", 0.15f);
+        ReflectionTestUtils.setField(s, "minStdPulse", 3.0f);
+        ReflectionTestUtils.setField(s, "zone", ZoneId.of("America/Lima"));
+        ReflectionTestUtils.setField(s, "meterRegistry", new SimpleMeterRegistry());
+        s.init();
+        return s;
+    }
+
+    private void warmUp(AdaptiveBaselineService s, long petId) {
+        for (int i = 0; i < 20; i++) {
+            s.evaluate(petId, 39.4f + (i % 2) * 0.1f, 100 + (i % 3), NOON);
+        }
+    }
+
+    @Test
+    void testNaturallyWarmPetIsNormalForItself() {
+        warmUp(service, 1L);
+        AdaptiveBaselineService.Evaluation eval = service.evaluate(1L, 39.5f, 101, NOON);
+        assertTrue(eval.established());
+        assertFalse(eval.anomaly());
+    }
+
+    @Test
+    void testDeviationFromOwnBaselineIsAnomalous() {
+        warmUp(service, 1L);
+        AdaptiveBaselineService.Evaluation eval = service.evaluate(1L, 40.5f, 101, NOON);
+        assertTrue(eval.temperatureAnomaly());
+        assertFalse(eval.pulseAnomaly());
+    }
+
+    @Test
+    void testWarmupIsNotScored() {
+        AdaptiveBaselineService.Evaluation eval = service.evaluate(2L, 45f, 250, NOON);
+        assertFalse(eval.established());
+        assertFalse(eval.anomaly());
+    }
+
+    @Test
+    void testBaselineSurvivesCheckpoint() throws IOException {
+        warmUp(service, 1L);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        service.writeCheckpoint(new DataOutputStream(buffer));
+
+        AdaptiveBaselineService restored = newService();
+        restored.readCheckpoint(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertTrue(restored.evaluate(1L, 40.5f, 101, NOON).temperatureAnomaly());
+    }
+}
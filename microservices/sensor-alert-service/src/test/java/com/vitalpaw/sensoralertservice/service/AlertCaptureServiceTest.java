@@ -0,0 +1,79 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.AlertCaptureDTO;
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlertCaptureServiceTest {
+
+    private static final DeviceContext DEVICE = new DeviceContext(1L, "ESP32_TEST", 7L, "Firulais", 3L, null,
+            37.5f, 39.2f, 60, 140);
+
+    @TempDir
+    Path dir;
+
+    private AlertCaptureService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AlertCaptureService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "preSeconds", 10L);
+        ReflectionTestUtils.setField(service, "postSeconds", 5L);
+        ReflectionTestUtils.setField(service, "bufferSize", 32);
+        ReflectionTestUtils.setField(service, "maxPendingPerDevice", 2);
+        ReflectionTestUtils.setField(service, "capturePath", dir.toString());
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+        service.start();
+    }
+
+    @Test
+    void testCapturesPreAndPostTriggerWindows() {
+        for (int s = 0; s <= 20; s++) {
+            service.record(DEVICE, s * 1_000L, 38f, 100 + s, 0.2f, 1f);
+        }
+        service.trigger(DEVICE, 42L, "sensor_alert", 20_000);
+        for (int s = 21; s <= 27; s++) {
+            service.record(DEVICE, s * 1_000L, 38f, 100 + s, 0.2f, 1f);
+        }
+        service.stop();
+
+        AlertCaptureDTO capture = service.find(42L).orElseThrow();
+        assertEquals("ESP32_TEST", capture.deviceId());
+        assertEquals(7L, capture.petId());
+        // 10 s antes (11 lecturas incluida la del disparo) y 5 s después
+        assertEquals(16, capture.samples().size());
+        assertEquals(-10_000, capture.samples().get(0).offsetMs());
+        assertEquals(110, capture.samples().get(0).pulse());
+        assertEquals(5_000, capture.samples().get(15).offsetMs());
+    }
+
+    @Test
+    void testSilentDeviceCompletedOnStop() {
+        service.record(DEVICE, 1_000, 38f, 100, 0, 1f);
+        service.trigger(DEVICE, 43L, "sensor_alert", 1_000);
+        assertTrue(service.find(43L).isEmpty());
+        service.stop();
+        assertEquals(1, service.find(43L).orElseThrow().samples().size());
+    }
+
+    @Test
+    void testPendingCapturesPerDeviceAreBounded() {
+        service.record(DEVICE, 1_000, 38f, 100, 0, 1f);
+        service.trigger(DEVICE, 1L, "a", 1_000);
+        service.trigger(DEVICE, 2L, "b", 1_000);
+        service.trigger(DEVICE, 3L, "c", 1_000);
+        service.stop();
+        assertTrue(service.find(2L).isPresent());
+        assertTrue(service.find(3L).isEmpty());
+    }
+}
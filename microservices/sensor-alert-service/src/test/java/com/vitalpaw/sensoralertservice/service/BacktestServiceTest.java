@@ -0,0 +1,107 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.BacktestRequestDTO;
+import com.vitalpaw.sensoralertservice.dto.BacktestResultDTO;
+import com.vitalpaw.sensoralertservice.dto.PetRuleContext;
+import com.vitalpaw.sensoralertservice.dto.RuleThresholds;
+import com.vitalpaw.sensoralertservice.repository.PetRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BacktestServiceTest {
+
+    private static final long T0 = 1_760_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private BacktestService service;
+
+    @BeforeEach
+    void setUp() {
+        TimeSeriesStore store = new TimeSeriesStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "storePath", dir.toString());
+        ReflectionTestUtils.setField(store, "chunkMaxPoints", 64);
+        ReflectionTestUtils.setField(store, "chunkMaxMinutes", 60L);
+        ReflectionTestUtils.setField(store, "maxQueryPoints", 1_000_000);
+        ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+        store.init();
+        // Mascotas 1..40 de la raza 10 con temperatura 39.0-39.9; la 99 sin raza con pulso 150-249
+        for (int i = 0; i < 100; i++) {
+            for (long pet = 1; pet <= 40; pet++) {
+                store.append(pet, T0 + i * 1_000L, 39f + (i % 10) / 10f, 100);
+            }
+            store.append(99L, T0 + i * 1_000L, 38f, 150 + i);
+        }
+
+        PetRepository petRepository = mock(PetRepository.class);
+        List<PetRuleContext> contexts = new ArrayList<>();
+        for (long pet = 1; pet <= 40; pet++) {
+            contexts.add(new PetRuleContext(pet, 10L, "Labrador", 37.5f, 39.5f, 60, 140));
+        }
+        contexts.add(new PetRuleContext(99L, null, null, null, null, null, null));
+        when(petRepository.findRuleContexts()).thenReturn(contexts);
+
+        service = new BacktestService();
+        ReflectionTestUtils.setField(service, "maxTemperature", 40f);
+        ReflectionTestUtils.setField(service, "maxHeartRate", 180);
+        ReflectionTestUtils.setField(service, "parallelism", 4);
+        ReflectionTestUtils.setField(service, "petsPerTask", 3);
+        ReflectionTestUtils.setField(service, "maxRangeDays", 93L);
+        ReflectionTestUtils.setField(service, "timeSeriesStore", store);
+        ReflectionTestUtils.setField(service, "petRepository", petRepository);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testComparesCurrentAndCandidateRules() {
+        BacktestRequestDTO request = new BacktestRequestDTO(T0, T0 + 100_000,
+                Map.of(10L, new RuleThresholds(37.5f, 39.7f, 60, 140)), null, 200);
+        BacktestResultDTO result = service.run(request);
+
+        assertEquals(41, result.pets());
+        assertEquals(4_100, result.readings());
+        // Raza: actual > 39.5 -> 4 de cada 10 lecturas; candidata > 39.7 -> 2 de cada 10
+        // Sin raza: pulso > 180 -> 69 lecturas; con 200 -> 49
+        assertEquals(40 * 40 + 69, result.currentAlerts());
+        assertEquals(40 * 20 + 49, result.candidateAlerts());
+
+        BacktestResultDTO.BreedResult labrador = result.byBreed().stream()
+                .filter(b -> Long.valueOf(10L).equals(b.breedId())).findFirst().orElseThrow();
+        assertEquals(40, labrador.pets());
+        assertEquals("Labrador", labrador.breedName());
+
+        BacktestResultDTO.PetResult pet1 = result.byPet().stream().filter(p -> p.petId() == 1L).findFirst().orElseThrow();
+        assertEquals(10, pet1.currentEpisodes());
+        assertEquals(10, pet1.candidateEpisodes());
+        BacktestResultDTO.PetResult pet99 = result.byPet().stream().filter(p -> p.petId() == 99L).findFirst().orElseThrow();
+        assertEquals(1, pet99.currentEpisodes());
+    }
+
+    @Test
+    void testRejectsInvalidRequests() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.run(new BacktestRequestDTO(T0, T0, null, null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.run(new BacktestRequestDTO(T0, T0 + 1_000, Map.of(10L, new RuleThresholds(37f, null, 60, 140)), null, null)));
+    }
+}
@@ -0,0 +1,185 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.BatchIngestResultDTO;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import com.vitalpaw.sensoralertservice.util.CompactSampleReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BatchIngestServiceTest {
+
+    private BatchIngestService service;
+    private SensorProcessingService pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = mock(SensorProcessingService.class);
+        when(pipeline.isRunning()).thenReturn(true);
+        when(pipeline.ingest(any(), eq(false))).thenAnswer(inv -> !"DESCONOCIDO".equals(inv.<SensorReading>getArgument(0).deviceId()));
+        service = new BatchIngestService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "readingsPerSecond", 1_000_000.0);
+        ReflectionTestUtils.setField(service, "burst", 1_000);
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "maxLineLength", 1_024);
+        ReflectionTestUtils.setField(service, "defaultDeviceId", "ESP32_VITALPAW_001");
+        ReflectionTestUtils.setField(service, "sensorProcessingService", pipeline);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+    }
+
+    private static ByteArrayInputStream text(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNdjsonFeedsPipelineAndSkipsMalformedLines() throws IOException {
+        String body = """
+                {"device_id":"ESP32_A","temperatura_celsius":38.4,"ecg_raw":110,"movimiento":"En movimiento","ts":1000}
+                no es json
+
+                {"device_id":"DESCONOCIDO","temperatura_celsius":38.0,"ecg_raw":100}
+                {"temperatura_celsius":39.1,"ecg_raw":120,"ts":2000}
+                """;
+        BatchIngestResultDTO result = service.ingestNdjson(text(body));
+
+        assertEquals(4, result.received());
+        assertEquals(2, result.accepted());
+        assertEquals(1, result.unknownDevice());
+        assertEquals(1, result.malformed());
+        assertTrue(result.complete());
+
+        ArgumentCaptor<SensorReading> readings = ArgumentCaptor.forClass(SensorReading.class);
+        verify(pipeline, times(3)).ingest(readings.capture(), eq(false));
+        SensorReading first = readings.getAllValues().get(0);
+        assertEquals("ESP32_A", first.deviceId());
+        assertEquals(1000, first.timestampMillis());
+        assertEquals("ESP32_VITALPAW_001", readings.getAllValues().get(2).deviceId());
+    }
+
+    @Test
+    void testBackfillUploadOnlyWritesHistory() throws IOException {
+        when(pipeline.backfill(any())).thenAnswer(inv -> !"DESCONOCIDO".equals(inv.<SensorReading>getArgument(0).deviceId()));
+        String body = """
+                {"device_id":"ESP32_A","temperatura_celsius":41.0,"ecg_raw":190,"movimiento":"Caído","ts":1000}
+                {"device_id":"DESCONOCIDO","temperatura_celsius":38.0,"ecg_raw":100,"ts":2000}
+                """;
+        BatchIngestResultDTO result = service.ingestNdjson(text(body), true);
+
+        assertEquals(1, result.accepted());
+        assertEquals(1, result.unknownDevice());
+        verify(pipeline, times(2)).backfill(any());
+        verify(pipeline).finishBackfill();
+        verify(pipeline, never()).ingest(any(), anyBoolean());
+    }
+
+    @Test
+    void testOverlongLineIsSkippedWithoutBufferingIt() throws IOException {
+        // Más de un megabyte sin salto de línea con un límite de 1 KB: solo se guarda el límite
+        String body = "{\"device_id\":\"ESP32_A\",\"pad\":\"" + "x".repeat(2_000_000) + "\"}\r\n"
+                + "{\"device_id\":\"ESP32_A\",\"temperatura_celsius\":38.4,\"ecg_raw\":110}\r\n";
+        BatchIngestResultDTO result = service.ingestNdjson(text(body));
+
+        assertEquals(2, result.received());
+        assertEquals(1, result.accepted());
+        assertEquals(1, result.malformed());
+        verify(pipeline, times(1)).ingest(any(), eq(false));
+    }
+
+    @Test
+    void testBinaryFormat() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBytes("VPS1");
+        writeBlock(out, "ESP32_A", List.of(new long[]{1_000, 110}, new long[]{2_000, 115}));
+        writeBlock(out, "ESP32_B", List.<long[]>of(new long[]{1_500, 90}));
+        out.writeByte(7); // Bloque cortado a mitad
+        out.writeBytes("ESP32_C");
+
+        BatchIngestResultDTO result = service.ingestBinary(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(3, result.accepted());
+        assertEquals(1, result.malformed());
+
+        ArgumentCaptor<SensorReading> readings = ArgumentCaptor.forClass(SensorReading.class);
+        verify(pipeline, times(3)).ingest(readings.capture(), eq(false));
+        SensorReading second = readings.getAllValues().get(1);
+        assertEquals("ESP32_A", second.deviceId());
+        assertEquals(2_000, second.timestampMillis());
+        assertEquals(115, second.pulse());
+        assertEquals(38.5f, second.temperature(), 0.001f);
+        assertEquals("Caído", second.status());
+        assertEquals("ESP32_B", readings.getAllValues().get(2).deviceId());
+    }
+
+    private static void writeBlock(DataOutputStream out, String deviceId, List<long[]> samples) throws IOException {
+        out.writeByte(deviceId.length());
+        out.writeBytes(deviceId);
+        out.writeShort(samples.size());
+        for (long[] sample : samples) {
+            out.writeLong(sample[0]);
+            out.writeFloat(38.5f);
+            out.writeShort((int) sample[1]);
+            out.writeByte(CompactSampleReader.statusCode("Caído"));
+        }
+    }
+
+    @Test
+    void testRejectsBadHeader() {
+        assertThrows(IllegalArgumentException.class, () -> service.ingestBinary(text("JSON")));
+    }
+
+    @Test
+    void testPacesReadingsPerRequest() throws IOException {
+        ReflectionTestUtils.setField(service, "readingsPerSecond", 100.0);
+        ReflectionTestUtils.setField(service, "burst", 1);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 11; i++) {
+            body.append("{\"device_id\":\"ESP32_A\",\"temperatura_celsius\":38.4,\"ecg_raw\":110}\n");
+        }
+        long start = System.nanoTime();
+        BatchIngestResultDTO result = service.ingestNdjson(text(body.toString()));
+        assertEquals(11, result.accepted());
+        // 10 lecturas después de la primera a 100/s: al menos ~100 ms
+        assertTrue(System.nanoTime() - start >= 90_000_000L);
+    }
+
+    @Test
+    void testStopsWhenPipelineShutsDown() throws IOException {
+        when(pipeline.isRunning()).thenReturn(true, true, false);
+        String line = "{\"device_id\":\"ESP32_A\",\"temperatura_celsius\":38.4,\"ecg_raw\":110}\n";
+        BatchIngestResultDTO result = service.ingestNdjson(text(line.repeat(5)));
+        assertFalse(result.complete());
+        assertEquals(1, result.received());
+    }
+
+    @Test
+    void testLimitsConcurrentUploads() throws IOException {
+        when(pipeline.isRunning()).thenReturn(false);
+        assertThrows(ResponseStatusException.class, () -> service.ingestNdjson(text("")));
+        when(pipeline.isRunning()).thenReturn(true);
+        Semaphore slots = (Semaphore) ReflectionTestUtils.getField(service, "slots");
+        slots.acquireUninterruptibly();
+        ResponseStatusException busy = assertThrows(ResponseStatusException.class, () -> service.ingestNdjson(text("")));
+        assertEquals(503, busy.getStatusCode().value());
+        slots.release();
+        assertTrue(service.ingestNdjson(text("")).complete());
+    }
+}
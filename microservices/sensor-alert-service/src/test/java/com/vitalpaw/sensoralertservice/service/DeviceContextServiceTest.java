@@ -0,0 +1,77 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.repository.PetDeviceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DeviceContextServiceTest {
+
+    private static DeviceContext context(long id, String deviceId) {
+        return new DeviceContext(id, deviceId, id * 10, "Mascota " + id, 3L, "token-3", 37.5f, 39.2f, 60, 140);
+    }
+
+    private DeviceContextService service;
+    private PetDeviceRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PetDeviceRepository.class);
+        service = new DeviceContextService();
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "petDeviceRepository", repository);
+    }
+
+    @Test
+    void testResolveCachesHitsButNotMisses() {
+        when(repository.findContextByDeviceId("ESP32_1")).thenReturn(Optional.of(context(1, "ESP32_1")));
+        when(repository.findContextByDeviceId("ESP32_X")).thenReturn(Optional.empty());
+
+        assertEquals(10L, service.resolve("ESP32_1").orElseThrow().petId());
+        assertEquals(10L, service.resolve("ESP32_1").orElseThrow().petId());
+        verify(repository, times(1)).findContextByDeviceId("ESP32_1");
+
+        // Un dispositivo aún no aprovisionado se vuelve a consultar: puede darse de alta en cualquier momento
+        assertTrue(service.resolve("ESP32_X").isEmpty());
+        assertTrue(service.resolve("ESP32_X").isEmpty());
+        verify(repository, times(2)).findContextByDeviceId("ESP32_X");
+    }
+
+    @Test
+    void testEvictForcesTheNextLookup() {
+        when(repository.findContextByDeviceId("ESP32_1"))
+                .thenReturn(Optional.of(context(1, "ESP32_1")), Optional.of(context(2, "ESP32_1")));
+        assertEquals(10L, service.resolve("ESP32_1").orElseThrow().petId());
+
+        service.evict("ESP32_1");
+
+        assertEquals(20L, service.resolve("ESP32_1").orElseThrow().petId());
+        verify(repository, times(2)).findContextByDeviceId("ESP32_1");
+    }
+
+    @Test
+    void testResolveAllOnlyQueriesMissingDevicesInBatches() {
+        when(repository.findContextByDeviceId("A")).thenReturn(Optional.of(context(1, "A")));
+        service.resolve("A");
+        when(repository.findContextsByDeviceIds(List.of("B", "C"))).thenReturn(List.of(context(2, "B"), context(3, "C")));
+        when(repository.findContextsByDeviceIds(List.of("D"))).thenReturn(List.of());
+
+        Map<String, DeviceContext> resolved = service.resolveAll(List.of("A", "B", "C", "D"));
+
+        assertEquals(3, resolved.size());
+        assertFalse(resolved.containsKey("D"));
+        verify(repository, times(2)).findContextsByDeviceIds(any());
+        // Lo cargado por lotes queda en la caché
+        assertEquals(30L, service.resolve("C").orElseThrow().petId());
+        verify(repository, never()).findContextByDeviceId("C");
+    }
+}
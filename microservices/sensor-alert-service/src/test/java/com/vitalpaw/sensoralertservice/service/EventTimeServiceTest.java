@@ -0,0 +1,166 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventTimeServiceTest {
+
+    private static final DeviceContext DEVICE = new DeviceContext(1L, "ESP32_TEST", 7L, "Firulais", 3L, null,
+            37.5f, 39.2f, 60, 140);
+
+    private EventTimeService service;
+    private SimpleMeterRegistry registry;
+    private final List<Long> processed = new ArrayList<>();
+    private final List<Long> late = new ArrayList<>();
+    private long base;
+
+    @BeforeEach
+    void setUp() {
+        base = System.currentTimeMillis();
+        registry = new SimpleMeterRegistry();
+        service = new EventTimeService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxOutOfOrdernessMs", 2_000L);
+        ReflectionTestUtils.setField(service, "bufferSize", 4);
+        ReflectionTestUtils.setField(service, "tickMs", 100L);
+        ReflectionTestUtils.setField(service, "maxClockSkewMs", 3_600_000L);
+        ReflectionTestUtils.setField(service, "latePolicy", EventTimeService.LatePolicy.ALERT_ONLY);
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        service.init();
+        service.setHandlers((device, reading, broadcast) -> processed.add(reading.timestampMillis() - base),
+                (device, reading, broadcast) -> late.add(reading.timestampMillis() - base));
+    }
+
+    private void submit(long offsetMs) {
+        service.submit(DEVICE, new SensorReading("ESP32_TEST", 38.5f, 100, "En movimiento", null, 0, base + offsetMs), true);
+    }
+
+    @Test
+    void testReordersWithinWatermark() {
+        submit(0);
+        submit(2_000);
+        submit(1_000);
+        submit(3_000);
+        // Marca de agua en 1000: solo 0 y 1000 son seguras
+        assertEquals(List.of(0L, 1_000L), processed);
+        submit(5_000);
+        assertEquals(List.of(0L, 1_000L, 2_000L, 3_000L), processed);
+        assertEquals(1.0, registry.counter("vitalpaw.eventtime.reordered").count());
+    }
+
+    @Test
+    void testLateReadingGoesToLateHandler() {
+        submit(0);
+        submit(5_000);
+        submit(1_000); // Aún dentro del buffer: se ordena
+        submit(10_000);
+        assertEquals(List.of(0L, 1_000L, 5_000L), processed);
+        submit(500); // Anterior a lo ya entregado
+        assertEquals(List.of(500L), late);
+        assertEquals(1.0, registry.find("vitalpaw.eventtime.late").counter().count());
+    }
+
+    @Test
+    void testDropPolicyDiscardsLateReadings() {
+        ReflectionTestUtils.setField(service, "latePolicy", EventTimeService.LatePolicy.DROP);
+        submit(0);
+        submit(5_000);
+        submit(10_000);
+        submit(100);
+        assertEquals(List.of(0L, 5_000L), processed);
+        assertTrue(late.isEmpty());
+    }
+
+    @Test
+    void testFullBufferForcesOldest() {
+        for (int i = 0; i < 5; i++) {
+            submit(i * 100L);
+        }
+        // Todas dentro del desorden tolerado; la quinta obliga a entregar la primera
+        assertEquals(List.of(0L), processed);
+        assertEquals(1.0, registry.counter("vitalpaw.eventtime.forced").count());
+    }
+
+    @Test
+    void testBufferedReadingsWaitOnlyTheOutOfOrderness() {
+        submit(0);
+        submit(1_000);
+        assertTrue(processed.isEmpty());
+        // Sin más lecturas del collar: la marca de agua no avanza, pero la espera no pasa del desorden tolerado
+        long now = System.currentTimeMillis();
+        assertEquals(0, service.releaseDue(now + 1_000));
+        assertEquals(2, service.releaseDue(now + 2_200));
+        assertEquals(List.of(0L, 1_000L), processed);
+        assertEquals(0, service.flushAll());
+    }
+
+    @Test
+    void testOutOfOrderArrivalWithinWaitIsStillReordered() {
+        submit(1_000);
+        submit(0); // Llega después pero es anterior: se entrega primero
+        service.releaseDue(System.currentTimeMillis() + 2_200);
+        assertEquals(List.of(0L, 1_000L), processed);
+    }
+
+    @Test
+    void testSkewedClockUsesArrivalTime() {
+        submit(-7_200_000L); // Reloj del collar dos horas atrasado
+        service.flushAll();
+        assertEquals(1, processed.size());
+        assertTrue(Math.abs(processed.get(0)) < 60_000);
+        assertEquals(1.0, registry.counter("vitalpaw.eventtime.skew.corrected").count());
+    }
+
+    @Test
+    void testCompletionFollowsTheReadingOutOfTheBuffer() {
+        IllegalStateException broken = new IllegalStateException("caído");
+        service.setHandlers((device, reading, broadcast) -> {
+            if (reading.timestampMillis() - base == 1_000L) {
+                throw broken;
+            }
+            processed.add(reading.timestampMillis() - base);
+        }, (device, reading, broadcast) -> late.add(reading.timestampMillis() - base));
+        List<Object> outcomes = new ArrayList<>();
+        for (long offset : new long[] {0, 1_000, 3_000}) {
+            service.submit(DEVICE, new SensorReading("ESP32_TEST", 38.5f, 100, "En movimiento", null, 0, base + offset),
+                    true, failure -> outcomes.add(failure == null ? offset : failure));
+        }
+        // Marca de agua en 1000: 3000 sigue en el buffer y aún no ha terminado
+        assertEquals(List.of(0L, broken), outcomes);
+
+        service.submit(DEVICE, new SensorReading("ESP32_TEST", 38.5f, 100, "En movimiento", null, 0, base + 500),
+                true, failure -> outcomes.add(failure == null ? "tardía" : failure));
+        assertEquals(List.of(0L, broken, "tardía"), outcomes);
+        assertEquals(List.of(0L), processed);
+    }
+
+    @Test
+    void testArrivalStampedReadingsSkipTheBuffer() {
+        // Firmware sin 'ts': sellada a la llegada, no puede llegar desordenada
+        service.submit(DEVICE, new SensorReading("ESP32_TEST", 38.5f, 100, "En movimiento"), true);
+        assertEquals(1, processed.size());
+        assertEquals(0.0, registry.find("vitalpaw.eventtime.buffered").gauge().value());
+    }
+
+    @Test
+    void testFallIsDeliveredAtOnceAfterEarlierReadings() {
+        submit(0);
+        submit(1_500);
+        submit(1_000);
+        assertEquals(List.of(), processed);
+        service.submit(DEVICE, new SensorReading("ESP32_TEST", 38.5f, 100, "Caído", null, 0, base + 1_200), true);
+        // Sale con lo anterior del buffer, sin esperar a la marca de agua; lo posterior sigue esperando
+        assertEquals(List.of(0L, 1_000L, 1_200L), processed);
+        assertEquals(1, service.releaseDue(System.currentTimeMillis() + 2_200));
+        assertEquals(List.of(0L, 1_000L, 1_200L, 1_500L), processed);
+    }
+}
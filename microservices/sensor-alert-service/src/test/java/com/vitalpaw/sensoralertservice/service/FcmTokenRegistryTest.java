@@ -0,0 +1,111 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.entity.UserFcmToken;
+import com.vitalpaw.sensoralertservice.repository.UserFcmTokenRepository;
+import com.vitalpaw.sensoralertservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class FcmTokenRegistryTest {
+
+    private FcmTokenRegistry registry;
+    private UserFcmTokenRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(UserFcmTokenRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new FcmTokenRegistry();
+        ReflectionTestUtils.setField(registry, "cacheTtlMs", 600_000L);
+        UserRepository users = mock(UserRepository.class);
+        when(users.existsById(anyLong())).thenAnswer(inv -> inv.<Long>getArgument(0) < 100);
+        ReflectionTestUtils.setField(registry, "tokenRepository", repository);
+        ReflectionTestUtils.setField(registry, "userRepository", users);
+        ReflectionTestUtils.setField(registry, "meterRegistry", meterRegistry);
+        registry.init();
+    }
+
+    @Test
+    void testMergesLegacyTokenAndCachesPerOwner() {
+        when(repository.findTokensByUserId(3L)).thenReturn(List.of("phone", "tablet"));
+        when(repository.findLegacyToken(3L)).thenReturn("old-app");
+
+        assertEquals(List.of("phone", "tablet", "old-app"), registry.tokensFor(3L));
+        assertEquals(List.of("phone", "tablet", "old-app"), registry.tokensFor(3L));
+        verify(repository, times(1)).findTokensByUserId(3L);
+    }
+
+    @Test
+    void testLegacyTokenAlreadyRegisteredIsNotDuplicated() {
+        when(repository.findTokensByUserId(3L)).thenReturn(List.of("phone"));
+        when(repository.findLegacyToken(3L)).thenReturn("phone");
+        assertEquals(List.of("phone"), registry.tokensFor(3L));
+    }
+
+    @Test
+    void testPruneRemovesDeadTokensEverywhere() {
+        when(repository.findTokensByUserId(3L)).thenReturn(List.of("phone", "dead"));
+        registry.tokensFor(3L);
+
+        registry.prune(3L, List.of("dead"));
+
+        assertEquals(List.of("phone"), registry.tokensFor(3L));
+        verify(repository).deleteByTokens(Set.of("dead"));
+        verify(repository).clearLegacyTokens(Set.of("dead"));
+        verify(repository, times(1)).findTokensByUserId(3L);
+        assertEquals(1.0, meterRegistry.counter("vitalpaw.notifications.tokens.pruned").count());
+    }
+
+    @Test
+    void testRegisterReassignsTokenAndInvalidatesBothOwners() {
+        UserFcmToken existing = new UserFcmToken();
+        existing.setUserId(4L);
+        existing.setToken("phone");
+        when(repository.findByToken("phone")).thenReturn(Optional.of(existing));
+        when(repository.findTokensByUserId(anyLong())).thenReturn(List.of());
+        registry.tokensFor(3L);
+        registry.tokensFor(4L);
+
+        registry.register(3L, "phone", "android");
+
+        assertEquals(3L, existing.getUserId());
+        assertEquals("android", existing.getPlatform());
+        assertNotNull(existing.getLastRegisteredAt());
+        verify(repository).save(existing);
+        registry.tokensFor(3L);
+        registry.tokensFor(4L);
+        verify(repository, times(2)).findTokensByUserId(3L);
+        verify(repository, times(2)).findTokensByUserId(4L);
+        assertEquals(1.0, meterRegistry.counter("vitalpaw.notifications.tokens.reassigned").count());
+    }
+
+    @Test
+    void testRejectsUnknownOwner() {
+        ResponseStatusException missing =
+                assertThrows(ResponseStatusException.class, () -> registry.register(500L, "phone", "android"));
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        verify(repository, never()).findByToken(any());
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void testRejectsInvalidTokens() {
+        assertThrows(IllegalArgumentException.class, () -> registry.register(3L, " ", null));
+        assertThrows(IllegalArgumentException.class, () -> registry.register(3L, "x".repeat(256), null));
+        verify(repository, never()).save(any());
+    }
+}
@@ -0,0 +1,71 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MotionAnalysisServiceTest {
+
+    private MotionAnalysisService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new MotionAnalysisService();
+        ReflectionTestUtils.setField(service, "immobileThreshold", 0.5f);
+        ReflectionTestUtils.setField(service, "lowActivityThreshold", 1.5f);
+        ReflectionTestUtils.setField(service, "fallThreshold", 3.0f);
+        ReflectionTestUtils.setField(service, "minFallJerk", 20.0f);
+        ReflectionTestUtils.setField(service, "defaultSampleRateHz", 50);
+    }
+
+    // Lote de n muestras en reposo (1 g en z) con una oscilación de amplitud 'wobble' g en x
+    private static float[] samples(int n, float wobble) {
+        float[] s = new float[n * 3];
+        for (int i = 0; i < n; i++) {
+            s[i * 3] = (i % 2 == 0 ? wobble : -wobble);
+            s[i * 3 + 2] = 1f + (i % 2 == 0 ? wobble : -wobble);
+        }
+        return s;
+    }
+
+    @Test
+    void testRestingIsImmobile() {
+        MotionAnalysisService.Motion motion = service.analyze(samples(50, 0.005f), 50);
+        assertEquals(MotionAnalysisService.IMMOBILE, motion.status());
+        assertEquals(1f, motion.peakG(), 0.02f);
+    }
+
+    @Test
+    void testActivityLevels() {
+        assertEquals(MotionAnalysisService.LOW_ACTIVITY, service.analyze(samples(50, 0.1f), 50).status());
+        assertEquals(MotionAnalysisService.MOVING, service.analyze(samples(50, 0.4f), 50).status());
+    }
+
+    @Test
+    void testSharpImpactIsFall() {
+        float[] s = samples(50, 0.005f);
+        s[25 * 3 + 2] = 3.8f;
+        MotionAnalysisService.Motion motion = service.analyze(s, 0);
+        assertTrue(motion.fall());
+        assertEquals(3.8f, motion.peakG(), 0.01f);
+        assertTrue(motion.maxJerk() > 100f);
+    }
+
+    @Test
+    void testSustainedHighAccelerationIsNotFall() {
+        float[] s = new float[50 * 3];
+        for (int i = 0; i < 50; i++) {
+            s[i * 3 + 2] = 1f + i * 0.05f; // rampa lenta hasta ~3.5 g
+        }
+        assertFalse(service.analyze(s, 50).fall());
+    }
+
+    @Test
+    void testIncompleteTrailingSampleIgnored() {
+        float[] s = {0f, 0f, 1f, 0f, 0f};
+        assertEquals(MotionAnalysisService.IMMOBILE, service.analyze(s, 50).status());
+        assertEquals(MotionAnalysisService.IMMOBILE, service.analyze(new float[2], 50).status());
+    }
+}
@@ -0,0 +1,115 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.entity.Alert;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NotificationDigestServiceTest {
+
+    private static final DeviceContext FIRULAIS = new DeviceContext(1L, "ESP32_1", 7L, "Firulais", 3L, "token-3",
+            37.5f, 39.2f, 60, 140);
+    private static final DeviceContext LUNA = new DeviceContext(2L, "ESP32_2", 8L, "Luna", 3L, "token-3",
+            37.5f, 39.2f, 60, 140);
+    private static final DeviceContext OTHER_OWNER = new DeviceContext(3L, "ESP32_3", 9L, "Toby", 4L, "token-4",
+            37.5f, 39.2f, 60, 140);
+
+    private NotificationDigestService service;
+    private PushNotificationService push;
+
+    @BeforeEach
+    void setUp() {
+        push = mock(PushNotificationService.class);
+        service = new NotificationDigestService();
+        ReflectionTestUtils.setField(service, "windowMs", 60_000L);
+        ReflectionTestUtils.setField(service, "tickMs", 100L);
+        ReflectionTestUtils.setField(service, "wheelSlots", 64);
+        ReflectionTestUtils.setField(service, "immediateTypes", "composite_alert");
+        ReflectionTestUtils.setField(service, "maxLines", 2);
+        ReflectionTestUtils.setField(service, "pushNotificationService", push);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void testCoalescesAlertsPerOwnerIntoOneDigest() {
+        service.submit(FIRULAIS, alert("sensor_alert", "Temp. alta (39.8C)."), false);
+        service.submit(LUNA, alert("baseline_alert", "Pulso inusual."), false);
+        service.submit(FIRULAIS, alert("predictive_alert", "Tendencia de temperatura."), false);
+        service.submit(OTHER_OWNER, alert("sensor_alert", "Pulso alto (180 BPM)."), false);
+        verifyNoInteractions(push);
+
+        assertEquals(2, service.flushDue(System.currentTimeMillis() + 61_000));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, String>> digest = ArgumentCaptor.forClass(Map.class);
+        verify(push, timeout(1_000)).sendToOwner(eq(3L), digest.capture());
+        assertEquals(NotificationDigestService.DIGEST_TYPE, digest.getValue().get("type"));
+        assertEquals("3", digest.getValue().get("count"));
+        assertEquals("Alertas de VitalPaw - Firulais, Luna", digest.getValue().get("title"));
+        assertEquals("Firulais: Temp. alta (39.8C).\nLuna: Pulso inusual.\n(y 1 alertas más)", digest.getValue().get("body"));
+
+        // Una sola alerta en la ventana: la push de siempre
+        verify(push, timeout(1_000)).sendToOwner(4L, Map.of(
+                "title", "Alerta de VitalPaw - Toby", "body", "Pulso alto (180 BPM).", "type", "sensor_alert"));
+    }
+
+    @Test
+    void testCriticalAlertsAreSentImmediately() {
+        service.submit(FIRULAIS, alert("sensor_alert", "Temp. alta (39.8C)."), false);
+        service.submit(FIRULAIS, alert("sensor_alert", "¡Posible caída detectada!"), true);
+        service.submit(LUNA, alert("composite_alert", "caida-inmovil"), false);
+
+        verify(push, timeout(1_000)).sendToOwner(eq(3L), eq(Map.of(
+                "title", "Alerta de VitalPaw - Firulais", "body", "¡Posible caída detectada!", "type", "sensor_alert")));
+        verify(push, timeout(1_000)).sendToOwner(eq(3L), eq(Map.of(
+                "title", "Alerta de VitalPaw - Luna", "body", "caida-inmovil", "type", "composite_alert")));
+        // La alerta no crítica sigue esperando a su ventana
+        verify(push, times(2)).sendToOwner(anyLong(), any());
+    }
+
+    @Test
+    void testNewWindowOpensAfterFlushAndStopSendsOpenWindows() {
+        service.submit(FIRULAIS, alert("sensor_alert", "Primera."), false);
+        service.flushDue(System.currentTimeMillis() + 61_000);
+        verify(push, timeout(1_000)).sendToOwner(eq(3L), any());
+
+        service.submit(FIRULAIS, alert("sensor_alert", "Segunda."), false);
+        assertEquals(0, service.flushDue(System.currentTimeMillis() + 1_000));
+        service.stop();
+        verify(push, times(2)).sendToOwner(eq(3L), any());
+    }
+
+    @Test
+    void testPetsWithoutOwnerAreSkipped() {
+        DeviceContext noOwner = new DeviceContext(5L, "ESP32_5", 10L, "Kira", null, null, null, null, null, null);
+        service.submit(noOwner, alert("sensor_alert", "Temp. alta."), true);
+        service.stop();
+        verifyNoInteractions(push);
+    }
+
+    private static Alert alert(String type, String message) {
+        Alert alert = new Alert();
+        alert.setType(type);
+        alert.setMessage(message);
+        return alert;
+    }
+}
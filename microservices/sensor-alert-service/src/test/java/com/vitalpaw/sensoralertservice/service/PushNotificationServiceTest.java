@@ -0,0 +1,100 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
+import com.google.firebase.messaging.SendResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class PushNotificationServiceTest {
+
+    private static final Map<String, String> DATA = Map.of("title", "Alerta de VitalPaw - Firulais", "body", "Temp. alta.");
+
+    private PushNotificationService service;
+    private FcmTokenRegistry registry;
+    private FirebaseMessaging messaging;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(FcmTokenRegistry.class);
+        messaging = mock(FirebaseMessaging.class);
+        service = spy(new PushNotificationService());
+        ReflectionTestUtils.setField(service, "fcmTokenRegistry", registry);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+        doReturn(messaging).when(service).messaging();
+    }
+
+    @Test
+    void testSendsToEveryDeviceAndPrunesUnregisteredTokens() throws Exception {
+        when(registry.tokensFor(3L)).thenReturn(List.of("phone", "dead", "busy"));
+        BatchResponse batch = batch(1, ok(), failure(MessagingErrorCode.UNREGISTERED), failure(MessagingErrorCode.UNAVAILABLE));
+        when(messaging.sendEachForMulticast(any(MulticastMessage.class))).thenReturn(batch);
+
+        assertEquals(1, service.sendToOwner(3L, DATA));
+
+        verify(messaging, times(1)).sendEachForMulticast(any(MulticastMessage.class));
+        // Un error temporal no borra el token
+        verify(registry).prune(3L, List.of("dead"));
+    }
+
+    @Test
+    void testOwnersWithoutTokensAreNotSentTo() throws Exception {
+        when(registry.tokensFor(3L)).thenReturn(List.of());
+        assertEquals(0, service.sendToOwner(3L, DATA));
+        verify(messaging, never()).sendEachForMulticast(any(MulticastMessage.class));
+        verify(registry, never()).prune(anyLong(), any());
+    }
+
+    @Test
+    void testRequestLevelErrorsDoNotPruneTokens() throws Exception {
+        when(registry.tokensFor(3L)).thenReturn(List.of("phone"));
+        when(messaging.sendEachForMulticast(any(MulticastMessage.class))).thenThrow(mock(FirebaseMessagingException.class));
+        assertEquals(0, service.sendToOwner(3L, DATA));
+        verify(registry, never()).prune(anyLong(), any());
+    }
+
+    @Test
+    void testOnlyPermanentErrorsMarkTokensAsDead() {
+        assertTrue(PushNotificationService.isDeadToken(MessagingErrorCode.UNREGISTERED));
+        assertTrue(PushNotificationService.isDeadToken(MessagingErrorCode.SENDER_ID_MISMATCH));
+        assertFalse(PushNotificationService.isDeadToken(MessagingErrorCode.INVALID_ARGUMENT));
+        assertFalse(PushNotificationService.isDeadToken(MessagingErrorCode.QUOTA_EXCEEDED));
+        assertFalse(PushNotificationService.isDeadToken(null));
+    }
+
+    private static BatchResponse batch(int successCount, SendResponse... responses) {
+        BatchResponse batch = mock(BatchResponse.class);
+        when(batch.getResponses()).thenReturn(List.of(responses));
+        when(batch.getSuccessCount()).thenReturn(successCount);
+        return batch;
+    }
+
+    private static SendResponse ok() {
+        SendResponse response = mock(SendResponse.class);
+        when(response.isSuccessful()).thenReturn(true);
+        return response;
+    }
+
+    private static SendResponse failure(MessagingErrorCode code) {
+        FirebaseMessagingException error = mock(FirebaseMessagingException.class);
+        when(error.getMessagingErrorCode()).thenReturn(code);
+        SendResponse response = mock(SendResponse.class);
+        when(response.isSuccessful()).thenReturn(false);
+        when(response.getException()).thenReturn(error);
+        return response;
+    }
+}
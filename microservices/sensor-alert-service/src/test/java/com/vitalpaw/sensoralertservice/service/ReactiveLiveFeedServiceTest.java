@@ -0,0 +1,146 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.util.VitalsDeltaCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReactiveLiveFeedServiceTest {
+
+    private ReactiveLiveFeedService service;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        service = new ReactiveLiveFeedService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "host", "127.0.0.1");
+        ReflectionTestUtils.setField(service, "port", 0);
+        ReflectionTestUtils.setField(service, "path", "/live");
+        ReflectionTestUtils.setField(service, "bufferPerConnection", 8);
+        ReflectionTestUtils.setField(service, "maxPetsPerConnection", 10);
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    private Disposable connect(String query, BlockingQueue<String> received) {
+        return HttpClient.create()
+                .websocket()
+                .uri("ws://127.0.0.1:" + service.localPort() + "/live" + query)
+                .handle((in, out) -> in.receive().asString().doOnNext(received::add).then())
+                .subscribe();
+    }
+
+    private void awaitViewers(int connections) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (registry.get("vitalpaw.livefeed.connections").gauge().value() < connections) {
+            assertTrue(System.currentTimeMillis() < deadline, "Las conexiones no llegaron a establecerse");
+            Thread.sleep(10);
+        }
+    }
+
+    private static SensorDataResponseDTO reading(long petId, int pulse) {
+        return new SensorDataResponseDTO("ESP32_" + petId, petId, 38.5f, pulse, "En movimiento", null);
+    }
+
+    @Test
+    void testDeliversOnlySubscribedPets() throws InterruptedException {
+        BlockingQueue<String> first = new LinkedBlockingQueue<>();
+        BlockingQueue<String> second = new LinkedBlockingQueue<>();
+        Disposable a = connect("?petId=1&petId=2", first);
+        Disposable b = connect("?petId=2", second);
+        try {
+            awaitViewers(2);
+            service.publish(reading(1, 101));
+            service.publish(reading(2, 102));
+            service.publish(reading(3, 103));
+
+            String one = first.poll(5, TimeUnit.SECONDS);
+            String two = first.poll(5, TimeUnit.SECONDS);
+            assertTrue(one.contains("\"pulse\":101"));
+            assertTrue(two.contains("\"pulse\":102"));
+            assertTrue(second.poll(5, TimeUnit.SECONDS).contains("\"pulse\":102"));
+            assertNull(second.poll(200, TimeUnit.MILLISECONDS));
+            assertNull(first.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            a.dispose();
+            b.dispose();
+        }
+    }
+
+    @Test
+    void testFeedIsReleasedWhenLastViewerLeaves() throws InterruptedException {
+        Disposable a = connect("?petId=7", new LinkedBlockingQueue<>());
+        awaitViewers(1);
+        assertEquals(1.0, registry.get("vitalpaw.livefeed.watched.pets").gauge().value());
+        a.dispose();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (registry.get("vitalpaw.livefeed.watched.pets").gauge().value() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "El sink de la mascota no se liberó");
+            Thread.sleep(10);
+        }
+        assertEquals(0.0, registry.get("vitalpaw.livefeed.connections").gauge().value());
+    }
+
+    @Test
+    void testRejectsConnectionsWithoutPets() {
+        Integer status = HttpClient.create()
+                .get()
+                .uri("http://127.0.0.1:" + service.localPort() + "/live")
+                .response()
+                .map(response -> response.status().code())
+                .block(Duration.ofSeconds(5));
+        assertEquals(400, status);
+        assertTrue(List.of(400).contains(status));
+    }
+
+    @Test
+    void testDeltaSubprotocolSendsKeyframeThenDeltas() throws InterruptedException {
+        BlockingQueue<byte[]> binary = new LinkedBlockingQueue<>();
+        BlockingQueue<String> json = new LinkedBlockingQueue<>();
+        Disposable a = HttpClient.create()
+                .websocket(WebsocketClientSpec.builder().protocols(VitalsDeltaCodec.PROTOCOL).build())
+                .uri("ws://127.0.0.1:" + service.localPort() + "/live?petId=4")
+                .handle((in, out) -> in.receive().asByteArray().doOnNext(binary::add).then())
+                .subscribe();
+        Disposable b = connect("?petId=4", json);
+        try {
+            awaitViewers(2);
+            service.publish(reading(4, 101));
+            service.publish(reading(4, 102));
+
+            VitalsDeltaCodec.Decoder decoder = new VitalsDeltaCodec.Decoder();
+            byte[] keyframe = binary.poll(5, TimeUnit.SECONDS);
+            byte[] delta = binary.poll(5, TimeUnit.SECONDS);
+            assertEquals(101, decoder.decode(keyframe).getPulse());
+            assertTrue(delta.length < keyframe.length);
+            assertEquals(102, decoder.decode(delta).getPulse());
+            // Los paneles sin subprotocolo siguen recibiendo JSON
+            assertTrue(json.poll(5, TimeUnit.SECONDS).contains("\"pulse\":101"));
+            assertTrue(json.poll(5, TimeUnit.SECONDS).contains("\"pulse\":102"));
+        } finally {
+            a.dispose();
+            b.dispose();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import com.vitalpaw.sensoralertservice.tools.InProcessRedisServer;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReadingStreamTest {
+
+    private static final String KEY = "vitalpaw:readings";
+    private static final String GROUP = "vitalpaw-processors";
+
+    private InProcessRedisServer redis;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate template;
+    private ReadingStreamPublisher publisher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new InProcessRedisServer();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", redis.port()),
+                LettuceClientConfiguration.builder()
+                        .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+                        .build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        template = new StringRedisTemplate(connectionFactory);
+
+        publisher = new ReadingStreamPublisher();
+        ReflectionTestUtils.setField(publisher, "mode", "receiver");
+        ReflectionTestUtils.setField(publisher, "streamKey", KEY);
+        ReflectionTestUtils.setField(publisher, "maxLength", 10_000L);
+        ReflectionTestUtils.setField(publisher, "batchSize", 16);
+        ReflectionTestUtils.setField(publisher, "lingerMs", 5L);
+        ReflectionTestUtils.setField(publisher, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(publisher, "offerTimeoutMs", 100L);
+        ReflectionTestUtils.setField(publisher, "retryBackoffMs", 50L);
+        ReflectionTestUtils.setField(publisher, "drainTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(publisher, "redisTemplate", template);
+        ReflectionTestUtils.setField(publisher, "meterRegistry", new SimpleMeterRegistry());
+        publisher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        publisher.stop();
+        connectionFactory.destroy();
+        redis.close();
+    }
+
+    private ReadingStreamConsumer consumer(String name, SensorProcessingService processing, long reclaimIdleMs) {
+        ReadingStreamConsumer consumer = new ReadingStreamConsumer();
+        ReflectionTestUtils.setField(consumer, "mode", "processor");
+        ReflectionTestUtils.setField(consumer, "streamKey", KEY);
+        ReflectionTestUtils.setField(consumer, "group", GROUP);
+        ReflectionTestUtils.setField(consumer, "consumerName", name);
+        ReflectionTestUtils.setField(consumer, "readCount", 100);
+        ReflectionTestUtils.setField(consumer, "blockMs", 50L);
+        ReflectionTestUtils.setField(consumer, "reclaimIdleMs", reclaimIdleMs);
+        ReflectionTestUtils.setField(consumer, "reclaimIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(consumer, "maxDeliveries", 2L);
+        ReflectionTestUtils.setField(consumer, "retryBackoffMs", 50L);
+        ReflectionTestUtils.setField(consumer, "quiesceTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(consumer, "defaultDeviceId", "ESP32_DEFAULT");
+        ReflectionTestUtils.setField(consumer, "sensorProcessingService", processing);
+        ReflectionTestUtils.setField(consumer, "redisTemplate", template);
+        ReflectionTestUtils.setField(consumer, "meterRegistry", new SimpleMeterRegistry());
+        // Sin start(): los tests llaman a pollOnce/reclaim desde su hilo
+        consumer.init();
+        return consumer;
+    }
+
+    private void publishAndWait(String... payloads) throws InterruptedException {
+        CountDownLatch stored = new CountDownLatch(payloads.length);
+        for (String payload : payloads) {
+            assertTrue(publisher.publish(payload, 1_700_000_000_000L, stored::countDown));
+        }
+        assertTrue(stored.await(5, TimeUnit.SECONDS), "el publicador no confirmó las escrituras");
+    }
+
+    private static String payload(String deviceId, Long ts) {
+        return "{\"device_id\":\"" + deviceId + "\",\"temperatura_celsius\":38.2,\"ecg_raw\":90"
+                + (ts != null ? ",\"ts\":" + ts : "") + "}";
+    }
+
+    // Procesa en el acto, como una lectura que sale directa del buffer
+    private static SensorProcessingService processing() {
+        SensorProcessingService processing = mock(SensorProcessingService.class);
+        doAnswer(invocation -> {
+            invocation.<ReadingCompletion>getArgument(2).completed(null);
+            return true;
+        }).when(processing).ingest(any(), eq(false), any());
+        return processing;
+    }
+
+    private static SensorProcessingService failing() {
+        SensorProcessingService processing = processing();
+        doThrow(new IllegalStateException("caído")).when(processing).ingest(any(), eq(false), any());
+        return processing;
+    }
+
+    private long pendingCount() {
+        return template.opsForStream().pending(KEY, GROUP).getTotalPendingMessages();
+    }
+
+    @Test
+    void testReceiversAppendAndProcessorsConsumeAndAck() throws Exception {
+        String[] payloads = new String[40];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = payload("ESP32_" + i, 1_700_000_000_000L + i);
+        }
+        publishAndWait(payloads);
+        assertEquals(40L, template.opsForStream().size(KEY));
+
+        SensorProcessingService processing = processing();
+        ReadingStreamConsumer consumer = consumer("a", processing, 30_000);
+        consumer.ensureGroup();
+        consumer.ensureGroup(); // BUSYGROUP se ignora
+
+        assertEquals(40, consumer.pollOnce());
+        ArgumentCaptor<SensorReading> readings = ArgumentCaptor.forClass(SensorReading.class);
+        verify(processing, times(40)).ingest(readings.capture(), eq(false), any());
+        assertEquals("ESP32_0", readings.getAllValues().get(0).deviceId());
+        assertEquals(1_700_000_000_039L, readings.getAllValues().get(39).timestampMillis());
+        assertEquals(0L, pendingCount());
+        assertEquals(0, consumer.pollOnce());
+    }
+
+    @Test
+    void testReadingWithoutDeviceTimestampUsesReceiveTime() throws Exception {
+        publishAndWait(payload("ESP32_1", null));
+        SensorProcessingService processing = processing();
+        ReadingStreamConsumer consumer = consumer("a", processing, 30_000);
+        consumer.ensureGroup();
+
+        assertEquals(1, consumer.pollOnce());
+        ArgumentCaptor<SensorReading> reading = ArgumentCaptor.forClass(SensorReading.class);
+        verify(processing).ingest(reading.capture(), eq(false), any());
+        assertEquals(1_700_000_000_000L, reading.getValue().timestampMillis());
+    }
+
+    @Test
+    void testMalformedEntriesAreAckedWithoutProcessing() throws Exception {
+        publishAndWait("{no es json", payload("ESP32_1", 1L));
+        SensorProcessingService processing = processing();
+        ReadingStreamConsumer consumer = consumer("a", processing, 30_000);
+        consumer.ensureGroup();
+
+        assertEquals(2, consumer.pollOnce());
+        verify(processing, times(1)).ingest(any(), eq(false), any());
+        assertEquals(0L, pendingCount());
+    }
+
+    @Test
+    void testPendingEntriesOfAFailedProcessorAreReclaimed() throws Exception {
+        publishAndWait(payload("ESP32_1", 1L), payload("ESP32_2", 2L));
+        SensorProcessingService failing = failing();
+        ReadingStreamConsumer crashed = consumer("a", failing, 0);
+        crashed.ensureGroup();
+        assertEquals(0, crashed.pollOnce());
+        assertEquals(2L, pendingCount());
+
+        SensorProcessingService healthy = processing();
+        ReadingStreamConsumer survivor = consumer("b", healthy, 0);
+        assertEquals(0, survivor.pollOnce()); // nada nuevo: las entradas son de "a"
+        assertEquals(2, survivor.reclaim());
+        verify(healthy, times(2)).ingest(any(), eq(false), any());
+        assertEquals(0L, pendingCount());
+    }
+
+    @Test
+    void testReclaimWaitsForIdleTime() throws Exception {
+        publishAndWait(payload("ESP32_1", 1L));
+        SensorProcessingService failing = failing();
+        consumer("a", failing, 30_000).ensureGroup();
+        consumer("a", failing, 30_000).pollOnce();
+
+        SensorProcessingService healthy = processing();
+        assertEquals(0, consumer("b", healthy, 30_000).reclaim());
+        verifyNoInteractions(healthy);
+        assertEquals(1L, pendingCount());
+    }
+
+    @Test
+    void testEntriesThatKeepFailingGoToDeadLetterStream() throws Exception {
+        publishAndWait(payload("ESP32_1", 1L));
+        SensorProcessingService failing = failing();
+        ReadingStreamConsumer consumer = consumer("a", failing, 0);
+        consumer.ensureGroup();
+
+        assertEquals(0, consumer.pollOnce());  // entrega 1
+        assertEquals(0, consumer.reclaim());   // entrega 2, vuelve a fallar
+        assertEquals(0, consumer.reclaim());   // agotada: al stream de descartes
+        verify(failing, times(2)).ingest(any(), eq(false), any());
+        assertEquals(0L, pendingCount());
+        assertEquals(1L, template.opsForStream().size(KEY + ":dead"));
+    }
+
+    @Test
+    void testEntriesAreAckedOnlyWhenProcessingCompletes() throws Exception {
+        publishAndWait(payload("ESP32_1", 1L), payload("ESP32_2", 2L));
+        // Simula el buffer de reordenación: la lectura queda retenida y termina más tarde
+        List<ReadingCompletion> buffered = new CopyOnWriteArrayList<>();
+        SensorProcessingService processing = mock(SensorProcessingService.class);
+        doAnswer(invocation -> buffered.add(invocation.getArgument(2))).when(processing).ingest(any(), eq(false), any());
+        ReadingStreamConsumer consumer = consumer("a", processing, 30_000);
+        consumer.ensureGroup();
+
+        assertEquals(0, consumer.pollOnce());
+        assertEquals(2, buffered.size());
+        assertEquals(2L, pendingCount());
+
+        buffered.get(0).completed(null);
+        buffered.get(1).completed(new IllegalStateException("caído"));
+        assertEquals(1, consumer.pollOnce()); // sin entradas nuevas, pero confirma la terminada
+        assertEquals(1L, pendingCount());     // la fallida queda pendiente para reclamarla
+    }
+
+    @Test
+    void testCompletionsAfterStopAreAckedOnShutdown() throws Exception {
+        publishAndWait(payload("ESP32_1", 1L));
+        List<ReadingCompletion> buffered = new CopyOnWriteArrayList<>();
+        SensorProcessingService processing = mock(SensorProcessingService.class);
+        doAnswer(invocation -> buffered.add(invocation.getArgument(2))).when(processing).ingest(any(), eq(false), any());
+        ReadingStreamConsumer consumer = consumer("a", processing, 30_000);
+        consumer.ensureGroup();
+        consumer.pollOnce();
+
+        // El pipeline se vacía después de parar el bucle
+        buffered.get(0).completed(null);
+        consumer.flushAcknowledgements();
+        assertEquals(0L, pendingCount());
+    }
+}
@@ -0,0 +1,123 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RecentHistoryServiceTest {
+
+    private RecentHistoryService service;
+    private MessageChannel channel;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        channel = mock(MessageChannel.class);
+        DeviceRegistryService deviceRegistry = mock(DeviceRegistryService.class);
+        when(deviceRegistry.knownCount()).thenReturn(10L);
+        service = new RecentHistoryService();
+        ReflectionTestUtils.setField(service, "depth", 5);
+        ReflectionTestUtils.setField(service, "maxDevices", 0);
+        ReflectionTestUtils.setField(service, "minDevices", 2);
+        ReflectionTestUtils.setField(service, "headroom", 1.25);
+        ReflectionTestUtils.setField(service, "reclaimAfterMs", 600_000L);
+        ReflectionTestUtils.setField(service, "deviceRegistryService", deviceRegistry);
+        ReflectionTestUtils.setField(service, "clientOutboundChannel", channel);
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        service.init();
+    }
+
+    private static DeviceContext device(long petId) {
+        return new DeviceContext(petId, "ESP32_" + petId, petId, "Firulais", 1L, null, null, null, null, null);
+    }
+
+    private static SessionSubscribeEvent subscribe(String destination, String history) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("s1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        if (history != null) {
+            accessor.setNativeHeader("history", history);
+        }
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionSubscribeEvent(new Object(), message);
+    }
+
+    private Message<?> sent() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(channel).send(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    void testSubscribeReceivesLatestReadingOnlyOnThatSubscription() {
+        service.record(device(1), 1_000L, 38.5f, 110, "En movimiento", null);
+        service.record(device(1), 2_000L, 38.7f, 115, "Sin movimiento", 0.2f);
+
+        service.onSubscribe(subscribe("/topic/sensores/1", null));
+
+        Message<?> message = sent();
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(message);
+        assertEquals("s1", headers.getSessionId());
+        assertEquals("sub-0", headers.getSubscriptionId());
+        assertEquals("/topic/sensores/1", headers.getDestination());
+        assertEquals("true", headers.getFirstNativeHeader("vitalpaw-snapshot"));
+        String json = new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+        // Mismo formato que las lecturas en vivo
+        assertTrue(json.contains("\"pulse\":115"));
+        assertTrue(json.contains("\"status\":\"Sin movimiento\""));
+        assertFalse(json.contains("timestamps"));
+    }
+
+    @Test
+    void testHistoryHeaderAddsTheRecentWindow() {
+        for (int i = 0; i < 8; i++) {
+            service.record(device(1), 1_000L * i, 38.5f, 100 + i, "En movimiento", null);
+        }
+        service.onSubscribe(subscribe("/topic/sensores/1", "3"));
+
+        String json = new String((byte[]) sent().getPayload(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"pulses\":[105,106,107]"));
+        assertTrue(json.contains("\"timestamps\":[5000,6000,7000]"));
+        assertTrue(json.contains("\"latestTimestamp\":7000"));
+    }
+
+    @Test
+    void testNothingIsSentWithoutReadingsOrForOtherDestinations() {
+        service.onSubscribe(subscribe("/topic/sensores/1", null));
+        service.record(device(2), 1_000L, 38.5f, 110, null, null);
+        service.onSubscribe(subscribe("/topic/alertas/2", null));
+        service.onSubscribe(subscribe("/topic/sensores/abc", null));
+        verify(channel, never()).send(any());
+    }
+
+    @Test
+    void testTableIsSizedFromKnownDevices() {
+        // 10 dispositivos × 1.25 de margen
+        for (long petId = 1; petId <= 13; petId++) {
+            service.record(device(petId), 1_000L, 38.5f, 110, null, null);
+        }
+        assertEquals(13.0, registry.get("vitalpaw.history.recent.slots.used").gauge().value());
+        assertEquals(0.0, registry.get("vitalpaw.history.recent.untracked").counter().count());
+        service.record(device(14), 1_000L, 38.5f, 110, null, null);
+        assertEquals(1.0, registry.get("vitalpaw.history.recent.untracked").counter().count());
+    }
+}
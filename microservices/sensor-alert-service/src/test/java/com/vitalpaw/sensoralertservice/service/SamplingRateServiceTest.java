@@ -0,0 +1,96 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SamplingRateServiceTest {
+
+    private static final DeviceContext DEVICE = new DeviceContext(1L, "ESP32_TEST", 7L, "Firulais", 3L, null,
+            37.5f, 39.2f, 60, 140);
+
+    private SamplingRateService service;
+    private MqttDownlinkService downlink;
+
+    @BeforeEach
+    void setUp() {
+        downlink = mock(MqttDownlinkService.class);
+        when(downlink.isConnected()).thenReturn(true);
+        when(downlink.publishConfig(any(), any())).thenReturn(true);
+        service = new SamplingRateService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "lowIntervalMs", 30_000L);
+        ReflectionTestUtils.setField(service, "normalIntervalMs", 5_000L);
+        ReflectionTestUtils.setField(service, "highIntervalMs", 1_000L);
+        ReflectionTestUtils.setField(service, "temperatureMargin", 0.3f);
+        ReflectionTestUtils.setField(service, "pulseMargin", 10);
+        ReflectionTestUtils.setField(service, "alertHoldMs", 600_000L);
+        ReflectionTestUtils.setField(service, "downgradeDwellMs", 0L);
+        ReflectionTestUtils.setField(service, "ackTimeoutMs", 0L);
+        ReflectionTestUtils.setField(service, "maxAttempts", 2);
+        ReflectionTestUtils.setField(service, "maxTemperature", 40f);
+        ReflectionTestUtils.setField(service, "maxHeartRate", 180);
+        ReflectionTestUtils.setField(service, "downlink", downlink);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+    }
+
+    private String lastCommand() {
+        ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+        verify(downlink, atLeastOnce()).publishConfig(eq("ESP32_TEST"), payload.capture());
+        return new String(payload.getValue(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testClassification() {
+        assertEquals(SamplingRateService.Tier.LOW, service.classify(DEVICE, 38.3f, 100, "Sin movimiento"));
+        assertEquals(SamplingRateService.Tier.NORMAL, service.classify(DEVICE, 38.3f, 100, "En movimiento"));
+        assertEquals(SamplingRateService.Tier.HIGH, service.classify(DEVICE, 39.0f, 100, "Sin movimiento"));
+        assertEquals(SamplingRateService.Tier.HIGH, service.classify(DEVICE, 38.3f, 135, "Sin movimiento"));
+        assertEquals(SamplingRateService.Tier.HIGH, service.classify(DEVICE, 38.3f, 100, "Caído"));
+    }
+
+    @Test
+    void testRestingPetGetsLowRateAndAckIsTracked() {
+        service.observe(DEVICE, 1_000, 38.3f, 100, "Sin movimiento", false);
+        service.control();
+        assertEquals("{\"seq\":1,\"interval_ms\":30000}", lastCommand());
+        assertNull(service.acknowledgedTier("ESP32_TEST"));
+
+        service.onAck("ESP32_TEST", "{\"seq\":1,\"interval_ms\":30000}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(SamplingRateService.Tier.LOW, service.acknowledgedTier("ESP32_TEST"));
+    }
+
+    @Test
+    void testAlertHoldsHighRate() {
+        service.observe(DEVICE, 1_000, 38.3f, 100, "Sin movimiento", true);
+        service.control();
+        assertTrue(lastCommand().contains("\"interval_ms\":1000"));
+        // Aun en reposo, durante el periodo tras la alerta se mantiene el nivel alto
+        service.observe(DEVICE, 60_000, 38.3f, 100, "Sin movimiento", false);
+        service.control();
+        verify(downlink, times(2)).publishConfig(eq("ESP32_TEST"), any()); // El segundo es el reintento sin ack
+    }
+
+    @Test
+    void testRetriesUntilMaxAttemptsThenGivesUp() {
+        service.observe(DEVICE, 1_000, 38.3f, 100, "Sin movimiento", false);
+        for (int i = 0; i < 5; i++) {
+            service.control();
+        }
+        verify(downlink, times(2)).publishConfig(eq("ESP32_TEST"), any());
+        // Una confirmación tardía tras rendirse ya no cuenta
+        service.onAck("ESP32_TEST", "{\"seq\":1}".getBytes(StandardCharsets.UTF_8));
+        assertNull(service.acknowledgedTier("ESP32_TEST"));
+    }
+}
@@ -0,0 +1,157 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.DeviceContext;
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SensorProcessingServiceTest {
+
+    private static final DeviceContext FIRULAIS = new DeviceContext(1L, "ESP32_1", 7L, "Firulais", 3L, "token-3",
+            37.5f, 39.2f, 60, 140);
+
+    private SensorProcessingService service;
+    private DeviceRateLimiter rateLimiter;
+    private EventTimeService eventTime;
+    private AlertService alerts;
+    private TimeSeriesStore timeSeries;
+    private AdaptiveBaselineService baseline;
+    private TrendDetectionService trends;
+    private RecentHistoryService recentHistory;
+
+    @BeforeEach
+    void setUp() {
+        service = new SensorProcessingService();
+        DeviceRegistryService registry = mock(DeviceRegistryService.class);
+        when(registry.isKnown("ESP32_1")).thenReturn(true);
+        DeviceContextService contexts = mock(DeviceContextService.class);
+        when(contexts.resolve("ESP32_1")).thenReturn(Optional.of(FIRULAIS));
+        rateLimiter = mock(DeviceRateLimiter.class);
+        eventTime = mock(EventTimeService.class);
+        alerts = mock(AlertService.class);
+        timeSeries = mock(TimeSeriesStore.class);
+        baseline = mock(AdaptiveBaselineService.class);
+        trends = mock(TrendDetectionService.class);
+        recentHistory = mock(RecentHistoryService.class);
+        ReflectionTestUtils.setField(service, "maxTemperature", 40.0f);
+        ReflectionTestUtils.setField(service, "maxHeartRate", 180);
+        ReflectionTestUtils.setField(service, "deviceRegistryService", registry);
+        ReflectionTestUtils.setField(service, "deviceContextService", contexts);
+        ReflectionTestUtils.setField(service, "deviceRateLimiter", rateLimiter);
+        ReflectionTestUtils.setField(service, "eventTimeService", eventTime);
+        ReflectionTestUtils.setField(service, "alertService", alerts);
+        ReflectionTestUtils.setField(service, "timeSeriesStore", timeSeries);
+        ReflectionTestUtils.setField(service, "adaptiveBaselineService", baseline);
+        ReflectionTestUtils.setField(service, "trendDetectionService", trends);
+        ReflectionTestUtils.setField(service, "recentHistoryService", recentHistory);
+    }
+
+    @Test
+    void testAcceptedReadingsGoThroughEventTime() {
+        SensorReading reading = new SensorReading("ESP32_1", 38.5f, 100, "En movimiento");
+        when(rateLimiter.admit(eq(FIRULAIS), eq(reading), any())).thenReturn(DeviceRateLimiter.Decision.ACCEPT);
+
+        service.ingest(reading);
+
+        verify(eventTime).submit(eq(FIRULAIS), eq(reading), eq(true), any());
+        verifyNoInteractions(alerts);
+    }
+
+    @Test
+    void testExcessUnderAlertOnlySkipsStatefulPipeline() {
+        SensorReading fever = new SensorReading("ESP32_1", 40.1f, 100, "Caído");
+        when(rateLimiter.admit(eq(FIRULAIS), eq(fever), any())).thenReturn(DeviceRateLimiter.Decision.ALERT_ONLY);
+
+        service.ingest(fever);
+
+        verify(alerts).raise(eq(FIRULAIS), eq("sensor_alert"), contains("Temp. fuera de rango"), eq(100), eq(40.1f),
+                eq(fever.timestampMillis()), eq(true));
+        verifyNoInteractions(eventTime, timeSeries, baseline, trends);
+    }
+
+    @Test
+    void testNormalExcessUnderAlertOnlyRaisesNothing() {
+        SensorReading normal = new SensorReading("ESP32_1", 38.5f, 100, "En movimiento");
+        when(rateLimiter.admit(eq(FIRULAIS), eq(normal), any())).thenReturn(DeviceRateLimiter.Decision.ALERT_ONLY);
+
+        service.ingest(normal);
+
+        verifyNoInteractions(alerts, eventTime, timeSeries, baseline, trends);
+    }
+
+    @Test
+    void testCompletionWaitsForConflatedReadings() {
+        SensorReading first = new SensorReading("ESP32_1", 38.5f, 100, "En movimiento");
+        SensorReading second = new SensorReading("ESP32_1", 38.6f, 101, "En movimiento");
+        when(rateLimiter.admit(eq(FIRULAIS), eq(first), any())).thenReturn(DeviceRateLimiter.Decision.DEFERRED);
+        when(rateLimiter.admit(eq(FIRULAIS), eq(second), any())).thenReturn(DeviceRateLimiter.Decision.DROPPED);
+        ReadingCompletion deferred = mock(ReadingCompletion.class);
+        ReadingCompletion dropped = mock(ReadingCompletion.class);
+
+        service.ingest(first, true, deferred);
+        service.ingest(second, true, dropped);
+
+        // La condensada la completa el limitador al liberarla; la descartada ya ha terminado
+        verifyNoInteractions(deferred);
+        verify(dropped).completed(null);
+    }
+
+    @Test
+    void testFallInsideAConflatedBurstStillAlerts() {
+        DeviceRateLimiter limiter = new DeviceRateLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "sustainedPerSecond", 2.0);
+        ReflectionTestUtils.setField(limiter, "burst", 10);
+        ReflectionTestUtils.setField(limiter, "policy", DeviceRateLimiter.Policy.CONFLATE);
+        ReflectionTestUtils.setField(limiter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "deviceRateLimiter", limiter);
+        service.init();
+
+        // Ráfaga de reconexión: 10 aceptadas, la caída queda condensada y la sustituye la siguiente
+        for (int i = 0; i < 10; i++) {
+            service.ingest(new SensorReading("ESP32_1", 38.5f, 100, "En movimiento"));
+        }
+        SensorReading fall = new SensorReading("ESP32_1", 38.5f, 100, "Caído");
+        service.ingest(fall);
+        verifyNoInteractions(alerts);
+        service.ingest(new SensorReading("ESP32_1", 38.5f, 100, "En movimiento"));
+
+        verify(alerts).raise(eq(FIRULAIS), eq("sensor_alert"), contains("caída"), eq(100), eq(38.5f),
+                eq(fall.timestampMillis()), eq(true));
+        verify(eventTime, times(10)).submit(eq(FIRULAIS), any(), eq(true), any());
+    }
+
+    @Test
+    void testBackfillOfAnActiveDeviceOnlyWritesHistory() {
+        // El collar sigue en línea mientras se sube la sesión grabada de hace una hora
+        SensorReading live = new SensorReading("ESP32_1", 38.5f, 100, "En movimiento");
+        when(rateLimiter.admit(eq(FIRULAIS), eq(live), any())).thenReturn(DeviceRateLimiter.Decision.ACCEPT);
+        service.ingest(live);
+
+        long recorded = live.timestampMillis() - 3_600_000;
+        SensorReading fever = new SensorReading("ESP32_1", 41.0f, 190, "Caído", null, 0, recorded);
+        assertTrue(service.backfill(fever));
+        service.finishBackfill();
+
+        verify(timeSeries).backfill(7L, recorded, 41.0f, 190);
+        verify(timeSeries).sealBackfill();
+        verify(recentHistory).backfill(FIRULAIS, recorded, 41.0f, 190, "Caído", null);
+        verify(eventTime, times(1)).submit(any(), any(), anyBoolean(), any());
+        verifyNoInteractions(alerts, baseline, trends);
+    }
+
+    @Test
+    void testBackfillOfUnknownDeviceIsRejected() {
+        assertFalse(service.backfill(new SensorReading("DESCONOCIDO", 38.5f, 100, "En movimiento")));
+        verifyNoInteractions(timeSeries, recentHistory);
+    }
+}
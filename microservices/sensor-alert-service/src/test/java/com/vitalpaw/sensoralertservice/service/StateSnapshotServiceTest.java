@@ -0,0 +1,67 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateSnapshotServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static class CounterState implements Checkpointable {
+        long value;
+
+        @Override
+        public String checkpointName() {
+            return "counter";
+        }
+
+        @Override
+        public void writeCheckpoint(DataOutputStream out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public void readCheckpoint(DataInputStream in) throws IOException {
+            value = in.readLong();
+        }
+    }
+
+    private StateSnapshotService newService(Checkpointable state) {
+        StateSnapshotService service = new StateSnapshotService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "snapshotPath", tempDir.resolve("state.snapshot").toString());
+        ReflectionTestUtils.setField(service, "checkpointables", List.of(state));
+        return service;
+    }
+
+    @Test
+    void testStateSurvivesRestart() {
+        CounterState before = new CounterState();
+        before.value = 42;
+        StateSnapshotService first = newService(before);
+        first.start();
+        first.stop();
+
+        CounterState after = new CounterState();
+        newService(after).load();
+
+        assertEquals(42, after.value);
+    }
+
+    @Test
+    void testMissingSnapshotStartsEmpty() {
+        CounterState state = new CounterState();
+        newService(state).load();
+        assertEquals(0, state.value);
+    }
+}
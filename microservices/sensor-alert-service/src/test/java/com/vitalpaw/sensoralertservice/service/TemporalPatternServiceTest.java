@@ -0,0 +1,104 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemporalPatternServiceTest {
+
+    private static final int FALL = PatternCondition.FALL.bit();
+    private static final int IMMOBILE = PatternCondition.IMMOBILE.bit();
+    private static final int MOVING = PatternCondition.MOVING.bit();
+
+    private TemporalPatternService service;
+
+    @BeforeEach
+    void setUp() {
+        service = newService();
+    }
+
+    private static TemporalPatternService newService() {
+        TemporalPatternService s = new TemporalPatternService();
+        ReflectionTestUtils.setField(s, "enabled", true);
+        ReflectionTestUtils.setField(s, "patternDefinitions",
+                "caida-inmovil: FALL -> IMMOBILE for 60s within 10s; fiebre: FEVER&TACHYCARDIA & IMMOBILE for 30s");
+        ReflectionTestUtils.setField(s, "cooldownMinutes", 15L);
+        ReflectionTestUtils.setField(s, "meterRegistry", new SimpleMeterRegistry());
+        s.init();
+        return s;
+    }
+
+    @Test
+    void testParseStepsAndDurations() {
+        TemporalPattern pattern = TemporalPattern.parse("p: FALL -> IMMOBILE & FEVER for 2m within 500ms");
+        assertEquals("p", pattern.name());
+        assertEquals(2, pattern.length());
+        assertEquals(FALL, pattern.step(0).mask());
+        assertEquals(IMMOBILE | PatternCondition.FEVER.bit(), pattern.step(1).mask());
+        assertEquals(120_000, pattern.step(1).holdMillis());
+        assertEquals(500, pattern.step(1).withinMillis());
+        assertThrows(IllegalArgumentException.class, () -> TemporalPattern.parse("sin nombre"));
+        assertThrows(IllegalArgumentException.class, () -> TemporalPattern.parse("p: FALL -> NOPE"));
+    }
+
+    @Test
+    void testFallFollowedBySustainedImmobilityMatches() {
+        assertNull(service.evaluate(1L, 1_000, FALL));
+        for (long t = 3_000; t < 63_000; t += 5_000) {
+            assertNull(service.evaluate(1L, t, IMMOBILE));
+        }
+        String message = service.evaluate(1L, 63_000, IMMOBILE);
+        assertNotNull(message);
+        assertTrue(message.contains("caida-inmovil"));
+    }
+
+    @Test
+    void testMovementAfterFallResetsSequence() {
+        service.evaluate(1L, 1_000, FALL);
+        service.evaluate(1L, 3_000, IMMOBILE);
+        service.evaluate(1L, 30_000, MOVING);
+        assertNull(service.evaluate(1L, 70_000, IMMOBILE));
+    }
+
+    @Test
+    void testImmobilityStartingTooLateDoesNotMatch() {
+        service.evaluate(1L, 1_000, FALL);
+        assertNull(service.evaluate(1L, 20_000, IMMOBILE));
+        assertNull(service.evaluate(1L, 90_000, IMMOBILE));
+    }
+
+    @Test
+    void testConjunctionHeldForDuration() {
+        int all = PatternCondition.FEVER.bit() | PatternCondition.TACHYCARDIA.bit() | IMMOBILE;
+        assertNull(service.evaluate(2L, 0, all));
+        assertNull(service.evaluate(2L, 10_000, all & ~PatternCondition.TACHYCARDIA.bit()));
+        assertNull(service.evaluate(2L, 20_000, all));
+        assertNull(service.evaluate(2L, 45_000, all));
+        assertNotNull(service.evaluate(2L, 50_000, all));
+        // Cooldown: la repetición inmediata no vuelve a alertar
+        assertNull(service.evaluate(2L, 80_000, all));
+        assertNull(service.evaluate(2L, 111_000, all));
+    }
+
+    @Test
+    void testCheckpointRoundTrip() throws IOException {
+        service.evaluate(1L, 1_000, FALL);
+        service.evaluate(1L, 3_000, IMMOBILE);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            service.writeCheckpoint(out);
+        }
+        TemporalPatternService restored = newService();
+        restored.readCheckpoint(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+        assertNotNull(restored.evaluate(1L, 63_000, IMMOBILE));
+    }
+}
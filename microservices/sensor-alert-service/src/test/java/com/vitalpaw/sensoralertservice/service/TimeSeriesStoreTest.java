@@ -0,0 +1,228 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.VitalsHistoryDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vitalpaw.sensoralertservice.util.GorillaEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeSeriesStoreTest {
+
+    private static final long T0 = 1_760_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private TimeSeriesStore newStore() {
+        TimeSeriesStore store = new TimeSeriesStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "storePath", dir.toString());
+        ReflectionTestUtils.setField(store, "chunkMaxPoints", 100);
+        ReflectionTestUtils.setField(store, "chunkMaxMinutes", 60L);
+        ReflectionTestUtils.setField(store, "retentionDays", 36_500L);
+        ReflectionTestUtils.setField(store, "maxQueryPoints", 1_000_000);
+        ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+        store.init();
+        store.start();
+        return store;
+    }
+
+    @Test
+    void testQueryAcrossSealedFlushedAndActiveChunks() {
+        TimeSeriesStore store = newStore();
+        for (int i = 0; i < 350; i++) {
+            store.append(1L, T0 + i * 1_000L, 38f + i % 5 * 0.1f, 100 + i % 7);
+            store.append(2L, T0 + i * 1_000L, 37f, 80);
+            if (i == 150) {
+                store.flush();
+            }
+        }
+        VitalsHistoryDTO all = store.query(1L, T0, T0 + 350_000);
+        assertEquals(350, all.timestamps().length);
+        assertEquals(T0 + 349_000, all.timestamps()[349]);
+        assertEquals(100 + 349 % 7, all.pulses()[349]);
+
+        VitalsHistoryDTO range = store.query(1L, T0 + 95_000, T0 + 105_000);
+        assertEquals(11, range.timestamps().length);
+        assertEquals(T0 + 95_000, range.timestamps()[0]);
+        assertEquals(38.0f, range.temperatures()[0], 0.001f);
+    }
+
+    @Test
+    void testStopPersistsAndReopenMapsSegments() throws Exception {
+        TimeSeriesStore store = newStore();
+        for (int i = 0; i < 250; i++) {
+            store.append(1L, T0 + i * 1_000L, 38.5f, 110);
+        }
+        store.append(1L, T0 + 10_000, 39f, 120); // Desordenada: se descarta
+        store.stop();
+        try (var files = Files.list(dir)) {
+            assertTrue(files.anyMatch(p -> p.toString().endsWith(".vpts")));
+        }
+
+        TimeSeriesStore reopened = newStore();
+        VitalsHistoryDTO history = reopened.query(1L, T0, T0 + 1_000_000);
+        assertEquals(250, history.timestamps().length);
+        assertEquals(110, history.pulses()[10]);
+        assertEquals(0, reopened.query(9L, T0, T0 + 1_000_000).timestamps().length);
+    }
+
+    @Test
+    void testBackfillWhileLiveIsStoredInTemporalOrder() throws Exception {
+        TimeSeriesStore store = newStore();
+        // En vivo desde T0 + 1 h; la sesión grabada (T0 .. T0 + 50 min) se sube a la vez y después
+        for (int i = 0; i < 150; i++) {
+            store.append(1L, T0 + 3_600_000 + i * 1_000L, 38f, 100);
+            if (i < 100) {
+                store.backfill(1L, T0 + i * 30_000L, 39f, 120);
+            }
+        }
+        store.append(1L, T0 + 100_000, 37f, 90); // La ruta en vivo sigue descartando las desordenadas
+        store.flush();
+
+        VitalsHistoryDTO mixed = store.query(1L, T0, T0 + 7_200_000);
+        assertEquals(250, mixed.timestamps().length);
+        assertEquals(T0, mixed.timestamps()[0]);
+        assertEquals(120, mixed.pulses()[99]);
+        assertEquals(T0 + 3_600_000, mixed.timestamps()[100]);
+        for (int i = 1; i < mixed.timestamps().length; i++) {
+            assertTrue(mixed.timestamps()[i] > mixed.timestamps()[i - 1]);
+        }
+
+        store.sealBackfill();
+        store.stop();
+        VitalsHistoryDTO reopened = newStore().query(1L, T0, T0 + 7_200_000);
+        assertArrayEquals(mixed.timestamps(), reopened.timestamps());
+    }
+
+    @Test
+    void testUnflushedChunksSurviveACrashThroughTheCheckpoint() throws Exception {
+        TimeSeriesStore store = newStore();
+        for (int i = 0; i < 150; i++) {
+            store.append(1L, T0 + i * 1_000L, 38.5f, 100 + i % 7); // Un bloque sellado y uno activo
+        }
+        store.backfill(1L, T0 - 60_000, 39f, 120);
+        byte[] checkpoint = checkpoint(store);
+
+        // Caída sin flush: el almacén nuevo solo tiene el snapshot
+        TimeSeriesStore restarted = newStore();
+        restarted.readCheckpoint(new DataInputStream(new ByteArrayInputStream(checkpoint)));
+        VitalsHistoryDTO history = restarted.query(1L, T0 - 60_000, T0 + 1_000_000);
+        assertEquals(151, history.timestamps().length);
+        assertEquals(100 + 149 % 7, history.pulses()[150]);
+
+        restarted.flush();
+        assertEquals(151, newStore().query(1L, T0 - 60_000, T0 + 1_000_000).timestamps().length);
+    }
+
+    @Test
+    void testCheckpointTakenBeforeTheLastFlushIsNotDuplicated() throws Exception {
+        TimeSeriesStore store = newStore();
+        for (int i = 0; i < 150; i++) {
+            store.append(1L, T0 + i * 1_000L, 38.5f, 100);
+        }
+        byte[] checkpoint = checkpoint(store);
+        store.append(1L, T0 + 150_000, 38.5f, 100);
+        store.stop();
+
+        TimeSeriesStore restarted = newStore();
+        restarted.readCheckpoint(new DataInputStream(new ByteArrayInputStream(checkpoint)));
+        assertEquals(151, restarted.query(1L, T0, T0 + 1_000_000).timestamps().length);
+    }
+
+    private static byte[] checkpoint(TimeSeriesStore store) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            store.writeCheckpoint(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void testManyPetsPerSegmentAreFoundThroughTheIndex() {
+        TimeSeriesStore store = newStore();
+        for (int i = 0; i < 250; i++) {
+            for (long pet = 1; pet <= 40; pet++) {
+                store.append(pet, T0 + i * 1_000L, 38f, (int) pet);
+            }
+        }
+        store.stop();
+
+        TimeSeriesStore reopened = newStore();
+        for (long pet = 1; pet <= 40; pet++) {
+            VitalsHistoryDTO history = reopened.query(pet, T0 + 50_000, T0 + 149_000);
+            assertEquals(100, history.timestamps().length);
+            assertEquals(pet, history.pulses()[0]);
+            assertEquals(T0 + 50_000, history.timestamps()[0]);
+        }
+        assertEquals(40, reopened.petIds().length);
+    }
+
+    @Test
+    void testQueryReportsTruncation() {
+        TimeSeriesStore store = newStore();
+        ReflectionTestUtils.setField(store, "maxQueryPoints", 100);
+        for (int i = 0; i < 150; i++) {
+            store.append(1L, T0 + i * 1_000L, 38f, 100);
+        }
+        VitalsHistoryDTO first = store.query(1L, T0, T0 + 1_000_000);
+        assertTrue(first.truncated());
+        assertEquals(100, first.timestamps().length);
+
+        VitalsHistoryDTO rest = store.query(1L, first.timestamps()[99] + 1, T0 + 1_000_000);
+        assertFalse(rest.truncated());
+        assertEquals(50, rest.timestamps().length);
+    }
+
+    @Test
+    void testReadsVersionOneSegments() throws Exception {
+        // Versión 1: cabecera de 8 bytes e índice en orden de sellado, sin ordenar por mascota
+        GorillaEncoder pet2 = new GorillaEncoder(2);
+        GorillaEncoder pet1 = new GorillaEncoder(2);
+        for (int i = 0; i < 10; i++) {
+            pet2.add(T0 + i * 1_000L, 37f, 80);
+            pet1.add(T0 + i * 1_000L, 38f, 100 + i);
+        }
+        byte[][] blocks = {pet2.toByteArray(), pet1.toByteArray()};
+        long[] petIds = {2L, 1L};
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(dir.resolve("seg-0000000000001.vpts")))) {
+            out.writeInt(0x56505453);
+            out.writeInt(1);
+            int offset = 8;
+            for (byte[] block : blocks) {
+                out.write(block);
+            }
+            for (int i = 0; i < blocks.length; i++) {
+                out.writeLong(petIds[i]);
+                out.writeLong(T0);
+                out.writeLong(T0 + 9_000);
+                out.writeInt(10);
+                out.writeInt(offset);
+                out.writeInt(blocks[i].length);
+                out.writeInt(0);
+                offset += blocks[i].length;
+            }
+            out.writeInt(blocks.length);
+            out.writeLong(offset);
+            out.writeInt(0x56505453);
+        }
+
+        TimeSeriesStore store = newStore();
+        VitalsHistoryDTO history = store.query(1L, T0, T0 + 9_000);
+        assertEquals(10, history.timestamps().length);
+        assertEquals(109, history.pulses()[9]);
+        assertEquals(80, store.query(2L, T0, T0 + 9_000).pulses()[0]);
+    }
+}
@@ -0,0 +1,244 @@
+package com.vitalpaw.sensoralertservice.service;
+
+import com.vitalpaw.sensoralertservice.dto.SensorReading;
+import com.vitalpaw.sensoralertservice.util.CompactSampleReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UdpIngestServiceTest {
+
+    private static final String AUTH_KEY = "clave-de-prueba";
+
+    private UdpIngestService service;
+    private SensorProcessingService pipeline;
+    private SimpleMeterRegistry registry;
+    private DatagramChannel client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pipeline = mock(SensorProcessingService.class);
+        DeviceRegistryService registryService = mock(DeviceRegistryService.class);
+        when(registryService.isKnown("ESP32_A")).thenReturn(true);
+        registry = new SimpleMeterRegistry();
+        service = newService(registryService, registry);
+        service.start();
+        client = DatagramChannel.open();
+        client.connect(new InetSocketAddress("127.0.0.1", service.localPort()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        service.stop();
+    }
+
+    private UdpIngestService newService(DeviceRegistryService registryService, SimpleMeterRegistry meters) {
+        UdpIngestService udp = new UdpIngestService();
+        ReflectionTestUtils.setField(udp, "enabled", true);
+        ReflectionTestUtils.setField(udp, "port", 0);
+        ReflectionTestUtils.setField(udp, "receiveBufferBytes", 65_536);
+        ReflectionTestUtils.setField(udp, "workers", 1);
+        ReflectionTestUtils.setField(udp, "queueCapacity", 100);
+        ReflectionTestUtils.setField(udp, "ack", true);
+        ReflectionTestUtils.setField(udp, "authKey", AUTH_KEY);
+        ReflectionTestUtils.setField(udp, "allowUnsigned", false);
+        ReflectionTestUtils.setField(udp, "sequenceResetGap", 1024);
+        ReflectionTestUtils.setField(udp, "quiesceTimeoutMs", 2_000L);
+        ReflectionTestUtils.setField(udp, "sensorProcessingService", pipeline);
+        ReflectionTestUtils.setField(udp, "deviceRegistryService", registryService);
+        ReflectionTestUtils.setField(udp, "meterRegistry", meters);
+        return udp;
+    }
+
+    static ByteBuffer datagram(String deviceId, int seq, int samples) {
+        return datagram(deviceId, 1, seq, samples);
+    }
+
+    static ByteBuffer unsigned(String deviceId, int seq, int samples) {
+        byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(10 + id.length + samples * CompactSampleReader.SAMPLE_BYTES);
+        buffer.put((byte) 'V').put((byte) 'P').put((byte) 'D').put((byte) '1');
+        buffer.putInt(seq).put((byte) id.length).put(id).put((byte) samples);
+        return samples(buffer, seq, samples);
+    }
+
+    static ByteBuffer datagram(String deviceId, int boot, int seq, int samples) {
+        byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(14 + id.length + samples * CompactSampleReader.SAMPLE_BYTES + 16);
+        buffer.put((byte) 'V').put((byte) 'P').put((byte) 'D').put((byte) '2');
+        buffer.putInt(boot).putInt(seq).put((byte) id.length).put(id).put((byte) samples);
+        int signedBytes = samples(buffer, seq, samples).limit();
+        // Lo que hace el firmware: clave del collar derivada del secreto y etiqueta HMAC truncada a 16 bytes
+        byte[] tag = hmac(hmac(AUTH_KEY.getBytes(StandardCharsets.UTF_8), id),
+                Arrays.copyOf(buffer.array(), signedBytes));
+        buffer.limit(buffer.capacity()).position(signedBytes);
+        return buffer.put(tag, 0, 16).flip();
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ByteBuffer samples(ByteBuffer buffer, int seq, int samples) {
+        for (int i = 0; i < samples; i++) {
+            buffer.putLong(1_000L * seq + i).putFloat(38.5f).putShort((short) 120)
+                    .put((byte) CompactSampleReader.statusCode("Sin movimiento"));
+        }
+        return buffer.flip();
+    }
+
+    private int receiveAck() throws IOException {
+        ByteBuffer ack = ByteBuffer.allocate(8);
+        client.read(ack);
+        ack.flip();
+        assertEquals(('V' << 24) | ('P' << 16) | ('A' << 8) | '1', ack.getInt());
+        return ack.getInt();
+    }
+
+    @Test
+    void testDeliversSamplesAndAcknowledges() throws IOException {
+        client.write(datagram("ESP32_A", 1, 3));
+        assertEquals(1, receiveAck());
+
+        ArgumentCaptor<SensorReading> readings = ArgumentCaptor.forClass(SensorReading.class);
+        verify(pipeline, timeout(2_000).times(3)).ingest(readings.capture(), eq(false));
+        SensorReading last = readings.getAllValues().get(2);
+        assertEquals("ESP32_A", last.deviceId());
+        assertEquals(1_002, last.timestampMillis());
+        assertEquals(120, last.pulse());
+        assertEquals("Sin movimiento", last.status());
+    }
+
+    @Test
+    void testDuplicatesAreAcknowledgedButNotProcessed() throws IOException {
+        client.write(datagram("ESP32_A", 5, 1));
+        assertEquals(5, receiveAck());
+        // Retransmisión: el ack anterior se perdió
+        client.write(datagram("ESP32_A", 5, 1));
+        assertEquals(5, receiveAck());
+        client.write(datagram("ESP32_A", 6, 1));
+        assertEquals(6, receiveAck());
+
+        verify(pipeline, timeout(2_000).times(2)).ingest(any(SensorReading.class), eq(true));
+        assertEquals(1.0, registry.counter("vitalpaw.udp.duplicates").count());
+    }
+
+    @Test
+    void testIgnoresUnknownDevicesAndMalformedDatagrams() {
+        assertEquals(Integer.MIN_VALUE, service.handle(datagram("ESP32_X", 1, 1)));
+        ByteBuffer truncated = datagram("ESP32_A", 2, 2);
+        truncated.limit(truncated.limit() - 1);
+        assertEquals(Integer.MIN_VALUE, service.handle(truncated));
+        assertEquals(Integer.MIN_VALUE, service.handle(ByteBuffer.wrap("hola mundo".getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(1.0, registry.counter("vitalpaw.udp.unknown").count());
+        assertEquals(2.0, registry.counter("vitalpaw.udp.malformed").count());
+        verifyNoInteractions(pipeline);
+    }
+
+    @Test
+    void testRebootIsDetectedFromBootCounter() {
+        assertEquals(300, service.handle(datagram("ESP32_A", 4, 300, 1)));
+        // Reinicio tras pocos envíos: sin la época se tomaría por antiguo y se perdería
+        assertEquals(2, service.handle(datagram("ESP32_A", 5, 2, 1)));
+        // Un reintento retrasado del arranque anterior no se procesa ni se confirma
+        assertEquals(Integer.MIN_VALUE, service.handle(datagram("ESP32_A", 4, 301, 1)));
+
+        verify(pipeline, timeout(2_000).times(2)).ingest(any(SensorReading.class), eq(true));
+        assertEquals(1.0, registry.counter("vitalpaw.udp.stale").count());
+    }
+
+    @Test
+    void testTooOldDatagramsAreNotAcknowledged() {
+        assertEquals(200, service.handle(datagram("ESP32_A", 200, 1)));
+        // Fuera de la ventana: no se sabe si llegó, así que el collar no debe darlo por entregado
+        assertEquals(Integer.MIN_VALUE, service.handle(datagram("ESP32_A", 100, 1)));
+        assertEquals(200, service.handle(datagram("ESP32_A", 200, 1)));
+
+        assertEquals(1.0, registry.counter("vitalpaw.udp.stale").count());
+        assertEquals(1.0, registry.counter("vitalpaw.udp.duplicates").count());
+    }
+
+    @Test
+    void testRejectsForgedOrUnsignedDatagrams() {
+        ByteBuffer forged = datagram("ESP32_A", 7, 1);
+        forged.put(forged.limit() - 1, (byte) (forged.get(forged.limit() - 1) ^ 1));
+        assertEquals(Integer.MIN_VALUE, service.handle(forged));
+        ByteBuffer tampered = datagram("ESP32_A", 8, 1);
+        tampered.put(tampered.limit() - 20, (byte) 0x7F); // Cambia la temperatura de la muestra
+        assertEquals(Integer.MIN_VALUE, service.handle(tampered));
+        assertEquals(Integer.MIN_VALUE, service.handle(unsigned("ESP32_A", 9, 1)));
+        assertEquals(3.0, registry.counter("vitalpaw.udp.unauthenticated").count());
+
+        // Un datagrama falsificado no mueve la ventana: el auténtico con ese número se sigue aceptando
+        assertEquals(7, service.handle(datagram("ESP32_A", 7, 1)));
+        verify(pipeline, timeout(2_000).times(1)).ingest(any(SensorReading.class), eq(true));
+    }
+
+    @Test
+    void testUnsignedDatagramsOnlyWhenAllowed() {
+        ReflectionTestUtils.setField(service, "allowUnsigned", true);
+        assertEquals(3, service.handle(unsigned("ESP32_A", 3, 1)));
+        verify(pipeline, timeout(2_000).times(1)).ingest(any(SensorReading.class), eq(true));
+    }
+
+    @Test
+    void testProvisionedKeyMatchesFirmwareDerivation() {
+        byte[] expected = hmac(AUTH_KEY.getBytes(StandardCharsets.UTF_8), "ESP32_A".getBytes(StandardCharsets.UTF_8));
+        assertEquals(HexFormat.of().formatHex(expected), service.deviceKeyHex("ESP32_A"));
+    }
+
+    @Test
+    void testReplayAfterRestartIsRejected() throws IOException {
+        ByteBuffer captured = datagram("ESP32_A", 3, 40, 1);
+        assertEquals(40, service.handle(captured.duplicate()));
+        assertEquals(41, service.handle(datagram("ESP32_A", 3, 41, 1)));
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        service.writeCheckpoint(new DataOutputStream(snapshot));
+        service.stop();
+
+        DeviceRegistryService registryService = mock(DeviceRegistryService.class);
+        when(registryService.isKnown("ESP32_A")).thenReturn(true);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        service = newService(registryService, meters);
+        service.readCheckpoint(new DataInputStream(new ByteArrayInputStream(snapshot.toByteArray())));
+        service.start();
+
+        // Sin la ventana restaurada se aceptaría como primer datagrama del collar
+        assertEquals(40, service.handle(captured.duplicate()));
+        assertEquals(1.0, meters.counter("vitalpaw.udp.duplicates").count());
+        assertEquals(Integer.MIN_VALUE, service.handle(datagram("ESP32_A", 2, 90, 1)));
+        assertEquals(42, service.handle(datagram("ESP32_A", 3, 42, 1)));
+        verify(pipeline, timeout(2_000).times(3)).ingest(any(SensorReading.class), eq(true));
+    }
+}
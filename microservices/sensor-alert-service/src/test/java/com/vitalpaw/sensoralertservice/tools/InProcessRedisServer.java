@@ -0,0 +1,486 @@
+package com.vitalpaw.sensoralertservice.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Servidor Redis mínimo en proceso para los tests de streams: habla RESP2 por un socket local y solo implementa
+ * lo que usan los servicios (XADD con MAXLEN, XGROUP CREATE, XREADGROUP con BLOCK, XACK, XPENDING, XCLAIM, XLEN
+ * y XRANGE). Un hilo por conexión; el estado se protege con un único monitor que también despierta a los
+ * XREADGROUP bloqueados.
+ */
+public class InProcessRedisServer implements AutoCloseable {
+
+    private record Id(long ms, long seq) implements Comparable<Id> {
+        static Id parse(String value) {
+            int dash = value.indexOf('-');
+            return dash < 0 ? new Id(Long.parseLong(value), 0) : new Id(Long.parseLong(value.substring(0, dash)),
+                    Long.parseLong(value.substring(dash + 1)));
+        }
+
+        @Override
+        public int compareTo(Id other) {
+            int byMs = Long.compare(ms, other.ms);
+            return byMs != 0 ? byMs : Long.compare(seq, other.seq);
+        }
+
+        @Override
+        public String toString() {
+            return ms + "-" + seq;
+        }
+    }
+
+    private static final class Pending {
+        String consumer;
+        long deliveredAt;
+        long deliveries;
+
+        Pending(String consumer, long deliveredAt) {
+            this.consumer = consumer;
+            this.deliveredAt = deliveredAt;
+            this.deliveries = 1;
+        }
+    }
+
+    private static final class Group {
+        Id lastDelivered;
+        final NavigableMap<Id, Pending> pending = new TreeMap<>();
+
+        Group(Id lastDelivered) {
+            this.lastDelivered = lastDelivered;
+        }
+    }
+
+    private static final class Stream {
+        final NavigableMap<Id, List<String>> entries = new TreeMap<>();
+        final Map<String, Group> groups = new HashMap<>();
+        Id lastId = new Id(0, 0);
+    }
+
+    private static final class RedisError extends RuntimeException {
+        RedisError(String message) {
+            super(message);
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Stream> streams = new HashMap<>();
+    private final List<Socket> clients = new ArrayList<>();
+    private volatile boolean closed;
+
+    public InProcessRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "in-process-redis");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                synchronized (clients) {
+                    clients.add(socket);
+                }
+                Thread handler = new Thread(() -> serve(socket), "in-process-redis-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket; InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            while (!closed) {
+                List<String> command = readCommand(in);
+                Object reply;
+                try {
+                    reply = execute(command);
+                } catch (RedisError e) {
+                    reply = e;
+                } catch (RuntimeException e) {
+                    reply = new RedisError("ERR " + e.getMessage());
+                }
+                write(out, reply);
+                // Las respuestas de un pipeline se acumulan mientras quedan comandos por leer
+                if (in.available() == 0) {
+                    out.flush();
+                }
+                if ("QUIT".equalsIgnoreCase(command.get(0))) {
+                    out.flush();
+                    return;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // Cliente desconectado o servidor cerrado
+        }
+    }
+
+    private Object execute(List<String> args) throws InterruptedException {
+        String name = args.get(0).toUpperCase(Locale.ROOT);
+        return switch (name) {
+            case "PING" -> args.size() > 1 ? args.get(1) : new StringBuilder("PONG");
+            case "QUIT", "CLIENT", "SELECT" -> new StringBuilder("OK");
+            case "XADD" -> xadd(args);
+            case "XLEN" -> xlen(args);
+            case "XRANGE" -> xrange(args);
+            case "XGROUP" -> xgroup(args);
+            case "XREADGROUP" -> xreadgroup(args);
+            case "XACK" -> xack(args);
+            case "XPENDING" -> xpending(args);
+            case "XCLAIM" -> xclaim(args);
+            default -> throw new RedisError("ERR unknown command '" + args.get(0) + "'");
+        };
+    }
+
+    private synchronized Object xadd(List<String> args) {
+        String key = args.get(1);
+        int i = 2;
+        long maxLength = -1;
+        while (true) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if (option.equals("NOMKSTREAM")) {
+                i++;
+            } else if (option.equals("MAXLEN")) {
+                i++;
+                if (args.get(i).equals("~") || args.get(i).equals("=")) {
+                    i++;
+                }
+                maxLength = Long.parseLong(args.get(i++));
+            } else {
+                break;
+            }
+        }
+        Stream stream = streams.computeIfAbsent(key, k -> new Stream());
+        String requested = args.get(i++);
+        Id id;
+        if (requested.equals("*")) {
+            long now = System.currentTimeMillis();
+            id = now > stream.lastId.ms() ? new Id(now, 0) : new Id(stream.lastId.ms(), stream.lastId.seq() + 1);
+        } else {
+            id = Id.parse(requested);
+            if (id.compareTo(stream.lastId) <= 0) {
+                throw new RedisError("ERR The ID specified in XADD is equal or smaller than the target stream top item");
+            }
+        }
+        stream.entries.put(id, new ArrayList<>(args.subList(i, args.size())));
+        stream.lastId = id;
+        while (maxLength >= 0 && stream.entries.size() > maxLength) {
+            stream.entries.pollFirstEntry();
+        }
+        notifyAll();
+        return bulk(id.toString());
+    }
+
+    private synchronized Object xlen(List<String> args) {
+        Stream stream = streams.get(args.get(1));
+        return (long) (stream != null ? stream.entries.size() : 0);
+    }
+
+    private synchronized Object xrange(List<String> args) {
+        Stream stream = streams.get(args.get(1));
+        List<Object> result = new ArrayList<>();
+        if (stream != null) {
+            stream.entries.forEach((id, fields) -> result.add(entry(id, fields)));
+        }
+        return result;
+    }
+
+    private synchronized Object xgroup(List<String> args) {
+        if (!"CREATE".equalsIgnoreCase(args.get(1))) {
+            throw new RedisError("ERR unsupported XGROUP subcommand");
+        }
+        String key = args.get(2);
+        Stream stream = streams.get(key);
+        if (stream == null) {
+            boolean mkStream = args.stream().anyMatch("MKSTREAM"::equalsIgnoreCase);
+            if (!mkStream) {
+                throw new RedisError("ERR The XGROUP subcommand requires the key to exist");
+            }
+            stream = new Stream();
+            streams.put(key, stream);
+        }
+        if (stream.groups.containsKey(args.get(3))) {
+            throw new RedisError("BUSYGROUP Consumer Group name already exists");
+        }
+        Id start = args.get(4).equals("$") ? stream.lastId : Id.parse(args.get(4));
+        stream.groups.put(args.get(3), new Group(start));
+        return new StringBuilder("OK");
+    }
+
+    private synchronized Object xreadgroup(List<String> args) throws InterruptedException {
+        String groupName = args.get(2);
+        String consumer = args.get(3);
+        long count = Long.MAX_VALUE;
+        long block = -1;
+        int i = 4;
+        while (!args.get(i).equalsIgnoreCase("STREAMS")) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if (option.equals("COUNT")) {
+                count = Long.parseLong(args.get(++i));
+            } else if (option.equals("BLOCK")) {
+                block = Long.parseLong(args.get(++i));
+            }
+            i++;
+        }
+        String key = args.get(i + 1);
+        String from = args.get(i + 2);
+        Stream stream = streams.get(key);
+        Group group = stream != null ? stream.groups.get(groupName) : null;
+        if (group == null) {
+            throw new RedisError("NOGROUP No such key '" + key + "' or consumer group '" + groupName + "'");
+        }
+        List<Object> entries = new ArrayList<>();
+        if (from.equals(">")) {
+            long deadline = System.currentTimeMillis() + (block == 0 ? Long.MAX_VALUE / 2 : block);
+            while (stream.entries.higherKey(group.lastDelivered) == null && block >= 0
+                    && System.currentTimeMillis() < deadline && !closed) {
+                wait(Math.max(1, Math.min(100, deadline - System.currentTimeMillis())));
+            }
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Id, List<String>> e : stream.entries.tailMap(group.lastDelivered, false).entrySet()) {
+                if (entries.size() >= count) {
+                    break;
+                }
+                group.lastDelivered = e.getKey();
+                group.pending.put(e.getKey(), new Pending(consumer, now));
+                entries.add(entry(e.getKey(), e.getValue()));
+            }
+        } else {
+            // Historial del consumidor: sus pendientes posteriores al id indicado
+            for (Map.Entry<Id, Pending> e : group.pending.tailMap(Id.parse(from), false).entrySet()) {
+                if (entries.size() < count && e.getValue().consumer.equals(consumer)) {
+                    entries.add(entry(e.getKey(), stream.entries.get(e.getKey())));
+                }
+            }
+        }
+        if (entries.isEmpty() && from.equals(">")) {
+            return null;
+        }
+        return List.of(List.of(bulk(key), entries));
+    }
+
+    private synchronized Object xack(List<String> args) {
+        Stream stream = streams.get(args.get(1));
+        Group group = stream != null ? stream.groups.get(args.get(2)) : null;
+        long acked = 0;
+        if (group != null) {
+            for (String id : args.subList(3, args.size())) {
+                if (group.pending.remove(Id.parse(id)) != null) {
+                    acked++;
+                }
+            }
+        }
+        return acked;
+    }
+
+    private synchronized Object xpending(List<String> args) {
+        Stream stream = streams.get(args.get(1));
+        Group group = stream != null ? stream.groups.get(args.get(2)) : null;
+        if (group == null) {
+            throw new RedisError("NOGROUP No such key or consumer group");
+        }
+        if (args.size() == 3) {
+            if (group.pending.isEmpty()) {
+                return List.of(0L, NULL_BULK, NULL_BULK, NULL_ARRAY);
+            }
+            Map<String, Long> perConsumer = new LinkedHashMap<>();
+            group.pending.values().forEach(p -> perConsumer.merge(p.consumer, 1L, Long::sum));
+            List<Object> consumers = new ArrayList<>();
+            perConsumer.forEach((name, n) -> consumers.add(List.of(bulk(name), bulk(Long.toString(n)))));
+            return List.of((long) group.pending.size(), bulk(group.pending.firstKey().toString()),
+                    bulk(group.pending.lastKey().toString()), consumers);
+        }
+        int i = 3;
+        long minIdle = 0;
+        if (args.get(i).equalsIgnoreCase("IDLE")) {
+            minIdle = Long.parseLong(args.get(i + 1));
+            i += 2;
+        }
+        Id start = boundary(args.get(i), true);
+        Id end = boundary(args.get(i + 1), false);
+        long count = Long.parseLong(args.get(i + 2));
+        String consumer = args.size() > i + 3 ? args.get(i + 3) : null;
+        long now = System.currentTimeMillis();
+        List<Object> result = new ArrayList<>();
+        for (Map.Entry<Id, Pending> e : group.pending.subMap(start, true, end, true).entrySet()) {
+            Pending p = e.getValue();
+            if (result.size() >= count) {
+                break;
+            }
+            if ((consumer == null || consumer.equals(p.consumer)) && now - p.deliveredAt >= minIdle) {
+                result.add(List.of(bulk(e.getKey().toString()), bulk(p.consumer), now - p.deliveredAt, p.deliveries));
+            }
+        }
+        return result;
+    }
+
+    private synchronized Object xclaim(List<String> args) {
+        Stream stream = streams.get(args.get(1));
+        Group group = stream != null ? stream.groups.get(args.get(2)) : null;
+        if (group == null) {
+            throw new RedisError("NOGROUP No such key or consumer group");
+        }
+        String consumer = args.get(3);
+        long minIdle = Long.parseLong(args.get(4));
+        List<Id> ids = new ArrayList<>();
+        boolean justId = false;
+        for (String arg : args.subList(5, args.size())) {
+            if (arg.equalsIgnoreCase("JUSTID")) {
+                justId = true;
+            } else if (Character.isDigit(arg.charAt(0))) {
+                ids.add(Id.parse(arg));
+            }
+        }
+        long now = System.currentTimeMillis();
+        List<Object> result = new ArrayList<>();
+        for (Id id : ids) {
+            Pending p = group.pending.get(id);
+            if (p == null || now - p.deliveredAt < minIdle) {
+                continue;
+            }
+            List<String> fields = stream.entries.get(id);
+            if (fields == null) {
+                // Recortada del stream: como Redis 7, sale de la lista de pendientes
+                group.pending.remove(id);
+                continue;
+            }
+            p.consumer = consumer;
+            p.deliveredAt = now;
+            if (!justId) {
+                p.deliveries++;
+            }
+            result.add(justId ? bulk(id.toString()) : entry(id, fields));
+        }
+        return result;
+    }
+
+    private static Id boundary(String value, boolean start) {
+        if (value.equals("-")) {
+            return new Id(0, 0);
+        }
+        if (value.equals("+")) {
+            return new Id(Long.MAX_VALUE, Long.MAX_VALUE);
+        }
+        Id id = Id.parse(value.startsWith("(") ? value.substring(1) : value);
+        if (value.startsWith("(")) {
+            return start ? new Id(id.ms(), id.seq() + 1) : new Id(id.ms(), id.seq() - 1);
+        }
+        return id;
+    }
+
+    private static List<Object> entry(Id id, List<String> fields) {
+        List<Object> values = new ArrayList<>(fields.size());
+        fields.forEach(f -> values.add(bulk(f)));
+        return List.of(bulk(id.toString()), values);
+    }
+
+    // ---- RESP2 ----
+
+    private static final Object NULL_BULK = new Object();
+    private static final Object NULL_ARRAY = new Object();
+
+    private record Bulk(String value) {
+    }
+
+    private static Bulk bulk(String value) {
+        return new Bulk(value);
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header.charAt(0) != '*') {
+            // Comando inline (redis-cli o telnet)
+            return List.of(header.trim().split("\\s+"));
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<String> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String length = readLine(in);
+            byte[] data = in.readNBytes(Integer.parseInt(length.substring(1)));
+            readLine(in);
+            args.add(new String(data, StandardCharsets.UTF_8));
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            line.append((char) c);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    private static void write(OutputStream out, Object reply) throws IOException {
+        if (reply == null || reply == NULL_ARRAY) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply == NULL_BULK) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof StringBuilder status) {
+            out.write(("+" + status + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof RedisError error) {
+            out.write(("-" + error.getMessage() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Long number) {
+            out.write((":" + number + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Bulk bulk) {
+            byte[] data = bulk.value().getBytes(StandardCharsets.UTF_8);
+            out.write(("$" + data.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(data);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof String text) {
+            write(out, bulk(text));
+        } else if (reply instanceof List<?> list) {
+            out.write(("*" + list.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object item : list) {
+                write(out, item);
+            }
+        } else {
+            throw new IllegalStateException("Respuesta no soportada: " + reply);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        synchronized (clients) {
+            for (Iterator<Socket> it = clients.iterator(); it.hasNext(); ) {
+                it.next().close();
+                it.remove();
+            }
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+}
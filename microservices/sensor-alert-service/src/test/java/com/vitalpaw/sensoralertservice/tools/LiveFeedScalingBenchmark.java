@@ -0,0 +1,158 @@
+package com.vitalpaw.sensoralertservice.tools;
+
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import com.vitalpaw.sensoralertservice.service.ReactiveLiveFeedService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.netty.http.client.HttpClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Benchmark de escalado del canal en vivo reactivo ({@link ReactiveLiveFeedService}). Arranca el servidor en el
+ * propio proceso, abre conexiones WebSocket por escalones (por defecto 10k, 50k y 100k) y en cada escalón mide:
+ * <ul>
+ *   <li>memoria por conexión: heap tras GC y memoria directa de Netty, divididos entre las conexiones. Incluye el
+ *       lado cliente, que vive en el mismo proceso, así que es una cota superior del coste en el servidor;</li>
+ *   <li>latencia de difusión: desde {@code publish} hasta que cada cliente recibe la lectura (p50, p99 y máximo
+ *       sobre todas las recepciones) con todos los clientes siguiendo la misma mascota, el peor caso de fan-out.</li>
+ * </ul>
+ * Los clientes se reparten entre 127.0.0.1-127.0.0.64 para no agotar los puertos efímeros de una sola IP de
+ * origen. Para 100k conexiones hace falta subir el límite de descriptores ({@code ulimit -n 262144}) y dar heap
+ * suficiente ({@code -Xmx4g}).
+ *
+ * Uso: {@code LiveFeedScalingBenchmark [escalones separados por comas] [rondas por escalón]}.
+ */
+public final class LiveFeedScalingBenchmark {
+
+    private static final long PET_ID = 1L;
+    private static final int SOURCE_ADDRESSES = 64;
+
+    public static void main(String[] args) throws Exception {
+        int[] steps = Arrays.stream((args.length > 0 ? args[0] : "10000,50000,100000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        ReactiveLiveFeedService server = new ReactiveLiveFeedService();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(server, "enabled", true);
+        ReflectionTestUtils.setField(server, "host", "0.0.0.0");
+        ReflectionTestUtils.setField(server, "port", 0);
+        ReflectionTestUtils.setField(server, "path", "/live");
+        ReflectionTestUtils.setField(server, "bufferPerConnection", 32);
+        ReflectionTestUtils.setField(server, "maxPetsPerConnection", 1);
+        ReflectionTestUtils.setField(server, "meterRegistry", registry);
+        server.start();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        HttpClient client = HttpClient.newConnection();
+        String uri = "ws://127.0.0.1:" + server.localPort() + "/live?petId=" + PET_ID;
+        List<Disposable> connections = new ArrayList<>();
+        // Hora de publicación de cada ronda y latencias de la ronda en curso
+        long[] publishedAt = new long[rounds];
+        AtomicLongArray latencies = new AtomicLongArray(steps[steps.length - 1]);
+        AtomicInteger receivedInRound = new AtomicInteger();
+        CountDownLatch[] roundDone = new CountDownLatch[1];
+
+        System.out.printf("%10s %14s %14s %10s %10s %10s%n", "conexiones", "heap/conexión", "directa/con.", "p50 ms", "p99 ms", "máx ms");
+        long baseHeap = usedHeap(memory);
+        long baseDirect = PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory();
+
+        for (int target : steps) {
+            CountDownLatch connected = new CountDownLatch(target - connections.size());
+            while (connections.size() < target) {
+                int index = connections.size();
+                InetSocketAddress source = new InetSocketAddress("127.0.0." + (1 + index % SOURCE_ADDRESSES), 0);
+                connections.add(client.bindAddress(() -> source)
+                        .websocket()
+                        .uri(uri)
+                        .handle((in, out) -> {
+                            connected.countDown();
+                            return in.receive().asString().doOnNext(json -> {
+                                long now = System.nanoTime();
+                                int round = pulseOf(json);
+                                int slot = receivedInRound.getAndIncrement();
+                                if (slot < latencies.length()) {
+                                    latencies.set(slot, now - publishedAt[round]);
+                                }
+                                roundDone[0].countDown();
+                            }).then();
+                        })
+                        .subscribe());
+                // Ritmo de conexión moderado para no desbordar el backlog de accept
+                if (index % 1_000 == 999) {
+                    Thread.sleep(50);
+                }
+            }
+            if (!connected.await(120, TimeUnit.SECONDS)) {
+                System.out.printf("Solo se establecieron %d de %d conexiones%n", target - connected.getCount(), target);
+                break;
+            }
+
+            long heapPerConnection = (usedHeap(memory) - baseHeap) / target;
+            long directPerConnection = (PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory() - baseDirect) / target;
+
+            long[] all = new long[rounds * target];
+            int count = 0;
+            for (int round = 0; round < rounds; round++) {
+                receivedInRound.set(0);
+                roundDone[0] = new CountDownLatch(target);
+                publishedAt[round] = System.nanoTime();
+                server.publish(new SensorDataResponseDTO("ESP32_BENCH", PET_ID, 38.5f, round, "En movimiento", null));
+                roundDone[0].await(30, TimeUnit.SECONDS);
+                int received = Math.min(receivedInRound.get(), target);
+                for (int i = 0; i < received; i++) {
+                    all[count++] = latencies.get(i);
+                }
+                Thread.sleep(100);
+            }
+            long[] sorted = Arrays.copyOf(all, count);
+            Arrays.sort(sorted);
+            System.out.printf("%10d %12d B %12d B %10.2f %10.2f %10.2f%n", target, heapPerConnection, directPerConnection,
+                    millis(sorted, 0.50), millis(sorted, 0.99), millis(sorted, 1.0));
+        }
+
+        connections.forEach(Disposable::dispose);
+        server.stop();
+    }
+
+    // El benchmark publica el número de ronda en el campo pulse
+    private static int pulseOf(String json) {
+        int start = json.indexOf("\"pulse\":") + 8;
+        int end = start;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) {
+            end++;
+        }
+        return Integer.parseInt(json, start, end, 10);
+    }
+
+    private static long usedHeap(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private LiveFeedScalingBenchmark() {
+    }
+}
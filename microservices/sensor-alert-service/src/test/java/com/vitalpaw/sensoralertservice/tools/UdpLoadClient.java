@@ -0,0 +1,93 @@
+package com.vitalpaw.sensoralertservice.tools;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cliente de carga para el canal UDP: cada hilo simula un grupo de collares y envía datagramas de una muestra
+ * tan rápido como puede, leyendo los acks sin bloquear. Informa de datagramas enviados y confirmados por
+ * segundo, en total y por núcleo (un hilo emisor por núcleo). Los confirmados miden lo que el servidor llegó a
+ * aceptar; la diferencia con los enviados son pérdidas en el socket o en la cola de workers.
+ *
+ * Uso: {@code UdpLoadClient [host] [puerto] [hilos] [segundos] [collares por hilo]}; los collares
+ * ({@code LOAD_<hilo>_<n>}) deben estar aprovisionados para que el servidor los procese.
+ */
+public final class UdpLoadClient {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 5683;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int devicesPerThread = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+
+        LongAdder sent = new LongAdder();
+        LongAdder acked = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        InetSocketAddress target = new InetSocketAddress(host, port);
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                try {
+                    run(target, thread, devicesPerThread, deadline, sent, acked);
+                } catch (IOException e) {
+                    System.err.println("Hilo " + thread + ": " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }, "udp-load-" + t).start();
+        }
+        done.await();
+
+        double sentPerSecond = sent.sum() / (double) seconds;
+        double ackedPerSecond = acked.sum() / (double) seconds;
+        System.out.printf("Enviados:    %,.0f datagramas/s (%,.0f por núcleo)%n", sentPerSecond, sentPerSecond / threads);
+        System.out.printf("Confirmados: %,.0f datagramas/s (%,.0f por núcleo)%n", ackedPerSecond, ackedPerSecond / threads);
+    }
+
+    private static void run(InetSocketAddress target, int thread, int devices, long deadline,
+                            LongAdder sent, LongAdder acked) throws IOException {
+        byte[][] ids = new byte[devices][];
+        int[] seqs = new int[devices];
+        for (int i = 0; i < devices; i++) {
+            ids[i] = ("LOAD_" + thread + "_" + i).getBytes(StandardCharsets.UTF_8);
+        }
+        ByteBuffer out = ByteBuffer.allocateDirect(64);
+        ByteBuffer in = ByteBuffer.allocateDirect(16);
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(target);
+            channel.configureBlocking(false);
+            int device = 0;
+            long localSent = 0;
+            long localAcked = 0;
+            while (System.nanoTime() < deadline) {
+                out.clear();
+                out.put((byte) 'V').put((byte) 'P').put((byte) 'D').put((byte) '1')
+                        .putInt(seqs[device]++).put((byte) ids[device].length).put(ids[device]).put((byte) 1)
+                        .putLong(System.currentTimeMillis()).putFloat(38.5f).putShort((short) 110).put((byte) 1)
+                        .flip();
+                if (channel.write(out) > 0) {
+                    localSent++;
+                }
+                in.clear();
+                while (channel.read(in) > 0) {
+                    localAcked++;
+                    in.clear();
+                }
+                device = (device + 1) % devices;
+            }
+            sent.add(localSent);
+            acked.add(localAcked);
+        }
+    }
+
+    private UdpLoadClient() {
+    }
+}
@@ -0,0 +1,35 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void testRegisteredDevicesAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("ESP32_VITALPAW_" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("ESP32_VITALPAW_" + i));
+        }
+    }
+
+    @Test
+    void testUnknownDevicesAreMostlyRejected() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("ESP32_VITALPAW_" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("ROGUE_" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 500, "Demasiados falsos positivos: " + falsePositives);
+        assertFalse(filter.mightContain(null));
+    }
+}
@@ -0,0 +1,39 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingTest {
+
+    @Test
+    void testKeepsTheLatestEvents() {
+        EventRing<String> ring = new EventRing<>(3);
+        assertEquals(-1, ring.oldestId());
+        for (int id = 1; id <= 5; id++) {
+            ring.add(id, "e" + id);
+        }
+        assertEquals(3, ring.size());
+        assertEquals(3, ring.oldestId());
+
+        List<String> all = new ArrayList<>();
+        assertEquals(3, ring.since(0, (event, id) -> all.add(event)));
+        assertEquals(List.of("e3", "e4", "e5"), all);
+    }
+
+    @Test
+    void testSinceReturnsOnlyNewerEventsInOrder() {
+        EventRing<String> ring = new EventRing<>(4);
+        ring.add(10, "a");
+        ring.add(11, "b");
+        ring.add(12, "c");
+
+        List<Long> ids = new ArrayList<>();
+        assertEquals(2, ring.since(10, (event, id) -> ids.add(id)));
+        assertEquals(List.of(11L, 12L), ids);
+        assertEquals(0, ring.since(12, (event, id) -> fail("No debería entregar nada")));
+    }
+}
@@ -0,0 +1,49 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GorillaEncoderTest {
+
+    @Test
+    void testRoundTripWithJitterAndGaps() {
+        Random random = new Random(7);
+        GorillaEncoder encoder = new GorillaEncoder(2);
+        int n = 2_000;
+        long[] ts = new long[n];
+        float[] temp = new float[n];
+        float[] pulse = new float[n];
+        long t = 1_760_000_000_000L;
+        for (int i = 0; i < n; i++) {
+            t += i % 500 == 0 ? 3_600_000 : 1_000 + random.nextInt(40) - 20; // jitter y huecos de una hora
+            ts[i] = t;
+            temp[i] = Math.round((38.5f + random.nextFloat() * 0.4f) * 100) / 100f;
+            pulse[i] = 90 + random.nextInt(20);
+            encoder.add(ts[i], temp[i], pulse[i]);
+        }
+
+        GorillaDecoder decoder = new GorillaDecoder(ByteBuffer.wrap(encoder.toByteArray()), n, 2);
+        for (int i = 0; i < n; i++) {
+            assertTrue(decoder.next());
+            assertEquals(ts[i], decoder.timestamp());
+            assertEquals(temp[i], decoder.value(0));
+            assertEquals(pulse[i], decoder.value(1));
+        }
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    void testRegularSeriesCompressesWell() {
+        GorillaEncoder encoder = new GorillaEncoder(2);
+        long t = 1_760_000_000_000L;
+        for (int i = 0; i < 1_000; i++) {
+            encoder.add(t + i * 1_000L, 38.6f + (i % 10 == 0 ? 0.1f : 0f), 100 + (i % 3));
+        }
+        // Una fila en MariaDB ocupa decenas de bytes; aquí se busca menos de 5 por punto
+        assertTrue(encoder.sizeInBytes() < 5 * 1_000, "bytes=" + encoder.sizeInBytes());
+    }
+}
@@ -0,0 +1,127 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import com.vitalpaw.sensoralertservice.dto.LiveDeviceStateDTO;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveStateTableTest {
+
+    @Test
+    void testKeepsTheLatestStatePerDevice() {
+        LiveStateTable table = new LiveStateTable(100);
+        assertNull(table.get("ESP32_1"));
+
+        assertTrue(table.update("ESP32_1", 7L, 1_000L, 38.5f, 110, "En movimiento", 1.25f));
+        assertTrue(table.update("ESP32_1", 7L, 2_000L, 38.7f, 115, "MPU6050 error lectura", null));
+        assertTrue(table.update("ESP32_2", 8L, 1_500L, 39.1f, 90, "Sin movimiento", 0.5f));
+
+        LiveDeviceStateDTO first = table.get("ESP32_1");
+        assertEquals(7L, first.petId());
+        assertEquals(2_000L, first.lastSeen());
+        assertEquals(38.7f, first.temperature(), 0.001f);
+        assertEquals(115, first.pulse());
+        // Solo se conservan los estados con código compacto
+        assertNull(first.status());
+        assertNull(first.activity());
+        assertEquals(2L, first.sequence());
+
+        LiveDeviceStateDTO second = table.get("ESP32_2");
+        assertEquals("Sin movimiento", second.status());
+        assertEquals(0.5f, second.activity(), 0.001f);
+        assertEquals(1L, second.sequence());
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void testRejectsNewDevicesWhenFull() {
+        LiveStateTable table = new LiveStateTable(12);
+        assertEquals(16, table.capacity());
+        for (int i = 0; i < 12; i++) {
+            assertTrue(table.update("D" + i, i, 1_000L, 38.5f, 100, null, null));
+        }
+        assertFalse(table.update("NEW", 99L, 1_000L, 38.5f, 100, null, null));
+        assertNull(table.get("NEW"));
+        // Los ya registrados siguen actualizándose
+        assertTrue(table.update("D3", 3L, 2_000L, 38.6f, 101, null, null));
+        assertEquals(2_000L, table.get("D3").lastSeen());
+    }
+
+    @Test
+    void testStaysUnder64BytesPerDeviceAtFleetSize() throws Exception {
+        for (int devices : new int[] {100_000, 1_000_000}) {
+            LiveStateTable table = new LiveStateTable(devices);
+            assertEquals(arrayBytes(table), table.footprintBytes());
+            assertTrue(table.footprintBytes() / (double) devices < 64,
+                    devices + " dispositivos: " + table.footprintBytes() / (double) devices + " B");
+            // La flota configurada cabe entera
+            for (int i = 0; i < devices; i++) {
+                assertTrue(table.update("ESP32_" + i, i, 1_000L, 38.5f, 100, null, null));
+            }
+            assertEquals(38.5f, table.get("ESP32_" + (devices - 1)).temperature(), 0.001f);
+        }
+    }
+
+    // Suma los arrays por ranura que reserva la tabla (referencias comprimidas de 4 bytes)
+    private static long arrayBytes(LiveStateTable table) throws IllegalAccessException {
+        long bytes = 0;
+        for (Field field : LiveStateTable.class.getDeclaredFields()) {
+            Class<?> type = field.getType();
+            if (!type.isArray() || Modifier.isStatic(field.getModifiers()) || field.getName().equals("locks")) {
+                continue;
+            }
+            field.setAccessible(true);
+            Class<?> component = type.getComponentType();
+            int width = component == long.class ? 8 : component == int.class ? 4 : component == short.class ? 2
+                    : component == byte.class ? 1 : 4;
+            bytes += (long) Array.getLength(field.get(table)) * width;
+        }
+        return bytes;
+    }
+
+    @Test
+    void testCountsDevicesSeenSince() {
+        LiveStateTable table = new LiveStateTable(100);
+        table.update("A", 1L, 1_000L, 38.5f, 100, null, null);
+        table.update("B", 2L, 5_000L, 38.5f, 100, null, null);
+        table.update("C", 3L, 9_000L, 38.5f, 100, null, null);
+
+        assertEquals(3, table.countSeenSince(0L));
+        assertEquals(2, table.countSeenSince(1_000L));
+        assertEquals(0, table.countSeenSince(9_000L));
+    }
+
+    @Test
+    void testReadersNeverSeeTornWrites() throws Exception {
+        LiveStateTable table = new LiveStateTable(16);
+        table.update("ESP32_1", 1L, 0L, 0f, 0, null, null);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> torn = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                LiveDeviceStateDTO state = table.get("ESP32_1");
+                // El escritor mantiene todos los campos derivados del mismo contador
+                if (state.pulse() != state.lastSeen() % 1000 || Math.round(state.temperature()) != state.pulse() % 100) {
+                    torn.compareAndSet(null, state.toString());
+                }
+            }
+        });
+        reader.start();
+        for (int i = 1; i <= 200_000; i++) {
+            int pulse = i % 1000;
+            table.update("ESP32_1", 1L, i, pulse % 100, pulse, null, null);
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(torn.get());
+        assertEquals(200_001L, table.get("ESP32_1").sequence());
+    }
+}
@@ -0,0 +1,27 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongObjectMapTest {
+
+    @Test
+    void testGrowsWithoutLosingEntries() {
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+        for (long id = 1; id <= 1000; id++) {
+            map.computeIfAbsent(id, key -> "device-" + key);
+        }
+        assertEquals(1000, map.size());
+        assertEquals("device-500", map.get(500));
+        assertNull(map.get(1001));
+    }
+
+    @Test
+    void testComputeIfAbsentKeepsFirstValue() {
+        LongObjectMap<String> map = new LongObjectMap<>(16);
+        assertEquals("a", map.computeIfAbsent(0, key -> "a"));
+        assertEquals("a", map.computeIfAbsent(0, key -> "b"));
+        assertThrows(IllegalArgumentException.class, () -> map.get(Long.MIN_VALUE));
+    }
+}
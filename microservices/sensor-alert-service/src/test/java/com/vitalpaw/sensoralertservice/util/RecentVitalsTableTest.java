@@ -0,0 +1,98 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import com.vitalpaw.sensoralertservice.dto.VitalsSnapshotDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentVitalsTableTest {
+
+    @Test
+    void testKeepsTheLastReadingsInOrder() {
+        RecentVitalsTable table = new RecentVitalsTable(4, 3);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(table.record(1L, "ESP32_1", 1_000L * i, 38.0f + i / 10f, 100 + i, "En movimiento", i * 0.5f));
+        }
+
+        VitalsSnapshotDTO snapshot = table.snapshot(1L, 10);
+        assertEquals("ESP32_1", snapshot.deviceId());
+        assertEquals(4_000L, snapshot.latestTimestamp());
+        assertEquals(104, snapshot.latest().getPulse());
+        assertEquals(38.4f, snapshot.latest().getTemperature(), 0.001f);
+        assertArrayEquals(new long[]{2_000L, 3_000L, 4_000L}, snapshot.timestamps());
+        assertArrayEquals(new int[]{102, 103, 104}, snapshot.pulses());
+        assertEquals(1.0f, snapshot.activities()[0], 0.001f);
+        assertEquals("En movimiento", snapshot.statuses()[2]);
+
+        VitalsSnapshotDTO latestOnly = table.snapshot(1L, 0);
+        assertEquals(104, latestOnly.latest().getPulse());
+        assertEquals(0, latestOnly.timestamps().length);
+    }
+
+    @Test
+    void testKeepsExactLatestStatusAndMissingActivity() {
+        RecentVitalsTable table = new RecentVitalsTable(4, 3);
+        table.record(1L, "ESP32_1", 1_000L, 38.5f, 110, "MPU6050 error lectura", null);
+        VitalsSnapshotDTO snapshot = table.snapshot(1L, 1);
+        assertEquals("MPU6050 error lectura", snapshot.latest().getStatus());
+        assertNull(snapshot.latest().getActivity());
+        assertNull(snapshot.activities()[0]);
+        // En la ventana solo se guardan los estados con código compacto
+        assertNull(snapshot.statuses()[0]);
+    }
+
+    @Test
+    void testNewDeviceStartsAFreshWindow() {
+        RecentVitalsTable table = new RecentVitalsTable(4, 3);
+        table.record(1L, "ESP32_OLD", 1_000L, 38.5f, 110, "En movimiento", null);
+        table.record(1L, "ESP32_NEW", 2_000L, 38.6f, 111, "En movimiento", null);
+        VitalsSnapshotDTO snapshot = table.snapshot(1L, 3);
+        assertEquals("ESP32_NEW", snapshot.deviceId());
+        assertArrayEquals(new int[]{111}, snapshot.pulses());
+    }
+
+    @Test
+    void testPetsBeyondCapacityAreNotTracked() {
+        RecentVitalsTable table = new RecentVitalsTable(2, 3);
+        assertTrue(table.record(1L, "A", 1_000L, 38.5f, 110, null, null));
+        assertTrue(table.record(2L, "B", 1_000L, 38.5f, 110, null, null));
+        assertFalse(table.record(3L, "C", 1_000L, 38.5f, 110, null, null));
+        assertTrue(table.record(1L, "A", 2_000L, 38.5f, 111, null, null));
+        assertEquals(2, table.usedSlots());
+        assertNull(table.snapshot(3L, 3));
+        assertNull(table.snapshot(99L, 3));
+    }
+
+    @Test
+    void testFullTableReclaimsTheLongestIdleSlot() throws InterruptedException {
+        RecentVitalsTable table = new RecentVitalsTable(2, 3, 0);
+        assertTrue(table.record(1L, "A", 1_000L, 38.5f, 110, null, null));
+        Thread.sleep(2);
+        assertTrue(table.record(2L, "B", 1_000L, 38.5f, 120, null, null));
+        Thread.sleep(2);
+        // La mascota 1 es la que lleva más tiempo sin escribir: su ranura pasa a la 3
+        assertTrue(table.record(3L, "C", 1_000L, 38.5f, 130, null, null));
+        assertNull(table.snapshot(1L, 3));
+        assertEquals(130, table.snapshot(3L, 3).latest().getPulse());
+        assertArrayEquals(new int[]{130}, table.snapshot(3L, 3).pulses());
+        assertEquals(120, table.snapshot(2L, 3).latest().getPulse());
+        assertEquals(1, table.reclaimedSlots());
+
+        // Si vuelve, recupera una ranura a costa de la siguiente más inactiva
+        Thread.sleep(2);
+        assertTrue(table.record(1L, "A", 2_000L, 38.5f, 111, null, null));
+        assertArrayEquals(new int[]{111}, table.snapshot(1L, 3).pulses());
+        assertNull(table.snapshot(2L, 3));
+        assertEquals(2, table.usedSlots());
+    }
+
+    @Test
+    void testRecentlyWrittenSlotsAreNotReclaimed() {
+        RecentVitalsTable table = new RecentVitalsTable(2, 3, 60_000);
+        assertTrue(table.record(1L, "A", 1_000L, 38.5f, 110, null, null));
+        assertTrue(table.record(2L, "B", 1_000L, 38.5f, 120, null, null));
+        assertFalse(table.record(3L, "C", 1_000L, 38.5f, 130, null, null));
+        assertEquals(0, table.reclaimedSlots());
+        assertEquals(110, table.snapshot(1L, 1).latest().getPulse());
+    }
+}
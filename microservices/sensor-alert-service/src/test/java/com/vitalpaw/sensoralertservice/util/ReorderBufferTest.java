@@ -0,0 +1,59 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReorderBufferTest {
+
+    @Test
+    void testOrdersByTimestamp() {
+        ReorderBuffer<String> buffer = new ReorderBuffer<>(8);
+        buffer.offer(3_000, "c");
+        buffer.offer(1_000, "a");
+        buffer.offer(4_000, "d");
+        buffer.offer(2_000, "b");
+        assertEquals(1_000, buffer.oldestTimestamp());
+
+        List<String> out = new ArrayList<>();
+        assertEquals(4, buffer.release(10, out::add));
+        assertEquals(List.of("a", "b", "c", "d"), out);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testEqualTimestampsKeepArrivalOrder() {
+        ReorderBuffer<String> buffer = new ReorderBuffer<>(4);
+        buffer.offer(1_000, "first");
+        buffer.offer(1_000, "second");
+        List<String> out = new ArrayList<>();
+        buffer.release(2, out::add);
+        assertEquals(List.of("first", "second"), out);
+    }
+
+    @Test
+    void testReleaseUntilWatermark() {
+        ReorderBuffer<Integer> buffer = new ReorderBuffer<>(8);
+        for (int i = 5; i >= 1; i--) {
+            buffer.offer(i * 1_000L, i);
+        }
+        List<Integer> out = new ArrayList<>();
+        assertEquals(3, buffer.releaseUntil(3_000, out::add));
+        assertEquals(List.of(1, 2, 3), out);
+        assertEquals(2, buffer.size());
+        assertEquals(4_000, buffer.oldestTimestamp());
+    }
+
+    @Test
+    void testRejectsWhenFull() {
+        ReorderBuffer<Integer> buffer = new ReorderBuffer<>(2);
+        assertTrue(buffer.offer(1, 1));
+        assertTrue(buffer.offer(2, 2));
+        assertFalse(buffer.offer(3, 3));
+        buffer.release(1, i -> { });
+        assertTrue(buffer.offer(3, 3));
+    }
+}
@@ -0,0 +1,97 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceWindowTest {
+
+    @Test
+    void testRejectsDuplicates() {
+        SequenceWindow window = new SequenceWindow(1024);
+        assertTrue(window.accept(1));
+        assertTrue(window.accept(2));
+        assertFalse(window.accept(2));
+        assertFalse(window.accept(1));
+    }
+
+    @Test
+    void testAcceptsOutOfOrderWithinWindow() {
+        SequenceWindow window = new SequenceWindow(1024);
+        assertTrue(window.accept(10));
+        assertTrue(window.accept(7));
+        assertTrue(window.accept(9));
+        assertFalse(window.accept(7));
+        assertTrue(window.accept(100));
+        assertTrue(window.accept(40));
+        // Fuera de los 64 recordados
+        assertFalse(window.accept(30));
+    }
+
+    @Test
+    void testWrapsAround() {
+        SequenceWindow window = new SequenceWindow(1024);
+        assertTrue(window.accept(Integer.MAX_VALUE));
+        assertTrue(window.accept(Integer.MIN_VALUE));
+        assertFalse(window.accept(Integer.MAX_VALUE));
+        assertTrue(window.accept(Integer.MIN_VALUE + 1));
+    }
+
+    @Test
+    void testLargeBackwardJumpResets() {
+        SequenceWindow window = new SequenceWindow(1024);
+        assertTrue(window.accept(50_000));
+        // El collar se reinició y vuelve a empezar
+        assertTrue(window.accept(0));
+        assertTrue(window.accept(1));
+        assertFalse(window.accept(0));
+    }
+
+    @Test
+    void testBootEpochResetsOnRebootWithoutGap() {
+        SequenceWindow window = new SequenceWindow(1024);
+        assertEquals(SequenceWindow.Verdict.NEW, window.check(1, 120));
+        assertEquals(SequenceWindow.Verdict.DUPLICATE, window.check(1, 120));
+        // Reinicio tras pocos envíos: el salto atrás es pequeño, pero la época lo dice
+        assertEquals(SequenceWindow.Verdict.NEW, window.check(2, 3));
+        assertEquals(SequenceWindow.Verdict.NEW, window.check(2, 4));
+        // Un datagrama retrasado del arranque anterior no reinicia la ventana
+        assertEquals(SequenceWindow.Verdict.STALE, window.check(1, 121));
+        assertEquals(SequenceWindow.Verdict.DUPLICATE, window.check(2, 4));
+    }
+
+    @Test
+    void testTooOldIsStaleNotDuplicate() {
+        SequenceWindow window = new SequenceWindow(1024);
+        assertEquals(SequenceWindow.Verdict.NEW, window.check(7, 500));
+        // Con época no hay reinicio por salto: lo anterior a la ventana es antiguo
+        assertEquals(SequenceWindow.Verdict.STALE, window.check(7, 10));
+        assertEquals(SequenceWindow.Verdict.STALE, window.check(7, 400));
+
+        SequenceWindow legacy = new SequenceWindow(1024);
+        assertEquals(SequenceWindow.Verdict.NEW, legacy.check(100));
+        assertEquals(SequenceWindow.Verdict.STALE, legacy.check(30));
+    }
+
+    @Test
+    void testRestoredWindowRemembersSeenSequences() throws IOException {
+        SequenceWindow window = new SequenceWindow(1024);
+        assertEquals(SequenceWindow.Verdict.NEW, window.check(7, 100));
+        assertEquals(SequenceWindow.Verdict.NEW, window.check(7, 98));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        window.write(new DataOutputStream(bytes));
+
+        SequenceWindow restored = new SequenceWindow(1024);
+        restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(SequenceWindow.Verdict.DUPLICATE, restored.check(7, 100));
+        assertEquals(SequenceWindow.Verdict.DUPLICATE, restored.check(7, 98));
+        assertEquals(SequenceWindow.Verdict.NEW, restored.check(7, 99));
+        assertEquals(SequenceWindow.Verdict.STALE, restored.check(6, 500));
+    }
+}
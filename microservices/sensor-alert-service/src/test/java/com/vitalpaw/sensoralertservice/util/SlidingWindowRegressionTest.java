@@ -0,0 +1,47 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowRegressionTest {
+
+    @Test
+    void testSlopeOfSteadyRise() {
+        SlidingWindowRegression regression = new SlidingWindowRegression(10, 2);
+        long start = 1_700_000_000_000L;
+        for (int i = 0; i < 25; i++) {
+            // Temperatura +0.1 por minuto, pulso constante
+            regression.add(start + i * 60_000L, 38.0f + 0.1f * i, 100f);
+        }
+        assertEquals(10, regression.count());
+        assertEquals(0.1 / 60, regression.slope(0), 1e-6);
+        assertEquals(0.0, regression.slope(1), 1e-9);
+        assertEquals(38.0 + 0.1 * 34, regression.predict(0, start + 34 * 60_000L), 1e-3);
+        assertTrue(regression.rSquared(0) > 0.99);
+    }
+
+    @Test
+    void testOldSamplesLeaveTheWindow() {
+        SlidingWindowRegression regression = new SlidingWindowRegression(5, 1);
+        long start = 0;
+        for (int i = 0; i < 5; i++) {
+            regression.add(start + i * 1000L, 100f - 10 * i);
+        }
+        for (int i = 5; i < 10; i++) {
+            regression.add(start + i * 1000L, 50f + 2 * i);
+        }
+        // Solo quedan las últimas cinco muestras, que suben 2 por segundo
+        assertEquals(2.0, regression.slope(0), 1e-6);
+    }
+
+    @Test
+    void testRebaseKeepsResults() {
+        SlidingWindowRegression regression = new SlidingWindowRegression(10, 1);
+        long start = 0;
+        for (int i = 0; i < 200; i++) {
+            regression.add(start + i * 1_000_000L, 0.5f * i);
+        }
+        assertEquals(0.5 / 1000, regression.slope(0), 1e-7);
+    }
+}
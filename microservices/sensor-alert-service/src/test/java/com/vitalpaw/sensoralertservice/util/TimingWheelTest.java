@@ -0,0 +1,69 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testExpiresItemsAtTheirDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 500);
+        List<String> expired = new ArrayList<>();
+
+        assertEquals(0, wheel.advance(200, expired::add));
+        assertEquals(1, wheel.advance(300, expired::add));
+        assertEquals(List.of("a"), expired);
+        assertEquals(1, wheel.advance(500, expired::add));
+        assertEquals(List.of("a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testDeadlinesBeyondOneTurnWaitForTheirTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        // Misma casilla que el tick 2, pero una vuelta después
+        wheel.schedule("later", 1_000);
+        wheel.schedule("soon", 200);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(200, expired::add);
+        assertEquals(List.of("soon"), expired);
+        wheel.advance(900, expired::add);
+        assertEquals(List.of("soon"), expired);
+        wheel.advance(1_000, expired::add);
+        assertEquals(List.of("soon", "later"), expired);
+    }
+
+    @Test
+    void testPastDeadlinesExpireOnNextAdvanceAndLongPausesCatchUp() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(100, 8, 1_000);
+        wheel.schedule(1, 0);
+        for (int i = 2; i <= 20; i++) {
+            wheel.schedule(i, 1_000 + i * 150L);
+        }
+        List<Integer> expired = new ArrayList<>();
+        assertEquals(1, wheel.advance(1_100, expired::add));
+        assertEquals(List.of(1), expired);
+
+        // Varias vueltas sin avanzar: todo lo vencido sale de una vez
+        assertEquals(19, wheel.advance(10_000, expired::add));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testDrainReturnsEverythingPending() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 10_000);
+        wheel.schedule("b", 50);
+        List<String> drained = new ArrayList<>();
+        assertEquals(2, wheel.drain(drained::add));
+        assertTrue(drained.containsAll(List.of("a", "b")));
+        assertEquals(0, wheel.advance(20_000, drained::add));
+    }
+}
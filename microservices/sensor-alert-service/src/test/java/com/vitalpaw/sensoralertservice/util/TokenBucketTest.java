@@ -0,0 +1,38 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testBurstThenSustainedRate() {
+        long now = 0;
+        TokenBucket bucket = new TokenBucket(2.0, 5, now);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(now), "La ráfaga inicial debe aceptarse");
+        }
+        assertFalse(bucket.tryAcquire(now));
+
+        // A 2 tokens/s, medio segundo después hay exactamente un token nuevo
+        assertTrue(bucket.tryAcquire(now + SECOND / 2));
+        assertFalse(bucket.tryAcquire(now + SECOND / 2));
+    }
+
+    @Test
+    void testIdleBucketDoesNotExceedBurst() {
+        TokenBucket bucket = new TokenBucket(10.0, 3, 0);
+        long later = 60 * SECOND;
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (bucket.tryAcquire(later)) {
+                accepted++;
+            }
+        }
+        assertEquals(3, accepted);
+    }
+}
@@ -0,0 +1,84 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import com.vitalpaw.sensoralertservice.dto.SensorDataResponseDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VitalsDeltaCodecTest {
+
+    private static SensorDataResponseDTO reading(String deviceId, float temperature, int pulse, String status, Float activity) {
+        return new SensorDataResponseDTO(deviceId, 7L, temperature, pulse, status, activity);
+    }
+
+    @Test
+    void testKeyframeThenDeltasRoundTrip() {
+        VitalsDeltaCodec.Encoder encoder = new VitalsDeltaCodec.Encoder(7L);
+        VitalsDeltaCodec.Decoder decoder = new VitalsDeltaCodec.Decoder();
+
+        VitalsDeltaCodec.Frames first = encoder.encode(reading("ESP32_1", 38.5f, 110, "En movimiento", 1.25f));
+        assertNull(first.delta());
+        assertSame(first.keyframe(), first.forClient(-1));
+        SensorDataResponseDTO decoded = decoder.decode(first.keyframe());
+        assertEquals("ESP32_1", decoded.getDeviceId());
+        assertEquals(7L, decoded.getPetId());
+        assertEquals(38.5f, decoded.getTemperature(), 0.001f);
+        assertEquals(110, decoded.getPulse());
+        assertEquals("En movimiento", decoded.getStatus());
+        assertEquals(1.25f, decoded.getActivity(), 0.001f);
+
+        VitalsDeltaCodec.Frames second = encoder.encode(reading("ESP32_1", 38.4f, 112, "Sin movimiento", null));
+        assertSame(second.delta(), second.forClient(first.seq()));
+        decoded = decoder.decode(second.delta());
+        assertEquals(38.4f, decoded.getTemperature(), 0.001f);
+        assertEquals(112, decoded.getPulse());
+        assertEquals("Sin movimiento", decoded.getStatus());
+        assertNull(decoded.getActivity());
+        assertEquals("ESP32_1", decoded.getDeviceId());
+    }
+
+    @Test
+    void testDeltaIsSmallerThanKeyframe() {
+        VitalsDeltaCodec.Encoder encoder = new VitalsDeltaCodec.Encoder(7L);
+        encoder.encode(reading("ESP32_ABCDEF", 38.5f, 110, "En movimiento", null));
+        VitalsDeltaCodec.Frames unchanged = encoder.encode(reading("ESP32_ABCDEF", 38.5f, 110, "En movimiento", null));
+        VitalsDeltaCodec.Frames pulseOnly = encoder.encode(reading("ESP32_ABCDEF", 38.5f, 111, "En movimiento", null));
+        // Tipo, petId, seq y máscara; el cambio de pulso añade un byte
+        assertEquals(4, unchanged.delta().length);
+        assertEquals(5, pulseOnly.delta().length);
+        assertTrue(pulseOnly.keyframe().length > 3 * pulseOnly.delta().length);
+    }
+
+    @Test
+    void testUnknownStatusIsSentAsText() {
+        VitalsDeltaCodec.Encoder encoder = new VitalsDeltaCodec.Encoder(7L);
+        VitalsDeltaCodec.Decoder decoder = new VitalsDeltaCodec.Decoder();
+        decoder.decode(encoder.encode(reading("ESP32_1", 38.5f, 110, "Dormido", null)).keyframe());
+        SensorDataResponseDTO decoded = decoder.decode(encoder.encode(reading("ESP32_1", 38.5f, 110, "Jugando", null)).delta());
+        assertEquals("Jugando", decoded.getStatus());
+    }
+
+    @Test
+    void testGapOrDeviceChangeFallsBackToKeyframe() {
+        VitalsDeltaCodec.Encoder encoder = new VitalsDeltaCodec.Encoder(7L);
+        VitalsDeltaCodec.Frames first = encoder.encode(reading("ESP32_1", 38.5f, 110, "En movimiento", null));
+        encoder.encode(reading("ESP32_1", 38.6f, 111, "En movimiento", null));
+        VitalsDeltaCodec.Frames third = encoder.encode(reading("ESP32_1", 38.7f, 112, "En movimiento", null));
+        // El cliente se quedó en el primer frame: recibe el estado completo
+        assertSame(third.keyframe(), third.forClient(first.seq()));
+
+        VitalsDeltaCodec.Frames otherDevice = encoder.encode(reading("ESP32_2", 38.7f, 112, "En movimiento", null));
+        assertNull(otherDevice.delta());
+        assertSame(otherDevice.keyframe(), otherDevice.forClient(third.seq()));
+    }
+
+    @Test
+    void testDecoderRejectsDeltaWithoutPreviousFrame() {
+        VitalsDeltaCodec.Encoder encoder = new VitalsDeltaCodec.Encoder(7L);
+        VitalsDeltaCodec.Decoder decoder = new VitalsDeltaCodec.Decoder();
+        decoder.decode(encoder.encode(reading("ESP32_1", 38.5f, 110, "En movimiento", null)).keyframe());
+        encoder.encode(reading("ESP32_1", 38.6f, 110, "En movimiento", null));
+        byte[] skipped = encoder.encode(reading("ESP32_1", 38.7f, 110, "En movimiento", null)).delta();
+        assertThrows(IllegalStateException.class, () -> decoder.decode(skipped));
+    }
+}
@@ -0,0 +1,45 @@
+package com.vitalpaw.sensoralertservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VitalsRingTest {
+
+    @Test
+    void testPackRoundTrip() {
+        VitalsRing ring = new VitalsRing(4);
+        ring.add(1_000, 38.57f, 142, 1.23f, 3.41f);
+        assertEquals(1, ring.size());
+        assertEquals(1_000, ring.timestamp(0));
+        assertEquals(38.57f, ring.temperature(0), 0.001f);
+        assertEquals(142, ring.pulse(0));
+        assertEquals(1.23f, ring.activity(0), 0.001f);
+        assertEquals(3.41f, ring.peakG(0), 0.001f);
+    }
+
+    @Test
+    void testOverwritesOldestWhenFull() {
+        VitalsRing ring = new VitalsRing(3);
+        for (int i = 0; i < 5; i++) {
+            ring.add(i * 1_000L, 38f, 100 + i, 0, 1);
+        }
+        assertEquals(3, ring.size());
+        assertEquals(102, ring.pulse(0));
+        assertEquals(104, ring.pulse(2));
+        assertEquals(4_000, ring.timestamp(2));
+    }
+
+    @Test
+    void testCopySince() {
+        VitalsRing ring = new VitalsRing(8);
+        for (int i = 0; i < 6; i++) {
+            ring.add(10_000 + i * 1_000L, 38f, 100 + i, 0, 1);
+        }
+        VitalsRing target = new VitalsRing(8);
+        ring.copySince(13_000, target);
+        assertEquals(3, target.size());
+        assertEquals(13_000, target.timestamp(0));
+        assertEquals(103, target.pulse(0));
+    }
+}